@@ -0,0 +1,128 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.oracles;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark to compare the ways of matching the widget titles of a state against the suspicious titles:
+ * the regular expression with a WeakHashMap of matchers (as DefaultProtocol used to do), a single reset
+ * matcher (Regex mode) and the Aho-Corasick automaton of the literals (Literals mode).
+ * No title is suspicious, as in most states, so all titles are matched.
+ */
+@State(Scope.Benchmark)
+public class SuspiciousTitlesBenchmark {
+
+    private static final String SUSPICIOUS_TITLES = ".*[eE]rror.*|.*[eE]xcep[ct]i[o?]n.*";
+    private static final String[] WORDS = {"File", "Edit", "View", "Save", "Open", "Close", "Window", "Help", "OK",
+            "Cancel", "Apply", "Settings", "Document", "Untitled", "Toolbar", "Button", "Menu", "Item", "Table", "Row"};
+
+    @Param({"1000", "10000"})
+    int widgets;
+
+    String[] titles;
+    Pattern pattern;
+    MultiPatternMatcher regex, literals;
+
+    @Setup(Level.Trial)
+    public void createTitles() {
+        Random random = new Random(42);
+        titles = new String[widgets];
+        for (int i = 0; i < widgets; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int words = 1 + random.nextInt(6); words > 0; words--)
+                title.append(WORDS[random.nextInt(WORDS.length)]).append(words > 1 ? " " : "");
+            titles[i] = title.append(' ').append(i).toString();
+        }
+        pattern = Pattern.compile(SUSPICIOUS_TITLES, Pattern.UNICODE_CHARACTER_CLASS);
+        regex = MultiPatternMatcher.compile(SUSPICIOUS_TITLES, Pattern.UNICODE_CHARACTER_CLASS, MultiPatternMatcher.Mode.Regex);
+        literals = MultiPatternMatcher.compile(SUSPICIOUS_TITLES, Pattern.UNICODE_CHARACTER_CLASS, MultiPatternMatcher.Mode.Literals);
+    }
+
+    @Benchmark
+    @Warmup(iterations = 5)
+    @Fork(2)
+    @Measurement(iterations = 10)
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int weakHashMapMatchers() {
+        // a new state has new title strings, so the cache of the previous state does not help
+        Map<String, Matcher> matchers = new WeakHashMap<>();
+        int suspicious = 0;
+        for (String title : titles) {
+            Matcher m = matchers.get(title);
+            if (m == null) {
+                m = pattern.matcher(title);
+                matchers.put(title, m);
+            }
+            if (m.matches())
+                suspicious++;
+        }
+        return suspicious;
+    }
+
+    @Benchmark
+    @Warmup(iterations = 5)
+    @Fork(2)
+    @Measurement(iterations = 10)
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int regexMode() {
+        return count(regex);
+    }
+
+    @Benchmark
+    @Warmup(iterations = 5)
+    @Fork(2)
+    @Measurement(iterations = 10)
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int literalsMode() {
+        return count(literals);
+    }
+
+    private int count(MultiPatternMatcher matcher) {
+        int suspicious = 0;
+        for (String title : titles) {
+            if (matcher.matches(title))
+                suspicious++;
+        }
+        return suspicious;
+    }
+}
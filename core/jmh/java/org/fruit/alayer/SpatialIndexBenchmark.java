@@ -0,0 +1,145 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package org.fruit.alayer;
+
+import org.fruit.Util;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark to compare finding the widgets at a point by hit testing every widget of a state (as Util used to do)
+ * with a query of the spatial index, and with building the index for a new state and querying it once.
+ * The widgets are laid out as a grid of small controls inside a few larger panels.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class SpatialIndexBenchmark {
+
+    private static final int QUERIES = 100;
+
+    @Param({"1000", "10000"})
+    int widgets;
+
+    State state;
+    SpatialIndex index;
+    double[] xs, ys;
+
+    private static class RectTester implements ShapeBoundHitTester {
+        private static final long serialVersionUID = 1L;
+        private final Rect rect;
+
+        RectTester(Rect rect) {
+            this.rect = rect;
+        }
+
+        public boolean apply(double x, double y) {
+            return rect.contains(x, y);
+        }
+
+        public boolean apply(double x, double y, boolean obscuredByChildFeature) {
+            return apply(x, y);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void createState() {
+        Random random = new Random(42);
+        List<Widget> list = new ArrayList<>();
+        state = new StdState() {
+            @Override
+            public Iterator<Widget> iterator() { return list.iterator(); }
+        };
+        list.add(state);
+        int columns = (int) Math.ceil(Math.sqrt(widgets));
+        for (int i = 1; i < widgets; i++) {
+            Rect rect = i % 100 == 0
+                    ? Rect.from(random.nextInt(columns * 20), random.nextInt(columns * 20), 400, 300)
+                    : Rect.from(i % columns * 20, i / columns * 20, 18, 18);
+            Widget widget = new StdWidget();
+            widget.set(Tags.Shape, rect);
+            widget.set(Tags.HitTester, new RectTester(rect));
+            list.add(widget);
+        }
+        index = new SpatialIndex(state);
+        xs = new double[QUERIES];
+        ys = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            xs[i] = random.nextInt(columns * 20);
+            ys[i] = random.nextInt(columns * 20);
+        }
+    }
+
+    @Benchmark
+    @Warmup(iterations = 5)
+    @Fork(2)
+    @Measurement(iterations = 10)
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int linearScan() {
+        int hits = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            for (Widget widget : state) {
+                if (widget.get(Tags.HitTester, Util.FalseTester).apply(xs[i], ys[i]))
+                    hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @Warmup(iterations = 5)
+    @Fork(2)
+    @Measurement(iterations = 10)
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int indexQuery() {
+        int hits = 0;
+        for (int i = 0; i < QUERIES; i++)
+            hits += index.widgetsAt(xs[i], ys[i]).size();
+        return hits;
+    }
+
+    @Benchmark
+    @Warmup(iterations = 5)
+    @Fork(2)
+    @Measurement(iterations = 10)
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int buildAndQuery() {
+        // a new state, as when the widget under the cursor is looked up once per state
+        return new SpatialIndex(state).widgetsAt(xs[0], ys[0]).size();
+    }
+}
@@ -32,7 +32,9 @@
 package es.upv.staq.testar;
 
 import java.util.*;
-import java.util.zip.CRC32;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.fruit.alayer.*;
 import org.fruit.alayer.actions.ActionRoles;
@@ -85,6 +87,35 @@ public class CodingManager {
 	private static Tag<?>[] customTagsForAbstractId = new Tag<?>[]{};
 	private static Tag<?>[] defaultAbstractStateTags = new Tag<?>[] {StateManagementTags.WidgetControlType};
 
+	// number of widget identifiers that are computed for each widget/state
+	private static final int NR_OF_IDS = 7;
+	@SuppressWarnings("unchecked")
+	private static final Tag<String>[] ID_TAGS = (Tag<String>[]) new Tag<?>[]{Tags.ConcreteID, Tags.AbstractID, Tags.Abstract_R_ID,
+			Tags.Abstract_R_T_ID, Tags.Abstract_R_T_P_ID, Tags.ConcreteIDCustom, Tags.AbstractIDCustom};
+	private static final String[] WIDGET_ID_PREFIXES = new String[]{ID_PREFIX_CONCRETE, ID_PREFIX_ABSTRACT_R, ID_PREFIX_ABSTRACT_R,
+			ID_PREFIX_ABSTRACT_R_T, ID_PREFIX_ABSTRACT_R_T_P, ID_PREFIX_CONCRETE_CUSTOM, ID_PREFIX_ABSTRACT_CUSTOM};
+	private static final String[] STATE_ID_PREFIXES = new String[]{ID_PREFIX_CONCRETE, ID_PREFIX_ABSTRACT, ID_PREFIX_ABSTRACT_R,
+			ID_PREFIX_ABSTRACT_R_T, ID_PREFIX_ABSTRACT_R_T_P, ID_PREFIX_CONCRETE_CUSTOM, ID_PREFIX_ABSTRACT_CUSTOM};
+
+	// the tags of each widget identifier, with the child tags of the control pattern tags expanded
+	private static Tag<?>[][] widgetIdTags;
+	// all the tags that widget identifiers depend on
+	private static Tag<?>[] signatureTags;
+
+	// widget identifiers of the previous state, by widget path
+	private static Map<String, WidgetIDs> previousWidgetIDs = new HashMap<>();
+
+	// states with at least this number of widgets get their widget identifiers computed in parallel
+	private static int parallelThreshold = 512;
+	private static final int SEQUENTIAL_CHUNK = 128;
+
+	private static IdHashFunction idHashFunction = IdHashFunctions.LowCollision;
+	private static IdCollisionDetector collisionDetector = null;
+
+	static {
+		initIdTags();
+	}
+
     /**
      * Set the array of tags that should be used in constructing the concrete state id's.
      *
@@ -93,6 +124,7 @@ public class CodingManager {
 	public static synchronized void setCustomTagsForConcreteId(Tag<?>[] tags) {
 		customTagsForConcreteId = tags;
 		Arrays.sort(customTagsForConcreteId,Comparator.comparing(Tag::name));
+		initIdTags();
 	}
 
     /**
@@ -103,8 +135,52 @@ public class CodingManager {
 	public static synchronized void setCustomTagsForAbstractId(Tag<?>[] tags) {
 		customTagsForAbstractId = tags;
 		Arrays.sort(customTagsForAbstractId, Comparator.comparing(Tag::name));
+		initIdTags();
+	}
+
+	/**
+	 * Set the minimum number of widgets a state must have to compute its widget identifiers in parallel.
+	 * Use <code>Integer.MAX_VALUE</code> to always compute them on the calling thread.
+	 *
+	 * @param threshold number of widgets
+	 */
+	public static synchronized void setParallelThreshold(int threshold) {
+		parallelThreshold = threshold;
+	}
+
+	/**
+	 * Set the hash function that is used to compute the widget, state and action identifiers.
+	 * The identifiers, and therefore the state models, of different functions are not compatible.
+	 *
+	 * @param function the hash function
+	 */
+	public static synchronized void setIdHashFunction(IdHashFunction function) {
+		idHashFunction = Objects.requireNonNull(function);
+		previousWidgetIDs = new HashMap<>();
+	}
+
+	/**
+	 * Returns the hash function that is used to compute the identifiers
+	 * @return
+	 */
+	public static IdHashFunction getIdHashFunction() { return idHashFunction; }
+
+	/**
+	 * Set a detector that is told about every identifier that is computed, together with its text,
+	 * to count identifier collisions. Use null to disable collision detection.
+	 *
+	 * @param detector the collision detector or null
+	 */
+	public static synchronized void setCollisionDetector(IdCollisionDetector detector) {
+		collisionDetector = detector;
 	}
 
+	/**
+	 * Returns the collision detector, if collision detection is enabled
+	 * @return the collision detector or null
+	 */
+	public static IdCollisionDetector getCollisionDetector() { return collisionDetector; }
+
 	/**
 	 * Returns the tags that are currently being used to create a custom abstract state id
 	 * @return
@@ -143,42 +219,44 @@ public class CodingManager {
 	 * An identifier (alphanumeric) for a widget is calculated based on
 	 * the concatenation of a set of accessibility properties (e.g. ROLE, TITLE, ENABLED and PATH).
 	 * An example for an enabled "ok" button could be: Buttonoktrue0,0,1 ("0,0,1" being the path in the widget-tree).
- 	 *
+	 *
+	 * The formula is evaluated in a streaming way (see IdHasher), so the concatenated texts are never built.
+	 * The default formula can be replaced by another hash function with setIdHashFunction.
+	 * Widget identifiers of large states are computed in parallel, and the identifiers of widgets whose tag
+	 * values did not change since the previous state (same path) are reused.
 	 */
 	public static synchronized void buildIDs(Widget widget){
 		if (widget.parent() != null){
-			widget.set(Tags.ConcreteID, ID_PREFIX_WIDGET + ID_PREFIX_CONCRETE + CodingManager.codify(widget, CodingManager.TAGS_CONCRETE_ID));
-			widget.set(Tags.AbstractID, ID_PREFIX_WIDGET + ID_PREFIX_ABSTRACT_R + CodingManager.codify(widget, CodingManager.TAGS_ABSTRACT_ID));
-			widget.set(Tags.Abstract_R_ID, ID_PREFIX_WIDGET + ID_PREFIX_ABSTRACT_R + CodingManager.codify(widget, CodingManager.TAGS_ABSTRACT_R_ID));
-			widget.set(Tags.Abstract_R_T_ID, ID_PREFIX_WIDGET + ID_PREFIX_ABSTRACT_R_T + CodingManager.codify(widget, CodingManager.TAGS_ABSTRACT_R_T_ID));
-			widget.set(Tags.Abstract_R_T_P_ID, ID_PREFIX_WIDGET + ID_PREFIX_ABSTRACT_R_T_P + CodingManager.codify(widget, CodingManager.TAGS_ABSTRACT_R_T_P_ID));
-			widget.set(Tags.ConcreteIDCustom, ID_PREFIX_WIDGET + ID_PREFIX_CONCRETE_CUSTOM + CodingManager.codify(widget, customTagsForConcreteId));
-			widget.set(Tags.AbstractIDCustom, ID_PREFIX_WIDGET + ID_PREFIX_ABSTRACT_CUSTOM + CodingManager.codify(widget, customTagsForAbstractId));
+			setWidgetIDs(widget, computeWidgetIDs(widget, newHasher(), previousWidgetIDs, null));
 		} else if (widget instanceof State) { // UI root
-			StringBuilder concreteId, abstractId, abstractRoleId, abstractRoleTitleId, abstractRoleTitlePathId, concreteIdCustom, abstractIdCustom;
-			concreteId = new StringBuilder(abstractId = new StringBuilder(abstractRoleId = new StringBuilder(abstractRoleTitleId = new StringBuilder(abstractRoleTitlePathId = new StringBuilder(concreteIdCustom = new StringBuilder(abstractIdCustom = new StringBuilder()))))));
+			List<Widget> widgets = new ArrayList<>();
 			for (Widget childWidget : (State) widget){
-				if (childWidget != widget){
-					buildIDs(childWidget);
-					concreteId.append(childWidget.get(Tags.ConcreteID));
-					abstractId.append(childWidget.get(Tags.AbstractID));
-					abstractRoleId.append(childWidget.get(Tags.Abstract_R_ID));
-					abstractRoleTitleId.append(childWidget.get(Tags.Abstract_R_T_ID));
-					abstractRoleTitlePathId.append(childWidget.get(Tags.Abstract_R_T_P_ID));
-					concreteIdCustom.append(childWidget.get(Tags.ConcreteIDCustom));
-					abstractIdCustom.append(childWidget.get(Tags.AbstractIDCustom));
-				}
+				if (childWidget != widget)
+					widgets.add(childWidget);
+			}
+
+			WidgetIDs[] widgetIDs = new WidgetIDs[widgets.size()];
+			Map<String, WidgetIDs> currentWidgetIDs = new ConcurrentHashMap<>(Math.max(16, widgets.size() * 2));
+			WidgetIDsTask task = new WidgetIDsTask(widgets, widgetIDs, previousWidgetIDs, currentWidgetIDs, 0, widgets.size());
+			if (widgets.size() >= parallelThreshold)
+				ForkJoinPool.commonPool().invoke(task);
+			else
+				task.compute();
+			previousWidgetIDs = currentWidgetIDs;
+
+			// the state identifiers are computed over the widget identifiers in the order of the UI structure
+			IdHasher[] hashers = new IdHasher[NR_OF_IDS];
+			for (int i = 0; i < NR_OF_IDS; i++)
+				hashers[i] = newHasher();
+			for (WidgetIDs ids : widgetIDs){
+				for (int i = 0; i < NR_OF_IDS; i++)
+					hashers[i].update(ids.ids[i]);
 			}
-			widget.set(Tags.ConcreteID, ID_PREFIX_STATE + ID_PREFIX_CONCRETE + CodingManager.lowCollisionID(concreteId.toString()));
-			widget.set(Tags.AbstractID, ID_PREFIX_STATE + ID_PREFIX_ABSTRACT + CodingManager.lowCollisionID(abstractId.toString()));
-			widget.set(Tags.Abstract_R_ID, ID_PREFIX_STATE + ID_PREFIX_ABSTRACT_R + CodingManager.lowCollisionID(abstractRoleId.toString()));
-			widget.set(Tags.Abstract_R_T_ID, ID_PREFIX_STATE + ID_PREFIX_ABSTRACT_R_T + CodingManager.lowCollisionID(abstractRoleTitleId.toString()));
-			widget.set(Tags.Abstract_R_T_P_ID, ID_PREFIX_STATE + ID_PREFIX_ABSTRACT_R_T_P + CodingManager.lowCollisionID(abstractRoleTitlePathId.toString()));
-			widget.set(Tags.ConcreteIDCustom, ID_PREFIX_STATE + ID_PREFIX_CONCRETE_CUSTOM + CodingManager.lowCollisionID(concreteIdCustom.toString()));
-			widget.set(Tags.AbstractIDCustom, ID_PREFIX_STATE + ID_PREFIX_ABSTRACT_CUSTOM + CodingManager.lowCollisionID(abstractIdCustom.toString()));
-		}	
+			for (int i = 0; i < NR_OF_IDS; i++)
+				widget.set(ID_TAGS[i], ID_PREFIX_STATE + STATE_ID_PREFIXES[i] + hashers[i].toId());
+		}
 	}
-	
+
 	/**
 	 * Builds IDs (abstract, concrete) for a set of actions.
 	 * @param state Current State of the SUT
@@ -272,22 +350,110 @@ public class CodingManager {
 	// ###############
 	//  STATES CODING
 	// ###############
-	
-	private static String codify(Widget state, Tag<?>... tags){
-		return lowCollisionID(getTaggedString(state, tags));
+
+	/**
+	 * The identifiers of a widget together with the tag values they were computed from.
+	 */
+	private static final class WidgetIDs {
+		final Object[] signature;
+		final String[] ids;
+
+		WidgetIDs(Object[] signature, String[] ids){
+			this.signature = signature;
+			this.ids = ids;
+		}
 	}
 
-	private static String getTaggedString(Widget leaf, Tag<?>... tags){
-		StringBuilder sb = new StringBuilder();
-		for(Tag<?> t : tags) {
-			sb.append(leaf.get(t, null));
-			// check if we are dealing with a state management tag and, if so, if it has child tags
-			// that we need to incorporate
+	/**
+	 * Computes the widget identifiers of a range of widgets, splitting it up for large ranges.
+	 */
+	private static final class WidgetIDsTask extends RecursiveAction {
+		private static final long serialVersionUID = 2937460238916478812L;
+		private final List<Widget> widgets;
+		private final WidgetIDs[] result;
+		private final Map<String, WidgetIDs> previous, current;
+		private final int from, to;
+
+		WidgetIDsTask(List<Widget> widgets, WidgetIDs[] result, Map<String, WidgetIDs> previous, Map<String, WidgetIDs> current, int from, int to){
+			this.widgets = widgets;
+			this.result = result;
+			this.previous = previous;
+			this.current = current;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if (to - from > SEQUENTIAL_CHUNK && getPool() != null){
+				int middle = (from + to) >>> 1;
+				invokeAll(new WidgetIDsTask(widgets, result, previous, current, from, middle),
+						  new WidgetIDsTask(widgets, result, previous, current, middle, to));
+				return;
+			}
+			IdHasher hasher = newHasher();
+			for (int i = from; i < to; i++){
+				Widget widget = widgets.get(i);
+				result[i] = computeWidgetIDs(widget, hasher, previous, current);
+				setWidgetIDs(widget, result[i]);
+			}
+		}
+	}
+
+	/**
+	 * Computes the identifiers of a single widget. If the widget had the same tag values in the previous
+	 * state (same path), the identifiers computed for that state are reused.
+	 */
+	private static WidgetIDs computeWidgetIDs(Widget widget, IdHasher hasher, Map<String, WidgetIDs> previous, Map<String, WidgetIDs> current){
+		Object[] signature = new Object[signatureTags.length];
+		for (int i = 0; i < signatureTags.length; i++)
+			signature[i] = widget.get(signatureTags[i], null);
+
+		String path = widget.get(Tags.Path, null);
+		WidgetIDs ret = path == null ? null : previous.get(path);
+		if (ret == null || !Arrays.equals(ret.signature, signature)){
+			String[] ids = new String[NR_OF_IDS];
+			for (int i = 0; i < NR_OF_IDS; i++){
+				hasher.reset();
+				for (Tag<?> t : widgetIdTags[i])
+					hasher.update(widget.get(t, null));
+				ids[i] = ID_PREFIX_WIDGET + WIDGET_ID_PREFIXES[i] + hasher.toId();
+			}
+			ret = new WidgetIDs(signature, ids);
+		}
+		if (path != null && current != null)
+			current.put(path, ret);
+		return ret;
+	}
+
+	private static void setWidgetIDs(Widget widget, WidgetIDs widgetIDs){
+		for (int i = 0; i < NR_OF_IDS; i++)
+			widget.set(ID_TAGS[i], widgetIDs.ids[i]);
+	}
+
+	private static void initIdTags(){
+		Tag<?>[][] idTags = new Tag<?>[][]{TAGS_CONCRETE_ID, TAGS_ABSTRACT_ID, TAGS_ABSTRACT_R_ID, TAGS_ABSTRACT_R_T_ID,
+			TAGS_ABSTRACT_R_T_P_ID, customTagsForConcreteId, customTagsForAbstractId};
+		Set<Tag<?>> allTags = new LinkedHashSet<>();
+		for (int i = 0; i < idTags.length; i++){
+			idTags[i] = expandTags(idTags[i]);
+			allTags.addAll(Arrays.asList(idTags[i]));
+		}
+		widgetIdTags = idTags;
+		signatureTags = allTags.toArray(new Tag<?>[0]);
+		previousWidgetIDs = new HashMap<>();
+	}
+
+	// adds the child tags of control pattern state management tags, in the order used for the identifiers
+	private static Tag<?>[] expandTags(Tag<?>[] tags){
+		List<Tag<?>> ret = new ArrayList<>();
+		for (Tag<?> t : tags){
+			ret.add(t);
 			if (StateManagementTags.isStateManagementTag(t) && StateManagementTags.getTagGroup(t).equals(StateManagementTags.Group.ControlPattern)) {
-				StateManagementTags.getChildTags(t).stream().sorted(Comparator.comparing(Tag::name)).forEach(tag -> sb.append(leaf.get(tag, null)));
+				StateManagementTags.getChildTags(t).stream().sorted(Comparator.comparing(Tag::name)).forEach(ret::add);
 			}
 		}
-		return sb.toString();
+		return ret.toArray(new Tag<?>[0]);
 	}
 
 	// ################
@@ -303,11 +469,13 @@ public class CodingManager {
 	// ############
 
 	private static String lowCollisionID(String text){ // reduce ID collision probability
-		CRC32 crc32 = new CRC32();
-		crc32.update(text.getBytes());
-		return Integer.toUnsignedString(text.hashCode(), Character.MAX_RADIX) +
-			   Integer.toHexString(text.length()) +
-			   crc32.getValue();
+		return newHasher().update(text).toId();
+	}
+
+	private static IdHasher newHasher(){
+		IdHasher hasher = idHashFunction.newHasher();
+		IdCollisionDetector detector = collisionDetector;
+		return detector == null ? hasher : new IdCollisionDetector.CheckingIdHasher(hasher, detector);
 	}
 
 	// #####################################
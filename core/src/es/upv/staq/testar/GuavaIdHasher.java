@@ -0,0 +1,75 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2016 - 2020 Universitat Politecnica de Valencia - www.upv.es
+* Copyright (c) 2018 - 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+
+/**
+ * Identifier hasher on top of a Guava hash function (e.g. murmur3_128). The characters are hashed
+ * as UTF-16 code units, so no encoding is involved.
+ */
+final class GuavaIdHasher extends IdHasher {
+
+	private final HashFunction function;
+	private Hasher hasher;
+
+	GuavaIdHasher(HashFunction function){
+		this.function = function;
+		this.hasher = function.newHasher();
+	}
+
+	@Override
+	public IdHasher reset(){
+		hasher = function.newHasher();
+		return this;
+	}
+
+	@Override
+	public IdHasher update(String text){
+		hasher.putUnencodedChars(text == null ? "null" : text);
+		return this;
+	}
+
+	@Override
+	public String toId(){
+		HashCode hash = hasher.hash();
+		hasher = function.newHasher();
+		ByteBuffer bytes = ByteBuffer.wrap(hash.asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+		long[] values = new long[bytes.remaining() / 8];
+		for(int i = 0; i < values.length; i++)
+			values[i] = bytes.getLong();
+		return toId(values);
+	}
+}
@@ -0,0 +1,151 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2016 - 2020 Universitat Politecnica de Valencia - www.upv.es
+* Copyright (c) 2018 - 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import es.upv.staq.testar.serialisation.LogSerialiser;
+
+/**
+ * Detects identifier collisions: different texts that were hashed to the same identifier. It keeps a
+ * bounded map from identifier to the text it was computed from, evicting the least recently used
+ * entries once either the number of entries or the total number of characters exceeds its limits.
+ * Collisions are counted and logged; they are not resolved.
+ */
+public final class IdCollisionDetector {
+
+	public static final int DEFAULT_MAX_ENTRIES = 100000;
+	public static final long DEFAULT_MAX_CHARS = 64L * 1024 * 1024;
+
+	private final int maxEntries;
+	private final long maxChars;
+	private final LinkedHashMap<String, String> canonicalTexts = new LinkedHashMap<>(1024, 0.75f, true);
+	private long chars = 0;
+	private long registrations = 0;
+	private long collisions = 0;
+
+	public IdCollisionDetector(){
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_CHARS);
+	}
+
+	/**
+	 * @param maxEntries maximum number of identifiers to remember
+	 * @param maxChars maximum number of text characters to remember
+	 */
+	public IdCollisionDetector(int maxEntries, long maxChars){
+		this.maxEntries = maxEntries;
+		this.maxChars = maxChars;
+	}
+
+	/**
+	 * Registers that <code>id</code> was computed from <code>text</code>.
+	 * @return false if <code>id</code> is known to have been computed from another text (a collision)
+	 */
+	public synchronized boolean register(String id, String text){
+		registrations++;
+		String known = canonicalTexts.get(id);
+		if(known != null){
+			if(known.equals(text))
+				return true;
+			collisions++;
+			LogSerialiser.log("Identifier collision: <" + id + "> computed for different texts of length " +
+					known.length() + " and " + text.length() + "\n", LogSerialiser.LogLevel.Critical);
+			return false;
+		}
+
+		canonicalTexts.put(id, text);
+		chars += text.length();
+		Iterator<Map.Entry<String, String>> eldest = canonicalTexts.entrySet().iterator();
+		while((canonicalTexts.size() > maxEntries || chars > maxChars) && canonicalTexts.size() > 1){
+			chars -= eldest.next().getValue().length();
+			eldest.remove();
+		}
+		return true;
+	}
+
+	/**
+	 * @return number of identifiers registered so far (including repeated ones)
+	 */
+	public synchronized long getRegistrations(){ return registrations; }
+
+	/**
+	 * @return number of collisions detected so far
+	 */
+	public synchronized long getCollisions(){ return collisions; }
+
+	/**
+	 * @return number of identifiers currently remembered
+	 */
+	public synchronized int size(){ return canonicalTexts.size(); }
+
+	@Override
+	public synchronized String toString(){
+		return collisions + " identifier collisions in " + registrations + " registrations (" +
+				canonicalTexts.size() + " identifiers remembered)";
+	}
+
+	/**
+	 * Hasher that registers each computed identifier and its text with a detector.
+	 */
+	static final class CheckingIdHasher extends IdHasher {
+		private final IdHasher delegate;
+		private final IdCollisionDetector detector;
+		private final StringBuilder text = new StringBuilder();
+
+		CheckingIdHasher(IdHasher delegate, IdCollisionDetector detector){
+			this.delegate = delegate;
+			this.detector = detector;
+		}
+
+		@Override
+		public IdHasher reset(){
+			delegate.reset();
+			text.setLength(0);
+			return this;
+		}
+
+		@Override
+		public IdHasher update(String piece){
+			delegate.update(piece);
+			text.append(piece);
+			return this;
+		}
+
+		@Override
+		public String toId(){
+			String id = delegate.toId();
+			detector.register(id, text.toString());
+			text.setLength(0);
+			return id;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2016 - 2020 Universitat Politecnica de Valencia - www.upv.es
+* Copyright (c) 2018 - 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * The identifier hash functions that are shipped with TESTAR.
+ *
+ * LowCollision is the original formula, hashcode(text) + length(text) + crc32(text), and is the default
+ * because existing state models were built with it. The other functions are faster, produce wider hashes
+ * and thus collide less, but their identifiers differ: a state model inferred with one function cannot
+ * be continued with another.
+ */
+public enum IdHashFunctions implements IdHashFunction {
+
+	LowCollision {
+		@Override
+		public IdHasher newHasher(){ return new LowCollisionIdHasher(); }
+	},
+
+	XxHash64 {
+		@Override
+		public IdHasher newHasher(){ return new XxHash64IdHasher(); }
+	},
+
+	Murmur3_128 {
+		@Override
+		public IdHasher newHasher(){ return new GuavaIdHasher(Hashing.murmur3_128()); }
+	};
+
+	/**
+	 * Returns the function with the given name, ignoring case.
+	 * @param name name of the function, as used in the settings
+	 * @return the function or null if there is no function with that name
+	 */
+	public static IdHashFunction fromName(String name){
+		for(IdHashFunctions function : values()){
+			if(function.name().equalsIgnoreCase(name.trim()))
+				return function;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,90 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2016 - 2020 Universitat Politecnica de Valencia - www.upv.es
+* Copyright (c) 2018 - 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+
+package es.upv.staq.testar;
+
+/**
+ * Streaming hash of a text that results in a widget, state or action identifier. The text is fed in
+ * pieces, so that the identifier of a concatenation (e.g. all the widget identifiers of a state) can
+ * be computed without building the concatenated string.
+ *
+ * Instances are not thread-safe, but they can be reused after <code>reset()</code>.
+ *
+ * @see IdHashFunction
+ */
+public abstract class IdHasher {
+
+	/**
+	 * Clears the text fed so far.
+	 * @return this hasher
+	 */
+	public abstract IdHasher reset();
+
+	/**
+	 * Appends <code>text</code> (<code>"null"</code> for null) to the hashed text.
+	 * @return this hasher
+	 */
+	public abstract IdHasher update(String text);
+
+	/**
+	 * Appends the textual representation of <code>value</code> (<code>"null"</code> for null values,
+	 * like <code>StringBuilder.append(Object)</code> does).
+	 * @return this hasher
+	 */
+	public IdHasher update(Object value){
+		return update(value instanceof String ? (String) value : String.valueOf(value));
+	}
+
+	/**
+	 * The hasher has to be reset before it is used for another text.
+	 * @return the identifier (without prefixes) of the text fed since the last reset
+	 */
+	public abstract String toId();
+
+	// fixed width, so that the concatenation of several values is unambiguous
+	private static final int LONG_RADIX_DIGITS = Long.toUnsignedString(-1L, Character.MAX_RADIX).length();
+
+	/**
+	 * Formats hash values as an identifier of fixed length.
+	 * @param values the hash values
+	 * @return the identifier
+	 */
+	protected static String toId(long... values){
+		StringBuilder sb = new StringBuilder(values.length * LONG_RADIX_DIGITS);
+		for(long value : values){
+			String digits = Long.toUnsignedString(value, Character.MAX_RADIX);
+			for(int i = digits.length(); i < LONG_RADIX_DIGITS; i++)
+				sb.append('0');
+			sb.append(digits);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,95 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2016 - 2020 Universitat Politecnica de Valencia - www.upv.es
+* Copyright (c) 2018 - 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+
+package es.upv.staq.testar;
+
+import java.util.zip.CRC32;
+
+/**
+ * Streaming version of the low collision identifier formula the <code>CodingManager</code> uses by default:
+ * hashcode(text) + length(text) + crc32(text).
+ * For the same text the result is identical to the non-streaming formula.
+ */
+final class LowCollisionIdHasher extends IdHasher {
+
+	private final CRC32 crc32 = new CRC32();
+	private final byte[] buffer = new byte[256];
+	private int hash;
+	private long length;
+
+	@Override
+	public IdHasher reset(){
+		crc32.reset();
+		hash = 0;
+		length = 0;
+		return this;
+	}
+
+	@Override
+	public IdHasher update(String text){
+		if(text == null)
+			text = "null";
+		int h = hash;
+		int n = text.length();
+		int pos = 0;
+		int encodeFrom = -1;
+		for(int i = 0; i < n; i++){
+			char c = text.charAt(i);
+			h = 31 * h + c;
+			if(encodeFrom < 0){
+				if(c < 0x80){
+					buffer[pos++] = (byte) c;
+					if(pos == buffer.length){
+						crc32.update(buffer, 0, pos);
+						pos = 0;
+					}
+				}else{
+					// leave the remainder (including the unflushed ascii characters) to the platform encoding
+					encodeFrom = i - pos;
+				}
+			}
+		}
+		if(encodeFrom < 0)
+			crc32.update(buffer, 0, pos);
+		else
+			crc32.update(text.substring(encodeFrom).getBytes());
+		hash = h;
+		length += n;
+		return this;
+	}
+
+	@Override
+	public String toId(){
+		return Integer.toUnsignedString(hash, Character.MAX_RADIX) +
+			   Integer.toHexString((int) length) +
+			   crc32.getValue();
+	}
+}
@@ -0,0 +1,198 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2016 - 2020 Universitat Politecnica de Valencia - www.upv.es
+* Copyright (c) 2018 - 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar;
+
+/**
+ * Streaming xxHash64 (seed 0) identifier hasher. The characters are hashed as UTF-16LE code units,
+ * so no encoding is involved. Whole 32 byte stripes are read straight from the input, only the
+ * remainder of an update is buffered.
+ */
+final class XxHash64IdHasher extends IdHasher {
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	private final byte[] buffer = new byte[32];
+	private int buffered;
+	private long totalLength;
+	private long v1, v2, v3, v4;
+
+	XxHash64IdHasher(){
+		reset();
+	}
+
+	@Override
+	public IdHasher reset(){
+		v1 = PRIME1 + PRIME2;
+		v2 = PRIME2;
+		v3 = 0;
+		v4 = -PRIME1;
+		buffered = 0;
+		totalLength = 0;
+		return this;
+	}
+
+	@Override
+	public IdHasher update(String text){
+		if(text == null)
+			text = "null";
+		int length = text.length();
+		totalLength += 2L * length;
+		int i = 0;
+		if(buffered % 2 != 0){
+			// the characters do not align with the stripes after an odd number of bytes
+			for(; i < length; i++){
+				put((byte) text.charAt(i));
+				put((byte) (text.charAt(i) >>> 8));
+			}
+			return this;
+		}
+		// complete the buffered stripe, hash the whole stripes straight from the text and buffer the rest
+		for(; buffered != 0 && i < length; i++)
+			putChar(text.charAt(i));
+		for(; i + 16 <= length; i += 16){
+			v1 = round(v1, readLong(text, i));
+			v2 = round(v2, readLong(text, i + 4));
+			v3 = round(v3, readLong(text, i + 8));
+			v4 = round(v4, readLong(text, i + 12));
+		}
+		for(; i < length; i++)
+			putChar(text.charAt(i));
+		return this;
+	}
+
+	void update(byte[] bytes){
+		totalLength += bytes.length;
+		int i = 0;
+		for(; buffered != 0 && i < bytes.length; i++)
+			put(bytes[i]);
+		for(; i + 32 <= bytes.length; i += 32){
+			v1 = round(v1, readLong(bytes, i));
+			v2 = round(v2, readLong(bytes, i + 8));
+			v3 = round(v3, readLong(bytes, i + 16));
+			v4 = round(v4, readLong(bytes, i + 24));
+		}
+		for(; i < bytes.length; i++)
+			put(bytes[i]);
+	}
+
+	private void putChar(char c){
+		buffer[buffered] = (byte) c;
+		buffer[buffered + 1] = (byte) (c >>> 8);
+		buffered += 2;
+		if(buffered == 32)
+			stripe();
+	}
+
+	private void put(byte b){
+		buffer[buffered++] = b;
+		if(buffered == 32)
+			stripe();
+	}
+
+	private void stripe(){
+		v1 = round(v1, readLong(buffer, 0));
+		v2 = round(v2, readLong(buffer, 8));
+		v3 = round(v3, readLong(buffer, 16));
+		v4 = round(v4, readLong(buffer, 24));
+		buffered = 0;
+	}
+
+	long hash(){
+		long h;
+		if(totalLength >= 32){
+			h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			h = mergeRound(h, v1);
+			h = mergeRound(h, v2);
+			h = mergeRound(h, v3);
+			h = mergeRound(h, v4);
+		}else{
+			h = PRIME5;
+		}
+		h += totalLength;
+
+		int i = 0;
+		for(; i + 8 <= buffered; i += 8){
+			h ^= round(0, readLong(buffer, i));
+			h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+		}
+		if(i + 4 <= buffered){
+			h ^= (readInt(buffer, i) & 0xFFFFFFFFL) * PRIME1;
+			h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+			i += 4;
+		}
+		for(; i < buffered; i++){
+			h ^= (buffer[i] & 0xFF) * PRIME5;
+			h = Long.rotateLeft(h, 11) * PRIME1;
+		}
+
+		h ^= h >>> 33;
+		h *= PRIME2;
+		h ^= h >>> 29;
+		h *= PRIME3;
+		h ^= h >>> 32;
+		return h;
+	}
+
+	@Override
+	public String toId(){
+		String id = toId(hash());
+		reset();
+		return id;
+	}
+
+	private static long round(long acc, long input){
+		acc += input * PRIME2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * PRIME1;
+	}
+
+	private static long mergeRound(long acc, long value){
+		acc ^= round(0, value);
+		return acc * PRIME1 + PRIME4;
+	}
+
+	private static long readLong(byte[] b, int i){
+		return (b[i] & 0xFFL) | (b[i + 1] & 0xFFL) << 8 | (b[i + 2] & 0xFFL) << 16 | (b[i + 3] & 0xFFL) << 24 |
+			   (b[i + 4] & 0xFFL) << 32 | (b[i + 5] & 0xFFL) << 40 | (b[i + 6] & 0xFFL) << 48 | (b[i + 7] & 0xFFL) << 56;
+	}
+
+	// four UTF-16LE characters as a little endian long
+	private static long readLong(String s, int i){
+		return s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48;
+	}
+
+	private static int readInt(byte[] b, int i){
+		return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+	}
+}
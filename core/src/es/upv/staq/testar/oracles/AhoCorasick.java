@@ -0,0 +1,179 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.oracles;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton that finds whether a text contains any of a set of strings, in one pass over the text.
+ *
+ * For the ASCII characters the automaton is a complete transition table; other characters follow the failure links.
+ * As the strings are matched for <code>.*literal.*</code>, the scan also reports line terminators, which '.' does not match.
+ */
+final class AhoCorasick {
+
+	static final int NOT_FOUND = 0, FOUND = 1, LINE_TERMINATOR = -1;
+	private static final int ASCII = 128;
+
+	// transitions of node i: the characters keys[i] (sorted) to the nodes targets[i]
+	private char[][] keys;
+	private int[][] targets;
+	private int[] failure;
+	private boolean[] output;
+	private int nodes;
+	// node * ASCII + character -> node
+	private int[] table;
+
+	AhoCorasick(Collection<String> words){
+		int capacity = 1;
+		for (String word : words)
+			capacity += word.length();
+		keys = new char[capacity][];
+		targets = new int[capacity][];
+		failure = new int[capacity];
+		output = new boolean[capacity];
+		keys[0] = new char[0];
+		targets[0] = new int[0];
+		nodes = 1;
+		for (String word : words)
+			insert(word);
+		link();
+		table = new int[nodes * ASCII];
+		for (int node = 0; node < nodes; node++){
+			for (char c = 0; c < ASCII; c++)
+				table[node * ASCII + c] = step(node, c);
+		}
+	}
+
+	private void insert(String word){
+		int node = 0;
+		for (int i = 0; i < word.length(); i++){
+			char c = word.charAt(i);
+			int next = next(node, c);
+			if (next < 0){
+				next = nodes++;
+				keys[next] = new char[0];
+				targets[next] = new int[0];
+				int index = -Arrays.binarySearch(keys[node], c) - 1;
+				keys[node] = insert(keys[node], index, c);
+				targets[node] = insert(targets[node], index, next);
+			}
+			node = next;
+		}
+		output[node] = true;
+	}
+
+	private static char[] insert(char[] array, int index, char value){
+		char[] grown = new char[array.length + 1];
+		System.arraycopy(array, 0, grown, 0, index);
+		grown[index] = value;
+		System.arraycopy(array, index, grown, index + 1, array.length - index);
+		return grown;
+	}
+
+	private static int[] insert(int[] array, int index, int value){
+		int[] grown = new int[array.length + 1];
+		System.arraycopy(array, 0, grown, 0, index);
+		grown[index] = value;
+		System.arraycopy(array, index, grown, index + 1, array.length - index);
+		return grown;
+	}
+
+	private int next(int node, char c){
+		char[] k = keys[node];
+		if (k.length <= 8){
+			for (int i = 0; i < k.length; i++)
+				if (k[i] == c)
+					return targets[node][i];
+			return -1;
+		}
+		int index = Arrays.binarySearch(k, c);
+		return index < 0 ? -1 : targets[node][index];
+	}
+
+	// breadth first, so the failure node of a node is linked before the node
+	private void link(){
+		Queue<Integer> queue = new ArrayDeque<>();
+		for (int child : targets[0]){
+			failure[child] = 0;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()){
+			int node = queue.poll();
+			for (int i = 0; i < keys[node].length; i++){
+				char c = keys[node][i];
+				int child = targets[node][i];
+				int fallback = failure[node];
+				int next;
+				while ((next = next(fallback, c)) < 0 && fallback != 0)
+					fallback = failure[fallback];
+				failure[child] = next >= 0 ? next : 0;
+				output[child] |= output[failure[child]];
+				queue.add(child);
+			}
+		}
+	}
+
+	private int step(int node, char c){
+		int next;
+		while ((next = next(node, c)) < 0 && node != 0)
+			node = failure[node];
+		return next >= 0 ? next : 0;
+	}
+
+	/**
+	 * @return <code>FOUND</code> if <code>text</code> contains one of the words, <code>LINE_TERMINATOR</code> if it
+	 * contains a line terminator, <code>NOT_FOUND</code> otherwise
+	 */
+	int scan(CharSequence text){
+		boolean found = output[0]; // the empty word
+		int node = 0;
+		for (int i = 0, length = text.length(); i < length; i++){
+			char c = text.charAt(i);
+			if (c < ASCII){
+				if (c == '\n' || c == '\r')
+					return LINE_TERMINATOR;
+				node = table[node * ASCII + c];
+			} else {
+				if (c == '\u0085' || c == '\u2028' || c == '\u2029')
+					return LINE_TERMINATOR;
+				node = step(node, c);
+			}
+			found |= output[node];
+		}
+		return found ? FOUND : NOT_FOUND;
+	}
+
+}
@@ -0,0 +1,260 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.oracles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.fruit.Assert;
+
+/**
+ * Matches values against a regular expression such as the SuspiciousTitles setting, which usually is an
+ * alternation of literals: <code>.*[eE]rror.*|.*[eE]xcepti[o?]n.*</code>.
+ *
+ * In <code>Literals</code> mode, the top level alternatives that are literals (with optional character classes of
+ * single characters) preceded and followed by <code>.*</code> are looked up with one Aho-Corasick automaton, and
+ * alternatives that are plain literals with a set. Only the other alternatives are matched with a regular
+ * expression. The result is the same as <code>Pattern.compile(regex, flags).matcher(value).matches()</code>.
+ *
+ * A matcher is not thread-safe.
+ */
+public final class MultiPatternMatcher {
+
+	public enum Mode {
+		Regex, Literals;
+
+		/**
+		 * @return the mode with the given name, ignoring case, or null
+		 */
+		public static Mode fromName(String name){
+			for (Mode mode : values()){
+				if (mode.name().equalsIgnoreCase(name))
+					return mode;
+			}
+			return null;
+		}
+	}
+
+	// number of literals a single alternative may expand to, e.g. [eE]xcep[ct]i[o?]n expands to 8
+	private static final int MAX_EXPANSION = 256;
+	// flags that change the meaning of literals
+	private static final int UNSUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.LITERAL | Pattern.CANON_EQ;
+
+	private final String regex;
+	private final Matcher full;
+	private final AhoCorasick contained;
+	private final Set<String> exact;
+	private final Matcher rest;
+
+	private MultiPatternMatcher(String regex, Matcher full, AhoCorasick contained, Set<String> exact, Matcher rest){
+		this.regex = regex;
+		this.full = full;
+		this.contained = contained;
+		this.exact = exact;
+		this.rest = rest;
+	}
+
+	/**
+	 * @param regex the regular expression, which has to match complete values
+	 * @param flags the flags of <code>Pattern.compile</code>
+	 * @param mode <code>Regex</code> to only use the regular expression
+	 * @throws java.util.regex.PatternSyntaxException if the regular expression is not valid
+	 */
+	public static MultiPatternMatcher compile(String regex, int flags, Mode mode){
+		Assert.notNull(regex, mode);
+		Matcher full = Pattern.compile(regex, flags).matcher("");
+		List<String> alternatives = mode == Mode.Literals && (flags & UNSUPPORTED_FLAGS) == 0 ? alternatives(regex) : null;
+		if (alternatives == null)
+			return new MultiPatternMatcher(regex, full, null, Collections.<String>emptySet(), full);
+
+		List<String> containedLiterals = new ArrayList<>();
+		Set<String> exact = new HashSet<>();
+		StringBuilder rest = new StringBuilder();
+		for (String alternative : alternatives){
+			Boolean surrounded = surroundedByDotStar(alternative);
+			List<String> literals = surrounded == null ? null
+					: literals(surrounded ? alternative.substring(2, alternative.length() - 2) : alternative);
+			if (literals == null){
+				rest.append(rest.length() == 0 ? "" : "|").append("(?:").append(alternative).append(')');
+			} else if (surrounded){
+				containedLiterals.addAll(literals);
+			} else {
+				exact.addAll(literals);
+			}
+		}
+		return new MultiPatternMatcher(regex, full,
+				containedLiterals.isEmpty() ? null : new AhoCorasick(containedLiterals), exact,
+				rest.length() == 0 ? null : Pattern.compile(rest.toString(), flags).matcher(""));
+	}
+
+	public boolean matches(String value){
+		if (contained == null && exact.isEmpty())
+			return full.reset(value).matches();
+		if (exact.contains(value))
+			return true;
+		if (contained != null){
+			int found = contained.scan(value);
+			if (found == AhoCorasick.FOUND)
+				return true;
+			if (found == AhoCorasick.LINE_TERMINATOR)
+				return full.reset(value).matches();
+		}
+		return rest != null && rest.reset(value).matches();
+	}
+
+	/**
+	 * @return whether all the alternatives are matched without a regular expression
+	 */
+	public boolean isLiteral(){
+		return rest == null;
+	}
+
+	@Override
+	public String toString(){
+		return regex;
+	}
+
+	/**
+	 * @return the top level alternatives of <code>regex</code>, or null if they cannot be matched separately
+	 * (back references, inline flags, quoting)
+	 */
+	static List<String> alternatives(String regex){
+		List<String> alternatives = new ArrayList<>();
+		int depth = 0, start = 0;
+		boolean inClass = false;
+		for (int i = 0; i < regex.length(); i++){
+			char c = regex.charAt(i);
+			if (c == '\\'){
+				if (i + 1 == regex.length())
+					return null;
+				char next = regex.charAt(++i);
+				if (Character.isDigit(next) || next == 'k' || next == 'Q')
+					return null;
+			} else if (inClass){
+				if (c == '[')
+					return null; // nested classes
+				if (c == ']')
+					inClass = false;
+			} else if (c == '['){
+				inClass = true;
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == ']')
+					return null;
+			} else if (c == '('){
+				if (i + 2 < regex.length() && regex.charAt(i + 1) == '?' && ":=!<>".indexOf(regex.charAt(i + 2)) < 0)
+					return null; // inline flags
+				depth++;
+			} else if (c == ')'){
+				depth--;
+			} else if (c == '|' && depth == 0){
+				alternatives.add(regex.substring(start, i));
+				start = i + 1;
+			}
+		}
+		alternatives.add(regex.substring(start));
+		return alternatives;
+	}
+
+	/**
+	 * @return true for <code>.*literal.*</code>, false for <code>literal</code> without '.', null otherwise
+	 */
+	private static Boolean surroundedByDotStar(String alternative){
+		if (alternative.length() >= 4 && alternative.startsWith(".*") && alternative.endsWith(".*")){
+			// the last '.' must not be escaped
+			int backslashes = 0;
+			for (int i = alternative.length() - 3; i >= 0 && alternative.charAt(i) == '\\'; i--)
+				backslashes++;
+			return backslashes % 2 == 0 ? Boolean.TRUE : null;
+		}
+		return Boolean.FALSE;
+	}
+
+	/**
+	 * @return the strings matched by <code>literal</code>, which may only contain literal characters, escaped
+	 * punctuation and classes of single characters, or null if it is not such a literal
+	 */
+	static List<String> literals(String literal){
+		List<StringBuilder> expansions = new ArrayList<>();
+		expansions.add(new StringBuilder());
+		for (int i = 0; i < literal.length(); i++){
+			char c = literal.charAt(i);
+			String choices;
+			if (c == '\\'){
+				char next = literal.charAt(++i); // alternatives() rejects a trailing backslash
+				if (Character.isLetterOrDigit(next))
+					return null; // \d, \w, \n ...
+				choices = String.valueOf(next);
+			} else if (c == '['){
+				int end = literal.indexOf(']', i + 1);
+				if (end < 0)
+					return null;
+				choices = literal.substring(i + 1, end);
+				if (choices.isEmpty() || choices.charAt(0) == '^')
+					return null;
+				for (int j = 0; j < choices.length(); j++){
+					char choice = choices.charAt(j);
+					if (choice == '-' || choice == '\\' || choice == '&' || Character.isSurrogate(choice))
+						return null;
+				}
+				i = end;
+			} else if (".$^|?*+{}()[]".indexOf(c) >= 0){
+				return null;
+			} else {
+				choices = String.valueOf(c);
+			}
+			if (choices.length() > 1){
+				if (expansions.size() * choices.length() > MAX_EXPANSION)
+					return null;
+				List<StringBuilder> expanded = new ArrayList<>(expansions.size() * choices.length());
+				for (StringBuilder expansion : expansions){
+					for (int j = 0; j < choices.length(); j++){
+						if (choices.indexOf(choices.charAt(j)) == j) // skip duplicates
+							expanded.add(new StringBuilder(expansion).append(choices.charAt(j)));
+					}
+				}
+				expansions = expanded;
+			} else {
+				for (StringBuilder expansion : expansions)
+					expansion.append(choices);
+			}
+		}
+		List<String> literals = new ArrayList<>(expansions.size());
+		for (StringBuilder expansion : expansions)
+			literals.add(expansion.toString());
+		return literals;
+	}
+
+}
@@ -0,0 +1,74 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.oracles;
+
+import org.fruit.alayer.State;
+import org.fruit.alayer.Verdict;
+import org.fruit.alayer.Widget;
+
+/**
+ * An online state oracle, evaluated by a <code>VerdictEngine</code>.
+ *
+ * The engine calls <code>evaluateState</code> once and, unless it found a problem and the oracle inspects
+ * widgets, <code>evaluateWidget</code> for the widgets of the state until one of them returns a problem.
+ * A problem is any verdict with a severity above <code>Verdict.SEVERITY_OK</code>.
+ * Oracles that are evaluated in parallel must not share mutable state with other oracles.
+ */
+public interface Oracle {
+
+	/**
+	 * @return the name of the oracle, used in the timings of the engine
+	 */
+	String name();
+
+	/**
+	 * @return the verdict on the state as a whole, <code>Verdict.OK</code> if there is no problem
+	 */
+	default Verdict evaluateState(State state){
+		return Verdict.OK;
+	}
+
+	/**
+	 * @return whether <code>evaluateWidget</code> has to be called for the widgets of the state
+	 */
+	default boolean inspectsWidgets(){
+		return true;
+	}
+
+	/**
+	 * @return the verdict on one widget, <code>Verdict.OK</code> if there is no problem
+	 */
+	default Verdict evaluateWidget(Widget widget){
+		return Verdict.OK;
+	}
+
+}
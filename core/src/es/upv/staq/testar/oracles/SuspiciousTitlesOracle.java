@@ -0,0 +1,109 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.oracles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fruit.Assert;
+import org.fruit.Util;
+import org.fruit.alayer.Pen;
+import org.fruit.alayer.Roles;
+import org.fruit.alayer.Tag;
+import org.fruit.alayer.Tags;
+import org.fruit.alayer.Verdict;
+import org.fruit.alayer.Visualizer;
+import org.fruit.alayer.Widget;
+import org.fruit.alayer.visualizers.ShapeVisualizer;
+
+/**
+ * Oracle almost for free: a widget with a suspicious value (e.g. a title with "error" or "exception")
+ * in one of the given tags.
+ */
+public final class SuspiciousTitlesOracle implements Oracle {
+
+	private final MultiPatternMatcher matcher;
+	private final List<String> tagNames;
+	private final Pen pen;
+
+	/**
+	 * @param matcher the suspicious values, which must match the complete value of the tag
+	 * @param tagNames the names of the tags to check, in order
+	 * @param pen the pen to mark the suspicious widget with
+	 */
+	public SuspiciousTitlesOracle(MultiPatternMatcher matcher, List<String> tagNames, Pen pen){
+		Assert.notNull(matcher, tagNames, pen);
+		this.matcher = matcher;
+		this.tagNames = new ArrayList<>(tagNames);
+		this.pen = pen;
+	}
+
+	@Override
+	public String name(){
+		return "SuspiciousTitles";
+	}
+
+	@Override
+	public Verdict evaluateWidget(Widget w){
+		for(String tagForSuspiciousOracle : tagNames){
+			String tagValue = "";
+			// First finding the Tag that matches the TagsToFilter string, then getting the value of that Tag:
+			for(Tag<?> tag : w.tags()){
+				if(tag.name().equals(tagForSuspiciousOracle)){
+					Object value = w.get(tag, null);
+					tagValue = value instanceof String ? (String) value : "";
+					break;
+				}
+			}
+
+			//Check whether the Tag value is empty or null
+			if (tagValue.isEmpty())
+				continue; //no action
+
+			//Ignore value ValuePattern for UIAEdit widgets
+			if(tagValue.equals("ValuePattern") && w.get(Tags.Role, Roles.Widget).toString().equalsIgnoreCase("UIAEdit")) {
+				continue;
+			}
+
+			if (matcher.matches(tagValue)){
+				Visualizer visualizer = Util.NullVisualizer;
+				// visualize the problematic widget, by marking it with a red box
+				if(w.get(Tags.Shape, null) != null)
+					visualizer = new ShapeVisualizer(pen, w.get(Tags.Shape), "Suspicious Title", 0.5, 0.5);
+				return new Verdict(Verdict.SEVERITY_SUSPICIOUS_TITLE,
+						"Discovered suspicious widget '" + tagForSuspiciousOracle + "' : '" + tagValue + "'.", visualizer);
+			}
+		}
+		return Verdict.OK;
+	}
+
+}
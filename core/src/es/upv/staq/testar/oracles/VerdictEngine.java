@@ -0,0 +1,291 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.oracles;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.fruit.Assert;
+import org.fruit.alayer.State;
+import org.fruit.alayer.Tags;
+import org.fruit.alayer.Verdict;
+import org.fruit.alayer.Widget;
+
+/**
+ * Evaluates a list of oracles on a state and returns the verdict of the first oracle, in the order of the list,
+ * that finds a problem (or <code>Verdict.OK</code>).
+ *
+ * All oracles are evaluated in a single traversal of the widget tree, which stops as soon as the verdict is known:
+ * once an oracle found a problem, the oracles after it are no longer evaluated. With <code>parallel</code>, each oracle
+ * traverses the widgets in its own thread instead, which pays off with several expensive oracles on large states.
+ *
+ * The verdict of the last evaluated state is memoised, keyed by the state instance and its <code>ConcreteID</code>,
+ * so evaluating the same state again (e.g. to store the verdict in the sequence fragment) does not traverse it again.
+ *
+ * The time spent in each oracle is measured once per state, see <code>timings</code> and <code>statistics</code>.
+ * The single traversal of the widgets is timed as a whole: it counts for the oracle that inspects the widgets if
+ * there is only one, and is reported as <code>WIDGET_TRAVERSAL</code> otherwise.
+ */
+public final class VerdictEngine {
+
+	public static final String WIDGET_TRAVERSAL = "widget traversal";
+
+	private final List<Oracle> oracles = new ArrayList<>();
+	private final boolean parallel;
+	private ExecutorService executor;
+	private AtomicLongArray nanos = new AtomicLongArray(0);
+	// the time of the fused traversals in which several oracles inspected the widgets
+	private long traversalNanos;
+	private long evaluations, memoised;
+
+	private WeakReference<State> memoState = new WeakReference<>(null);
+	private String memoConcreteId;
+	private Verdict memoVerdict;
+
+	/**
+	 * @param parallel whether the oracles are evaluated in parallel, which requires oracles without shared mutable state
+	 * and widgets that can be read from several threads
+	 */
+	public VerdictEngine(boolean parallel){
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Adds an oracle after the oracles already added, so its verdict has a lower priority.
+	 */
+	public synchronized VerdictEngine add(Oracle oracle){
+		Assert.notNull(oracle);
+		oracles.add(oracle);
+		AtomicLongArray grown = new AtomicLongArray(oracles.size());
+		for (int i = 0; i < nanos.length(); i++)
+			grown.set(i, nanos.get(i));
+		nanos = grown;
+		forget();
+		return this;
+	}
+
+	public synchronized List<Oracle> oracles(){
+		return new ArrayList<>(oracles);
+	}
+
+	/**
+	 * Forgets the memoised verdict, e.g. because an oracle depends on something else than the state.
+	 */
+	public synchronized void forget(){
+		memoState = new WeakReference<>(null);
+		memoConcreteId = null;
+		memoVerdict = null;
+	}
+
+	/**
+	 * @return the verdict of the first oracle that finds a problem in <code>state</code>, or <code>Verdict.OK</code>
+	 */
+	public synchronized Verdict evaluate(State state){
+		Assert.notNull(state);
+		String concreteId = state.get(Tags.ConcreteID, null);
+		if (concreteId != null && memoState.get() == state && concreteId.equals(memoConcreteId)){
+			memoised++;
+			return memoVerdict;
+		}
+		evaluations++;
+		Verdict verdict = parallel && oracles.size() > 1 ? evaluateParallel(state) : evaluateFused(state);
+		memoState = new WeakReference<>(state);
+		memoConcreteId = concreteId;
+		memoVerdict = verdict;
+		return verdict;
+	}
+
+	private static boolean isProblem(Verdict verdict){
+		return verdict != null && verdict.severity() > Verdict.SEVERITY_OK;
+	}
+
+	private Verdict evaluateFused(State state){
+		int count = oracles.size();
+		Verdict[] verdicts = new Verdict[count];
+		// oracles at or after limit cannot change the verdict anymore
+		int limit = count;
+		int[] inspecting = new int[count];
+		int inspectingCount = 0;
+		for (int i = 0; i < limit; i++){
+			Oracle oracle = oracles.get(i);
+			long start = System.nanoTime();
+			Verdict verdict = oracle.evaluateState(state);
+			nanos.addAndGet(i, System.nanoTime() - start);
+			if (isProblem(verdict)){
+				verdicts[i] = verdict;
+				limit = i;
+			} else if (oracle.inspectsWidgets()){
+				inspecting[inspectingCount++] = i;
+			}
+		}
+		while (inspectingCount > 0 && inspecting[inspectingCount - 1] >= limit)
+			inspectingCount--;
+		if (inspectingCount > 0){
+			int inspectors = inspectingCount;
+			long start = System.nanoTime();
+			for (Widget widget : state){
+				for (int j = 0; j < inspectingCount; j++){
+					int i = inspecting[j];
+					Verdict verdict = oracles.get(i).evaluateWidget(widget);
+					if (isProblem(verdict)){
+						verdicts[i] = verdict;
+						limit = i;
+						inspectingCount = j; // drop this oracle and the ones after it
+						break;
+					}
+				}
+				if (inspectingCount == 0)
+					break;
+			}
+			long traversal = System.nanoTime() - start;
+			if (inspectors == 1)
+				nanos.addAndGet(inspecting[0], traversal);
+			else
+				traversalNanos += traversal;
+		}
+		return limit < count ? verdicts[limit] : Verdict.OK;
+	}
+
+	private Verdict evaluateParallel(State state){
+		int count = oracles.size();
+		Verdict[] verdicts = new Verdict[count];
+		AtomicInteger limit = new AtomicInteger(count);
+		List<Future<?>> futures = new ArrayList<>(count - 1);
+		for (int i = 1; i < count; i++){
+			final int index = i;
+			futures.add(executor().submit(() -> evaluateOne(index, state, verdicts, limit)));
+		}
+		evaluateOne(0, state, verdicts, limit);
+		for (Future<?> future : futures){
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while evaluating the oracles", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new IllegalStateException("Oracle failed", e.getCause());
+			}
+		}
+		int first = limit.get();
+		return first < count ? verdicts[first] : Verdict.OK;
+	}
+
+	private void evaluateOne(int index, State state, Verdict[] verdicts, AtomicInteger limit){
+		Oracle oracle = oracles.get(index);
+		long start = System.nanoTime();
+		try {
+			Verdict verdict = oracle.evaluateState(state);
+			if (!isProblem(verdict) && oracle.inspectsWidgets()){
+				for (Widget widget : state){
+					if (limit.get() < index)
+						return; // an oracle with a higher priority found a problem
+					verdict = oracle.evaluateWidget(widget);
+					if (isProblem(verdict))
+						break;
+				}
+			}
+			if (isProblem(verdict)){
+				verdicts[index] = verdict;
+				limit.accumulateAndGet(index, Math::min);
+			}
+		} finally {
+			nanos.addAndGet(index, System.nanoTime() - start);
+		}
+	}
+
+	private ExecutorService executor(){
+		if (executor == null){
+			AtomicInteger threads = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+				Thread thread = new Thread(runnable, "VerdictEngine-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * @return the time spent in each oracle, in nanoseconds, since the last <code>resetTimings</code>
+	 */
+	public synchronized Map<String, Long> timings(){
+		Map<String, Long> timings = new LinkedHashMap<>();
+		for (int i = 0; i < oracles.size(); i++)
+			timings.merge(oracles.get(i).name(), nanos.get(i), Long::sum);
+		if (traversalNanos > 0)
+			timings.merge(WIDGET_TRAVERSAL, traversalNanos, Long::sum);
+		return timings;
+	}
+
+	/**
+	 * @return the number of evaluations and the time spent in each oracle as text
+	 */
+	public synchronized String statistics(){
+		StringBuilder sb = new StringBuilder();
+		sb.append(evaluations).append(" evaluations, ").append(memoised).append(" memoised");
+		for (Map.Entry<String, Long> timing : timings().entrySet()){
+			sb.append(", ").append(timing.getKey()).append(' ').append(String.format("%.1f ms", timing.getValue() / 1e6));
+			if (evaluations > 0)
+				sb.append(String.format(" (avg %.3f ms)", timing.getValue() / (evaluations * 1e6)));
+		}
+		return sb.toString();
+	}
+
+	public synchronized void resetTimings(){
+		nanos = new AtomicLongArray(oracles.size());
+		traversalNanos = 0;
+		evaluations = 0;
+		memoised = 0;
+	}
+
+	/**
+	 * Stops the threads of the parallel evaluation.
+	 */
+	public synchronized void close(){
+		if (executor != null){
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+}
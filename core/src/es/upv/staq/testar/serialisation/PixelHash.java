@@ -0,0 +1,118 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.serialisation;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+import org.fruit.Assert;
+
+/**
+ * 128 bits hash of the pixels of an image, to recognise identical screenshots.
+ *
+ * The pixels are hashed in two lanes with xxHash64 style rounds. The hash is not cryptographic,
+ * but with 128 bits accidental collisions of different screenshots are negligible.
+ */
+public final class PixelHash {
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	private PixelHash(){}
+
+	/**
+	 * @return the hash of the size and the (ARGB) pixels of <code>image</code>, as 32 hexadecimal digits
+	 */
+	public static String of(BufferedImage image){
+		Assert.notNull(image);
+		int width = image.getWidth(), height = image.getHeight();
+		// opaque pixels have alpha 255, like getRGB returns them
+		int alphaMask = image.getColorModel().hasAlpha() ? 0 : 0xFF000000;
+		long h1 = PRIME5 ^ width, h2 = PRIME1 ^ ((long) height << 32);
+		int[] pixels = directPixels(image);
+		int[] row = pixels == null ? new int[width] : null;
+		int stride = pixels == null ? 0 : ((SinglePixelPackedSampleModel) image.getRaster().getSampleModel()).getScanlineStride();
+		int offset = pixels == null ? 0 : image.getRaster().getDataBuffer().getOffset();
+		for (int y = 0; y < height; y++){
+			int[] source = pixels;
+			int base = offset + y * stride;
+			if (pixels == null){
+				image.getRGB(0, y, width, 1, row, 0, width);
+				source = row;
+				base = 0;
+			}
+			int x = 0;
+			for (; x + 1 < width; x += 2){
+				h1 = round(h1, (source[base + x] | alphaMask) & 0xFFFFFFFFL);
+				h2 = round(h2, (source[base + x + 1] | alphaMask) & 0xFFFFFFFFL);
+			}
+			if (x < width)
+				h1 = round(h1, (source[base + x] | alphaMask) & 0xFFFFFFFFL);
+		}
+		return String.format("%016x%016x", avalanche(h1 ^ Long.rotateLeft(h2, 17)), avalanche(h2 + h1 * PRIME3));
+	}
+
+	/**
+	 * @return the pixels of INT_RGB/INT_ARGB images, which can be read without copying, or null
+	 */
+	static int[] directPixels(BufferedImage image){
+		WritableRaster raster = image.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		if ((image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)
+				&& buffer instanceof DataBufferInt && buffer.getNumBanks() == 1
+				&& raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+				&& raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0)
+			return ((DataBufferInt) buffer).getData();
+		return null;
+	}
+
+	static long round(long acc, long input){
+		acc += input * PRIME2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * PRIME1;
+	}
+
+	private static long avalanche(long h){
+		h ^= h >>> 33;
+		h *= PRIME2;
+		h ^= h >>> 29;
+		h *= PRIME3;
+		h ^= h >>> 32;
+		return h;
+	}
+
+}
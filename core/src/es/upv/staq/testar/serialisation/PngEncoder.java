@@ -0,0 +1,185 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.serialisation;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.fruit.Assert;
+
+/**
+ * Minimal PNG encoder for screenshots: 8 bits RGB (or RGBA for images with alpha), Sub filtered
+ * scanlines and a configurable deflate level. It is much faster than the ImageIO PNG writer, which
+ * always compresses at the maximum level, at the cost of somewhat larger files.
+ *
+ * The buffers and the deflater are reused between images, so instances are not thread-safe:
+ * use one encoder per thread.
+ */
+public final class PngEncoder {
+
+	private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+	private static final byte[] IHDR = {'I', 'H', 'D', 'R'};
+	private static final byte[] IDAT = {'I', 'D', 'A', 'T'};
+	private static final byte[] IEND = {'I', 'E', 'N', 'D'};
+	private static final byte[] TEXT = {'t', 'E', 'X', 't'};
+	private static final int CHUNK_SIZE = 1 << 16;
+	private static final int FILTER_SUB = 1;
+
+	private final Deflater deflater;
+	private final CRC32 crc = new CRC32();
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+	private final byte[] chunkHeader = new byte[8];
+	private int chunkLength;
+	private int[] row = new int[0];
+	private byte[] scanline = new byte[0];
+
+	/**
+	 * @param compressionLevel deflate level, from <code>Deflater.NO_COMPRESSION</code> to <code>Deflater.BEST_COMPRESSION</code>
+	 */
+	public PngEncoder(int compressionLevel){
+		Assert.isTrue(compressionLevel >= Deflater.NO_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION);
+		deflater = new Deflater(compressionLevel);
+	}
+
+	public void encode(BufferedImage image, OutputStream out) throws IOException {
+		encode(image, out, Collections.<String, String>emptyMap());
+	}
+
+	/**
+	 * Encodes <code>image</code> with textual metadata (tEXt chunks, keywords and texts in Latin-1).
+	 */
+	public void encode(BufferedImage image, OutputStream out, Map<String, String> text) throws IOException {
+		Assert.notNull(image, out, text);
+		int width = image.getWidth(), height = image.getHeight();
+		boolean alpha = image.getColorModel().hasAlpha();
+		int bytesPerPixel = alpha ? 4 : 3;
+		int lineLength = 1 + width * bytesPerPixel;
+		if (scanline.length < lineLength)
+			scanline = new byte[lineLength];
+
+		out.write(SIGNATURE);
+		byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8; // bit depth
+		header[9] = (byte) (alpha ? 6 : 2); // truecolour with or without alpha
+		writeChunk(out, IHDR, header, header.length);
+		for (Map.Entry<String, String> entry : text.entrySet()){
+			byte[] data = (entry.getKey() + '\0' + entry.getValue()).getBytes(StandardCharsets.ISO_8859_1);
+			writeChunk(out, TEXT, data, data.length);
+		}
+
+		// screenshots are INT_RGB/INT_ARGB images, whose pixels can be read without copying
+		int[] pixels = PixelHash.directPixels(image);
+		int offset = 0, stride = 0;
+		if (pixels != null){
+			offset = image.getRaster().getDataBuffer().getOffset();
+			stride = ((SinglePixelPackedSampleModel) image.getRaster().getSampleModel()).getScanlineStride();
+		} else if (row.length < width){
+			row = new int[width];
+		}
+
+		deflater.reset();
+		chunkLength = 0;
+		for (int y = 0; y < height; y++){
+			int[] source = pixels;
+			int base = offset + y * stride;
+			if (pixels == null){
+				image.getRGB(0, y, width, 1, row, 0, width);
+				source = row;
+				base = 0;
+			}
+			scanline[0] = FILTER_SUB;
+			int p = 1, previous = 0;
+			for (int x = 0; x < width; x++){
+				int argb = source[base + x];
+				scanline[p++] = (byte) ((argb >> 16) - (previous >> 16));
+				scanline[p++] = (byte) ((argb >> 8) - (previous >> 8));
+				scanline[p++] = (byte) (argb - previous);
+				if (alpha)
+					scanline[p++] = (byte) ((argb >>> 24) - (previous >>> 24));
+				previous = argb;
+			}
+			deflater.setInput(scanline, 0, lineLength);
+			while (!deflater.needsInput())
+				deflate(out);
+		}
+		deflater.finish();
+		while (!deflater.finished())
+			deflate(out);
+		if (chunkLength > 0)
+			writeChunk(out, IDAT, chunk, chunkLength);
+		writeChunk(out, IEND, chunk, 0);
+	}
+
+	private void deflate(OutputStream out) throws IOException {
+		chunkLength += deflater.deflate(chunk, chunkLength, CHUNK_SIZE - chunkLength);
+		if (chunkLength == CHUNK_SIZE){
+			writeChunk(out, IDAT, chunk, chunkLength);
+			chunkLength = 0;
+		}
+	}
+
+	private void writeChunk(OutputStream out, byte[] type, byte[] data, int length) throws IOException {
+		putInt(chunkHeader, 0, length);
+		System.arraycopy(type, 0, chunkHeader, 4, 4);
+		out.write(chunkHeader);
+		out.write(data, 0, length);
+		crc.reset();
+		crc.update(type, 0, 4);
+		crc.update(data, 0, length);
+		putInt(chunkHeader, 0, (int) crc.getValue());
+		out.write(chunkHeader, 0, 4);
+	}
+
+	private static void putInt(byte[] bytes, int offset, int value){
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+
+	/**
+	 * Releases the native resources of the deflater.
+	 */
+	public void end(){
+		deflater.end();
+	}
+
+}
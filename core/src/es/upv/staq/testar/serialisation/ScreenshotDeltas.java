@@ -0,0 +1,331 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.serialisation;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import org.fruit.Assert;
+
+/**
+ * Delta encoding of consecutive state screenshots.
+ *
+ * The screenshots are divided in tiles, which are hashed. A screenshot becomes a keyframe, and is saved
+ * completely, when it is the first of a sequence, when its size differs from the keyframe, when more than
+ * half of its tiles differ from the keyframe, or after <code>keyframeInterval</code> deltas. Otherwise it
+ * is saved as a delta: a PNG image of the same size in which only the tiles that differ from the keyframe
+ * are opaque. The name of the keyframe file (in the same folder) is stored in a tEXt chunk of the delta.
+ *
+ * As a delta only depends on its keyframe, a screenshot is reconstructed by drawing the delta over the
+ * keyframe (see <code>read</code>), which is also how an HTML page can show it.
+ *
+ * The tiles are hashed by the screenshot workers, in parallel. The screenshots are numbered when they are
+ * queued (<code>reserve</code>) and the keyframe decisions are taken in that order.
+ */
+public final class ScreenshotDeltas {
+
+	public static final String KEYFRAME_KEYWORD = "TESTAR-Keyframe";
+	static final int TILE_SIZE = 32;
+	private static final double MAX_CHANGED_FRACTION = 0.5;
+	private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+	/**
+	 * A screenshot to be saved as delta.
+	 */
+	static final class Delta {
+		final String keyframePath;
+		final BitSet changedTiles;
+		Delta(String keyframePath, BitSet changedTiles){ this.keyframePath = keyframePath; this.changedTiles = changedTiles; }
+	}
+
+	// the decision of a screenshot that became a keyframe
+	private static final String COMPLETE = "";
+
+	private final int keyframeInterval;
+	// screenshot path -> keyframe path (or COMPLETE), for the screenshots of the sequence
+	private final Map<String, String> decisions = new HashMap<>();
+	// the screenshots that are waiting for a decision
+	private final Set<String> pending = new HashSet<>();
+	// the numbers of the screenshots that were not saved after all
+	private final Set<Integer> skipped = new HashSet<>();
+	private int nextNumber, nextDecision;
+	private String keyframePath;
+	private int width, height;
+	private long[] keyframeTiles;
+	private int deltasSinceKeyframe;
+
+	ScreenshotDeltas(int keyframeInterval){
+		Assert.isTrue(keyframeInterval > 0);
+		this.keyframeInterval = keyframeInterval;
+	}
+
+	/**
+	 * Numbers a screenshot that is queued to be saved, which fixes the order of the keyframe decisions.
+	 * @return the number to pass to <code>choose</code> or <code>skip</code>
+	 */
+	synchronized int reserve(String path){
+		pending.add(path);
+		return nextNumber++;
+	}
+
+	/**
+	 * Forgets a reserved screenshot that is not saved after all.
+	 */
+	synchronized void skip(int number, String path){
+		pending.remove(path);
+		skipped.add(number);
+		advance();
+		notifyAll();
+	}
+
+	/**
+	 * Decides whether a screenshot becomes a keyframe or a delta. The tiles are hashed on the calling thread,
+	 * then the call waits until the screenshots reserved before it have been decided.
+	 * @return the delta, or null for a keyframe
+	 */
+	Delta choose(int number, String path, BufferedImage image){
+		long[] tiles = tileHashes(image);
+		boolean interrupted = false;
+		synchronized (this){
+			while (number != nextDecision){
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			Delta delta = decide(path, image, tiles);
+			decisions.put(path, delta == null ? COMPLETE : delta.keyframePath);
+			pending.remove(path);
+			nextDecision++;
+			advance();
+			notifyAll();
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			return delta;
+		}
+	}
+
+	/**
+	 * Reserves and decides a screenshot at once.
+	 * @return the delta, or null for a keyframe
+	 */
+	Delta choose(String path, BufferedImage image){
+		return choose(reserve(path), path, image);
+	}
+
+	private void advance(){
+		while (skipped.remove(nextDecision))
+			nextDecision++;
+	}
+
+	private Delta decide(String path, BufferedImage image, long[] tiles){
+		if (keyframePath == null || image.getWidth() != width || image.getHeight() != height || deltasSinceKeyframe >= keyframeInterval)
+			return keyframe(path, image, tiles);
+		BitSet changed = new BitSet(tiles.length);
+		for (int i = 0; i < tiles.length; i++){
+			if (tiles[i] != keyframeTiles[i])
+				changed.set(i);
+		}
+		if (changed.cardinality() > tiles.length * MAX_CHANGED_FRACTION)
+			return keyframe(path, image, tiles);
+		deltasSinceKeyframe++;
+		return new Delta(keyframePath, changed);
+	}
+
+	private Delta keyframe(String path, BufferedImage image, long[] tiles){
+		keyframePath = path;
+		width = image.getWidth();
+		height = image.getHeight();
+		keyframeTiles = tiles;
+		deltasSinceKeyframe = 0;
+		return null;
+	}
+
+	/**
+	 * Forgets the keyframe, e.g. because it could not be saved.
+	 */
+	synchronized void reset(){
+		keyframePath = null;
+		keyframeTiles = null;
+	}
+
+	/**
+	 * Forgets the keyframe if it is still <code>path</code>, so the next screenshot becomes a keyframe.
+	 */
+	synchronized void reset(String path){
+		if (path.equals(keyframePath))
+			reset();
+	}
+
+	/**
+	 * @return whether <code>path</code> was reserved by this instance
+	 */
+	synchronized boolean isKnown(String path){
+		return pending.contains(path) || decisions.containsKey(path);
+	}
+
+	/**
+	 * Waits until a reserved screenshot has been decided.
+	 * @return the keyframe path if it became a delta, null if it became a keyframe or was not saved
+	 */
+	synchronized String awaitKeyframe(String path) throws InterruptedException {
+		while (pending.contains(path))
+			wait();
+		String keyframe = decisions.get(path);
+		return keyframe == null || keyframe.equals(COMPLETE) ? null : keyframe;
+	}
+
+	/**
+	 * @return the hashes of the TILE_SIZE x TILE_SIZE tiles of <code>image</code>, row by row
+	 */
+	static long[] tileHashes(BufferedImage image){
+		int width = image.getWidth(), height = image.getHeight();
+		int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE, tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+		long[] hashes = new long[tilesX * tilesY];
+		int[] pixels = PixelHash.directPixels(image);
+		int[] row = pixels == null ? new int[width] : null;
+		int offset = pixels == null ? 0 : image.getRaster().getDataBuffer().getOffset();
+		int stride = pixels == null ? 0 : ((SinglePixelPackedSampleModel) image.getRaster().getSampleModel()).getScanlineStride();
+		int alphaMask = image.getColorModel().hasAlpha() ? 0 : 0xFF000000;
+		for (int y = 0; y < height; y++){
+			int[] source = pixels;
+			int base = offset + y * stride;
+			if (pixels == null){
+				image.getRGB(0, y, width, 1, row, 0, width);
+				source = row;
+				base = 0;
+			}
+			int tile = (y / TILE_SIZE) * tilesX;
+			for (int x0 = 0; x0 < width; x0 += TILE_SIZE, tile++){
+				long hash = hashes[tile];
+				int end = base + Math.min(width, x0 + TILE_SIZE);
+				for (int i = base + x0; i < end; i++)
+					hash = PixelHash.round(hash, (source[i] | alphaMask) & 0xFFFFFFFFL);
+				hashes[tile] = hash;
+			}
+		}
+		return hashes;
+	}
+
+	/**
+	 * Copies the changed tiles of <code>image</code> into <code>delta</code> (an INT_ARGB image of the same size),
+	 * opaque, and clears the other tiles.
+	 */
+	static void drawDelta(BufferedImage image, BitSet changedTiles, BufferedImage delta){
+		int width = image.getWidth(), height = image.getHeight();
+		int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+		int[] target = PixelHash.directPixels(delta);
+		Assert.isTrue(target != null && delta.getWidth() == width && delta.getHeight() == height);
+		Arrays.fill(target, 0);
+		int[] row = new int[TILE_SIZE];
+		for (int tile = changedTiles.nextSetBit(0); tile >= 0; tile = changedTiles.nextSetBit(tile + 1)){
+			int x0 = (tile % tilesX) * TILE_SIZE, y0 = (tile / tilesX) * TILE_SIZE;
+			int w = Math.min(TILE_SIZE, width - x0), h = Math.min(TILE_SIZE, height - y0);
+			for (int y = y0; y < y0 + h; y++){
+				image.getRGB(x0, y, w, 1, row, 0, w);
+				int base = y * width + x0;
+				for (int x = 0; x < w; x++)
+					target[base + x] = row[x] | 0xFF000000;
+			}
+		}
+	}
+
+	/**
+	 * @return the keyframe file of a delta screenshot, or null if <code>path</code> is a complete screenshot
+	 * @throws IOException if the file cannot be read
+	 */
+	public static String keyframeOf(String path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))){
+			byte[] signature = new byte[PNG_SIGNATURE.length];
+			in.readFully(signature);
+			if (!Arrays.equals(signature, PNG_SIGNATURE))
+				return null;
+			byte[] type = new byte[4];
+			while (true){
+				int length = in.readInt();
+				in.readFully(type);
+				String chunk = new String(type, StandardCharsets.ISO_8859_1);
+				if (chunk.equals("IDAT") || chunk.equals("IEND"))
+					return null; // the metadata precedes the image data
+				if (chunk.equals("tEXt")){
+					byte[] data = new byte[length];
+					in.readFully(data);
+					String text = new String(data, StandardCharsets.ISO_8859_1);
+					int separator = text.indexOf('\0');
+					if (separator > 0 && text.substring(0, separator).equals(KEYFRAME_KEYWORD))
+						return new File(new File(path).getParentFile(), text.substring(separator + 1)).getPath();
+					in.readInt(); // crc
+				} else {
+					in.skipBytes(length + 4);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a screenshot, drawing delta screenshots over their keyframe.
+	 * @return the complete screenshot, or null if it cannot be decoded
+	 * @throws IOException if the screenshot or its keyframe cannot be read
+	 */
+	public static BufferedImage read(String path) throws IOException {
+		BufferedImage image = ImageIO.read(new File(path));
+		String keyframe = image == null ? null : keyframeOf(path);
+		if (keyframe == null)
+			return image;
+		BufferedImage keyframeImage = ImageIO.read(new File(keyframe));
+		if (keyframeImage == null)
+			throw new IOException("Unable to read keyframe <" + keyframe + "> of screenshot <" + path + ">");
+		BufferedImage complete = new BufferedImage(keyframeImage.getWidth(), keyframeImage.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = complete.createGraphics();
+		g.drawImage(keyframeImage, 0, 0, null);
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return complete;
+	}
+
+}
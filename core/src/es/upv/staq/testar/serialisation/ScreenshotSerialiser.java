@@ -1,7 +1,7 @@
 /***************************************************************************************************
  *
- * Copyright (c) 2015, 2016, 2017, 2018, 2019 Universitat Politecnica de Valencia - www.upv.es
- * Copyright (c) 2018, 2019 Open Universiteit - www.ou.nl
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
  *
  * Redistribution and use in source and binary forms, with or without
  * modification, are permitted provided that the following conditions are met:
@@ -31,135 +31,533 @@
 
 package es.upv.staq.testar.serialisation;
 
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 import org.fruit.Assert;
 import org.fruit.alayer.AWTCanvas;
 
+import com.google.common.io.CountingOutputStream;
+
+import es.upv.staq.testar.serialisation.LogSerialiser.LogLevel;
+
 /**
  * SUT screenshots serialiser
  *
+ * Screenshots are queued in a bounded queue and saved by a pool of worker threads. What happens when
+ * the queue is full depends on the <code>OverflowPolicy</code>; the encoder is chosen with
+ * <code>configure</code> before the serialiser is started.
+ *
+ * With deduplication, every distinct screenshot is saved once per run in the content folder, named
+ * after the hash of its pixels, and the state and action screenshot paths are hard links to it.
+ * Deduplication is off by default, as the content folder is not cleaned up when sequences are deleted.
+ * With delta encoding, state screenshots that differ little from the last keyframe are saved as
+ * delta, see <code>ScreenshotDeltas</code>.
  */
 public class ScreenshotSerialiser extends Thread {
 
 	public static final String SCRSHOTS = "scrshots";
+	// folder of the deduplicated screenshots, shared by the sequences of a run
+	public static final String CONTENT = "content";
+
+	/**
+	 * How screenshots are encoded. All of them produce PNG files.
+	 */
+	public enum Encoder {
+		ImageIO,   // ImageIO PNG writer, maximum compression
+		FastPng,   // PngEncoder, fastest deflate level
+		StoredPng; // PngEncoder, no compression
+
+		public static Encoder fromName(String name){
+			for (Encoder encoder : values()){
+				if (encoder.name().equalsIgnoreCase(name.trim()))
+					return encoder;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * What happens to a new screenshot when the queue is full.
+	 */
+	public enum OverflowPolicy {
+		Block,   // wait until there is room in the queue
+		Drop,    // do not save the screenshot
+		Degrade; // wait, and save screenshots uncompressed while the queue is more than half full
+
+		public static OverflowPolicy fromName(String name){
+			for (OverflowPolicy policy : values()){
+				if (policy.name().equalsIgnoreCase(name.trim()))
+					return policy;
+			}
+			return null;
+		}
+	}
+
 	private static String testSequenceFolder = null;
 	private static String scrshotOutputFolder = null;
-	private static LinkedList<ScrshotRecord> scrshotSavingQueue =  new LinkedList<ScrshotRecord>();
-	private static final int QUEUE_LIMIT = 16;
-	private static ScreenshotSerialiser singletonScreenshotSerialiser;
-	private static boolean alive;
-	private static boolean queueBoost;
+	private static int workers = 2;
+	private static int queueCapacity = 32;
+	private static Encoder encoder = Encoder.FastPng;
+	private static OverflowPolicy overflowPolicy = OverflowPolicy.Block;
+	private static boolean deduplicate = false;
+	private static int keyframeInterval = 0;
+	private static volatile ScreenshotDeltas stateDeltas;
+	private static final Map<String, Object> contentLocks = new ConcurrentHashMap<>();
+	private static BlockingQueue<ScrshotRecord> scrshotSavingQueue = new ArrayBlockingQueue<>(queueCapacity);
+	// queued once per worker to make the workers finish
+	private static final ScrshotRecord END = new ScrshotRecord(null, null);
+	// how long finish waits for room for a marker before it checks that the workers are still alive
+	private static final long END_WAIT_MILLIS = 100;
+	// screenshots queued in the current sequence, which do not exist on disk yet
+	private static final Set<String> queuedPaths = ConcurrentHashMap.newKeySet();
+	private static final int KEYFRAME_CACHE_SIZE = 1024;
+	// keyframes of the screenshots of other sequences, read from their files ("" for complete screenshots)
+	private static final Map<String, String> keyframeCache = new KeyframeCache();
+	private static final List<ScreenshotSerialiser> workerThreads = new ArrayList<>();
+	private static volatile boolean alive;
+
+	// metrics of the current sequence
+	private static final AtomicLong saved = new AtomicLong();
+	private static final AtomicLong dropped = new AtomicLong();
+	private static final AtomicLong degraded = new AtomicLong();
+	private static final AtomicLong deduplicated = new AtomicLong();
+	private static final AtomicLong deltaScreenshots = new AtomicLong();
+	private static final AtomicLong bytesWritten = new AtomicLong();
+	private static final AtomicLong encodingNanos = new AtomicLong();
+	private static volatile int maxQueueLength;
+	private static volatile long startTime;
+
+	private PngEncoder fastPng, storedPng;
+	private BufferedImage deltaImage;
 
 	private static class ScrshotRecord{
 		String scrshotPath;
 		AWTCanvas scrshot;
+		// the delta encoding of a state screenshot and its number in it, chosen by the worker
+		ScreenshotDeltas deltas;
+		int deltaNumber;
+		ScreenshotDeltas.Delta delta;
 		public ScrshotRecord(String scrshotPath, AWTCanvas scrshot){this.scrshotPath = scrshotPath; this.scrshot = scrshot;}
 	}
 
-	private ScreenshotSerialiser(){}
-	private ScreenshotSerialiser(String scrshotOutputFolder, String testSequenceFolder){
-		ScreenshotSerialiser.testSequenceFolder = testSequenceFolder;
-		ScreenshotSerialiser.scrshotOutputFolder = scrshotOutputFolder;
-		(new File(scrshotOutputFolder + File.separator + testSequenceFolder)).mkdirs();
+	// least recently used keyframes, at most KEYFRAME_CACHE_SIZE
+	private static class KeyframeCache extends LinkedHashMap<String, String>{
+		private static final long serialVersionUID = 5180373422860719543L;
+		KeyframeCache(){ super(16, 0.75f, true); }
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest){ return size() > KEYFRAME_CACHE_SIZE; }
+	}
+
+	private ScreenshotSerialiser(int worker){
+		super("ScreenshotSerialiser-" + worker);
+	}
+
+	/**
+	 * Configures the serialiser for the next sequences.
+	 * @param workers number of threads that encode and save screenshots
+	 * @param queueCapacity number of screenshots that can wait to be saved
+	 * @param deduplicate whether identical screenshots are saved only once (in the content folder)
+	 */
+	public static synchronized void configure(int workers, int queueCapacity, Encoder encoder, OverflowPolicy overflowPolicy, boolean deduplicate){
+		Assert.isTrue(!alive);
+		Assert.isTrue(workers > 0 && queueCapacity > 0);
+		Assert.notNull(encoder, overflowPolicy);
+		ScreenshotSerialiser.workers = workers;
+		ScreenshotSerialiser.queueCapacity = queueCapacity;
+		ScreenshotSerialiser.encoder = encoder;
+		ScreenshotSerialiser.overflowPolicy = overflowPolicy;
+		ScreenshotSerialiser.deduplicate = deduplicate;
+	}
+
+	/**
+	 * Configures the delta encoding of the state screenshots of the next sequences.
+	 * @param keyframeInterval maximum number of delta screenshots between two keyframes, 0 disables delta encoding
+	 */
+	public static synchronized void configureDeltaEncoding(int keyframeInterval){
+		Assert.isTrue(!alive);
+		Assert.isTrue(keyframeInterval >= 0);
+		ScreenshotSerialiser.keyframeInterval = keyframeInterval;
 	}
 
-	public static void start(String outputFolder, String testSequenceFolder){
+	public static synchronized void start(String outputFolder, String testSequenceFolder){
 		Assert.isTrue(!alive);
 		Assert.isTrue(scrshotSavingQueue.isEmpty());
-		alive = true; queueBoost = false;
-		singletonScreenshotSerialiser = new ScreenshotSerialiser(outputFolder, testSequenceFolder);
-		singletonScreenshotSerialiser.setPriority(Thread.MIN_PRIORITY);
-		singletonScreenshotSerialiser.start();
+		ScreenshotSerialiser.testSequenceFolder = testSequenceFolder;
+		ScreenshotSerialiser.scrshotOutputFolder = outputFolder;
+		(new File(outputFolder + File.separator + testSequenceFolder)).mkdirs();
+		if (deduplicate)
+			(new File(outputFolder + File.separator + CONTENT)).mkdirs();
+		if (scrshotSavingQueue.remainingCapacity() != queueCapacity)
+			scrshotSavingQueue = new ArrayBlockingQueue<>(queueCapacity);
+		queuedPaths.clear();
+		contentLocks.clear();
+		stateDeltas = keyframeInterval > 0 ? new ScreenshotDeltas(keyframeInterval) : null;
+		saved.set(0);
+		dropped.set(0);
+		degraded.set(0);
+		deduplicated.set(0);
+		deltaScreenshots.set(0);
+		bytesWritten.set(0);
+		encodingNanos.set(0);
+		maxQueueLength = 0;
+		startTime = System.nanoTime();
+		workerThreads.removeIf(worker -> !worker.isAlive());
+		alive = true;
+		for (int i = 0; i < workers; i++){
+			ScreenshotSerialiser worker = new ScreenshotSerialiser(i);
+			worker.setPriority(Thread.MIN_PRIORITY);
+			workerThreads.add(worker);
+			worker.start();
+		}
 	}
 
-	public static void finish(){
-		alive = false;
+	public static synchronized void finish(){
+		if (alive){
+			alive = false;
+			// the workers save everything queued before the markers
+			try {
+				for (int i = 0; i < workerThreads.size(); i++){
+					while (!scrshotSavingQueue.offer(END, END_WAIT_MILLIS, TimeUnit.MILLISECONDS)){
+						if (workerThreads.stream().noneMatch(Thread::isAlive)){
+							// nothing takes from the queue any more, forget the screenshots that were not saved
+							LogSerialiser.log("ScreenshotSerialiser - workers stopped, " + scrshotSavingQueue.size() + " screenshots not saved\n", LogLevel.Critical);
+							scrshotSavingQueue.clear();
+							queuedPaths.clear();
+							return;
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
 	public static boolean isSavingQueueEmpty() {
-		if(scrshotSavingQueue.isEmpty())
-			return true;
-		return false;
+		return scrshotSavingQueue.isEmpty();
 	}
 
 	@Override
-	public void run(){		
-		while (alive || !scrshotSavingQueue.isEmpty()){
-			while(alive && scrshotSavingQueue.isEmpty()){
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e1) {}
+	public void run(){
+		BlockingQueue<ScrshotRecord> queue = scrshotSavingQueue;
+		while (true){
+			ScrshotRecord r;
+			try {
+				r = queue.take();
+			} catch (InterruptedException e) {
+				continue;
 			}
-			if (!scrshotSavingQueue.isEmpty()){
-				if (!queueBoost && scrshotSavingQueue.size() > QUEUE_LIMIT){
-					this.setPriority(NORM_PRIORITY);
-					queueBoost = true;
-				} else if (queueBoost && scrshotSavingQueue.size() < QUEUE_LIMIT/2){
-					this.setPriority(MIN_PRIORITY);
-					queueBoost = false;
-				}
-				ScrshotRecord r;
-				synchronized(scrshotSavingQueue){
-					r = scrshotSavingQueue.removeFirst();
-				}
-				try {
-					r.scrshot.saveAsPng(r.scrshotPath);
-				} catch (IOException e) {
-					LogSerialiser.log("I/O exception saving screenshot <" + r.scrshotPath + ">\n", LogSerialiser.LogLevel.Critical);
-				}
+			if (r == END)
+				break;
+			save(r, queue.size());
+		}
+		if (fastPng != null)
+			fastPng.end();
+		if (storedPng != null)
+			storedPng.end();
+	}
+
+	private void save(ScrshotRecord r, int queueLength){
+		Encoder encoder = ScreenshotSerialiser.encoder;
+		if (overflowPolicy == OverflowPolicy.Degrade && encoder != Encoder.StoredPng && queueLength > queueCapacity / 2){
+			encoder = Encoder.StoredPng;
+			degraded.incrementAndGet();
+		}
+		long start = System.nanoTime();
+		boolean decided = r.deltas == null, written = false;
+		try {
+			if (r.deltas != null){
+				r.delta = r.deltas.choose(r.deltaNumber, r.scrshotPath, r.scrshot.image());
+				decided = true;
+			}
+			if (r.delta != null)
+				saveDelta(r, encoder);
+			else if (deduplicate)
+				saveDeduplicated(r, encoder);
+			else
+				encode(r.scrshot, r.scrshotPath, encoder);
+			written = true;
+			saved.incrementAndGet();
+		} catch (IOException e) {
+			LogSerialiser.log("I/O exception saving screenshot <" + r.scrshotPath + ">\n", LogSerialiser.LogLevel.Critical);
+		} catch (RuntimeException e) {
+			// keep the worker alive for the next screenshots
+			LogSerialiser.log("Exception saving screenshot <" + r.scrshotPath + ">: " + e + "\n", LogSerialiser.LogLevel.Critical);
+		} finally {
+			if (!decided)
+				r.deltas.skip(r.deltaNumber, r.scrshotPath); // the later screenshots must not wait for this one
+			else if (r.deltas != null && r.delta == null && !written)
+				r.deltas.reset(r.scrshotPath); // no deltas against a keyframe that does not exist
+			encodingNanos.addAndGet(System.nanoTime() - start);
+			queuedPaths.remove(r.scrshotPath);
+		}
+	}
+
+	/**
+	 * Saves the screenshot once in the content folder, named after the hash of its pixels, and links
+	 * the screenshot path to that file (or copies it, if the file system does not support links).
+	 */
+	private void saveDeduplicated(ScrshotRecord r, Encoder encoder) throws IOException {
+		String hash = PixelHash.of(r.scrshot.image());
+		File content = new File(scrshotOutputFolder + File.separator + CONTENT + File.separator + hash + ".png");
+		synchronized (contentLocks.computeIfAbsent(hash, h -> new Object())){
+			if (content.exists()){
+				deduplicated.incrementAndGet();
+			} else {
+				// never leave a partially written file under the final name
+				File partial = new File(content.getPath() + ".part");
+				encode(r.scrshot, partial.getPath(), encoder);
+				Files.move(partial.toPath(), content.toPath(), StandardCopyOption.REPLACE_EXISTING);
 			}
 		}
-		synchronized(testSequenceFolder){
-			singletonScreenshotSerialiser = null;
-			testSequenceFolder.notifyAll();
+		Path link = Paths.get(r.scrshotPath);
+		try {
+			Files.createLink(link, content.toPath());
+		} catch (FileAlreadyExistsException e) {
+			// saved by an earlier sequence
+		} catch (IOException | UnsupportedOperationException e) {
+			Files.copy(content.toPath(), link, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Saves the tiles of the screenshot that differ from its keyframe, see <code>ScreenshotDeltas</code>.
+	 */
+	private void saveDelta(ScrshotRecord r, Encoder encoder) throws IOException {
+		BufferedImage image = r.scrshot.image();
+		if (deltaImage == null || deltaImage.getWidth() != image.getWidth() || deltaImage.getHeight() != image.getHeight())
+			deltaImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		ScreenshotDeltas.drawDelta(image, r.delta.changedTiles, deltaImage);
+		PngEncoder png = encoder == Encoder.StoredPng ? storedPng() : fastPng();
+		try (CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(r.scrshotPath), 65536))){
+			png.encode(deltaImage, out, Collections.singletonMap(ScreenshotDeltas.KEYFRAME_KEYWORD, new File(r.delta.keyframePath).getName()));
+			out.flush();
+			bytesWritten.addAndGet(out.getCount());
+		}
+		deltaScreenshots.incrementAndGet();
+	}
+
+	private PngEncoder fastPng(){
+		if (fastPng == null)
+			fastPng = new PngEncoder(Deflater.BEST_SPEED);
+		return fastPng;
+	}
+
+	private PngEncoder storedPng(){
+		if (storedPng == null)
+			storedPng = new PngEncoder(Deflater.NO_COMPRESSION);
+		return storedPng;
+	}
+
+	private void encode(AWTCanvas scrshot, String path, Encoder encoder) throws IOException {
+		try (CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(path), 65536))){
+			switch (encoder){
+			case ImageIO:
+				AWTCanvas.saveAsPng(scrshot.image(), out);
+				break;
+			case FastPng:
+				fastPng().encode(scrshot.image(), out);
+				break;
+			case StoredPng:
+				storedPng().encode(scrshot.image(), out);
+				break;
+			}
+			out.flush();
+			bytesWritten.addAndGet(out.getCount());
 		}
 	}
 
 	public static String saveStateshot(String stateID, AWTCanvas stateshot){
 		String statePath = scrshotOutputFolder + File.separator + testSequenceFolder + File.separator + stateID + ".png";
 		if (!new File(statePath).exists())
-			savethis(statePath,stateshot);
+			savethis(statePath,stateshot,true);
 		return statePath;
 	}
 
 	public static String saveActionshot(String stateID, String actionID, final AWTCanvas actionshot){
 		String actionPath = scrshotOutputFolder + File.separator + testSequenceFolder + File.separator + stateID + "_" + actionID + ".png";
 		if (!new File(actionPath).exists())
-			savethis(actionPath,actionshot);
+			savethis(actionPath,actionshot,false);
 		return actionPath;
 	}
 
-	private static void savethis(String scrshotPath, AWTCanvas scrshot){
-		if (alive){
-			synchronized(scrshotSavingQueue){
-				scrshotSavingQueue.add(new ScrshotRecord(scrshotPath,scrshot));
+	private static void savethis(String scrshotPath, AWTCanvas scrshot, boolean stateshot){
+		if (!alive || !queuedPaths.add(scrshotPath))
+			return; // not started or already waiting to be saved
+		ScrshotRecord r = new ScrshotRecord(scrshotPath, scrshot);
+		ScreenshotDeltas deltas = stateDeltas;
+		if (stateshot && deltas != null){
+			// the tiles are hashed by the worker, the number keeps the keyframe decisions in order
+			r.deltas = deltas;
+			r.deltaNumber = deltas.reserve(scrshotPath);
+		}
+		if (overflowPolicy == OverflowPolicy.Drop){
+			if (!scrshotSavingQueue.offer(r)){
+				if (r.deltas != null)
+					deltas.skip(r.deltaNumber, scrshotPath);
+				queuedPaths.remove(scrshotPath);
+				dropped.incrementAndGet();
+				LogSerialiser.log("ScreenshotSerialiser - queue full, dropped screenshot <" + scrshotPath + ">\n", LogLevel.Debug);
+				return;
+			}
+		} else {
+			try {
+				scrshotSavingQueue.put(r);
+			} catch (InterruptedException e) {
+				if (r.deltas != null)
+					deltas.skip(r.deltaNumber, scrshotPath);
+				queuedPaths.remove(scrshotPath);
+				LogSerialiser.log("ScreenshotSerialiser - interrupted queueing screenshot <" + scrshotPath + ">\n", LogLevel.Critical);
+				Thread.currentThread().interrupt();
+				return;
 			}
 		}
+		int size = scrshotSavingQueue.size();
+		if (size > maxQueueLength)
+			maxQueueLength = size;
 	}
 
 	public static void exit(){
-		if (singletonScreenshotSerialiser != null){
+		List<ScreenshotSerialiser> workers;
+		synchronized (ScreenshotSerialiser.class){
+			if (workerThreads.isEmpty())
+				return;
 			ScreenshotSerialiser.finish();
+			workers = new ArrayList<>(workerThreads);
+			workerThreads.clear();
+		}
+		for (ScreenshotSerialiser worker : workers){
 			try {
-				synchronized(testSequenceFolder){
-					while (singletonScreenshotSerialiser != null){
-						try {
-							testSequenceFolder.wait(10);
-						} catch (InterruptedException e) {
-							System.out.println("ScreenshotSerialiser exit interrupted");
-						}
-					}
-				}
-			} catch (Exception e) {} // testSequenceFolder may be set to null when we try to sync on it
-			testSequenceFolder = null;
+				worker.join();
+			} catch (InterruptedException e) {
+				System.out.println("ScreenshotSerialiser exit interrupted");
+				Thread.currentThread().interrupt();
+				return;
+			}
 		}
-	}	
+		LogSerialiser.log("ScreenshotSerialiser - " + statistics() + "\n", LogLevel.Debug);
+		testSequenceFolder = null;
+	}
 
 	public static int queueLength(){
 		return scrshotSavingQueue.size();
-	}	
+	}
+
+	/**
+	 * @return the maximum queue length of the current (or last) sequence
+	 */
+	public static int maxQueueLength(){
+		return maxQueueLength;
+	}
+
+	/**
+	 * @return number of screenshots saved in the current (or last) sequence
+	 */
+	public static long screenshotsSaved(){
+		return saved.get();
+	}
+
+	/**
+	 * @return number of screenshots dropped because the queue was full
+	 */
+	public static long screenshotsDropped(){
+		return dropped.get();
+	}
+
+	/**
+	 * @return number of screenshots saved uncompressed because the queue was more than half full
+	 */
+	public static long screenshotsDegraded(){
+		return degraded.get();
+	}
+
+	/**
+	 * @return number of screenshots that were identical to an already saved screenshot
+	 */
+	public static long screenshotsDeduplicated(){
+		return deduplicated.get();
+	}
+
+	/**
+	 * @return number of state screenshots saved as delta
+	 */
+	public static long screenshotsAsDelta(){
+		return deltaScreenshots.get();
+	}
+
+	/**
+	 * Returns the keyframe of a delta screenshot of the current sequence (also if it has not been saved yet)
+	 * or of any saved screenshot. For a screenshot of the current sequence this waits until the worker has
+	 * decided it, other screenshots are looked up in their file once.
+	 * @return the keyframe path, or null if <code>scrshotPath</code> is a complete screenshot
+	 */
+	public static String keyframeOf(String scrshotPath){
+		ScreenshotDeltas deltas = stateDeltas;
+		if (deltas != null && deltas.isKnown(scrshotPath)){
+			try {
+				return deltas.awaitKeyframe(scrshotPath);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		String sequenceFolder = testSequenceFolder;
+		if (queuedPaths.contains(scrshotPath) || (sequenceFolder != null
+				&& scrshotPath.startsWith(scrshotOutputFolder + File.separator + sequenceFolder + File.separator)))
+			return null; // not delta encoded
+		synchronized (keyframeCache){
+			String keyframe = keyframeCache.get(scrshotPath);
+			if (keyframe == null){
+				try {
+					keyframe = new File(scrshotPath).exists() ? ScreenshotDeltas.keyframeOf(scrshotPath) : null;
+				} catch (IOException e) {
+					keyframe = null;
+				}
+				keyframe = keyframe == null ? "" : keyframe;
+				keyframeCache.put(scrshotPath, keyframe);
+			}
+			return keyframe.isEmpty() ? null : keyframe;
+		}
+	}
+
+	/**
+	 * @return number of bytes of the screenshots saved in the current (or last) sequence
+	 */
+	public static long bytesWritten(){
+		return bytesWritten.get();
+	}
+
+	/**
+	 * @return the metrics of the current (or last) sequence as text
+	 */
+	public static String statistics(){
+		double seconds = Math.max(1e-9, (System.nanoTime() - startTime) / 1e9);
+		long screenshots = saved.get();
+		return String.format("%d screenshots (%.1f/s), %d bytes, encoding avg %.1f ms, %d deduplicated, %d deltas, %d dropped, %d degraded, queue length %d (max %d)",
+				screenshots, screenshots / seconds, bytesWritten.get(),
+				screenshots == 0 ? 0 : encodingNanos.get() / (screenshots * 1e6),
+				deduplicated.get(), deltaScreenshots.get(), dropped.get(), degraded.get(), queueLength(), maxQueueLength());
+	}
 
 }
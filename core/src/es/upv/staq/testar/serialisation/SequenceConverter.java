@@ -0,0 +1,77 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.serialisation;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.fruit.alayer.Taggable;
+
+/**
+ * Converts sequence files of former TESTAR versions (Java serialised fragments) to the binary
+ * sequence format.
+ *
+ * Usage: <code>SequenceConverter source.testar target.testar [-nocompress]</code>
+ *
+ * @see SequenceFormat
+ */
+public final class SequenceConverter {
+
+	private SequenceConverter(){}
+
+	/**
+	 * Converts the sequence <code>source</code> (in any supported format) to a binary sequence.
+	 * @param compress whether the fragments of <code>target</code> are deflate compressed
+	 * @return number of converted fragments
+	 */
+	public static int convert(File source, File target, boolean compress) throws IOException, ClassNotFoundException {
+		try (SequenceReader reader = SequenceReader.open(source);
+			 SequenceWriter writer = new SequenceWriter(new BufferedOutputStream(new FileOutputStream(target), 65536), compress)){
+			Taggable fragment;
+			while ((fragment = reader.read()) != null)
+				writer.write(fragment);
+			return writer.fragmentsWritten();
+		}
+	}
+
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		if (args.length < 2 || args.length > 3 || (args.length == 3 && !args[2].equals("-nocompress"))){
+			System.out.println("Usage: SequenceConverter source.testar target.testar [-nocompress]");
+			return;
+		}
+		int fragments = convert(new File(args[0]), new File(args[1]), args.length == 2);
+		System.out.println("Converted " + fragments + " fragments to " + args[1]);
+	}
+
+}
@@ -0,0 +1,128 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.serialisation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary format of the replayable sequence files (.testar).
+ *
+ * A sequence file starts with a header (magic, version and flags), followed by records:
+ * <ul>
+ * <li>tag records add a tag (name and value type) to the tag dictionary,</li>
+ * <li>string records add a string to the string dictionary,</li>
+ * <li>class records add a Java serialisation class descriptor to the class dictionary,</li>
+ * <li>fragment records hold one fragment, prefixed with its length, so that readers can skip
+ * fragments without decoding them.</li>
+ * </ul>
+ * Dictionary records are written right before the first fragment that refers to them. A fragment
+ * consists of its tag values: strings and primitives are written directly, all the other values are
+ * Java serialised together (objects shared by several tags are written only once), with their class
+ * descriptors and longer strings replaced by references to the dictionaries. Fragments are optionally deflate compressed.
+ *
+ * Sequences written by former TESTAR versions (a stream of Java serialised fragments) can still be read,
+ * see <code>SequenceReader</code> and <code>SequenceConverter</code>.
+ */
+public final class SequenceFormat {
+
+	public static final int VERSION = 1;
+
+	static final byte[] MAGIC = {'T', 'S', 'E', 'Q'};
+	static final int FLAG_DEFLATE = 1;
+
+	static final int RECORD_TAG = 1;
+	static final int RECORD_STRING = 2;
+	static final int RECORD_FRAGMENT = 3;
+	static final int RECORD_CLASS = 4;
+
+	static final int VALUE_STRING = 1;
+	static final int VALUE_TEXT = 2; // string not in the dictionary
+	static final int VALUE_TRUE = 3;
+	static final int VALUE_FALSE = 4;
+	static final int VALUE_INTEGER = 5;
+	static final int VALUE_LONG = 6;
+	static final int VALUE_DOUBLE = 7;
+	static final int VALUE_FLOAT = 8;
+	static final int VALUE_OBJECT = 9;
+
+	// shorter strings of serialised objects are cheaper than a dictionary reference
+	static final int MIN_INTERNED_LENGTH = 8;
+	// bounds the memory of writers and readers for sequences with many distinct strings
+	static final int MAX_STRINGS = 1 << 20;
+
+	private SequenceFormat(){}
+
+	/**
+	 * Reference to an entry of the string dictionary, replaces strings inside Java serialised values.
+	 */
+	static final class StringRef implements Serializable {
+		private static final long serialVersionUID = -2940233475069829147L;
+		final int id;
+		StringRef(int id){ this.id = id; }
+	}
+
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0){
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7){
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed variable length integer in sequence file");
+	}
+
+	static void writeString(DataOutput out, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,438 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.serialisation;
+
+import static es.upv.staq.testar.serialisation.SequenceFormat.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.fruit.Assert;
+import org.fruit.alayer.Tag;
+import org.fruit.alayer.Taggable;
+import org.fruit.alayer.TaggableBase;
+
+/**
+ * Reads the fragments of a sequence file, in the binary sequence format or in the former format of
+ * Java serialised fragments. Both can be gzip compressed (as the copies in the output folders are).
+ *
+ * Binary sequences are seekable: the fragments before the requested one are skipped without decoding
+ * them. Former sequences have to be deserialised up to the requested fragment.
+ *
+ * Instances are not thread-safe.
+ *
+ * @see SequenceFormat
+ */
+public abstract class SequenceReader implements Closeable {
+
+	interface Source {
+		InputStream open() throws IOException;
+	}
+
+	private final Source source;
+	protected int position;
+
+	protected SequenceReader(Source source){
+		this.source = source;
+	}
+
+	/**
+	 * Opens a sequence file.
+	 * @throws IOException if the file cannot be read or is not a sequence file
+	 */
+	public static SequenceReader open(File file) throws IOException {
+		Assert.notNull(file);
+		return open(() -> new FileInputStream(file));
+	}
+
+	/**
+	 * Reads a sequence from a stream. The reader cannot seek backwards.
+	 * @throws IOException if the stream cannot be read or does not contain a sequence
+	 */
+	public static SequenceReader open(InputStream in) throws IOException {
+		Assert.notNull(in);
+		InputStream[] once = {in};
+		return open(() -> {
+			if (once[0] == null)
+				throw new IOException("Cannot rewind a sequence read from a stream");
+			InputStream stream = once[0];
+			once[0] = null;
+			return stream;
+		});
+	}
+
+	private static SequenceReader open(Source source) throws IOException {
+		InputStream in = decode(source.open());
+		try {
+			return isBinary(in) ? new BinaryReader(source, in) : new LegacyReader(source, in);
+		} catch (IOException | RuntimeException e){
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return a buffered stream of the decompressed sequence
+	 */
+	private static InputStream decode(InputStream raw) throws IOException {
+		BufferedInputStream in = new BufferedInputStream(raw, 65536);
+		in.mark(2);
+		int b1 = in.read(), b2 = in.read();
+		in.reset();
+		if (b1 == 0x1f && b2 == 0x8b) // gzip magic
+			return new BufferedInputStream(new GZIPInputStream(in, 65536), 65536);
+		return in;
+	}
+
+	private static boolean isBinary(InputStream in) throws IOException {
+		byte[] magic = new byte[MAGIC.length];
+		in.mark(magic.length);
+		int read = 0, n;
+		while (read < magic.length && (n = in.read(magic, read, magic.length - read)) > 0)
+			read += n;
+		in.reset();
+		return Arrays.equals(magic, MAGIC);
+	}
+
+	/**
+	 * @return the index of the next fragment
+	 */
+	public int position(){
+		return position;
+	}
+
+	/**
+	 * @return the next fragment, or null at the end of the sequence
+	 */
+	public abstract Taggable read() throws IOException, ClassNotFoundException;
+
+	/**
+	 * Skips the next fragment.
+	 * @return false at the end of the sequence
+	 */
+	public abstract boolean skip() throws IOException, ClassNotFoundException;
+
+	/**
+	 * Positions the reader at the fragment with (zero-based) <code>index</code>, or at the end of the
+	 * sequence if it has fewer fragments.
+	 * @return the new position
+	 */
+	public int seek(int index) throws IOException, ClassNotFoundException {
+		Assert.isTrue(index >= 0);
+		if (index < position)
+			rewind();
+		while (position < index && skip());
+		return position;
+	}
+
+	/**
+	 * Skips the remaining fragments.
+	 * @return the number of fragments of the sequence
+	 */
+	public int seekEnd() throws IOException, ClassNotFoundException {
+		while (skip());
+		return position;
+	}
+
+	/**
+	 * @return whether the sequence was written in the former format of Java serialised fragments
+	 */
+	public abstract boolean isLegacyFormat();
+
+	private void rewind() throws IOException {
+		close();
+		reopen(decode(source.open()));
+		position = 0;
+	}
+
+	protected abstract void reopen(InputStream in) throws IOException;
+
+	private static final class BinaryReader extends SequenceReader {
+		private DataInputStream in;
+		private boolean compressed;
+		private final List<Tag<?>> tags = new ArrayList<>();
+		private final List<String> strings = new ArrayList<>();
+		private final List<ObjectStreamClass> classes = new ArrayList<>();
+		private final Inflater inflater = new Inflater();
+		private byte[] stored = new byte[0];
+		private byte[] payload = new byte[0];
+		private int payloadLength;
+
+		BinaryReader(Source source, InputStream in) throws IOException {
+			super(source);
+			reopen(in);
+		}
+
+		@Override
+		protected void reopen(InputStream in) throws IOException {
+			this.in = new DataInputStream(in);
+			clearDictionaries();
+			readHeader(false);
+		}
+
+		private void clearDictionaries(){
+			tags.clear();
+			strings.clear();
+			classes.clear();
+		}
+
+		private void readHeader(boolean magicByteRead) throws IOException {
+			byte[] magic = new byte[MAGIC.length];
+			magic[0] = MAGIC[0];
+			in.readFully(magic, magicByteRead ? 1 : 0, magicByteRead ? magic.length - 1 : magic.length);
+			if (!Arrays.equals(magic, MAGIC))
+				throw new IOException("Not a TESTAR sequence file");
+			int version = in.readUnsignedByte();
+			if (version > VERSION)
+				throw new IOException("Unsupported sequence file version " + version + " (supported up to " + VERSION + ")");
+			compressed = (in.readUnsignedByte() & FLAG_DEFLATE) != 0;
+		}
+
+		/**
+		 * Reads the dictionary records up to the next fragment.
+		 * @return false at the end of the sequence
+		 */
+		private boolean nextFragment() throws IOException, ClassNotFoundException {
+			while (true){
+				int record = in.read();
+				switch (record){
+				case -1:
+					return false;
+				case RECORD_FRAGMENT:
+					return true;
+				case RECORD_TAG:
+					String name = readString(in);
+					Class<?> type = Class.forName(readString(in), false, SequenceReader.class.getClassLoader());
+					tags.add(Tag.from(name, type));
+					break;
+				case RECORD_STRING:
+					strings.add(readString(in));
+					break;
+				case RECORD_CLASS:
+					byte[] desc = new byte[readVarInt(in)];
+					in.readFully(desc);
+					try (ObjectInputStream descStream = new ObjectInputStream(new ByteArrayInputStream(desc))){
+						classes.add((ObjectStreamClass) descStream.readObject());
+					}
+					break;
+				default:
+					if (record == MAGIC[0]){ // sequences appended to the same file
+						clearDictionaries();
+						readHeader(true);
+						break;
+					}
+					throw new IOException("Corrupt sequence file: unknown record type " + record);
+				}
+			}
+		}
+
+		@Override
+		public boolean skip() throws IOException, ClassNotFoundException {
+			if (!nextFragment())
+				return false;
+			readVarInt(in);
+			int storedLength = readVarInt(in);
+			while (storedLength > 0){
+				int skipped = in.skipBytes(storedLength);
+				if (skipped <= 0)
+					throw new EOFException("Truncated fragment in sequence file");
+				storedLength -= skipped;
+			}
+			position++;
+			return true;
+		}
+
+		@Override
+		public Taggable read() throws IOException, ClassNotFoundException {
+			if (!nextFragment())
+				return null;
+			readPayload();
+			position++;
+			return decode(new DataInputStream(new ByteArrayInputStream(payload, 0, payloadLength)));
+		}
+
+		private void readPayload() throws IOException {
+			payloadLength = readVarInt(in);
+			int storedLength = readVarInt(in);
+			if (payload.length < payloadLength)
+				payload = new byte[payloadLength];
+			if (!compressed){
+				in.readFully(payload, 0, payloadLength);
+				return;
+			}
+			if (stored.length < storedLength)
+				stored = new byte[storedLength];
+			in.readFully(stored, 0, storedLength);
+			inflater.reset();
+			inflater.setInput(stored, 0, storedLength);
+			try {
+				int inflated = 0;
+				while (inflated < payloadLength && !inflater.finished()){
+					int n = inflater.inflate(payload, inflated, payloadLength - inflated);
+					if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+						break;
+					inflated += n;
+				}
+				if (inflated != payloadLength)
+					throw new IOException("Corrupt compressed fragment in sequence file");
+			} catch (DataFormatException e){
+				throw new IOException("Corrupt compressed fragment in sequence file", e);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private Taggable decode(DataInputStream data) throws IOException, ClassNotFoundException {
+			TaggableBase fragment = new TaggableBase();
+			int count = readVarInt(data);
+			List<Tag<Object>> objectTags = new ArrayList<>();
+			List<Integer> objectIndexes = new ArrayList<>();
+			for (int i = 0; i < count; i++){
+				Tag<Object> tag = (Tag<Object>) tags.get(readVarInt(data));
+				int kind = data.readUnsignedByte();
+				switch (kind){
+				case VALUE_STRING:  fragment.set(tag, strings.get(readVarInt(data))); break;
+				case VALUE_TEXT:    fragment.set(tag, readString(data)); break;
+				case VALUE_TRUE:    fragment.set(tag, Boolean.TRUE); break;
+				case VALUE_FALSE:   fragment.set(tag, Boolean.FALSE); break;
+				case VALUE_INTEGER: fragment.set(tag, data.readInt()); break;
+				case VALUE_LONG:    fragment.set(tag, data.readLong()); break;
+				case VALUE_DOUBLE:  fragment.set(tag, data.readDouble()); break;
+				case VALUE_FLOAT:   fragment.set(tag, data.readFloat()); break;
+				case VALUE_OBJECT:
+					objectTags.add(tag);
+					objectIndexes.add(readVarInt(data));
+					break;
+				default:
+					throw new IOException("Corrupt sequence file: unknown value type " + kind);
+				}
+			}
+			if (readVarInt(data) > 0){
+				Object[] objects = (Object[]) new ResolvingInputStream(data).readObject();
+				for (int i = 0; i < objectTags.size(); i++)
+					fragment.set(objectTags.get(i), objects[objectIndexes.get(i)]);
+			}
+			return fragment;
+		}
+
+		@Override
+		public boolean isLegacyFormat(){
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		private final class ResolvingInputStream extends ObjectInputStream {
+			ResolvingInputStream(InputStream in) throws IOException {
+				super(in);
+				enableResolveObject(true);
+			}
+
+			@Override
+			protected Object resolveObject(Object obj) throws IOException {
+				if (obj instanceof StringRef){
+					int id = ((StringRef) obj).id;
+					if (id >= strings.size())
+						throw new IOException("Corrupt sequence file: unknown string " + id);
+					return strings.get(id);
+				}
+				return obj;
+			}
+
+			@Override
+			protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+				int id = readVarInt(this);
+				if (id >= classes.size())
+					throw new IOException("Corrupt sequence file: unknown class descriptor " + id);
+				return classes.get(id);
+			}
+		}
+	}
+
+	private static final class LegacyReader extends SequenceReader {
+		private ObjectInputStream in;
+
+		LegacyReader(Source source, InputStream in) throws IOException {
+			super(source);
+			reopen(in);
+		}
+
+		@Override
+		protected void reopen(InputStream in) throws IOException {
+			this.in = new ObjectInputStream(in);
+		}
+
+		@Override
+		public Taggable read() throws IOException, ClassNotFoundException {
+			try {
+				Taggable fragment = (Taggable) in.readObject();
+				position++;
+				return fragment;
+			} catch (EOFException e){
+				return null;
+			}
+		}
+
+		@Override
+		public boolean skip() throws IOException, ClassNotFoundException {
+			return read() != null;
+		}
+
+		@Override
+		public boolean isLegacyFormat(){
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,258 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package es.upv.staq.testar.serialisation;
+
+import static es.upv.staq.testar.serialisation.SequenceFormat.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.fruit.Assert;
+import org.fruit.alayer.Tag;
+import org.fruit.alayer.Taggable;
+
+/**
+ * Writes fragments in the binary sequence format.
+ *
+ * Instances are not thread-safe.
+ *
+ * @see SequenceFormat
+ */
+public class SequenceWriter implements Closeable, Flushable {
+
+	private final DataOutputStream out;
+	private final Deflater deflater;
+	private final Map<Tag<?>, Integer> tags = new HashMap<>();
+	private final Map<String, Integer> strings = new HashMap<>();
+	private final Map<ObjectStreamClass, Integer> classes = new HashMap<>();
+	private final Buffer payload = new Buffer();
+	private final DataOutputStream payloadData = new DataOutputStream(payload);
+	private byte[] compressed = new byte[0];
+	private int fragmentsWritten;
+
+	/**
+	 * Writes the header of a new sequence.
+	 * @param out the (buffered) stream of the sequence file
+	 * @param compress whether the fragments are deflate compressed
+	 */
+	public SequenceWriter(OutputStream out, boolean compress) throws IOException {
+		Assert.notNull(out);
+		this.out = new DataOutputStream(out);
+		this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+		this.out.write(MAGIC);
+		this.out.writeByte(VERSION);
+		this.out.writeByte(compress ? FLAG_DEFLATE : 0);
+	}
+
+	/**
+	 * Writes the tag values of <code>fragment</code>.
+	 * @throws IOException if the fragment cannot be written, e.g. because one of its values is not serialisable
+	 */
+	public void write(Taggable fragment) throws IOException {
+		Assert.notNull(fragment);
+		payload.reset();
+		List<Tag<?>> fragmentTags = new ArrayList<>();
+		for (Tag<?> tag : fragment.tags()){
+			if (fragment.get(tag, null) != null)
+				fragmentTags.add(tag);
+		}
+
+		// new dictionary entries are written to the file while the fragment is encoded
+		List<Object> objects = new ArrayList<>();
+		writeVarInt(payloadData, fragmentTags.size());
+		for (Tag<?> tag : fragmentTags){
+			writeVarInt(payloadData, tagId(tag));
+			writeValue(fragment.get(tag, null), objects);
+		}
+		writeVarInt(payloadData, objects.size());
+		if (!objects.isEmpty()){
+			ObjectOutputStream objectStream = new InterningOutputStream(payload);
+			objectStream.writeObject(objects.toArray());
+			objectStream.flush();
+		}
+
+		int length = payload.size();
+		byte[] bytes = payload.buffer();
+		int storedLength = length;
+		if (deflater != null){
+			deflater.reset();
+			deflater.setInput(bytes, 0, length);
+			deflater.finish();
+			storedLength = 0;
+			while (!deflater.finished()){
+				if (storedLength == compressed.length)
+					compressed = Arrays.copyOf(compressed, Math.max(4096, compressed.length * 2));
+				storedLength += deflater.deflate(compressed, storedLength, compressed.length - storedLength);
+			}
+			bytes = compressed;
+		}
+		out.writeByte(RECORD_FRAGMENT);
+		writeVarInt(out, length);
+		writeVarInt(out, storedLength);
+		out.write(bytes, 0, storedLength);
+		fragmentsWritten++;
+	}
+
+	private void writeValue(Object value, List<Object> objects) throws IOException {
+		if (value instanceof String){
+			int id = stringId((String) value);
+			if (id < 0){
+				payloadData.writeByte(VALUE_TEXT);
+				writeString(payloadData, (String) value);
+			} else {
+				payloadData.writeByte(VALUE_STRING);
+				writeVarInt(payloadData, id);
+			}
+		} else if (value instanceof Boolean){
+			payloadData.writeByte((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+		} else if (value instanceof Integer){
+			payloadData.writeByte(VALUE_INTEGER);
+			payloadData.writeInt((Integer) value);
+		} else if (value instanceof Long){
+			payloadData.writeByte(VALUE_LONG);
+			payloadData.writeLong((Long) value);
+		} else if (value instanceof Double){
+			payloadData.writeByte(VALUE_DOUBLE);
+			payloadData.writeDouble((Double) value);
+		} else if (value instanceof Float){
+			payloadData.writeByte(VALUE_FLOAT);
+			payloadData.writeFloat((Float) value);
+		} else {
+			payloadData.writeByte(VALUE_OBJECT);
+			writeVarInt(payloadData, objects.size());
+			objects.add(value);
+		}
+	}
+
+	private int tagId(Tag<?> tag) throws IOException {
+		Integer id = tags.get(tag);
+		if (id == null){
+			id = tags.size();
+			tags.put(tag, id);
+			out.writeByte(RECORD_TAG);
+			writeString(out, tag.name());
+			writeString(out, tag.type().getName());
+		}
+		return id;
+	}
+
+	/**
+	 * @return the dictionary id of <code>text</code>, or -1 if the dictionary is full
+	 */
+	private int stringId(String text) throws IOException {
+		Integer id = strings.get(text);
+		if (id == null){
+			if (strings.size() >= MAX_STRINGS)
+				return -1;
+			id = strings.size();
+			strings.put(text, id);
+			out.writeByte(RECORD_STRING);
+			writeString(out, text);
+		}
+		return id;
+	}
+
+	private int classId(ObjectStreamClass desc) throws IOException {
+		Integer id = classes.get(desc);
+		if (id == null){
+			id = classes.size();
+			classes.put(desc, id);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			try (ObjectOutputStream descStream = new ObjectOutputStream(bytes)){
+				descStream.writeObject(desc);
+			}
+			out.writeByte(RECORD_CLASS);
+			writeVarInt(out, bytes.size());
+			bytes.writeTo(out);
+		}
+		return id;
+	}
+
+	/**
+	 * @return number of fragments written so far
+	 */
+	public int fragmentsWritten(){
+		return fragmentsWritten;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (deflater != null)
+			deflater.end();
+		out.close();
+	}
+
+	private static final class Buffer extends ByteArrayOutputStream {
+		Buffer(){ super(8192); }
+		byte[] buffer(){ return buf; }
+	}
+
+	private final class InterningOutputStream extends ObjectOutputStream {
+		InterningOutputStream(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof String && ((String) obj).length() >= MIN_INTERNED_LENGTH){
+				int id = stringId((String) obj);
+				if (id >= 0)
+					return new StringRef(id);
+			}
+			return obj;
+		}
+
+		@Override
+		protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+			writeVarInt(this, classId(desc));
+		}
+	}
+
+}
@@ -32,35 +32,89 @@
 package es.upv.staq.testar.serialisation;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.util.LinkedList;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.fruit.Assert;
 import org.fruit.alayer.TaggableBase;
 
+import com.google.common.io.CountingOutputStream;
+
 import es.upv.staq.testar.serialisation.LogSerialiser.LogLevel;
 
 /**
  * Tests serialiser..
+ *
+ * Fragments are handed to the serialiser thread through a bounded queue. The thread blocks until
+ * fragments are available and writes everything that is queued at that moment as one batch, followed
+ * by a single flush. When the queue is full, <code>write</code> blocks until there is room again
+ * (back-pressure), so a slow disk cannot make the queue grow without bounds. It stops waiting when
+ * the serialiser thread is no longer running.
+ *
+ * The fragments are written in the binary sequence format, see <code>SequenceFormat</code>.
  */
 public class TestSerialiser extends Thread {
 
-	private static ObjectOutputStream test;
-	private static int fragmentTimes;
-	private static final int FLUSH_INTERVAL = 16;
-	private static LinkedList<TaggableBase> testSavingQueue =  new LinkedList<>();
+	private static SequenceWriter test;
+	private static CountingOutputStream testBytes;
+	private static final int QUEUE_CAPACITY = 64;
+	private static final int BATCH_SIZE = 16;
+	private static final BlockingQueue<QueuedFragment> testSavingQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	// queued after the last fragment to wake up the serialiser thread when it has to finish
+	private static final QueuedFragment END = new QueuedFragment(null);
+	// how long to wait for room in the queue before checking that the serialiser thread is still running
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
 	private static final int QUEUE_LIMIT = 16;
-	private static TestSerialiser singletonTestSerialiser;
-	private static boolean alive;
+	private static volatile TestSerialiser singletonTestSerialiser;
+	private static volatile boolean alive;
 	private static boolean queueBoost;
 
+	// metrics of the current sequence
+	private static final AtomicLong fragmentsWritten = new AtomicLong();
+	private static final AtomicLong totalLatencyNanos = new AtomicLong();
+	private static final AtomicLong maxLatencyNanos = new AtomicLong();
+	private static volatile int maxQueueLength;
+	private static volatile long startTime;
+
+	private static class QueuedFragment {
+		final TaggableBase fragment;
+		final long queuedAt = System.nanoTime();
+		QueuedFragment(TaggableBase fragment){ this.fragment = fragment; }
+	}
+
 	private TestSerialiser(){}
 
-	public static void start(ObjectOutputStream test){
+	/**
+	 * Starts serialising deflate compressed fragments to <code>out</code>, counting the written bytes.
+	 * @param out the (buffered) stream of the sequence file
+	 * @throws IOException if the sequence header cannot be written
+	 */
+	public static void start(OutputStream out) throws IOException {
+		start(out, true);
+	}
+
+	/**
+	 * Starts serialising fragments to <code>out</code>, counting the written bytes.
+	 * @param out the (buffered) stream of the sequence file
+	 * @param compress whether the fragments are deflate compressed
+	 * @throws IOException if the sequence header cannot be written
+	 */
+	public static void start(OutputStream out, boolean compress) throws IOException {
 		Assert.isTrue(!alive);
 		Assert.isTrue(testSavingQueue.isEmpty());
-		TestSerialiser.test = test;
-		fragmentTimes = 0;
+		CountingOutputStream bytes = new CountingOutputStream(out);
+		TestSerialiser.test = new SequenceWriter(bytes, compress);
+		TestSerialiser.testBytes = bytes;
+		fragmentsWritten.set(0);
+		totalLatencyNanos.set(0);
+		maxLatencyNanos.set(0);
+		maxQueueLength = 0;
+		startTime = System.nanoTime();
 		alive = true; queueBoost = false;
 		singletonTestSerialiser = new TestSerialiser();
 		singletonTestSerialiser.setPriority(Thread.MIN_PRIORITY);
@@ -68,36 +122,58 @@ public class TestSerialiser extends Thread {
 	}
 
 	public static void finish(){
-		alive = false;
+		if (alive){
+			alive = false;
+			// the serialiser thread keeps consuming until it sees the marker, so this only waits for room in the queue
+			try {
+				enqueue(END);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
 	public static boolean isSavingQueueEmpty() {
-		if(testSavingQueue.isEmpty())
-			return true;
-		return false;
+		return testSavingQueue.isEmpty();
 	}
 
 	@Override
 	public void run(){
-		while (alive || !testSavingQueue.isEmpty()){
-			while(alive && testSavingQueue.isEmpty()){
-				try {
-					Thread.sleep(1000); // 1 second
-				} catch (InterruptedException e1) {}
+		List<QueuedFragment> batch = new ArrayList<>(BATCH_SIZE);
+		boolean finished = false;
+		while (!finished){
+			try {
+				batch.add(testSavingQueue.take());
+			} catch (InterruptedException e) {
+				continue;
+			}
+			testSavingQueue.drainTo(batch, BATCH_SIZE - 1);
+			adjustPriority();
+			for (QueuedFragment queued : batch){
+				if (queued == END){
+					finished = true;
+				} else {
+					writethis(queued.fragment);
+					recordLatency(queued);
+				}
+			}
+			batch.clear();
+			if (finished){
+				// fragments queued concurrently with finish()
+				QueuedFragment queued;
+				while ((queued = testSavingQueue.poll()) != null){
+					if (queued != END){
+						writethis(queued.fragment);
+						recordLatency(queued);
+					}
+				}
 			}
-			if (!testSavingQueue.isEmpty()){
-				if (!queueBoost && testSavingQueue.size() > QUEUE_LIMIT){
-					this.setPriority(NORM_PRIORITY);
-					queueBoost = true;
-				} else if (queueBoost && testSavingQueue.size() < QUEUE_LIMIT/2){
-					this.setPriority(MIN_PRIORITY);
-					queueBoost = false;
-				}				
-				TaggableBase fragment;
-				synchronized(testSavingQueue){
-					fragment = testSavingQueue.removeFirst();
+			if (testSavingQueue.isEmpty()){
+				try {
+					test.flush();
+				} catch (IOException e) {
+					LogSerialiser.log("TestSerialiser - flushing exception: " + e.getMessage(), LogLevel.Critical);
 				}
-				writethis(fragment);
 			}
 		}
 		try {
@@ -112,55 +188,79 @@ public class TestSerialiser extends Thread {
 				LogSerialiser.log("I/O exception closing serialisation of test file!\n", LogSerialiser.LogLevel.Critical);				
 			}
 		}
-		synchronized(test){
-			//System.out.println("TestSerialiser finished");
-			singletonTestSerialiser = null;
-			test.notifyAll();
+		LogSerialiser.log("TestSerialiser - " + statistics() + "\n", LogLevel.Debug);
+		singletonTestSerialiser = null;
+	}
+
+	private void adjustPriority(){
+		int size = testSavingQueue.size();
+		if (!queueBoost && size > QUEUE_LIMIT){
+			this.setPriority(NORM_PRIORITY);
+			queueBoost = true;
+		} else if (queueBoost && size < QUEUE_LIMIT/2){
+			this.setPriority(MIN_PRIORITY);
+			queueBoost = false;
 		}
 	}
 
+	private static void recordLatency(QueuedFragment queued){
+		long latency = System.nanoTime() - queued.queuedAt;
+		fragmentsWritten.incrementAndGet();
+		totalLatencyNanos.addAndGet(latency);
+		maxLatencyNanos.accumulateAndGet(latency, Math::max);
+	}
+
+	/**
+	 * Queues a fragment for serialisation. Blocks while the queue is full and the serialiser thread is running.
+	 * @param fragment the fragment
+	 */
 	public static void write(TaggableBase fragment){
 		if (alive){
-			synchronized(testSavingQueue){
-				testSavingQueue.add(fragment);
+			try {
+				if (!enqueue(new QueuedFragment(fragment))){
+					LogSerialiser.log("TestSerialiser - serialiser thread stopped, fragment dropped\n", LogLevel.Critical);
+					return;
+				}
+			} catch (InterruptedException e) {
+				LogSerialiser.log("TestSerialiser - interrupted queueing fragment\n", LogLevel.Critical);
+				Thread.currentThread().interrupt();
+				return;
 			}
+			int size = testSavingQueue.size();
+			if (size > maxQueueLength)
+				maxQueueLength = size;
 		}
 	}
 
+	// waits for room in the queue while the serialiser thread is running, returns false if it is not
+	private static boolean enqueue(QueuedFragment queued) throws InterruptedException {
+		TestSerialiser serialiser = singletonTestSerialiser;
+		while (serialiser != null && serialiser.isAlive()){
+			if (testSavingQueue.offer(queued, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+				return true;
+		}
+		return false;
+	}
+
 	private static void writethis(TaggableBase fragment){
 		Assert.notNull(fragment);
 		try {
-			test.writeObject(fragment);
+			test.write(fragment);
 		} catch (IOException e) {
 			LogSerialiser.log("TestSerialiser - exception writing fragment: " + e.getMessage(), LogLevel.Critical);
 		}
-		fragmentTimes++;
-		if (fragmentTimes >= FLUSH_INTERVAL){
-			fragmentTimes = 0;
-			try {
-				test.flush();
-				test.reset();
-			} catch (IOException e) {
-				LogSerialiser.log("TestSerialiser - flushing exception: " + e.getMessage(),LogLevel.Critical);
-			}
-		}
 	}
 
 	public static void exit(){
-		if (singletonTestSerialiser != null){
+		TestSerialiser serialiser = singletonTestSerialiser;
+		if (serialiser != null){
 			TestSerialiser.finish();
 			try {
-				synchronized(test){
-					while (singletonTestSerialiser != null){
-						try {
-							test.wait();
-						} catch (InterruptedException e) {
-							System.out.println("TestSerialiser exit interrupted");
-						}
-					}
-				}
-			} catch (Exception e) {} // test may be set to null when we try to sync on it		
-			//System.out.println("TestSerialisationManager exited");
+				serialiser.join();
+			} catch (InterruptedException e) {
+				System.out.println("TestSerialiser exit interrupted");
+				Thread.currentThread().interrupt();
+			}
 			test = null;
 		}
 	}
@@ -169,4 +269,53 @@ public class TestSerialiser extends Thread {
 		return testSavingQueue.size();
 	}
 
+	/**
+	 * @return the maximum queue length of the current (or last) sequence
+	 */
+	public static int maxQueueLength(){
+		return maxQueueLength;
+	}
+
+	/**
+	 * @return number of fragments written in the current (or last) sequence
+	 */
+	public static long fragmentsWritten(){
+		return fragmentsWritten.get();
+	}
+
+	/**
+	 * @return number of bytes written in the current (or last) sequence, or -1 if unknown
+	 */
+	public static long bytesWritten(){
+		CountingOutputStream bytes = testBytes;
+		return bytes == null ? -1 : bytes.getCount();
+	}
+
+	/**
+	 * @return average time in milliseconds between queueing and writing a fragment
+	 */
+	public static double averageLatencyMillis(){
+		long fragments = fragmentsWritten.get();
+		return fragments == 0 ? 0 : totalLatencyNanos.get() / (fragments * 1e6);
+	}
+
+	/**
+	 * @return maximum time in milliseconds between queueing and writing a fragment
+	 */
+	public static double maxLatencyMillis(){
+		return maxLatencyNanos.get() / 1e6;
+	}
+
+	/**
+	 * @return the metrics of the current (or last) sequence as text
+	 */
+	public static String statistics(){
+		double seconds = Math.max(1e-9, (System.nanoTime() - startTime) / 1e9);
+		long bytes = bytesWritten();
+		return String.format("%d fragments, %s, queue length %d (max %d), latency avg %.1f ms max %.1f ms",
+				fragmentsWritten(),
+				bytes < 0 ? "unknown bytes" : String.format("%d bytes (%.0f bytes/s)", bytes, bytes / seconds),
+				queueLength(), maxQueueLength(), averageLatencyMillis(), maxLatencyMillis());
+	}
+
 }
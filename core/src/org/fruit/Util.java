@@ -437,53 +437,17 @@ public final class Util {
   }
 
   public static Widget widgetFromPoint(State state, double x, double y, Widget defaultValue) {
-    Assert.notNull(state);
-    List<Widget> candidates = new ArrayList<Widget>(widgetsFromPoint(state, x, y));
-    if (candidates.isEmpty()) {
-      return defaultValue;
-    }
-
-    Comparator<Widget> comp = new Comparator<Widget>() {
-      final static int WORSE = -1, BETTER = 1, EVEN = 0;
-
-      public int compare(Widget w1, Widget w2) {
-        Shape s1 = w1.get(Tags.Shape, null);
-        Shape s2 = w2.get(Tags.Shape, null);
-        double a1 = s1 == null ? -1 : Util.area(s1);
-        double a2 = s2 == null ? -1 : Util.area(s2);
-        return a1 < a2 ? WORSE : (a1 > a2 ? BETTER : EVEN);
-      }
-    };
-
-    candidates.sort(comp);
-    return candidates.get(0);
+    Widget ret = SpatialIndex.of(state).widgetAt(x, y);
+    return ret == null ? defaultValue : ret;
   }
 
   public static Set<Widget> widgetsFromPoint(State state, double x, double y) {
-    Set<Widget> ret = new HashSet<Widget>();
-    for (Widget w : Assert.notNull(state)) {
-      if (w.get(Tags.HitTester, Util.FalseTester).apply(x, y)) {
-        ret.add(w);
-      }
-    }
-    return ret;
+    return new LinkedHashSet<Widget>(SpatialIndex.of(state).widgetsAt(x, y));
   }
 
   public static Set<Widget> widgetsFromArea(State state, Rect area) {
-    Assert.notNull(state);
-    Set<Widget> ret = new HashSet<Widget>();
-    Shape shape;
-    Rect rect;
-    for (Widget w : state) {
-      shape = w.get(Tags.Shape);
-      if (shape != null) {
-        rect = Rect.from(shape.x(), shape.y(), shape.width(), shape.height());
-        if (Rect.intersect(rect, area)) {
-          ret.add(w);
-        }
-      }
-    }
-    return ret;
+    Assert.notNull(area);
+    return new LinkedHashSet<Widget>(SpatialIndex.of(state).widgetsIn(area));
   }
 
   public static boolean isAncestorOf(Widget ancestor, Widget of) {
@@ -0,0 +1,243 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package org.fruit.alayer;
+
+import java.util.Arrays;
+
+import org.fruit.Assert;
+
+/**
+ * A static R-tree of rectangles that is packed in one pass: the rectangles are sorted along a Hilbert curve through
+ * their centers and every node groups the next NODE_SIZE nodes of the level below. The nodes are kept in primitive
+ * arrays. The rectangles are numbered in the order in which they were added, and the queries return these numbers.
+ * The rectangles are closed, like <code>Rect.contains</code> and <code>Rect.intersect</code>.
+ */
+public final class PackedRTree {
+
+    private static final int NODE_SIZE = 16;
+
+    private static final int HILBERT_MAX = (1 << 16) - 1;
+
+    private final int size;
+
+    // minX, minY, maxX, maxY of the items (in Hilbert order) followed by the nodes of every level above them
+    private final double[] boxes;
+
+    // for an item its number, for a node the position of its first child in boxes / 4
+    private final int[] indices;
+
+    // the end of every level in boxes / 4
+    private final int[] levelEnds;
+
+    public interface Visitor {
+        /**
+         * @param item the number of a rectangle that matches the query
+         * @return false to stop the query
+         */
+        boolean visit(int item);
+    }
+
+    /**
+     * Builds the tree.
+     * @param minX the left side of every rectangle
+     * @param minY the top side of every rectangle
+     * @param maxX the right side of every rectangle
+     * @param maxY the bottom side of every rectangle
+     */
+    public PackedRTree(double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        size = minX.length;
+        Assert.isTrue(size < 1 << 24, "Too many rectangles: " + size);
+
+        int nodes = size;
+        int[] ends = new int[32];
+        int levels = 0;
+        ends[levels++] = nodes;
+        for (int n = size; n > 1; ) {
+            n = (n + NODE_SIZE - 1) / NODE_SIZE;
+            nodes += n;
+            ends[levels++] = nodes;
+        }
+        levelEnds = Arrays.copyOf(ends, levels);
+        boxes = new double[nodes * 4];
+        indices = new int[nodes];
+        if (size == 0) {
+            return;
+        }
+
+        // sort the rectangles by the Hilbert value of their centers, the number is kept in the low bits
+        double left = Double.POSITIVE_INFINITY, top = Double.POSITIVE_INFINITY;
+        double right = Double.NEGATIVE_INFINITY, bottom = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            left = Math.min(left, minX[i]);
+            top = Math.min(top, minY[i]);
+            right = Math.max(right, maxX[i]);
+            bottom = Math.max(bottom, maxY[i]);
+        }
+        double scaleX = right > left ? HILBERT_MAX / (right - left) : 0;
+        double scaleY = bottom > top ? HILBERT_MAX / (bottom - top) : 0;
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            int x = (int) (((minX[i] + maxX[i]) / 2 - left) * scaleX);
+            int y = (int) (((minY[i] + maxY[i]) / 2 - top) * scaleY);
+            keys[i] = hilbert(x, y) << 24 | i;
+        }
+        Arrays.sort(keys);
+
+        for (int position = 0; position < size; position++) {
+            int item = (int) (keys[position] & 0xFFFFFF);
+            boxes[4 * position] = minX[item];
+            boxes[4 * position + 1] = minY[item];
+            boxes[4 * position + 2] = maxX[item];
+            boxes[4 * position + 3] = maxY[item];
+            indices[position] = item;
+        }
+
+        // every node covers the next NODE_SIZE nodes of the level below
+        int node = size;
+        for (int level = 0; level < levelEnds.length - 1; level++) {
+            int start = level == 0 ? 0 : levelEnds[level - 1];
+            for (int child = start; child < levelEnds[level]; child += NODE_SIZE) {
+                int end = Math.min(child + NODE_SIZE, levelEnds[level]);
+                double nodeMinX = Double.POSITIVE_INFINITY, nodeMinY = Double.POSITIVE_INFINITY;
+                double nodeMaxX = Double.NEGATIVE_INFINITY, nodeMaxY = Double.NEGATIVE_INFINITY;
+                for (int c = child; c < end; c++) {
+                    nodeMinX = Math.min(nodeMinX, boxes[4 * c]);
+                    nodeMinY = Math.min(nodeMinY, boxes[4 * c + 1]);
+                    nodeMaxX = Math.max(nodeMaxX, boxes[4 * c + 2]);
+                    nodeMaxY = Math.max(nodeMaxY, boxes[4 * c + 3]);
+                }
+                boxes[4 * node] = nodeMinX;
+                boxes[4 * node + 1] = nodeMinY;
+                boxes[4 * node + 2] = nodeMaxX;
+                boxes[4 * node + 3] = nodeMaxY;
+                indices[node] = child;
+                node++;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Visits the rectangles that intersect an area, in no particular order.
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param visitor
+     */
+    public void search(double minX, double minY, double maxX, double maxY, Visitor visitor) {
+        if (size == 0) {
+            return;
+        }
+        if (levelEnds.length == 1) {
+            // a single rectangle, without nodes
+            if (intersects(0, minX, minY, maxX, maxY)) {
+                visitor.visit(indices[0]);
+            }
+            return;
+        }
+
+        // the stack holds the nodes that still have to be searched and their levels, starting with the root
+        int[] stack = new int[4 * NODE_SIZE * levelEnds.length];
+        int top = 0;
+        stack[top++] = levelEnds[levelEnds.length - 1] - 1;
+        stack[top++] = levelEnds.length - 1;
+        while (top > 0) {
+            int level = stack[--top];
+            int node = stack[--top];
+            int start = indices[node];
+            int end = Math.min(start + NODE_SIZE, levelEnds[level - 1]);
+            for (int child = start; child < end; child++) {
+                if (!intersects(child, minX, minY, maxX, maxY)) {
+                    continue;
+                }
+                if (level == 1) {
+                    if (!visitor.visit(indices[child])) {
+                        return;
+                    }
+                }
+                else {
+                    if (top + 2 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = child;
+                    stack[top++] = level - 1;
+                }
+            }
+        }
+    }
+
+    private boolean intersects(int box, double minX, double minY, double maxX, double maxY) {
+        return boxes[4 * box] <= maxX && boxes[4 * box + 1] <= maxY &&
+                boxes[4 * box + 2] >= minX && boxes[4 * box + 3] >= minY;
+    }
+
+    /**
+     * Visits the rectangles that contain a point, in no particular order.
+     * @param x
+     * @param y
+     * @param visitor
+     */
+    public void search(double x, double y, Visitor visitor) {
+        search(x, y, x, y, visitor);
+    }
+
+    /**
+     * Helper method that computes the distance of a point along a Hilbert curve through a 2^16 by 2^16 grid.
+     * @param x
+     * @param y
+     * @return
+     */
+    private static long hilbert(int x, int y) {
+        long distance = 0;
+        for (int s = 1 << 15; s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            distance += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = HILBERT_MAX - x;
+                    y = HILBERT_MAX - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return distance;
+    }
+
+}
@@ -0,0 +1,273 @@
+/***************************************************************************************************
+ *
+ * Copyright (c) 2016, 2017, 2019 Universitat Politecnica de Valencia - www.upv.es
+ * Copyright (c) 2019 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *******************************************************************************************************/
+
+
+package org.fruit.alayer;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.fruit.Assert;
+import org.fruit.Util;
+
+/**
+ * A spatial index over the shapes of the widgets of a state, to find the widgets at a point or in an area without
+ * testing every widget. The candidates are found with a packed R-tree over the bounds of the shapes, and only the
+ * candidates are hit tested. This relies on hit testers that only accept points inside the shape of their widget,
+ * see ShapeBoundHitTester. Widgets without a shape or with another hit tester are always hit tested.
+ * The index reflects the widgets and shapes of the state at the time it was built.
+ */
+public final class SpatialIndex {
+
+    // the index of the last state that was queried, most queries are about the current state. The index refers to
+    // the widgets and the widgets to their state, so both are only weakly reachable, not to keep the state alive
+    private static WeakReference<Cached> last = new WeakReference<>(null);
+
+    // the widgets with a shape, in tree order, and the tree over their shapes
+    private final Widget[] widgets;
+    private final double[] areas;
+    private final PackedRTree tree;
+
+    // the widgets with a shape whose hit tester may accept points outside the shape, in tree order
+    private final int[] scanned;
+
+    // the widgets without a shape
+    private final List<Widget> unshaped = new ArrayList<>();
+
+    /**
+     * Returns the spatial index of a state, which is built when the state is queried for the first time. The index
+     * is kept for the next queries about the same state, so after the widgets or shapes of a state have changed,
+     * the index has to be invalidated.
+     * @param state
+     * @return
+     */
+    public static synchronized SpatialIndex of(State state) {
+        Assert.notNull(state);
+        Cached cached = last.get();
+        if (cached == null || cached.state != state) {
+            cached = new Cached(state, new SpatialIndex(state));
+            last = new WeakReference<>(cached);
+        }
+        return cached.index;
+    }
+
+    /**
+     * Forgets the spatial index of a state, so that the next query builds it again from the current widgets and
+     * shapes of the state.
+     * @param state
+     */
+    public static synchronized void invalidate(State state) {
+        Cached cached = last.get();
+        if (cached != null && cached.state == state) {
+            last.clear();
+        }
+    }
+
+    /**
+     * Builds the index of a number of widgets, such as all the widgets of a state.
+     * @param widgets
+     */
+    public SpatialIndex(Iterable<Widget> widgets) {
+        Assert.notNull(widgets);
+        List<Widget> shaped = new ArrayList<>();
+        List<Shape> shapes = new ArrayList<>();
+        List<Integer> unbound = new ArrayList<>();
+        for (Widget widget : widgets) {
+            Shape shape = widget.get(Tags.Shape, null);
+            if (shape == null) {
+                unshaped.add(widget);
+            }
+            else {
+                HitTester hitTester = widget.get(Tags.HitTester, null);
+                if (hitTester != null && !(hitTester instanceof ShapeBoundHitTester)) {
+                    unbound.add(shaped.size());
+                }
+                shaped.add(widget);
+                shapes.add(shape);
+            }
+        }
+        scanned = new int[unbound.size()];
+        for (int i = 0; i < scanned.length; i++) {
+            scanned[i] = unbound.get(i);
+        }
+
+        int size = shaped.size();
+        this.widgets = shaped.toArray(new Widget[size]);
+        areas = new double[size];
+        double[] minX = new double[size], minY = new double[size], maxX = new double[size], maxY = new double[size];
+        for (int i = 0; i < size; i++) {
+            Shape shape = shapes.get(i);
+            minX[i] = shape.x();
+            minY[i] = shape.y();
+            maxX[i] = shape.x() + shape.width();
+            maxY[i] = shape.y() + shape.height();
+            areas[i] = Util.area(shape);
+        }
+        tree = new PackedRTree(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Returns the widgets whose hit tester accepts a point, in tree order.
+     * @param x
+     * @param y
+     * @return
+     */
+    public List<Widget> widgetsAt(double x, double y) {
+        List<Widget> result = new ArrayList<>();
+        for (Widget widget : unshaped) {
+            if (widget.get(Tags.HitTester, Util.FalseTester).apply(x, y)) {
+                result.add(widget);
+            }
+        }
+        for (int item : candidates(x, y)) {
+            if (widgets[item].get(Tags.HitTester, Util.FalseTester).apply(x, y)) {
+                result.add(widgets[item]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the widget with the smallest shape whose hit tester accepts a point. A widget without a shape comes
+     * first, and of widgets with the same area the first one in tree order.
+     * @param x
+     * @param y
+     * @return the widget, or null if there is no widget at the point
+     */
+    public Widget widgetAt(double x, double y) {
+        for (Widget widget : unshaped) {
+            if (widget.get(Tags.HitTester, Util.FalseTester).apply(x, y)) {
+                return widget;
+            }
+        }
+        Widget result = null;
+        double resultArea = Double.POSITIVE_INFINITY;
+        for (int item : candidates(x, y)) {
+            if ((result == null || areas[item] < resultArea) &&
+                    widgets[item].get(Tags.HitTester, Util.FalseTester).apply(x, y)) {
+                result = widgets[item];
+                resultArea = areas[item];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the widgets whose shape intersects an area, in tree order.
+     * @param area
+     * @return
+     */
+    public List<Widget> widgetsIn(Rect area) {
+        Assert.notNull(area);
+        List<Widget> result = new ArrayList<>();
+        for (int item : candidates(area.x(), area.y(), area.x() + area.width(), area.y() + area.height())) {
+            result.add(widgets[item]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of widgets in the index.
+     * @return
+     */
+    public int size() {
+        return widgets.length + unshaped.size();
+    }
+
+    /**
+     * Helper method that returns the widgets that have to be hit tested at a point, in tree order: the widgets whose
+     * bounds contain the point and the widgets whose hit tester is not bound to their shape.
+     */
+    private int[] candidates(double x, double y) {
+        int[] items = candidates(x, y, x, y);
+        if (scanned.length == 0) {
+            return items;
+        }
+        int[] merged = new int[items.length + scanned.length];
+        int count = 0, i = 0, j = 0;
+        while (i < items.length || j < scanned.length) {
+            int item;
+            if (j == scanned.length || (i < items.length && items[i] < scanned[j])) {
+                item = items[i++];
+            }
+            else if (i == items.length || scanned[j] < items[i]) {
+                item = scanned[j++];
+            }
+            else {
+                item = items[i++];
+                j++;
+            }
+            merged[count++] = item;
+        }
+        return Arrays.copyOf(merged, count);
+    }
+
+    /**
+     * Helper method that returns the widgets whose bounds intersect an area, in tree order.
+     */
+    private int[] candidates(double minX, double minY, double maxX, double maxY) {
+        Candidates candidates = new Candidates();
+        tree.search(minX, minY, maxX, maxY, candidates);
+        int[] items = Arrays.copyOf(candidates.items, candidates.count);
+        Arrays.sort(items);
+        return items;
+    }
+
+    private static class Cached {
+
+        private final State state;
+
+        private final SpatialIndex index;
+
+        private Cached(State state, SpatialIndex index) {
+            this.state = state;
+            this.index = index;
+        }
+    }
+
+    private static class Candidates implements PackedRTree.Visitor {
+
+        private int[] items = new int[8];
+
+        private int count = 0;
+
+        @Override
+        public boolean visit(int item) {
+            if (count == items.length) {
+                items = Arrays.copyOf(items, count * 2);
+            }
+            items[count++] = item;
+            return true;
+        }
+    }
+
+}
@@ -49,6 +49,8 @@ import org.fruit.Util;
 public final class Tag<T> implements Serializable{
 	private final static ConcurrentHashMap<Tag<?>, Tag<?>> existingTags = new ConcurrentHashMap<Tag<?>, Tag<?>>();
 
+	private static int nrOfOrdinals = 0;
+
 	/**
 	 * Returns a tag object which is identified by <code>name</code> and <code>valueType</code>. 
 	 * @param name The name of the tag
@@ -69,6 +71,7 @@ public final class Tag<T> implements Serializable{
 	private final Class<T> clazz;
 	private final String name;
 	private int hashcode;
+	private transient volatile int slot; // ordinal + 1, 0 = not yet assigned
 
 	private Tag(String name, Class<T> clazz){
 		this.clazz = clazz;
@@ -117,6 +120,27 @@ public final class Tag<T> implements Serializable{
 		return existing == null ? this : existing;
 	}
 	
+	/**
+	 * Dense, process-wide ordinal of this (interned) tag. Ordinals are handed out in the order in which
+	 * tags are first used as keys, starting at 0, and never change during the lifetime of the JVM.
+	 * <code>TagSlots</code> maps them to the slots of each class of taggables.
+	 * They are not serialised: a deserialised tag resolves to the interned instance and thus to its ordinal.
+	 * @return the ordinal of this tag
+	 */
+	int ordinal(){
+		int s = slot;
+		if(s == 0)
+			s = assignOrdinal(this);
+		return s - 1;
+	}
+
+	private static synchronized int assignOrdinal(Tag<?> tag){
+		if(tag.slot != 0)
+			return tag.slot;
+		tag.slot = ++nrOfOrdinals;
+		return tag.slot;
+	}
+
 	// by urueda
 	public boolean isOneOf(Tag<?>... oneOf){
 		Assert.notNull(this, oneOf);
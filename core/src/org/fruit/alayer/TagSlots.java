@@ -0,0 +1,216 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+
+package org.fruit.alayer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact tag/value storage used by <code>TaggableBase</code>. Every class of taggables has its own
+ * <code>Layout</code>, which numbers the tags in the order in which instances of that class first use them.
+ * Values are kept in an array indexed by that slot, so that a class only pays for the tags it uses: the many
+ * tags of the settings do not widen the arrays of the widgets. Tags whose slot exceeds <code>DENSE_LIMIT</code>
+ * go to a small open addressing table keyed by the primitive slot, so that neither boxing nor map entries are needed.
+ *
+ * The store distinguishes between tags that are unknown and tags that are known to have no value
+ * (fetched as <code>null</code> or removed). The latter are stored as <code>NULL</code>.
+ */
+final class TagSlots {
+
+	static final int DENSE_LIMIT = 256;
+	static final Object NULL = new Object();
+
+	private static final Object[] EMPTY = new Object[0];
+	private static final int MIN_DENSE = 16;
+
+	private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>(){
+		protected Layout computeValue(Class<?> type){ return new Layout(); }
+	};
+
+	private final Layout layout;
+	private Object[] dense = EMPTY;
+	private int[] sparseKeys; // slot + 1, 0 = free
+	private Object[] sparseValues;
+	private int sparseSize;
+
+	/**
+	 * The slots of the tags that are used by the instances of one class. Slots are handed out on first use
+	 * and never change. The arrays are replaced rather than modified, so that lookups need no locking.
+	 */
+	static final class Layout {
+		private volatile int[] slots = new int[0]; // slot + 1 by tag ordinal, 0 = not yet assigned
+		private volatile Tag<?>[] tags = new Tag<?>[0]; // tag by slot
+
+		int slot(Tag<?> tag){
+			int ordinal = tag.ordinal();
+			int[] s = slots;
+			if(ordinal < s.length && s[ordinal] != 0)
+				return s[ordinal] - 1;
+			return assign(tag, ordinal);
+		}
+
+		Tag<?> tag(int slot){
+			return tags[slot];
+		}
+
+		private synchronized int assign(Tag<?> tag, int ordinal){
+			int[] s = slots;
+			if(ordinal < s.length && s[ordinal] != 0)
+				return s[ordinal] - 1;
+			int slot = tags.length;
+			Tag<?>[] t = Arrays.copyOf(tags, slot + 1);
+			t[slot] = tag;
+			tags = t;
+			s = Arrays.copyOf(s, Math.max(s.length, ordinal + 1));
+			s[ordinal] = slot + 1;
+			slots = s;
+			return slot;
+		}
+	}
+
+	/**
+	 * @param type the class of the taggable, which determines the layout of the slots
+	 */
+	TagSlots(Class<?> type){
+		layout = layout(type);
+	}
+
+	static Layout layout(Class<?> type){
+		return LAYOUTS.get(type);
+	}
+
+	/**
+	 * @param tag the tag to look up
+	 * @return <code>null</code> if the tag is unknown, <code>NULL</code> if it is known to have no value, the value otherwise
+	 */
+	Object lookup(Tag<?> tag){
+		int slot = layout.slot(tag);
+		if(slot < DENSE_LIMIT)
+			return slot < dense.length ? dense[slot] : null;
+		if(sparseKeys == null)
+			return null;
+		int idx = indexOf(sparseKeys, slot + 1);
+		return sparseKeys[idx] == 0 ? null : sparseValues[idx];
+	}
+
+	void put(Tag<?> tag, Object value){
+		Object stored = value == null ? NULL : value;
+		int slot = layout.slot(tag);
+		if(slot < DENSE_LIMIT){
+			if(slot >= dense.length){
+				int length = Math.max(MIN_DENSE, dense.length);
+				while(length <= slot)
+					length <<= 1;
+				dense = Arrays.copyOf(dense, Math.min(length, DENSE_LIMIT));
+			}
+			dense[slot] = stored;
+			return;
+		}
+
+		if(sparseKeys == null){
+			sparseKeys = new int[8];
+			sparseValues = new Object[8];
+		}
+		int idx = indexOf(sparseKeys, slot + 1);
+		if(sparseKeys[idx] == 0){
+			if((sparseSize + 1) * 2 > sparseKeys.length){
+				growSparse();
+				idx = indexOf(sparseKeys, slot + 1);
+			}
+			sparseKeys[idx] = slot + 1;
+			sparseSize++;
+		}
+		sparseValues[idx] = stored;
+	}
+
+	/**
+	 * @return the tags which currently have a (non-<code>null</code>) value
+	 */
+	Set<Tag<?>> tagsWithValues(){
+		Set<Tag<?>> ret = new HashSet<Tag<?>>();
+		for(int i = 0; i < dense.length; i++){
+			if(dense[i] != null && dense[i] != NULL)
+				ret.add(layout.tag(i));
+		}
+		if(sparseKeys != null){
+			for(int i = 0; i < sparseKeys.length; i++){
+				if(sparseKeys[i] != 0 && sparseValues[i] != NULL)
+					ret.add(layout.tag(sparseKeys[i] - 1));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return all known tags, mapped to their value or <code>null</code> (the former <code>TaggableBase</code> layout)
+	 */
+	Map<Tag<?>, Object> toMap(){
+		Map<Tag<?>, Object> ret = new HashMap<Tag<?>, Object>();
+		for(int i = 0; i < dense.length; i++){
+			if(dense[i] != null)
+				ret.put(layout.tag(i), dense[i] == NULL ? null : dense[i]);
+		}
+		if(sparseKeys != null){
+			for(int i = 0; i < sparseKeys.length; i++){
+				if(sparseKeys[i] != 0)
+					ret.put(layout.tag(sparseKeys[i] - 1), sparseValues[i] == NULL ? null : sparseValues[i]);
+			}
+		}
+		return ret;
+	}
+
+	private void growSparse(){
+		int[] oldKeys = sparseKeys;
+		Object[] oldValues = sparseValues;
+		sparseKeys = new int[oldKeys.length * 2];
+		sparseValues = new Object[oldKeys.length * 2];
+		for(int i = 0; i < oldKeys.length; i++){
+			if(oldKeys[i] != 0){
+				int idx = indexOf(sparseKeys, oldKeys[i]);
+				sparseKeys[idx] = oldKeys[i];
+				sparseValues[idx] = oldValues[i];
+			}
+		}
+	}
+
+	// linear probing, returns the slot holding key or the first free slot
+	private static int indexOf(int[] keys, int key){
+		int mask = keys.length - 1;
+		int h = key * 0x9E3779B9;
+		int idx = (h ^ (h >>> 16)) & mask;
+		while(keys[idx] != 0 && keys[idx] != key)
+			idx = (idx + 1) & mask;
+		return idx;
+	}
+}
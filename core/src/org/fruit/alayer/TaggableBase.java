@@ -33,20 +33,29 @@
  */
 package org.fruit.alayer;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 import org.fruit.Assert;
-import org.fruit.Util;
 import org.fruit.alayer.exceptions.NoSuchTagException;
 
 public class TaggableBase implements Taggable, Serializable {
 	private static final long serialVersionUID = 3941511707954247582L;
-	private Map<Tag<?>, Object> tagValues = Util.newHashMap();
-	boolean allFetched;
+
+	// keep the serialised form of the former Map based implementation, so that existing sequences remain readable
+	private static final ObjectStreamField[] serialPersistentFields = {
+		new ObjectStreamField("tagValues", Map.class),
+		new ObjectStreamField("allFetched", boolean.class)
+	};
+
+	private transient TagSlots tagValues = new TagSlots(getClass());
+	transient boolean allFetched;
 	
 	public final <T> T get(Tag<T> tag) throws NoSuchTagException {
 		T ret = get(tag, null);
@@ -58,28 +67,24 @@ public class TaggableBase implements Taggable, Serializable {
 	@SuppressWarnings("unchecked")
 	public final <T> T get(Tag<T> tag, T defaultValue) {
 		Assert.notNull(tag);
-		T ret = (T) tagValues.get(tag);
-		if(ret == null && !allFetched && !tagValues.containsKey(tag)){
-			ret = fetch(tag);
+		Object stored = tagValues.lookup(tag);
+		if(stored == null){
+			if(allFetched)
+				return defaultValue;
+			T ret = fetch(tag);
 			tagValues.put(tag, ret);
+			return ret == null ? defaultValue : ret;
 		}
-		return ret == null ? defaultValue : ret;
+		return stored == TagSlots.NULL ? defaultValue : (T) stored;
 	}
 
 	public final Iterable<Tag<?>> tags() {
-		Set<Tag<?>> ret =new HashSet<Tag<?>>();
-		
 		if(!allFetched){
 			for(Tag<?> t : tagDomain())
 				get(t, null);
 			allFetched = true;
 		}
-		
-		for(Tag<?> t : tagValues.keySet()){
-			if(tagValues.get(t) != null)
-				ret.add(t);
-		}
-		return ret;
+		return tagValues.tagsWithValues();
 	}
 
 	protected <T> T fetch(Tag<T> tag){ return null; }
@@ -92,4 +97,23 @@ public class TaggableBase implements Taggable, Serializable {
 	}
 
 	public void remove(Tag<?> tag) { tagValues.put(Assert.notNull(tag), null); }
+
+	private void writeObject(ObjectOutputStream oos) throws IOException {
+		ObjectOutputStream.PutField fields = oos.putFields();
+		fields.put("tagValues", tagValues.toMap());
+		fields.put("allFetched", allFetched);
+		oos.writeFields();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = ois.readFields();
+		tagValues = new TagSlots(getClass());
+		Map<Tag<?>, Object> values = (Map<Tag<?>, Object>) fields.get("tagValues", null);
+		if(values != null){
+			for(Map.Entry<Tag<?>, Object> entry : values.entrySet())
+				tagValues.put(entry.getKey(), entry.getValue());
+		}
+		allFetched = fields.get("allFetched", false);
+	}
 }
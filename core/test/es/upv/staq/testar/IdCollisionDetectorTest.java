@@ -0,0 +1,73 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate the counting and bounds of the IdCollisionDetector.
+ */
+public class IdCollisionDetectorTest {
+
+   @Test
+   public void countsCollisions() {
+      IdCollisionDetector detector = new IdCollisionDetector();
+      assertTrue(detector.register("id1", "text1"));
+      assertTrue(detector.register("id1", "text1"));
+      assertFalse(detector.register("id1", "other text"));
+      assertEquals(3, detector.getRegistrations());
+      assertEquals(1, detector.getCollisions());
+   }
+
+   @Test
+   public void bounded() {
+      IdCollisionDetector detector = new IdCollisionDetector(10, 1000);
+      for (int i = 0; i < 100; i++)
+         detector.register("id" + i, "text" + i);
+      assertEquals(10, detector.size());
+
+      detector = new IdCollisionDetector(1000, 50);
+      for (int i = 0; i < 100; i++)
+         detector.register("id" + i, "0123456789");
+      assertEquals(5, detector.size());
+   }
+
+   @Test
+   public void checkingHasher() {
+      IdCollisionDetector detector = new IdCollisionDetector();
+      IdHasher hasher = new IdCollisionDetector.CheckingIdHasher(IdHashFunctions.LowCollision.newHasher(), detector);
+      hasher.reset().update("Button").update("OK");
+      String id = hasher.toId();
+      assertEquals(IdHashFunctions.LowCollision.newHasher().update("ButtonOK").toId(), id);
+      assertEquals(1, detector.size());
+      assertEquals(0, detector.getCollisions());
+   }
+}
@@ -0,0 +1,116 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate the identifier hash functions.
+ */
+public class IdHashFunctionsTest {
+
+   @Test
+   public void xxHash64ReferenceValues() {
+      XxHash64IdHasher hasher = new XxHash64IdHasher();
+      assertEquals(0xEF46DB3751D8E999L, hasher.hash());
+      hasher.update("abc".getBytes());
+      assertEquals(0x44BC2CF5AD770999L, hasher.hash());
+   }
+
+   @Test
+   public void xxHash64ReferenceValuesOfStripes() {
+      // inputs of 32 bytes and more, which are hashed in stripes
+      String[] texts = {"0123456789abcdef0123456789abcdef", "Nobody inspects the spammish repetition",
+            "The quick brown fox jumps over the lazy dog", new String(new char[100]).replace('\0', 'a')};
+      long[] hashes = {0x642A94958E71E6C5L, 0xFBCEA83C8A378BF1L, 0x0B242D361FDA71BCL, 0x375041E8B1DECFB3L};
+      for (int i = 0; i < texts.length; i++) {
+         XxHash64IdHasher hasher = new XxHash64IdHasher();
+         hasher.update(texts[i].getBytes());
+         assertEquals(texts[i], hashes[i], hasher.hash());
+
+         // the same bytes in pieces that do not align with the stripes
+         byte[] bytes = texts[i].getBytes();
+         hasher.reset();
+         for (int j = 0; j < bytes.length; j += 7)
+            hasher.update(java.util.Arrays.copyOfRange(bytes, j, Math.min(bytes.length, j + 7)));
+         assertEquals(texts[i], hashes[i], hasher.hash());
+      }
+   }
+
+   @Test
+   public void xxHash64OfText() {
+      // the characters are hashed as UTF-16LE, also when they follow an odd number of bytes
+      String text = "A title that is longer than two stripes of 32 bytes, \u00e9\u4e2d";
+      XxHash64IdHasher chars = new XxHash64IdHasher();
+      chars.update(text);
+      XxHash64IdHasher bytes = new XxHash64IdHasher();
+      bytes.update(text.getBytes(java.nio.charset.StandardCharsets.UTF_16LE));
+      assertEquals(bytes.hash(), chars.hash());
+
+      chars.reset();
+      chars.update(new byte[]{1});
+      chars.update(text);
+      bytes.reset();
+      bytes.update(new byte[]{1});
+      bytes.update(text.getBytes(java.nio.charset.StandardCharsets.UTF_16LE));
+      assertEquals(bytes.hash(), chars.hash());
+   }
+
+   @Test
+   public void streamingEqualsWholeText() {
+      String text = "ButtonOKtrue0,0,1 with a title that is longer than a single block of 32 bytes";
+      for (IdHashFunctions function : IdHashFunctions.values()) {
+         IdHasher whole = function.newHasher().update(text);
+         IdHasher pieces = function.newHasher();
+         for (int i = 0; i < text.length(); i += 5)
+            pieces.update(text.substring(i, Math.min(text.length(), i + 5)));
+         assertEquals(function.name(), whole.toId(), pieces.toId());
+      }
+   }
+
+   @Test
+   public void resetAndDistinctTexts() {
+      for (IdHashFunctions function : IdHashFunctions.values()) {
+         IdHasher hasher = function.newHasher();
+         String first = hasher.update("first").toId();
+         String second = hasher.reset().update("second").toId();
+         assertNotEquals(function.name(), first, second);
+         assertEquals(function.name(), first, hasher.reset().update("first").toId());
+      }
+   }
+
+   @Test
+   public void fromName() {
+      assertEquals(IdHashFunctions.XxHash64, IdHashFunctions.fromName("xxhash64"));
+      assertEquals(IdHashFunctions.Murmur3_128, IdHashFunctions.fromName(" Murmur3_128 "));
+      assertNull(IdHashFunctions.fromName("sha1"));
+   }
+}
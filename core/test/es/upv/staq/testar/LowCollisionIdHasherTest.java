@@ -0,0 +1,88 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+package es.upv.staq.testar;
+
+import org.junit.Test;
+
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate that the streaming LowCollisionIdHasher matches the low collision identifier formula.
+ */
+public class LowCollisionIdHasherTest {
+
+   private static String lowCollisionID(String text) {
+      CRC32 crc32 = new CRC32();
+      crc32.update(text.getBytes());
+      return Integer.toUnsignedString(text.hashCode(), Character.MAX_RADIX) +
+         Integer.toHexString(text.length()) +
+         crc32.getValue();
+   }
+
+   @Test
+   public void singlePiece() {
+      assertEquals(lowCollisionID(""), new LowCollisionIdHasher().toId());
+      assertEquals(lowCollisionID("ButtonOKtrue0,0,1"), new LowCollisionIdHasher().update("ButtonOKtrue0,0,1").toId());
+   }
+
+   @Test
+   public void concatenation() {
+      IdHasher hasher = new LowCollisionIdHasher();
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 1000; i++) {
+         String piece = "WC" + Integer.toString(i * 7919, Character.MAX_RADIX);
+         hasher.update(piece);
+         text.append(piece);
+      }
+      hasher.update(null);
+      text.append((Object) null);
+      assertEquals(lowCollisionID(text.toString()), hasher.toId());
+   }
+
+   @Test
+   public void nonAscii() {
+      StringBuilder longPrefix = new StringBuilder();
+      for (int i = 0; i < 300; i++)
+         longPrefix.append('a');
+      String[] pieces = {"Men\u00fa", longPrefix + "\u20ac", "\u00e9t\u00e9", Boolean.TRUE.toString()};
+      IdHasher hasher = new LowCollisionIdHasher();
+      StringBuilder text = new StringBuilder();
+      for (String piece : pieces) {
+         hasher.update((Object) piece);
+         text.append(piece);
+      }
+      assertEquals(lowCollisionID(text.toString()), hasher.toId());
+
+      hasher.reset().update("reset");
+      assertEquals(lowCollisionID("reset"), hasher.toId());
+   }
+}
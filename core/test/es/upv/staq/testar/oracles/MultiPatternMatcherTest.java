@@ -0,0 +1,105 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar.oracles;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate that MultiPatternMatcher gives the same results as the regular expression.
+ */
+public class MultiPatternMatcherTest {
+
+   private static final String[] REGEXES = {
+         ".*[eE]rror.*|.*[eE]xcepti[o?]n.*",
+         ".*[eE]rror.*|.*[eE]xcep[ct]i[o?]n.*",
+         "(?!x)x",
+         "",
+         "Error|Warning|.*fail.*",
+         ".*a\\.b.*|.*x.*y.*|.*\\|.*",
+         ".*rr.*|.*r\\.*",
+         "(?i).*error.*",
+         ".*(a|b)c.*|.*ab.*"
+   };
+
+   private static final String[] VALUES = {
+         "", "Error", "error", "An error occurred", "Fatal Exception", "exceptin", "Exceptio?n", "Exceptxon",
+         "Warning", "warning", "It failed", "a.b", "axb", "x and y", "a|b", "rr", "r..", "ERROR", "ac", "xbc",
+         "first line\nerror", "error\r\n", "e\u2028rror", "rror"
+   };
+
+   @Test
+   public void splitsTopLevelAlternatives() {
+      assertEquals(Arrays.asList(".*a.*", "(b|c)", "[|]", "\\|"), MultiPatternMatcher.alternatives(".*a.*|(b|c)|[|]|\\|"));
+      assertNull(MultiPatternMatcher.alternatives("(a)\\1"));
+      assertNull(MultiPatternMatcher.alternatives("(?i)a|b"));
+      assertEquals(Arrays.asList("error", "errox", "Error", "Errox"), MultiPatternMatcher.literals("[eE]rro[rx]"));
+      assertEquals(Arrays.asList("a.b"), MultiPatternMatcher.literals("a\\.b"));
+      assertNull(MultiPatternMatcher.literals("a.b"));
+      assertNull(MultiPatternMatcher.literals("a\\db"));
+      assertNull(MultiPatternMatcher.literals("[a-z]"));
+   }
+
+   @Test
+   public void usesLiteralsWhenPossible() {
+      assertTrue(MultiPatternMatcher.compile(REGEXES[0], 0, MultiPatternMatcher.Mode.Literals).isLiteral());
+      assertTrue(MultiPatternMatcher.compile("Error|Warning", 0, MultiPatternMatcher.Mode.Literals).isLiteral());
+      assertTrue(MultiPatternMatcher.compile(REGEXES[4], 0, MultiPatternMatcher.Mode.Literals).isLiteral());
+      assertFalse(MultiPatternMatcher.compile(REGEXES[0], 0, MultiPatternMatcher.Mode.Regex).isLiteral());
+      assertFalse(MultiPatternMatcher.compile(".*x.*y.*", 0, MultiPatternMatcher.Mode.Literals).isLiteral());
+   }
+
+   @Test
+   public void sameResultsAsRegex() {
+      Random random = new Random(7);
+      String alphabet = "eErorxcpti?n.|ab \n";
+      for (String regex : REGEXES) {
+         for (MultiPatternMatcher.Mode mode : MultiPatternMatcher.Mode.values()) {
+            for (int flags : new int[]{0, Pattern.UNICODE_CHARACTER_CLASS, Pattern.DOTALL, Pattern.CASE_INSENSITIVE}) {
+               Pattern pattern = Pattern.compile(regex, flags);
+               MultiPatternMatcher matcher = MultiPatternMatcher.compile(regex, flags, mode);
+               for (String value : VALUES)
+                  assertEquals(regex + " " + mode + " '" + value + "'", pattern.matcher(value).matches(), matcher.matches(value));
+               for (int i = 0; i < 2000; i++) {
+                  char[] value = new char[random.nextInt(12)];
+                  for (int j = 0; j < value.length; j++)
+                     value[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+                  String text = new String(value);
+                  assertEquals(regex + " " + mode + " '" + text + "'", pattern.matcher(text).matches(), matcher.matches(text));
+               }
+            }
+         }
+      }
+   }
+}
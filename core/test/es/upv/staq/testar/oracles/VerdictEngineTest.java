@@ -0,0 +1,141 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar.oracles;
+
+import org.fruit.alayer.Color;
+import org.fruit.alayer.Pen;
+import org.fruit.alayer.State;
+import org.fruit.alayer.StdState;
+import org.fruit.alayer.StdWidget;
+import org.fruit.alayer.Tags;
+import org.fruit.alayer.Verdict;
+import org.fruit.alayer.Widget;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate that VerdictEngine returns the verdict of the first oracle that finds a problem,
+ * traverses the widgets once and memoises the verdict of a state.
+ */
+public class VerdictEngineTest {
+
+   private static final Pen PEN = Pen.newPen().setColor(Color.Red).build();
+
+   private static State state(String... titles) {
+      List<Widget> widgets = new ArrayList<>();
+      State state = new StdState() {
+         @Override
+         public Iterator<Widget> iterator() { return widgets.iterator(); }
+      };
+      state.set(Tags.IsRunning, true);
+      state.set(Tags.ConcreteID, "SC" + Arrays.hashCode(titles));
+      widgets.add(state);
+      for (String title : titles) {
+         Widget widget = new StdWidget();
+         widget.set(Tags.Title, title);
+         widgets.add(widget);
+      }
+      return state;
+   }
+
+   private static Oracle counting(String name, AtomicInteger widgets, String suspicious) {
+      return new Oracle() {
+         public String name() { return name; }
+         public Verdict evaluateWidget(Widget widget) {
+            widgets.incrementAndGet();
+            return suspicious.equals(widget.get(Tags.Title, null)) ? new Verdict(Verdict.SEVERITY_WARNING, name) : Verdict.OK;
+         }
+      };
+   }
+
+   private static VerdictEngine engine(boolean parallel) {
+      return new VerdictEngine(parallel).add(new SystemCrashOracle())
+            .add(new SuspiciousTitlesOracle(MultiPatternMatcher.compile(".*[eE]rror.*", 0, MultiPatternMatcher.Mode.Literals),
+                  Arrays.asList("Title"), PEN));
+   }
+
+   @Test
+   public void builtInOracles() {
+      for (boolean parallel : new boolean[]{false, true}) {
+         VerdictEngine engine = engine(parallel);
+         assertEquals(Verdict.OK, engine.evaluate(state("a", "b")));
+         assertEquals(Verdict.SEVERITY_SUSPICIOUS_TITLE, engine.evaluate(state("a", "Fatal error")).severity(), 0);
+         State crashed = state("Fatal error");
+         crashed.set(Tags.IsRunning, false);
+         assertEquals(Verdict.SEVERITY_NOT_RUNNING, engine.evaluate(crashed).severity(), 0);
+         engine.close();
+      }
+   }
+
+   @Test
+   public void firstOracleWins() {
+      for (boolean parallel : new boolean[]{false, true}) {
+         AtomicInteger first = new AtomicInteger(), second = new AtomicInteger();
+         VerdictEngine engine = new VerdictEngine(parallel)
+               .add(counting("first", first, "c"))
+               .add(counting("second", second, "a"));
+         assertEquals("first", engine.evaluate(state("a", "b", "c", "d")).info());
+         assertEquals(4, first.get()); // the state and the widgets up to "c"
+         engine.close();
+      }
+   }
+
+   @Test
+   public void fusedTraversalStopsEarly() {
+      AtomicInteger first = new AtomicInteger(), second = new AtomicInteger();
+      VerdictEngine engine = new VerdictEngine(false)
+            .add(counting("first", first, "none"))
+            .add(counting("second", second, "b"));
+      assertEquals("second", engine.evaluate(state("a", "b", "c", "d")).info());
+      assertEquals(5, first.get()); // all widgets, it might still find a problem
+      assertEquals(3, second.get()); // the state and the widgets up to "b"
+      assertTrue(engine.timings().get(VerdictEngine.WIDGET_TRAVERSAL) > 0);
+   }
+
+   @Test
+   public void memoisesPerState() {
+      AtomicInteger widgets = new AtomicInteger();
+      VerdictEngine engine = new VerdictEngine(false).add(counting("oracle", widgets, "b"));
+      State state = state("a", "b");
+      Verdict verdict = engine.evaluate(state);
+      assertSame(verdict, engine.evaluate(state));
+      assertEquals(3, widgets.get());
+      engine.evaluate(state("a", "b")); // other instance
+      assertEquals(6, widgets.get());
+      assertTrue(engine.timings().get("oracle") > 0);
+      assertTrue(engine.statistics().startsWith("2 evaluations, 1 memoised"));
+   }
+}
@@ -0,0 +1,69 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar.serialisation;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate that PixelHash only depends on the size and the pixels of an image.
+ */
+public class PixelHashTest {
+
+   private static BufferedImage image(int type, int width, int height) {
+      BufferedImage image = new BufferedImage(width, height, type);
+      for (int y = 0; y < height; y++)
+         for (int x = 0; x < width; x++)
+            image.setRGB(x, y, 0xFF000000 | (x * 31 + y * 17) * 0x010101);
+      return image;
+   }
+
+   @Test
+   public void samePixelsSameHash() {
+      String hash = PixelHash.of(image(BufferedImage.TYPE_INT_RGB, 51, 20));
+      assertEquals(32, hash.length());
+      assertEquals(hash, PixelHash.of(image(BufferedImage.TYPE_INT_RGB, 51, 20)));
+      assertEquals(hash, PixelHash.of(image(BufferedImage.TYPE_INT_ARGB, 51, 20)));
+      assertEquals(hash, PixelHash.of(image(BufferedImage.TYPE_3BYTE_BGR, 51, 20)));
+      assertEquals(hash, PixelHash.of(image(BufferedImage.TYPE_INT_RGB, 60, 30).getSubimage(0, 0, 51, 20)));
+   }
+
+   @Test
+   public void differentPixelsOrSizeDifferentHash() {
+      BufferedImage image = image(BufferedImage.TYPE_INT_RGB, 51, 20);
+      String hash = PixelHash.of(image);
+      image.setRGB(50, 19, 0xFFFFFFFF);
+      assertNotEquals(hash, PixelHash.of(image));
+      assertNotEquals(PixelHash.of(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB)),
+            PixelHash.of(new BufferedImage(10, 20, BufferedImage.TYPE_INT_RGB)));
+   }
+}
@@ -0,0 +1,84 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar.serialisation;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate that the PngEncoder produces PNG images that decode to the original pixels.
+ */
+public class PngEncoderTest {
+
+   private static BufferedImage image(int type, int width, int height) {
+      BufferedImage image = new BufferedImage(width, height, type);
+      Random random = new Random(42);
+      for (int y = 0; y < height; y++)
+         for (int x = 0; x < width; x++)
+            image.setRGB(x, y, x < width / 2 ? 0xFF336699 : random.nextInt());
+      return image;
+   }
+
+   private static void assertEncodes(PngEncoder encoder, BufferedImage image) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      encoder.encode(image, out);
+      BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+      assertNotNull(decoded);
+      assertEquals(image.getWidth(), decoded.getWidth());
+      assertEquals(image.getHeight(), decoded.getHeight());
+      for (int y = 0; y < image.getHeight(); y++)
+         for (int x = 0; x < image.getWidth(); x++)
+            assertEquals(image.getRGB(x, y), decoded.getRGB(x, y));
+   }
+
+   @Test
+   public void encodesImageTypes() throws Exception {
+      PngEncoder encoder = new PngEncoder(Deflater.BEST_SPEED);
+      assertEncodes(encoder, image(BufferedImage.TYPE_INT_RGB, 300, 200));
+      assertEncodes(encoder, image(BufferedImage.TYPE_INT_ARGB, 17, 9));
+      assertEncodes(encoder, image(BufferedImage.TYPE_3BYTE_BGR, 64, 64));
+      // large enough for several IDAT chunks
+      assertEncodes(new PngEncoder(Deflater.NO_COMPRESSION), image(BufferedImage.TYPE_INT_RGB, 400, 300));
+      encoder.end();
+   }
+
+   @Test
+   public void encodesSubimages() throws Exception {
+      BufferedImage image = image(BufferedImage.TYPE_INT_RGB, 100, 100);
+      assertEncodes(new PngEncoder(Deflater.BEST_SPEED), image.getSubimage(10, 20, 50, 40));
+   }
+}
@@ -0,0 +1,147 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar.serialisation;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate that ScreenshotDeltas chooses keyframes and reconstructs delta screenshots.
+ */
+public class ScreenshotDeltasTest {
+
+   private static BufferedImage image(int width, int height, int seed) {
+      BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      for (int y = 0; y < height; y++)
+         for (int x = 0; x < width; x++)
+            image.setRGB(x, y, 0xFF000000 | (x * 31 + y * 17 + seed) * 0x010101);
+      return image;
+   }
+
+   private static void save(BufferedImage image, File file, String keyframe) throws IOException {
+      PngEncoder encoder = new PngEncoder(1);
+      try (OutputStream out = new FileOutputStream(file)) {
+         encoder.encode(image, out, keyframe == null ? Collections.<String, String>emptyMap()
+               : Collections.singletonMap(ScreenshotDeltas.KEYFRAME_KEYWORD, keyframe));
+      } finally {
+         encoder.end();
+      }
+   }
+
+   @Test
+   public void choosesKeyframes() throws InterruptedException {
+      ScreenshotDeltas deltas = new ScreenshotDeltas(2);
+      BufferedImage image = image(100, 70, 0);
+      assertNull(deltas.choose("a.png", image));
+      image.setRGB(40, 40, 0xFFFFFFFF);
+      ScreenshotDeltas.Delta delta = deltas.choose("b.png", image);
+      assertNotNull(delta);
+      assertEquals("a.png", delta.keyframePath);
+      assertEquals(1, delta.changedTiles.cardinality());
+      assertTrue(delta.changedTiles.get(4 + 1)); // tile (1, 1) of 4 x 3
+      assertEquals("a.png", deltas.awaitKeyframe("b.png"));
+      assertNull(deltas.awaitKeyframe("a.png"));
+      assertNotNull(deltas.choose("c.png", image));
+      assertNull(deltas.choose("d.png", image)); // keyframe interval
+      assertNull(deltas.choose("e.png", image(100, 70, 5))); // most tiles changed
+      assertNull(deltas.choose("f.png", image(70, 100, 5))); // size changed
+      deltas.reset();
+      assertNull(deltas.choose("g.png", image(70, 100, 5)));
+   }
+
+   @Test
+   public void resetsOnlyTheCurrentKeyframe() {
+      ScreenshotDeltas deltas = new ScreenshotDeltas(10);
+      BufferedImage image = image(100, 70, 0);
+      assertNull(deltas.choose("a.png", image));
+      deltas.reset("b.png");
+      assertNotNull(deltas.choose("b.png", image));
+      // a could not be saved, so the next screenshot becomes the keyframe
+      deltas.reset("a.png");
+      assertNull(deltas.choose("c.png", image));
+      assertEquals("c.png", deltas.choose("d.png", image).keyframePath);
+   }
+
+   @Test
+   public void decidesInReservedOrder() throws InterruptedException {
+      ScreenshotDeltas deltas = new ScreenshotDeltas(10);
+      BufferedImage image = image(100, 70, 0);
+      int a = deltas.reserve("a.png");
+      int b = deltas.reserve("b.png");
+      int c = deltas.reserve("c.png");
+      // c is hashed first, but has to wait for the decision of a
+      ScreenshotDeltas.Delta[] delta = new ScreenshotDeltas.Delta[1];
+      Thread worker = new Thread(() -> delta[0] = deltas.choose(c, "c.png", image));
+      worker.start();
+      deltas.skip(b, "b.png");
+      assertNull(deltas.choose(a, "a.png", image));
+      worker.join();
+      assertEquals("a.png", delta[0].keyframePath);
+      assertEquals("a.png", deltas.awaitKeyframe("c.png"));
+      assertNull(deltas.awaitKeyframe("b.png"));
+      assertTrue(deltas.isKnown("c.png"));
+      assertFalse(deltas.isKnown("d.png"));
+   }
+
+   @Test
+   public void readsDeltaOverKeyframe() throws IOException {
+      BufferedImage keyframe = image(100, 70, 0);
+      BufferedImage screenshot = image(100, 70, 0);
+      for (int x = 0; x < 10; x++)
+         screenshot.setRGB(90 + x, 65, 0xFF00FF00);
+      ScreenshotDeltas deltas = new ScreenshotDeltas(10);
+      File keyframeFile = File.createTempFile("keyframe", ".png");
+      File deltaFile = File.createTempFile("delta", ".png");
+      keyframeFile.deleteOnExit();
+      deltaFile.deleteOnExit();
+      assertNull(deltas.choose(keyframeFile.getPath(), keyframe));
+      ScreenshotDeltas.Delta delta = deltas.choose(deltaFile.getPath(), screenshot);
+      assertNotNull(delta);
+      BufferedImage deltaImage = new BufferedImage(100, 70, BufferedImage.TYPE_INT_ARGB);
+      ScreenshotDeltas.drawDelta(screenshot, delta.changedTiles, deltaImage);
+      assertEquals(0, deltaImage.getRGB(0, 0));
+      save(keyframe, keyframeFile, null);
+      save(deltaImage, deltaFile, keyframeFile.getName());
+
+      assertNull(ScreenshotDeltas.keyframeOf(keyframeFile.getPath()));
+      assertEquals(keyframeFile.getPath(), ScreenshotDeltas.keyframeOf(deltaFile.getPath()));
+      BufferedImage read = ScreenshotDeltas.read(deltaFile.getPath());
+      for (int y = 0; y < 70; y++)
+         for (int x = 0; x < 100; x++)
+            assertEquals(screenshot.getRGB(x, y), read.getRGB(x, y));
+   }
+}
@@ -0,0 +1,162 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+package es.upv.staq.testar.serialisation;
+
+import org.fruit.alayer.Taggable;
+import org.fruit.alayer.TaggableBase;
+import org.fruit.alayer.Tags;
+import org.fruit.alayer.Verdict;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate writing, reading, seeking and converting sequences in the binary sequence format.
+ */
+public class SequenceFormatTest {
+
+   private static TaggableBase fragment(int i) {
+      TaggableBase fragment = new TaggableBase();
+      fragment.set(Tags.Title, "Button " + i);
+      fragment.set(Tags.ActionDuration, i / 10.0);
+      fragment.set(Tags.Enabled, i % 2 == 0);
+      fragment.set(Tags.TimeStamp, 1000L * i);
+      fragment.set(Tags.OracleVerdict, new Verdict(Verdict.SEVERITY_OK, "No problem detected in fragment " + i));
+      return fragment;
+   }
+
+   private static void assertFragment(int i, Taggable fragment) {
+      assertNotNull(fragment);
+      assertEquals("Button " + i, fragment.get(Tags.Title));
+      assertEquals(i / 10.0, fragment.get(Tags.ActionDuration), 0);
+      assertEquals(i % 2 == 0, fragment.get(Tags.Enabled));
+      assertEquals(Long.valueOf(1000L * i), fragment.get(Tags.TimeStamp));
+      assertEquals("No problem detected in fragment " + i, fragment.get(Tags.OracleVerdict).info());
+   }
+
+   private static byte[] write(int fragments, boolean compress) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (SequenceWriter writer = new SequenceWriter(bytes, compress)) {
+         for (int i = 0; i < fragments; i++)
+            writer.write(fragment(i));
+         assertEquals(fragments, writer.fragmentsWritten());
+      }
+      return bytes.toByteArray();
+   }
+
+   @Test
+   public void roundTrip() throws Exception {
+      for (boolean compress : new boolean[]{false, true}) {
+         try (SequenceReader reader = SequenceReader.open(new ByteArrayInputStream(write(20, compress)))) {
+            assertFalse(reader.isLegacyFormat());
+            for (int i = 0; i < 20; i++)
+               assertFragment(i, reader.read());
+            assertNull(reader.read());
+            assertEquals(20, reader.position());
+         }
+      }
+   }
+
+   @Test
+   public void seek() throws Exception {
+      File file = File.createTempFile("sequence", ".testar");
+      try {
+         try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(write(20, true));
+         }
+         try (SequenceReader reader = SequenceReader.open(file)) {
+            assertEquals(15, reader.seek(15));
+            assertFragment(15, reader.read());
+            assertEquals(3, reader.seek(3));
+            assertFragment(3, reader.read());
+            assertEquals(20, reader.seekEnd());
+            assertEquals(20, reader.seek(25));
+            assertNull(reader.read());
+         }
+      } finally {
+         file.delete();
+      }
+   }
+
+   @Test
+   public void readsGzippedAndLegacySequences() throws Exception {
+      ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+      try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+         out.write(write(5, true));
+      }
+      try (SequenceReader reader = SequenceReader.open(new ByteArrayInputStream(gzipped.toByteArray()))) {
+         assertFalse(reader.isLegacyFormat());
+         assertEquals(4, reader.seek(4));
+         assertFragment(4, reader.read());
+      }
+
+      ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(legacy))) {
+         for (int i = 0; i < 5; i++)
+            out.writeObject(fragment(i));
+      }
+      try (SequenceReader reader = SequenceReader.open(new ByteArrayInputStream(legacy.toByteArray()))) {
+         assertTrue(reader.isLegacyFormat());
+         for (int i = 0; i < 5; i++)
+            assertFragment(i, reader.read());
+         assertNull(reader.read());
+      }
+   }
+
+   @Test
+   public void convert() throws Exception {
+      File source = File.createTempFile("legacy", ".testar");
+      File target = File.createTempFile("converted", ".testar");
+      try {
+         try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(source))) {
+            for (int i = 0; i < 10; i++)
+               out.writeObject(fragment(i));
+         }
+         assertEquals(10, SequenceConverter.convert(source, target, true));
+         assertTrue(target.length() < source.length());
+         try (SequenceReader reader = SequenceReader.open(target)) {
+            assertFalse(reader.isLegacyFormat());
+            for (int i = 0; i < 10; i++)
+               assertFragment(i, reader.read());
+            assertNull(reader.read());
+         }
+      } finally {
+         source.delete();
+         target.delete();
+      }
+   }
+}
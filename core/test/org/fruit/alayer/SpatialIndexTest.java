@@ -0,0 +1,244 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+
+package org.fruit.alayer;
+
+import org.fruit.Util;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate the queries of the spatial index against a scan of all the widgets.
+ */
+public class SpatialIndexTest {
+
+   private static class RectTester implements ShapeBoundHitTester {
+      private static final long serialVersionUID = 1L;
+      private final Rect rect;
+
+      RectTester(Rect rect) {
+         this.rect = rect;
+      }
+
+      public boolean apply(double x, double y) {
+         return rect.contains(x, y);
+      }
+
+      public boolean apply(double x, double y, boolean obscuredByChildFeature) {
+         return apply(x, y);
+      }
+   }
+
+   // like the WdHitTester, accepts the points of the shape translated by the scroll offsets of the page
+   private static class TranslatedTester implements HitTester {
+      private static final long serialVersionUID = 1L;
+      private final Rect rect;
+      private final double scrollLeft, scrollTop;
+
+      TranslatedTester(Rect rect, double scrollLeft, double scrollTop) {
+         this.rect = rect;
+         this.scrollLeft = scrollLeft;
+         this.scrollTop = scrollTop;
+      }
+
+      public boolean apply(double x, double y) {
+         return rect.contains(x - scrollLeft, y - scrollTop);
+      }
+
+      public boolean apply(double x, double y, boolean obscuredByChildFeature) {
+         return apply(x, y);
+      }
+   }
+
+   private static State randomState(Random random, int size) {
+      List<Widget> widgets = new ArrayList<>();
+      State state = new StdState() {
+         @Override
+         public Iterator<Widget> iterator() { return widgets.iterator(); }
+      };
+      widgets.add(state);
+      for (int i = 0; i < size; i++) {
+         Widget widget = new StdWidget();
+         widgets.add(widget);
+         if (random.nextInt(50) == 0) {
+            // a widget without a shape
+            widget.set(Tags.HitTester, random.nextBoolean() ? Util.TrueTester : Util.FalseTester);
+            continue;
+         }
+         Rect rect = Rect.from(random.nextInt(1000), random.nextInt(1000), random.nextInt(200), random.nextInt(200));
+         widget.set(Tags.Shape, rect);
+         if (random.nextInt(20) == 0) {
+            // a widget whose hit tester is not bound to its shape
+            widget.set(Tags.HitTester, new TranslatedTester(rect, random.nextInt(100), random.nextInt(500)));
+            continue;
+         }
+         widget.set(Tags.HitTester, new RectTester(rect));
+      }
+      return state;
+   }
+
+   @Test
+   public void testWidgetsAt() {
+      Random random = new Random(1);
+      State state = randomState(random, 2000);
+      SpatialIndex index = new SpatialIndex(state);
+      assertEquals(2001, index.size());
+      for (int i = 0; i < 500; i++) {
+         double x = random.nextInt(1300) - 50, y = random.nextInt(1300) - 50;
+         List<Widget> expected = new ArrayList<>();
+         for (Widget widget : state) {
+            if (widget.get(Tags.HitTester, Util.FalseTester).apply(x, y))
+               expected.add(widget);
+         }
+         assertEquals(new HashSet<>(expected), new HashSet<>(index.widgetsAt(x, y)));
+
+         Widget smallest = index.widgetAt(x, y);
+         if (expected.isEmpty()) {
+            assertNull(smallest);
+         } else {
+            assertTrue(expected.contains(smallest));
+            double area = smallest.get(Tags.Shape, null) == null ? -1 : Util.area(smallest.get(Tags.Shape));
+            for (Widget widget : expected) {
+               Shape shape = widget.get(Tags.Shape, null);
+               assertTrue(area <= (shape == null ? -1 : Util.area(shape)));
+            }
+         }
+      }
+   }
+
+   @Test
+   public void testTranslatedHitTesters() {
+      List<Widget> widgets = new ArrayList<>();
+      State state = new StdState() {
+         @Override
+         public Iterator<Widget> iterator() { return widgets.iterator(); }
+      };
+      Rect pageRect = Rect.from(0, 0, 1000, 1000);
+      state.set(Tags.Shape, pageRect);
+      state.set(Tags.HitTester, new RectTester(pageRect));
+      widgets.add(state);
+      Widget small = new StdWidget();
+      Rect smallRect = Rect.from(10, 10, 20, 20);
+      small.set(Tags.Shape, smallRect);
+      small.set(Tags.HitTester, new TranslatedTester(smallRect, 0, 500));
+      widgets.add(small);
+      Widget large = new StdWidget();
+      Rect largeRect = Rect.from(0, 0, 100, 100);
+      large.set(Tags.Shape, largeRect);
+      large.set(Tags.HitTester, new TranslatedTester(largeRect, 0, 500));
+      widgets.add(large);
+
+      SpatialIndex index = new SpatialIndex(state);
+      // the points are outside the shapes of the translated widgets
+      assertEquals(3, index.widgetsAt(20, 520).size());
+      assertSame(small, index.widgetAt(20, 520));
+      assertSame(large, index.widgetAt(50, 550));
+      assertEquals(1, index.widgetsAt(20, 20).size());
+      assertSame(state, index.widgetAt(20, 20));
+      assertSame(small, Util.widgetFromPoint(state, 20, 520, null));
+
+      // the area queries are about the shapes
+      assertEquals(3, index.widgetsIn(Rect.from(15, 15, 1, 1)).size());
+      assertEquals(1, index.widgetsIn(Rect.from(15, 515, 1, 1)).size());
+   }
+
+   @Test
+   public void testWidgetsIn() {
+      Random random = new Random(2);
+      State state = randomState(random, 2000);
+      SpatialIndex index = new SpatialIndex(state);
+      for (int i = 0; i < 200; i++) {
+         Rect area = Rect.from(random.nextInt(1200), random.nextInt(1200), random.nextInt(100), random.nextInt(100));
+         List<Widget> expected = new ArrayList<>();
+         for (Widget widget : state) {
+            Shape shape = widget.get(Tags.Shape, null);
+            if (shape != null && Rect.intersect(Rect.from(shape.x(), shape.y(), shape.width(), shape.height()), area))
+               expected.add(widget);
+         }
+         assertEquals(expected, index.widgetsIn(area));
+      }
+   }
+
+   @Test
+   public void testIndexOfStateIsInvalidated() {
+      List<Widget> widgets = new ArrayList<>();
+      State state = new StdState() {
+         @Override
+         public Iterator<Widget> iterator() { return widgets.iterator(); }
+      };
+      widgets.add(state);
+      assertNull(SpatialIndex.of(state).widgetAt(10, 10));
+      assertSame(SpatialIndex.of(state), SpatialIndex.of(state));
+
+      Widget widget = new StdWidget();
+      Rect rect = Rect.from(0, 0, 20, 20);
+      widget.set(Tags.Shape, rect);
+      widget.set(Tags.HitTester, new RectTester(rect));
+      widgets.add(widget);
+      SpatialIndex.invalidate(state);
+      assertSame(widget, SpatialIndex.of(state).widgetAt(10, 10));
+   }
+
+   @Test
+   public void testIndexDoesNotKeepTheStateAlive() throws InterruptedException {
+      State state = randomState(new Random(3), 100);
+      SpatialIndex.of(state).widgetAt(10, 10);
+      WeakReference<State> reference = new WeakReference<>(state);
+      state = null;
+      for (int i = 0; i < 20 && reference.get() != null; i++) {
+         System.gc();
+         Thread.sleep(10);
+      }
+      assertNull(reference.get());
+   }
+
+   @Test
+   public void testEmptyAndSingleWidget() {
+      State state = new StdState();
+      assertNull(new SpatialIndex(state).widgetAt(10, 10));
+
+      Rect rect = Rect.from(0, 0, 20, 20);
+      state.set(Tags.Shape, rect);
+      state.set(Tags.HitTester, new RectTester(rect));
+      SpatialIndex index = new SpatialIndex(state);
+      assertSame(state, index.widgetAt(10, 10));
+      assertSame(state, index.widgetAt(20, 20));
+      assertNull(index.widgetAt(21, 10));
+      assertSame(state, Util.widgetFromPoint(state, 10, 10, null));
+   }
+}
@@ -0,0 +1,142 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2013, 2014, 2015, 2016, 2017 Universitat Politecnica de Valencia - www.upv.es
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+package org.fruit.alayer;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test to validate the ordinal based tag storage of the TaggableBase class.
+ */
+public class TaggableBaseTest {
+
+   private static final Tag<String> LAZY = Tag.from("lazyTag", String.class);
+
+   private static class LazyTaggable extends TaggableBase {
+      private static final long serialVersionUID = 1L;
+      int fetches = 0;
+
+      @SuppressWarnings("unchecked")
+      protected <T> T fetch(Tag<T> tag) {
+         fetches++;
+         return tag.equals(LAZY) ? (T) "fetched" : null;
+      }
+
+      protected Set<Tag<?>> tagDomain() {
+         return Collections.<Tag<?>>singleton(LAZY);
+      }
+   }
+
+   @Test
+   public void setGetRemove() {
+      TaggableBase taggable = new TaggableBase();
+      taggable.set(Tags.Title, "title");
+      assertEquals("Value shall be returned", "title", taggable.get(Tags.Title));
+      assertEquals("Default shall be returned for unknown tags", "none", taggable.get(Tags.Desc, "none"));
+
+      taggable.remove(Tags.Title);
+      assertNull("Removed tag shall have no value", taggable.get(Tags.Title, null));
+      assertFalse("Removed tag shall not be listed", taggable.tags().iterator().hasNext());
+   }
+
+   @Test
+   public void fetchOnlyOnce() {
+      LazyTaggable taggable = new LazyTaggable();
+      assertEquals("fetched", taggable.get(LAZY));
+      assertEquals("fetched", taggable.get(LAZY));
+      assertNull(taggable.get(Tags.Desc, null));
+      assertNull(taggable.get(Tags.Desc, null));
+      assertEquals("Each tag shall be fetched once", 2, taggable.fetches);
+
+      Set<Tag<?>> tags = new HashSet<>();
+      for (Tag<?> t : taggable.tags())
+         tags.add(t);
+      assertEquals(Collections.singleton(LAZY), tags);
+   }
+
+   @Test
+   public void manyTags() {
+      TaggableBase taggable = new TaggableBase();
+      int count = TagSlots.DENSE_LIMIT + 100;
+      for (int i = 0; i < count; i++)
+         taggable.set(Tag.from("manyTags" + i, Integer.class), i);
+      for (int i = 0; i < count; i++)
+         assertEquals(Integer.valueOf(i), taggable.get(Tag.from("manyTags" + i, Integer.class)));
+
+      int listed = 0;
+      for (Tag<?> t : taggable.tags())
+         listed++;
+      assertEquals(count, listed);
+   }
+
+   @Test
+   public void slotsPerClass() {
+      // the many tags of one class do not move the tags of another class out of the dense slots
+      TaggableBase settings = new TaggableBase();
+      for (int i = 0; i < TagSlots.DENSE_LIMIT + 100; i++)
+         settings.set(Tag.from("settingsTag" + i, Integer.class), i);
+
+      TaggableBase widget = new TaggableBase() {
+         private static final long serialVersionUID = 1L;
+      };
+      widget.set(Tags.Title, "title");
+      widget.set(Tag.from("settingsTag" + (TagSlots.DENSE_LIMIT + 50), Integer.class), 1);
+      TagSlots.Layout layout = TagSlots.layout(widget.getClass());
+      assertTrue(layout.slot(Tags.Title) < 2);
+      assertTrue(layout.slot(Tag.from("settingsTag" + (TagSlots.DENSE_LIMIT + 50), Integer.class)) < 2);
+      assertEquals(Integer.valueOf(1), widget.get(Tag.from("settingsTag" + (TagSlots.DENSE_LIMIT + 50), Integer.class)));
+      assertEquals(Integer.valueOf(50), settings.get(Tag.from("settingsTag50", Integer.class)));
+   }
+
+   @Test
+   public void serialisation() throws Exception {
+      TaggableBase taggable = new TaggableBase();
+      taggable.set(Tags.Title, "title");
+      taggable.set(Tags.Enabled, true);
+      taggable.remove(Tags.Desc);
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+         oos.writeObject(taggable);
+      }
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+         TaggableBase read = (TaggableBase) ois.readObject();
+         assertEquals("title", read.get(Tags.Title));
+         assertTrue(read.get(Tags.Enabled));
+         assertNull(read.get(Tags.Desc, null));
+      }
+   }
+}
@@ -0,0 +1,172 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+
+package nl.ou.testar;
+
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.OEdge;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark to compare the two ways in which the state model stores the widget tree of a new concrete state:
+ * every widget and isChildOf edge on its own, after a query that checks whether it exists already,
+ * or all of them in a single transaction without existence checks.
+ */
+@State(Scope.Benchmark)
+public class WidgetTreeBatchBenchmark {
+
+    private static final String DATABASE = "widgettree";
+
+    // the number of children of every widget in the generated tree
+    private static final int FAN_OUT = 8;
+
+    @Param({"100", "1000", "10000"})
+    int widgets;
+
+    OrientDB orientDB;
+
+    // parent index of every widget, -1 for the root
+    int[] parents;
+
+    @Setup(Level.Trial)
+    public void createTree() {
+        parents = new int[widgets];
+        parents[0] = -1;
+        for (int i = 1; i < widgets; i++) {
+            parents[i] = (i - 1) / FAN_OUT;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setupDatabase() {
+        orientDB = new OrientDB("plocal:/tmp/benchmark", OrientDBConfig.defaultConfig());
+        if (orientDB.exists(DATABASE)) {
+            orientDB.drop(DATABASE);
+        }
+        orientDB.create(DATABASE, ODatabaseType.PLOCAL);
+        try (ODatabaseSession db = orientDB.open(DATABASE, "admin", "admin")) {
+            OClass widget = db.createVertexClass("Widget");
+            widget.createProperty("widgetId", OType.STRING).createIndex(OClass.INDEX_TYPE.UNIQUE);
+            widget.createProperty("Role", OType.STRING);
+            OClass isChildOf = db.createEdgeClass("isChildOf");
+            isChildOf.createProperty("relationId", OType.STRING).createIndex(OClass.INDEX_TYPE.UNIQUE);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void dropDatabase() {
+        orientDB.drop(DATABASE);
+        orientDB.close();
+    }
+
+    @Benchmark
+    @Warmup(iterations = 5)
+    @Fork(1)
+    @Measurement(iterations = 10)
+    @BenchmarkMode({Mode.SingleShotTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void perEntity() {
+        List<OVertex> vertices = new ArrayList<>(widgets);
+        for (int i = 0; i < widgets; i++) {
+            // every widget and edge is stored in its own session, after an existence check, as the entity manager does
+            try (ODatabaseSession db = orientDB.open(DATABASE, "admin", "admin")) {
+                String widgetId = "widget" + i;
+                OVertex vertex;
+                try (OResultSet resultSet = db.query("SELECT FROM Widget WHERE widgetId = ?", widgetId)) {
+                    vertex = resultSet.hasNext() ? resultSet.next().getVertex().orElse(null) : null;
+                }
+                if (vertex == null) {
+                    vertex = newWidget(db, widgetId);
+                }
+                vertices.add(vertex);
+            }
+            if (parents[i] < 0) {
+                continue;
+            }
+            try (ODatabaseSession db = orientDB.open(DATABASE, "admin", "admin")) {
+                String relationId = "widget" + i + "-widget" + parents[i];
+                boolean exists;
+                try (OResultSet resultSet = db.query("SELECT FROM isChildOf WHERE relationId = ?", relationId)) {
+                    exists = resultSet.hasNext();
+                }
+                if (!exists) {
+                    OVertex child = db.load(vertices.get(i).getIdentity());
+                    OVertex parent = db.load(vertices.get(parents[i]).getIdentity());
+                    newRelation(child, parent, relationId);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @Warmup(iterations = 5)
+    @Fork(1)
+    @Measurement(iterations = 10)
+    @BenchmarkMode({Mode.SingleShotTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void batched() {
+        try (ODatabaseSession db = orientDB.open(DATABASE, "admin", "admin")) {
+            OVertex[] vertices = new OVertex[widgets];
+            db.begin();
+            for (int i = 0; i < widgets; i++) {
+                vertices[i] = newWidget(db, "widget" + i);
+                if (parents[i] >= 0) {
+                    newRelation(vertices[i], vertices[parents[i]], "widget" + i + "-widget" + parents[i]);
+                }
+            }
+            db.commit();
+        }
+    }
+
+    private OVertex newWidget(ODatabaseSession db, String widgetId) {
+        OVertex vertex = db.newVertex("Widget");
+        vertex.setProperty("widgetId", widgetId);
+        vertex.setProperty("Role", "role");
+        vertex.save();
+        return vertex;
+    }
+
+    private void newRelation(OVertex child, OVertex parent, String relationId) {
+        OEdge edge = child.addEdge(parent, "isChildOf");
+        edge.setProperty("relationId", relationId);
+        edge.save();
+    }
+}
@@ -31,14 +31,14 @@
 package org.fruit.alayer.linux;
 
 
-import org.fruit.alayer.HitTester;
+import org.fruit.alayer.ShapeBoundHitTester;
 
 
 /**
  * An object that can execute an hit test action on an AtSpiElement - determining if the element can be clicked on
  * at a certain point on the screen.
  */
-public class AtSpiHitTester implements HitTester {
+public class AtSpiHitTester implements ShapeBoundHitTester {
 
 
     //region Global variables
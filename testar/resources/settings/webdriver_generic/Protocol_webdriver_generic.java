@@ -46,7 +46,6 @@ import org.testar.protocols.WebdriverProtocol;
 
 import java.util.*;
 
-import static org.fruit.alayer.Tags.Blocked;
 import static org.fruit.alayer.Tags.Enabled;
 import static org.fruit.alayer.webdriver.Constants.scrollArrowSize;
 import static org.fruit.alayer.webdriver.Constants.scrollThick;
@@ -219,18 +218,18 @@ public class Protocol_webdriver_generic extends WebdriverProtocol {
 			// slides can happen, even though the widget might be blocked
 			addSlidingActions(actions, ac, scrollArrowSize, scrollThick, widget);
 
-			// If the element is blocked, Testar can't click on or type in the widget
-			if (widget.get(Blocked, false) && !widget.get(WdTags.WebIsShadow, false)) {
+			// If the element is blocked at every hit point, Testar can't click on or type in the widget
+			if (WdProtocolUtil.isBlocked(widget) && !widget.get(WdTags.WebIsShadow, false)) {
 				continue;
 			}
 
 			// type into text boxes
 			if (isAtBrowserCanvas(widget) && isTypeable(widget)) {
 				if(whiteListed(widget) || isUnfiltered(widget)){
-					actions.add(ac.clickTypeInto(widget, this.getRandomText(widget), true));
+					actions.add(WdProtocolUtil.clickTypeInto(ac, widget, this.getRandomText(widget), true));
 				}else{
 					// filtered and not white listed:
-					filteredActions.add(ac.clickTypeInto(widget, this.getRandomText(widget), true));
+					filteredActions.add(WdProtocolUtil.clickTypeInto(ac, widget, this.getRandomText(widget), true));
 				}
 			}
 
@@ -238,14 +237,14 @@ public class Protocol_webdriver_generic extends WebdriverProtocol {
 			if (isAtBrowserCanvas(widget) && isClickable(widget)) {
 				if(whiteListed(widget) || isUnfiltered(widget)){
 					if (!isLinkDenied(widget)) {
-						actions.add(ac.leftClickAt(widget));
+						actions.add(WdProtocolUtil.leftClickAt(ac, widget));
 					}else{
 						// link denied:
-						filteredActions.add(ac.leftClickAt(widget));
+						filteredActions.add(WdProtocolUtil.leftClickAt(ac, widget));
 					}
 				}else{
 					// filtered and not white listed:
-					filteredActions.add(ac.leftClickAt(widget));
+					filteredActions.add(WdProtocolUtil.leftClickAt(ac, widget));
 				}
 			}
 		}
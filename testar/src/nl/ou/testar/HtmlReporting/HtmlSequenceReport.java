@@ -39,9 +39,12 @@ import org.fruit.alayer.Tags;
 import org.fruit.alayer.Verdict;
 import org.testar.OutputStructure;
 
+import es.upv.staq.testar.serialisation.ScreenshotSerialiser;
+
 import java.io.File;
 import java.io.PrintWriter;
 import java.util.Set;
+import java.util.function.Supplier;
 
 public class HtmlSequenceReport implements Reporting{
 
@@ -63,6 +66,10 @@ public class HtmlSequenceReport implements Reporting{
     
     private int innerLoopCounter = 0;
 
+    // the image of the last state, written with the next line: by then the keyframe of a delta screenshot,
+    // which the screenshot workers decide off the action loop, is known without waiting
+    private Supplier<String> pendingStateImage;
+
     public HtmlSequenceReport() {
         try{
             //TODO put filename into settings, name with sequence number
@@ -114,12 +121,15 @@ public class HtmlSequenceReport implements Reporting{
     public void addSequenceStep(State state, String actionImagePath){
     	try {
     		String imagePath = state.get(Tags.ScreenshotPath);
+    		String keyframePath = ScreenshotSerialiser.keyframeOf(imagePath);
     		// repairing the file paths:
     		if(imagePath.contains("./output")){
     			imagePath = imagePath.replace("./output","../");
+    			if(keyframePath != null)
+    				keyframePath = keyframePath.replace("./output","../");
     		}
     		write("<h4>State:</h4>");
-    		write("<p><img src=\""+imagePath+"\"></p>");
+    		write(stateImage(imagePath, keyframePath));
     		write("<h4>Action:</h4>");
     		write("<p><img src=\""+actionImagePath+"\"></p>");
     	}catch(Exception e) {
@@ -128,6 +138,16 @@ public class HtmlSequenceReport implements Reporting{
     	}
     }
 
+    /**
+     * Delta screenshots only contain the tiles that changed since their keyframe, so they are shown on top of it
+     */
+    private static String stateImage(String imagePath, String keyframePath){
+        if(keyframePath == null)
+            return "<p><img src=\""+imagePath+"\"></p>";
+        return "<p style=\"position:relative\"><img src=\""+keyframePath+"\">"
+                + "<img src=\""+imagePath+"\" style=\"position:absolute;left:0;top:0\"></p>";
+    }
+
     public void addState(State state){
         if(firstStateAdded){
             if(firstActionsAdded){
@@ -144,19 +164,25 @@ public class HtmlSequenceReport implements Reporting{
     private void writeStateIntoReport(State state){
     	try {
     		String imagePath = state.get(Tags.ScreenshotPath);
-    		if(imagePath.contains("./output")){
-    			int indexStart = imagePath.indexOf("./output");
-    			int indexScrn = imagePath.indexOf("scrshots");
-    			String replaceString = imagePath.substring(indexStart,indexScrn);
-    			imagePath = imagePath.replace(replaceString,"../");
-    		}
     		write("<h2>State "+innerLoopCounter+"</h2>");
     		write("<h4>concreteID="+state.get(Tags.ConcreteIDCustom, "NoConcreteIdAvailable")+"</h4>");
     		write("<h4>abstractID="+state.get(Tags.AbstractID, "NoAbstractIdAvailable")+"</h4>");
     		//        try{if(state.get(Tags.Abstract_R_ID)!=null) write("<h4>Abstract_R_ID="+state.get(Tags.Abstract_R_ID)+"</h4>");}catch(Exception e){}
     		//        try{if(state.get(Tags.Abstract_R_T_ID)!=null) write("<h4>Abstract_R_T_ID="+state.get(Tags.Abstract_R_T_ID)+"</h4>");}catch(Exception e){}
     		//        try{if(state.get(Tags.Abstract_R_T_P_ID)!=null) write("<h4>Abstract_R_T_P_ID="+state.get(Tags.Abstract_R_T_P_ID)+"</h4>");}catch(Exception e){}
-    		write("<p><img src=\""+imagePath+"\"></p>"); //<img src="smiley.gif" alt="Smiley face" height="42" width="42">
+    		pendingStateImage = () -> {
+    			String keyframePath = ScreenshotSerialiser.keyframeOf(imagePath);
+    			String reportImagePath = imagePath;
+    			if(imagePath.contains("./output")){
+    				int indexStart = imagePath.indexOf("./output");
+    				int indexScrn = imagePath.indexOf("scrshots");
+    				String replaceString = imagePath.substring(indexStart,indexScrn);
+    				reportImagePath = imagePath.replace(replaceString,"../");
+    				if(keyframePath != null)
+    					keyframePath = keyframePath.replace(replaceString,"../");
+    			}
+    			return stateImage(reportImagePath, keyframePath); //<img src="smiley.gif" alt="Smiley face" height="42" width="42">
+    		};
     		// file:///E:/TESTAR/TESTAR_dev/testar/target/install/testar/bin/output/output/scrshots/sequence1/SC1padzu12af1193500371.png
     		// statePath=./output\scrshots\sequence1\SC1y2bsuu2b02920826651.png
     	}catch(Exception e) {
@@ -304,6 +330,16 @@ public class HtmlSequenceReport implements Reporting{
     }
 
     private void write(String s) {
+        if(pendingStateImage != null){
+            String image;
+            try {
+                image = pendingStateImage.get();
+            }catch(Exception e) {
+                image = "<h4>ERROR Adding the image of State " + (innerLoopCounter - 1) + "</h4>";
+            }
+            pendingStateImage = null;
+            out.println(image);
+        }
         out.println(s);
         out.flush();
     }
@@ -20,6 +20,8 @@ public class AbstractState extends AbstractEntity implements Persistable {
     private Set<String> concreteStateIds;
     // is this an initial state?
     private boolean isInitial = false;
+    // has the state been changed since it was paged in?
+    private boolean changed = false;
 
     /**
      * Constructor
@@ -45,7 +47,9 @@ public class AbstractState extends AbstractEntity implements Persistable {
      * @param concreteStateId the concrete id to add
      */
     public void addConcreteStateId(String concreteStateId) {
-        this.concreteStateIds.add(concreteStateId);
+        if (this.concreteStateIds.add(concreteStateId)) {
+            changed = true;
+        }
     }
 
     /**
@@ -63,6 +67,7 @@ public class AbstractState extends AbstractEntity implements Persistable {
     public void addVisitedAction(AbstractAction action) {
         unvisitedActions.remove(action.getActionId());
         visitedActions.put(action.getActionId(), action);
+        changed = true;
     }
 
     /**
@@ -110,6 +115,22 @@ public class AbstractState extends AbstractEntity implements Persistable {
         return new HashSet<>(unvisitedActions.values());
     }
 
+    /**
+     * This method returns true if there are actions in this state that have not yet been visited
+     * @return
+     */
+    public boolean hasUnvisitedActions() {
+        return !unvisitedActions.isEmpty();
+    }
+
+    /**
+     * This method returns the number of actions in this state that have not yet been visited
+     * @return
+     */
+    public int getNrOfUnvisitedActions() {
+        return unvisitedActions.size();
+    }
+
     /**
      * This method returns all the actions for this abstract state that have been visited
      * @return
@@ -130,6 +151,9 @@ public class AbstractState extends AbstractEntity implements Persistable {
      * @param initial
      */
     public void setInitial(boolean initial) {
+        if (isInitial != initial) {
+            changed = true;
+        }
         isInitial = initial;
     }
 
@@ -154,9 +178,26 @@ public class AbstractState extends AbstractEntity implements Persistable {
             action.setModelIdentifier(this.getModelIdentifier());
             actions.put(action.getActionId(), action);
             unvisitedActions.put(action.getActionId(), action);
+            changed = true;
         }
     }
 
+    /**
+     * Returns true if the concrete state ids, the actions or the initial flag of the state were changed since
+     * the state was marked unchanged.
+     * @return
+     */
+    boolean isChanged() {
+        return changed;
+    }
+
+    /**
+     * Marks the state as unchanged, for instance after it was paged in.
+     */
+    void markUnchanged() {
+        changed = false;
+    }
+
     @Override
     public boolean canBeDelayed() {
         return false;
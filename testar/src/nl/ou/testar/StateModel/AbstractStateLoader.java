@@ -0,0 +1,26 @@
+package nl.ou.testar.StateModel;
+
+import java.util.Set;
+
+/**
+ * A loader that the abstract state model uses to page in states and transitions that are not in memory yet.
+ */
+public interface AbstractStateLoader {
+
+    /**
+     * This method loads an abstract state of the model, without its transitions.
+     * @param abstractStateModel
+     * @param abstractStateId
+     * @return the state, or null if the model does not contain it
+     */
+    AbstractState loadState(AbstractStateModel abstractStateModel, String abstractStateId);
+
+    /**
+     * This method loads the outgoing transitions of an abstract state of the model.
+     * @param abstractStateModel
+     * @param abstractStateId
+     * @return
+     */
+    Set<AbstractStateTransition> loadOutgoingTransitions(AbstractStateModel abstractStateModel, String abstractStateId);
+
+}
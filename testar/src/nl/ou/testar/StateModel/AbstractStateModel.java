@@ -8,7 +8,11 @@ import nl.ou.testar.StateModel.Exception.StateModelException;
 import nl.ou.testar.StateModel.Exception.StateNotFoundException;
 import org.fruit.alayer.Tag;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
@@ -45,6 +49,33 @@ public class AbstractStateModel {
     // are we emitting events or not?
     private boolean emitEvents = true;
 
+    // loader that pages in states and transitions on demand, null if the whole model is in memory
+    private AbstractStateLoader stateLoader;
+
+    // the maximum number of paged in states to keep in memory
+    private int loadCacheSize;
+
+    // the states that were paged in and have not been changed since, in least recently used order
+    private LinkedHashMap<String, Boolean> pagedStates = new LinkedHashMap<>(16, 0.75f, true);
+
+    // the states for which the outgoing transitions have been paged in
+    private Set<String> pagedTransitions = new HashSet<>();
+
+    // the number of page in operations in progress, states are not evicted while they are running
+    private int pagingDepth = 0;
+
+    // the number of distinct target states per action, by source state, of the transitions in memory
+    private Map<String, Map<String, Integer>> nrOfTargetStates = new HashMap<>();
+
+    // the number of (state, action) pairs in memory that lead to more than one target state
+    private int nrOfNondeterministicPairs = 0;
+
+    // the number of transitions in memory that belong to such a pair
+    private int nrOfNondeterministicActions = 0;
+
+    // adjacency index of the states and transitions that have been in memory
+    private StateModelIndex index = new StateModelIndex();
+
     /**
      * constructor
      * @param modelIdentifier
@@ -90,6 +121,13 @@ public class AbstractStateModel {
         checkStateId(sourceState.getStateId());
         checkStateId(targetState.getStateId());
 
+        // states that are changed in this session stay in memory
+        pin(sourceState.getStateId());
+        pin(targetState.getStateId());
+        pageInTransitions(sourceState.getStateId());
+        updateIndex(sourceState);
+        updateIndex(targetState);
+
         // check if the transition already exists
         if (stateTransitionsBySource.containsKey(sourceState.getStateId())) {
             // loop through all the transitions that have the same source state and check for matches
@@ -105,6 +143,7 @@ public class AbstractStateModel {
 
         // we set the action to visited for the source state
         sourceState.addVisitedAction(executedAction);
+        updateIndex(sourceState);
 
         // new transition
         AbstractStateTransition newStateTransition = new AbstractStateTransition(sourceState, targetState, executedAction);
@@ -117,6 +156,7 @@ public class AbstractStateModel {
 
         activateEvents();
         emitEvent(new StateModelEvent(StateModelEventType.ABSTRACT_STATE_TRANSITION_ADDED, newStateTransition));
+        evictPagedStates();
     }
 
     /**
@@ -129,7 +169,10 @@ public class AbstractStateModel {
         if (!stateTransitionsBySource.containsKey(newTransition.getSourceStateId())) {
             stateTransitionsBySource.put(newTransition.getSourceStateId(), new HashSet<>());
         }
-        stateTransitionsBySource.get(newTransition.getSourceStateId()).add(newTransition);
+        if (stateTransitionsBySource.get(newTransition.getSourceStateId()).add(newTransition)) {
+            countTransition(newTransition, 1);
+            index.addTransition(newTransition.getSourceStateId(), newTransition.getActionId(), newTransition.getTargetStateId());
+        }
 
         // and then to the target map
         if (!stateTransitionsByTarget.containsKey(newTransition.getTargetStateId())) {
@@ -145,7 +188,10 @@ public class AbstractStateModel {
      */
     public void addState(AbstractState newState) throws StateModelException {
         checkStateId(newState.getStateId());
-        if (!containsState(newState.getStateId())) {
+        boolean stateIsNew = !containsState(newState.getStateId());
+        pin(newState.getStateId());
+        updateIndex(newState);
+        if (stateIsNew) {
             // provide the state with this state model's abstract identifier
             newState.setModelIdentifier(modelIdentifier);
             // provide the state with the event listeners from this state model
@@ -179,7 +225,8 @@ public class AbstractStateModel {
     }
 
     /**
-     * This method returns all the states in the abstract state model
+     * This method returns all the states in the abstract state model.
+     * When the model is loaded lazily, only the states that are in memory are returned.
      * @return
      */
     public Set<AbstractState> getStates() {
@@ -192,7 +239,246 @@ public class AbstractStateModel {
      * @return
      */
     public boolean containsState(String abstractStateId) {
-        return this.states.containsKey(abstractStateId);
+        if (this.states.containsKey(abstractStateId)) {
+            // mark the state as recently used
+            pagedStates.get(abstractStateId);
+            return true;
+        }
+        if (stateLoader == null || abstractStateId == null) {
+            return false;
+        }
+        boolean found = pageInState(abstractStateId) != null;
+        evictPagedStates();
+        return found;
+    }
+
+    /**
+     * This method makes the state model page in its states and transitions on demand, when they are requested,
+     * instead of expecting all of them to be added up front.
+     * @param stateLoader
+     * @param loadCacheSize the maximum number of paged in states that are kept in memory.
+     *                      States that are changed in this session are always kept in memory.
+     */
+    public void setStateLoader(AbstractStateLoader stateLoader, int loadCacheSize) {
+        this.stateLoader = stateLoader;
+        this.loadCacheSize = Math.max(1, loadCacheSize);
+    }
+
+    /**
+     * Helper method that pages in a state that is not in memory.
+     * @param abstractStateId
+     * @return the state, or null if the model does not contain it
+     */
+    private AbstractState pageInState(String abstractStateId) {
+        AbstractState abstractState;
+        pagingDepth++;
+        try {
+            abstractState = stateLoader.loadState(this, abstractStateId);
+        }
+        finally {
+            pagingDepth--;
+        }
+        if (abstractState == null) {
+            return null;
+        }
+        // the changes made while loading the state are already stored
+        abstractState.markUnchanged();
+        abstractState.setModelIdentifier(modelIdentifier);
+        for (StateModelEventListener eventListener: eventListeners) {
+            abstractState.addEventListener(eventListener);
+        }
+        states.put(abstractStateId, abstractState);
+        pagedStates.put(abstractStateId, Boolean.TRUE);
+        updateIndex(abstractState);
+        if (abstractState.isInitial()) {
+            initialStates.put(abstractStateId, abstractState);
+        }
+        return abstractState;
+    }
+
+    /**
+     * Helper method that pages in the outgoing transitions of a state, if that has not been done yet.
+     * @param abstractStateId
+     */
+    private void pageInTransitions(String abstractStateId) {
+        if (stateLoader == null || !pagedTransitions.add(abstractStateId)) {
+            return;
+        }
+        pagingDepth++;
+        try {
+            for (AbstractStateTransition transition : stateLoader.loadOutgoingTransitions(this, abstractStateId)) {
+                addTransition(transition);
+            }
+        }
+        finally {
+            pagingDepth--;
+        }
+    }
+
+    /**
+     * Helper method that keeps a state in memory, because it was added or changed in this session.
+     * @param abstractStateId
+     */
+    private void pin(String abstractStateId) {
+        pagedStates.remove(abstractStateId);
+    }
+
+    /**
+     * Helper method that removes the least recently used paged in states, and their outgoing transitions,
+     * from memory when there are more of them than the cache size. They will be paged in again when needed.
+     * Paged in states that were changed through their own methods, such as a new concrete state id or a visited
+     * action, are pinned instead.
+     */
+    private void evictPagedStates() {
+        if (pagingDepth > 0) {
+            return;
+        }
+        Iterator<String> iterator = pagedStates.keySet().iterator();
+        while (pagedStates.size() > loadCacheSize && iterator.hasNext()) {
+            String abstractStateId = iterator.next();
+            iterator.remove();
+            AbstractState abstractState = states.get(abstractStateId);
+            if (abstractState != null && abstractState.isChanged()) {
+                continue;
+            }
+            states.remove(abstractStateId);
+            initialStates.remove(abstractStateId);
+            if (pagedTransitions.remove(abstractStateId)) {
+                Set<AbstractStateTransition> outgoingTransitions = stateTransitionsBySource.remove(abstractStateId);
+                if (outgoingTransitions != null) {
+                    for (AbstractStateTransition transition : outgoingTransitions) {
+                        stateTransitions.remove(transition);
+                        countTransition(transition, -1);
+                        Set<AbstractStateTransition> incomingTransitions = stateTransitionsByTarget.get(transition.getTargetStateId());
+                        if (incomingTransitions != null) {
+                            incomingTransitions.remove(transition);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method that updates the number of target states for the source state and action of a transition,
+     * together with the determinism counters of the model.
+     * @param transition
+     * @param change 1 if the transition was added, -1 if it was removed
+     */
+    private void countTransition(AbstractStateTransition transition, int change) {
+        Map<String, Integer> targetsByAction = nrOfTargetStates.computeIfAbsent(transition.getSourceStateId(), k -> new HashMap<>());
+        int before = targetsByAction.getOrDefault(transition.getActionId(), 0);
+        int after = before + change;
+        if (after > 0) {
+            targetsByAction.put(transition.getActionId(), after);
+        }
+        else {
+            targetsByAction.remove(transition.getActionId());
+            if (targetsByAction.isEmpty()) {
+                nrOfTargetStates.remove(transition.getSourceStateId());
+            }
+        }
+
+        // an action that leads to more than one target state makes all its transitions nondeterministic
+        nrOfNondeterministicActions += (after > 1 ? after : 0) - (before > 1 ? before : 0);
+        if (before <= 1 && after > 1) {
+            nrOfNondeterministicPairs++;
+        }
+        else if (before > 1 && after <= 1) {
+            nrOfNondeterministicPairs--;
+        }
+    }
+
+    /**
+     * This method returns the number of distinct target states that the execution of an action in a state has led to.
+     * @param stateId
+     * @param actionId
+     * @return
+     */
+    public int getNrOfTargetStates(String stateId, String actionId) {
+        boolean paged = stateLoader != null && containsState(stateId);
+        if (paged) {
+            pageInTransitions(stateId);
+        }
+        Map<String, Integer> targetsByAction = nrOfTargetStates.get(stateId);
+        int nrOfTargets = targetsByAction == null ? 0 : targetsByAction.getOrDefault(actionId, 0);
+        if (paged) {
+            evictPagedStates();
+        }
+        return nrOfTargets;
+    }
+
+    /**
+     * This method returns true if no action in the model leads to more than one target state from the same state.
+     * When the model is loaded lazily, only the transitions that are in memory are considered.
+     * @return
+     */
+    public boolean isDeterministic() {
+        return nrOfNondeterministicPairs == 0;
+    }
+
+    /**
+     * This method returns the number of transitions whose action leads to more than one target state from the same
+     * source state. When the model is loaded lazily, only the transitions that are in memory are considered.
+     * @return
+     */
+    public int getNrOfNondeterministicActions() {
+        return nrOfNondeterministicActions;
+    }
+
+    /**
+     * Helper method that tells the index whether a state has unvisited actions.
+     * @param abstractState
+     */
+    private void updateIndex(AbstractState abstractState) {
+        index.setUnvisitedActions(abstractState.getStateId(), abstractState.getNrOfUnvisitedActions());
+    }
+
+    /**
+     * This method returns a shortest sequence of transitions that leads from a state to a state that still has
+     * unvisited actions. Of the nearest such states, the one with the most unvisited actions is chosen.
+     * When the model is loaded lazily, the transitions of the states that have been in memory are considered.
+     * @param abstractState the state to start from
+     * @return the transitions, an empty list if the state itself has unvisited actions,
+     *         or null if no state with unvisited actions can be reached
+     * @throws StateModelException
+     */
+    public List<AbstractStateTransition> getPathToUnvisitedActions(AbstractState abstractState) throws StateModelException {
+        // the actions of the state may have changed since it was added
+        updateIndex(abstractState);
+        List<StateModelIndex.Step> steps = index.getPathToUnvisitedActions(abstractState.getStateId());
+        if (steps == null) {
+            return null;
+        }
+        List<AbstractStateTransition> path = new ArrayList<>();
+        String stateId = abstractState.getStateId();
+        for (StateModelIndex.Step step : steps) {
+            AbstractStateTransition nextTransition = null;
+            Set<AbstractStateTransition> outgoingTransitions = getOutgoingTransitionsForState(stateId);
+            if (outgoingTransitions != null) {
+                for (AbstractStateTransition transition : outgoingTransitions) {
+                    if (transition.getActionId().equals(step.getActionId()) && transition.getTargetStateId().equals(step.getTargetStateId())) {
+                        nextTransition = transition;
+                        break;
+                    }
+                }
+            }
+            if (nextTransition == null) {
+                throw new StateNotFoundException();
+            }
+            path.add(nextTransition);
+            stateId = step.getTargetStateId();
+        }
+        return path;
+    }
+
+    /**
+     * This method returns true if the states and transitions of the model are paged in on demand,
+     * in which case not the whole model is in memory.
+     * @return
+     */
+    public boolean isLoadedLazily() {
+        return stateLoader != null;
     }
 
     /**
@@ -225,11 +511,18 @@ public class AbstractStateModel {
      * @return
      */
     public Set<AbstractStateTransition> getOutgoingTransitionsForState(String stateId) {
+        if (stateLoader != null && containsState(stateId)) {
+            pageInTransitions(stateId);
+            Set<AbstractStateTransition> transitions = stateTransitionsBySource.get(stateId);
+            evictPagedStates();
+            return transitions;
+        }
         return stateTransitionsBySource.get(stateId);
     }
 
     /**
      * This method returns all the incoming transitions for a given state.
+     * When the model is loaded lazily, only the transitions from states that are in memory are returned.
      * @param stateId
      * @return
      */
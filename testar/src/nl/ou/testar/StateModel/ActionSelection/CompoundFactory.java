@@ -1,5 +1,6 @@
 package nl.ou.testar.StateModel.ActionSelection;
 
+import nl.ou.testar.StateModel.Metrics.TimingMetrics;
 import org.fruit.monkey.ConfigTags;
 import org.fruit.monkey.Settings;
 
@@ -9,12 +10,25 @@ import java.util.List;
 public class CompoundFactory {
 
     public static CompoundActionSelector getCompoundActionSelector(Settings settings) {
+        return getCompoundActionSelector(settings, null);
+    }
+
+    /**
+     * Returns the compound action selector for the settings.
+     * @param settings
+     * @param metrics if not null, the time that each of the selectors takes is recorded in these metrics
+     * @return
+     */
+    public static CompoundActionSelector getCompoundActionSelector(Settings settings, TimingMetrics metrics) {
         // this is hardcoded for now, but can be configurable in the future.
         List<ActionSelector> selectors = new ArrayList<>();
         if (settings.get(ConfigTags.ActionSelectionAlgorithm).equals("unvisited")) {
             selectors.add(new ImprovedUnvisitedActionSelector());
         }
         selectors.add(new RandomActionSelector());
+        if (metrics != null) {
+            selectors.replaceAll(selector -> new TimedActionSelector(selector, metrics));
+        }
         return new CompoundActionSelector(selectors);
     }
 
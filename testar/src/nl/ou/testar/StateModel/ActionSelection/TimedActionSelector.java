@@ -0,0 +1,42 @@
+package nl.ou.testar.StateModel.ActionSelection;
+
+import nl.ou.testar.StateModel.AbstractAction;
+import nl.ou.testar.StateModel.AbstractState;
+import nl.ou.testar.StateModel.AbstractStateModel;
+import nl.ou.testar.StateModel.Exception.ActionNotFoundException;
+import nl.ou.testar.StateModel.Metrics.TimingMetrics;
+
+/**
+ * An action selector that records how long another action selector takes to select an action,
+ * whether it finds one or not.
+ */
+public class TimedActionSelector implements ActionSelector {
+
+    private final ActionSelector selector;
+
+    private final TimingMetrics metrics;
+
+    private final String operation;
+
+    /**
+     * Constructor
+     * @param selector the selector to time
+     * @param metrics the metrics to record the durations in
+     */
+    public TimedActionSelector(ActionSelector selector, TimingMetrics metrics) {
+        this.selector = selector;
+        this.metrics = metrics;
+        operation = "selectAction." + selector.getClass().getSimpleName();
+    }
+
+    @Override
+    public AbstractAction selectAction(AbstractState currentState, AbstractStateModel abstractStateModel) throws ActionNotFoundException {
+        long start = System.nanoTime();
+        try {
+            return selector.selectAction(currentState, abstractStateModel);
+        }
+        finally {
+            metrics.record(operation, System.nanoTime() - start);
+        }
+    }
+}
@@ -523,19 +523,31 @@ public class AnalysisManager {
             // convert the concrete state identifier to an internal id if needed
             String internalId = concreteStateIdentifier.indexOf("n") == 0 ? unformatId(concreteStateIdentifier) : concreteStateIdentifier;
 
-            // first get all the widgets
-            String stmt = "SELECT FROM (TRAVERSE IN('isChildOf') FROM (SELECT FROM Widget WHERE @RID = :rid))";
             Map<String, Object> params = new HashMap<>();
             params.put("rid", internalId);
-            OResultSet resultSet = db.query(stmt, params);
-            elements.addAll(fetchNodes(resultSet, "Widget", null, concreteStateIdentifier));
-            resultSet.close();
 
-            // then get the parent/child relationship between the widgets
-            stmt = "SELECT FROM isChildOf WHERE in IN(SELECT @RID FROM (TRAVERSE in('isChildOf') FROM (SELECT FROM Widget WHERE @RID = :rid)))";
-            resultSet = db.query(stmt, params);
-            elements.addAll(fetchEdges(resultSet, "isChildOf"));
-            resultSet.close();
+            // a concrete state with shared widgets lists its widget tree in a property
+            List<OResult> stateResults = new ArrayList<>();
+            try (OResultSet resultSet = db.query("SELECT FROM Widget WHERE @RID = :rid", params)) {
+                resultSet.forEachRemaining(stateResults::add);
+            }
+            if (!stateResults.isEmpty() && stateResults.get(0).hasProperty("widgetIds")) {
+                elements.addAll(fetchNodes(stateResults.iterator(), "Widget", null, concreteStateIdentifier));
+                elements.addAll(fetchSharedWidgetTree(stateResults.get(0), concreteStateIdentifier, db));
+            }
+            else {
+                // first get all the widgets
+                String stmt = "SELECT FROM (TRAVERSE IN('isChildOf') FROM (SELECT FROM Widget WHERE @RID = :rid))";
+                OResultSet resultSet = db.query(stmt, params);
+                elements.addAll(fetchNodes(resultSet, "Widget", null, concreteStateIdentifier));
+                resultSet.close();
+
+                // then get the parent/child relationship between the widgets
+                stmt = "SELECT FROM isChildOf WHERE in IN(SELECT @RID FROM (TRAVERSE in('isChildOf') FROM (SELECT FROM Widget WHERE @RID = :rid)))";
+                resultSet = db.query(stmt, params);
+                elements.addAll(fetchEdges(resultSet, "isChildOf"));
+                resultSet.close();
+            }
 
             // create a filename
             StringBuilder builder = new StringBuilder(concreteStateIdentifier);
@@ -548,13 +560,52 @@ public class AnalysisManager {
         }
     }
 
+    /**
+     * This method fetches the shared widgets that a concrete state lists in its widgetIds property, and recreates the
+     * parent/child relationships between them from its widgetParents property.
+     * @param stateResult
+     * @param concreteStateIdentifier
+     * @param db
+     * @return
+     */
+    private List<Element> fetchSharedWidgetTree(OResult stateResult, String concreteStateIdentifier, ODatabaseSession db) {
+        List<String> widgetIds = stateResult.getProperty("widgetIds");
+        List<Integer> widgetParents = stateResult.getProperty("widgetParents");
+        String stateNodeId = "n" + formatId(stateResult.getIdentity().get().toString());
+
+        List<OResult> widgetResults = new ArrayList<>();
+        Map<String, String> nodeIds = new HashMap<>();
+        Map<String, Object> params = new HashMap<>();
+        params.put("widgetIds", widgetIds);
+        try (OResultSet resultSet = db.query("SELECT FROM Widget WHERE widgetId IN :widgetIds", params)) {
+            while (resultSet.hasNext()) {
+                OResult result = resultSet.next();
+                widgetResults.add(result);
+                nodeIds.put(result.getProperty("widgetId"), "n" + formatId(result.getIdentity().get().toString()));
+            }
+        }
+
+        ArrayList<Element> elements = fetchNodes(widgetResults.iterator(), "Widget", null, concreteStateIdentifier);
+        for (int i = 0; i < widgetIds.size(); i++) {
+            String childNodeId = nodeIds.get(widgetIds.get(i));
+            int parentIndex = widgetParents.get(i);
+            String parentNodeId = parentIndex < 0 ? stateNodeId : nodeIds.get(widgetIds.get(parentIndex));
+            if (childNodeId == null || parentNodeId == null) {
+                continue;
+            }
+            Edge jsonEdge = new Edge("e" + stateNodeId.substring(1) + "_" + i, childNodeId, parentNodeId);
+            elements.add(new Element(Element.GROUP_EDGES, jsonEdge, "isChildOf"));
+        }
+        return elements;
+    }
+
     /**
      * This method transforms a resultset of nodes into elements.
      * @param resultSet
      * @param className
      * @return
      */
-    private ArrayList<Element> fetchNodes(OResultSet resultSet, String className, String parent, String modelIdentifier) {
+    private ArrayList<Element> fetchNodes(Iterator<OResult> resultSet, String className, String parent, String modelIdentifier) {
         ArrayList<Element> elements = new ArrayList<>();
 
         while (resultSet.hasNext()) {
@@ -46,4 +46,14 @@ public class DummyModelManager implements StateModelManager{
     public void notifyTestSequenceInterruptedBySystem(String message) {
 
     }
+
+    @Override
+    public boolean modelIsDeterministic() {
+        return true;
+    }
+
+    @Override
+    public int getNrOfNondeterministicActions() {
+        return 0;
+    }
 }
@@ -0,0 +1,145 @@
+package nl.ou.testar.StateModel.Metrics;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of durations in nanoseconds. The buckets grow exponentially, with four buckets per power of two,
+ * so that any duration is recorded with a precision of 25% in constant memory.
+ */
+public class LatencyHistogram {
+
+    // the first four buckets hold the durations 0 to 3 exactly, then every power of two gets four buckets
+    private static final int NR_OF_BUCKETS = 4 + 62 * 4;
+
+    private final long[] counts = new long[NR_OF_BUCKETS];
+
+    private long count = 0;
+
+    private long total = 0;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max = 0;
+
+    /**
+     * Records a duration.
+     * @param nanos the duration in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        counts[bucket(nanos)]++;
+        count++;
+        total += nanos;
+        min = Math.min(min, nanos);
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Adds the durations of another histogram to this one.
+     * @param other
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < NR_OF_BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < 4) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - 2)) & 3;
+        return 4 + (exponent - 2) * 4 + subBucket;
+    }
+
+    /**
+     * Returns the largest duration that falls into a bucket.
+     * @param bucket
+     * @return
+     */
+    static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exponent = (bucket - 4) / 4 + 2;
+        long subBucket = (bucket - 4) % 4;
+        long lowerBound = (4 | subBucket) << (exponent - 2);
+        return lowerBound + (1L << (exponent - 2)) - 1;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Returns an upper bound of the duration below which the given percentage of the durations falls.
+     * @param percentile a value between 0 and 100
+     * @return
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < NR_OF_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of durations per bucket, as pairs of the upper bound of a bucket and its count.
+     * Empty buckets are left out.
+     * @return
+     */
+    public long[][] getBuckets() {
+        int nrOfUsedBuckets = 0;
+        for (long bucketCount : counts) {
+            if (bucketCount > 0) {
+                nrOfUsedBuckets++;
+            }
+        }
+        long[][] buckets = new long[nrOfUsedBuckets][];
+        int j = 0;
+        for (int i = 0; i < NR_OF_BUCKETS; i++) {
+            if (counts[i] > 0) {
+                buckets[j++] = new long[]{upperBound(i), counts[i]};
+            }
+        }
+        return buckets;
+    }
+
+}
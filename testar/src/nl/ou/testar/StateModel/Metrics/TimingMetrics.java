@@ -0,0 +1,124 @@
+package nl.ou.testar.StateModel.Metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects the durations of the state model operations, such as the action selection, in a histogram per operation.
+ * At the end of every sequence the histograms of that sequence are appended to a CSV file, and the histograms of the
+ * whole run are written to a JSON file.
+ */
+public class TimingMetrics {
+
+    public static final String CSV_FILE_NAME = "state_model_timings.csv";
+
+    public static final String JSON_FILE_NAME = "state_model_timings.json";
+
+    private final Map<String, LatencyHistogram> sequenceHistograms = new LinkedHashMap<>();
+
+    private final Map<String, LatencyHistogram> totalHistograms = new LinkedHashMap<>();
+
+    private int nrOfSequences = 0;
+
+    /**
+     * Records the duration of an operation.
+     * @param operation the name of the operation
+     * @param nanos the duration in nanoseconds
+     */
+    public synchronized void record(String operation, long nanos) {
+        sequenceHistograms.computeIfAbsent(operation, key -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Ends the current sequence and exports the histograms.
+     * @param directory the directory to write the files to
+     */
+    public synchronized void endSequence(File directory) {
+        nrOfSequences++;
+        for (Map.Entry<String, LatencyHistogram> entry : sequenceHistograms.entrySet()) {
+            totalHistograms.computeIfAbsent(entry.getKey(), key -> new LatencyHistogram()).add(entry.getValue());
+        }
+        try {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Could not create the directory " + directory);
+            }
+            writeCsv(new File(directory, CSV_FILE_NAME));
+            writeJson(new File(directory, JSON_FILE_NAME));
+        }
+        catch (IOException e) {
+            System.out.println("Could not export the state model timings: " + e.getMessage());
+        }
+        for (LatencyHistogram histogram : sequenceHistograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    private void writeCsv(File file) throws IOException {
+        boolean writeHeader = !file.exists();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file, true))) {
+            if (writeHeader) {
+                writer.println("sequence,operation,count,total_ms,mean_ms,min_ms,p50_ms,p90_ms,p99_ms,max_ms");
+            }
+            for (Map.Entry<String, LatencyHistogram> entry : sequenceHistograms.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+                writer.println(String.format(Locale.ROOT, "%d,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                        nrOfSequences, entry.getKey(), histogram.getCount(), millis(histogram.getTotal()),
+                        histogram.getMean() / 1e6, millis(histogram.getMin()), millis(histogram.getPercentile(50)),
+                        millis(histogram.getPercentile(90)), millis(histogram.getPercentile(99)), millis(histogram.getMax())));
+            }
+        }
+    }
+
+    private void writeJson(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file, false))) {
+            writer.println("{");
+            writer.println("  \"sequences\": " + nrOfSequences + ",");
+            writer.println("  \"operations\": {");
+            int i = 0;
+            for (Map.Entry<String, LatencyHistogram> entry : totalHistograms.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                writer.println("    \"" + entry.getKey() + "\": {");
+                writer.println(String.format(Locale.ROOT, "      \"count\": %d, \"totalNanos\": %d, \"meanNanos\": %.1f, \"minNanos\": %d, " +
+                                "\"p50Nanos\": %d, \"p90Nanos\": %d, \"p99Nanos\": %d, \"maxNanos\": %d,",
+                        histogram.getCount(), histogram.getTotal(), histogram.getMean(), histogram.getMin(),
+                        histogram.getPercentile(50), histogram.getPercentile(90), histogram.getPercentile(99), histogram.getMax()));
+                StringBuilder buckets = new StringBuilder();
+                for (long[] bucket : histogram.getBuckets()) {
+                    buckets.append(buckets.length() == 0 ? "" : ", ").append('[').append(bucket[0]).append(", ").append(bucket[1]).append(']');
+                }
+                writer.println("      \"buckets\": [" + buckets + "]");
+                writer.println("    }" + (++i < totalHistograms.size() ? "," : ""));
+            }
+            writer.println("  }");
+            writer.println("}");
+        }
+    }
+
+    /**
+     * Returns a summary of the durations of the whole run.
+     * @return
+     */
+    public synchronized String summary() {
+        StringBuilder summary = new StringBuilder("State model timings over " + nrOfSequences + " sequences:");
+        for (Map.Entry<String, LatencyHistogram> entry : totalHistograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            summary.append(String.format(Locale.ROOT, "%n  %s: %d calls, mean %.3f ms, p99 %.3f ms, max %.3f ms",
+                    entry.getKey(), histogram.getCount(), histogram.getMean() / 1e6, millis(histogram.getPercentile(99)),
+                    millis(histogram.getMax())));
+        }
+        return summary.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+}
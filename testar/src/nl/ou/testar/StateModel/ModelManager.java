@@ -76,11 +76,14 @@ public class ModelManager implements StateModelManager {
      */
     private void init() {
         // check if the model is deterministic
-        boolean modelIsDeterministic = persistenceManager.modelIsDeterministic(abstractStateModel);
-        System.out.println("Model is deterministic: " + persistenceManager.modelIsDeterministic(abstractStateModel));
-        if (!modelIsDeterministic) {
+        if (abstractStateModel.isLoadedLazily()) {
+            // only a part of the model is in memory, so we ask the data store
             nrOfNonDeterministicActions = persistenceManager.getNrOfNondeterministicActions(abstractStateModel);
         }
+        else {
+            nrOfNonDeterministicActions = abstractStateModel.getNrOfNondeterministicActions();
+        }
+        System.out.println("Model is deterministic: " + modelIsDeterministic());
     }
 
     /**
@@ -94,6 +97,7 @@ public class ModelManager implements StateModelManager {
         // check if we are dealing with a new state or an existing one
         String abstractStateId = newState.get(Tags.AbstractIDCustom);
         AbstractState newAbstractState;
+        boolean nonDeterministicActionExecuted = false;
 
         // fetch or create an abstract state
         if (abstractStateModel.containsState(abstractStateId)) {
@@ -132,12 +136,23 @@ public class ModelManager implements StateModelManager {
             }
 
             //add a transition to the statemodel
+            String stateId = currentAbstractState.getStateId();
+            String actionId = actionUnderExecution.getActionId();
+            int nrOfTargetStates = abstractStateModel.getNrOfTargetStates(stateId, actionId);
             try {
                 abstractStateModel.addTransition(currentAbstractState, newAbstractState, actionUnderExecution);
             } catch (StateModelException e) {
                 e.printStackTrace();
                 throw new RuntimeException("Encountered a problem adding a state transition into the statemodel");
             }
+
+            // check if non-determinism was introduced into the model: the action led to yet another target state
+            int newNrOfTargetStates = abstractStateModel.getNrOfTargetStates(stateId, actionId);
+            if (newNrOfTargetStates > nrOfTargetStates && newNrOfTargetStates > 1) {
+                nonDeterministicActionExecuted = true;
+                // the first transition for this action becomes non-deterministic as well
+                nrOfNonDeterministicActions += newNrOfTargetStates == 2 ? 2 : 1;
+            }
             // we reset the executed action to await the next one.
             actionUnderExecution = null;
         }
@@ -155,12 +170,9 @@ public class ModelManager implements StateModelManager {
             persistenceManager.persistConcreteStateTransition(concreteStateTransition);
         }
 
-        // check if non-determinism was introduced into the model
-        int currentNrOfNonDeterministicActions = persistenceManager.getNrOfNondeterministicActions(abstractStateModel);
-        if (currentNrOfNonDeterministicActions > nrOfNonDeterministicActions) {
+        if (nonDeterministicActionExecuted) {
             System.out.println("Non-deterministic action was executed!");
             sequenceManager.notifyStateReached(newConcreteState, concreteActionUnderExecution, SequenceError.NON_DETERMINISTIC_ACTION);
-            nrOfNonDeterministicActions = currentNrOfNonDeterministicActions;
         }
         else {
             sequenceManager.notifyStateReached(newConcreteState, concreteActionUnderExecution);
@@ -270,4 +282,14 @@ public class ModelManager implements StateModelManager {
         sequenceManager.notifyInterruptionBySystem(message);
     }
 
+    @Override
+    public boolean modelIsDeterministic() {
+        return nrOfNonDeterministicActions == 0;
+    }
+
+    @Override
+    public int getNrOfNondeterministicActions() {
+        return nrOfNonDeterministicActions;
+    }
+
 }
@@ -0,0 +1,95 @@
+package nl.ou.testar.StateModel.Persistence.Memory;
+
+import java.util.Arrays;
+
+/**
+ * A map from non-negative int keys to values, stored in an open addressing hash table without boxing the keys.
+ * @param <V>
+ */
+final class IntMap<V> {
+
+    private static final int FREE = -1;
+
+    private int[] keys;
+
+    private Object[] values;
+
+    private int size = 0;
+
+    IntMap() {
+        keys = new int[4];
+        values = new Object[4];
+        Arrays.fill(keys, FREE);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int mask = keys.length - 1;
+        for (int i = IntSet.mix(key) & mask; keys[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores a value for a key, replacing the value that was stored before.
+     * @param key a non-negative key
+     * @param value
+     */
+    void put(int key, V value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Only non-negative keys can be stored: " + key);
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int i = IntSet.mix(key) & mask;
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == FREE) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the keys of the map, in no particular order.
+     * @return
+     */
+    int[] keys() {
+        int[] result = new int[size];
+        int j = 0;
+        for (int key : keys) {
+            if (key != FREE) {
+                result[j++] = key;
+            }
+        }
+        return result;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        Arrays.fill(keys, FREE);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                @SuppressWarnings("unchecked")
+                V value = (V) oldValues[i];
+                put(oldKeys[i], value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package nl.ou.testar.StateModel.Persistence.Memory;
+
+import java.util.Arrays;
+
+/**
+ * A set of non-negative int values, stored in an open addressing hash table without boxing.
+ */
+final class IntSet {
+
+    private static final int FREE = -1;
+
+    private int[] slots;
+
+    private int size = 0;
+
+    IntSet() {
+        slots = new int[4];
+        Arrays.fill(slots, FREE);
+    }
+
+    /**
+     * Adds a value to the set.
+     * @param value a non-negative value
+     * @return true if the value was not yet in the set
+     */
+    boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Only non-negative values can be stored: " + value);
+        }
+        if ((size + 1) * 4 > slots.length * 3) {
+            grow();
+        }
+        int mask = slots.length - 1;
+        for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+            if (slots[i] == value) {
+                return false;
+            }
+            if (slots[i] == FREE) {
+                slots[i] = value;
+                size++;
+                return true;
+            }
+        }
+    }
+
+    boolean contains(int value) {
+        int mask = slots.length - 1;
+        for (int i = mix(value) & mask; slots[i] != FREE; i = (i + 1) & mask) {
+            if (slots[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the values of the set, in no particular order.
+     * @return
+     */
+    int[] toArray() {
+        int[] values = new int[size];
+        int j = 0;
+        for (int slot : slots) {
+            if (slot != FREE) {
+                values[j++] = slot;
+            }
+        }
+        return values;
+    }
+
+    private void grow() {
+        int[] oldSlots = slots;
+        slots = new int[oldSlots.length * 2];
+        Arrays.fill(slots, FREE);
+        size = 0;
+        for (int slot : oldSlots) {
+            if (slot != FREE) {
+                add(slot);
+            }
+        }
+    }
+
+    static int mix(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,296 @@
+package nl.ou.testar.StateModel.Persistence.Memory;
+
+import nl.ou.testar.StateModel.*;
+import nl.ou.testar.StateModel.Event.StateModelEvent;
+import nl.ou.testar.StateModel.Event.StateModelEventListener;
+import nl.ou.testar.StateModel.Exception.InvalidEventException;
+import nl.ou.testar.StateModel.Exception.StateModelException;
+import nl.ou.testar.StateModel.Persistence.PersistenceManager;
+import nl.ou.testar.StateModel.Sequence.Sequence;
+import nl.ou.testar.StateModel.Sequence.SequenceManager;
+import nl.ou.testar.StateModel.Sequence.SequenceNode;
+import nl.ou.testar.StateModel.Sequence.SequenceStep;
+import nl.ou.testar.StateModel.Util.EventHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A persistence manager that keeps the abstract state model in memory, without a database. The changes to the model
+ * are appended to a journal file, and a snapshot of the model is written every number of sequences and at shutdown.
+ * On the next run with the same model identifier the snapshot and the journal are loaded back into the abstract state
+ * model. Only the abstract layer of the model is kept, together with the concrete state and concrete action ids;
+ * the concrete states, their widgets and the test sequences are not stored.
+ */
+public class MemoryManager implements PersistenceManager, StateModelEventListener {
+
+    /**
+     * Helper class for dealing with events
+     */
+    private final EventHelper eventHelper;
+
+    /**
+     * The directory that contains the snapshot and journal files
+     */
+    private final File directory;
+
+    /**
+     * The number of sequences after which a snapshot is taken, 0 to take a snapshot at shutdown only
+     */
+    private final int snapshotInterval;
+
+    private final MemoryModel model = new MemoryModel();
+
+    private ModelStore store;
+
+    private int nrOfEndedSequences = 0;
+
+    /**
+     * Is the manager listening to events?
+     */
+    private boolean listening = true;
+
+    /**
+     * Constructor
+     * @param eventHelper
+     * @param directory the directory that contains the snapshot and journal files
+     * @param snapshotInterval the number of sequences after which a snapshot is taken, 0 to take one at shutdown only
+     */
+    public MemoryManager(EventHelper eventHelper, File directory, int snapshotInterval) {
+        this.eventHelper = eventHelper;
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    @Override
+    public void shutdown() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.snapshot(model, false);
+            store.close();
+            System.out.println("Stored a snapshot of " + model.getNrOfStates() + " abstract states and " +
+                    model.getNrOfTransitions() + " transitions in " + store.getSnapshotFile());
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        store = null;
+    }
+
+    @Override
+    public void persistAbstractState(AbstractState abstractState) {
+        String stateId = abstractState.getStateId();
+        model.addState(stateId);
+        if (abstractState.isInitial()) {
+            model.setInitial(stateId);
+        }
+        for (AbstractAction action : abstractState.getActions()) {
+            model.addAction(stateId, action.getActionId());
+            persistAbstractAction(action);
+        }
+        for (AbstractAction action : abstractState.getVisitedActions()) {
+            model.addVisitedAction(stateId, action.getActionId());
+        }
+        for (String concreteStateId : abstractState.getConcreteStateIds()) {
+            model.addConcreteStateId(stateId, concreteStateId);
+        }
+    }
+
+    @Override
+    public void persistAbstractAction(AbstractAction abstractAction) {
+        for (String concreteActionId : abstractAction.getConcreteActionIds()) {
+            model.addConcreteActionId(abstractAction.getActionId(), concreteActionId);
+        }
+    }
+
+    @Override
+    public void persistAbstractStateTransition(AbstractStateTransition abstractStateTransition) {
+        persistAbstractState(abstractStateTransition.getSourceState());
+        persistAbstractState(abstractStateTransition.getTargetState());
+        persistAbstractAction(abstractStateTransition.getAction());
+        model.addTransition(abstractStateTransition.getSourceStateId(), abstractStateTransition.getActionId(),
+                abstractStateTransition.getTargetStateId());
+    }
+
+    @Override
+    public void initAbstractStateModel(AbstractStateModel abstractStateModel) {
+        // we do not want to process the events resulting from our object creations
+        setListening(false);
+
+        store = new ModelStore(directory, abstractStateModel.getModelIdentifier());
+        try {
+            store.load(model);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // step 1: create the abstract states with their actions
+        Map<Integer, AbstractState> abstractStates = new HashMap<>();
+        for (int stateId : model.getStateIds()) {
+            MemoryModel.StateRecord stateRecord = model.getState(stateId);
+            Set<AbstractAction> actions = new HashSet<>();
+            for (int actionId : stateRecord.actions.toArray()) {
+                AbstractAction action = new AbstractAction(model.string(actionId));
+                for (int concreteActionId : model.getConcreteActionIds(actionId)) {
+                    action.addConcreteActionId(model.string(concreteActionId));
+                }
+                actions.add(action);
+            }
+            AbstractState abstractState = new AbstractState(model.string(stateId), actions);
+            for (int concreteStateId : stateRecord.concreteStateIds.toArray()) {
+                abstractState.addConcreteStateId(model.string(concreteStateId));
+            }
+            abstractState.setInitial(stateRecord.initial);
+            try {
+                for (int actionId : stateRecord.visitedActions.toArray()) {
+                    abstractState.addVisitedAction(abstractState.getAction(model.string(actionId)));
+                }
+                abstractStateModel.addState(abstractState);
+                abstractStates.put(stateId, abstractState);
+            }
+            catch (StateModelException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // step 2: add the transitions between them
+        int nrOfTransitions = 0;
+        for (int stateId : model.getStateIds()) {
+            AbstractState sourceState = abstractStates.get(stateId);
+            MemoryModel.StateRecord stateRecord = model.getState(stateId);
+            for (int actionId : stateRecord.targets.keys()) {
+                for (int targetStateId : stateRecord.targets.get(actionId).toArray()) {
+                    try {
+                        abstractStateModel.addTransition(sourceState, abstractStates.get(targetStateId),
+                                sourceState.getAction(model.string(actionId)));
+                        nrOfTransitions++;
+                    }
+                    catch (StateModelException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+        if (abstractStates.isEmpty()) {
+            System.out.println("Could not find abstract states in the model");
+        }
+        else {
+            System.out.println("Loaded " + abstractStates.size() + " abstract states and " + nrOfTransitions +
+                    " abstract actions from " + store.getSnapshotFile());
+        }
+
+        // from now on the changes are written to the journal
+        try {
+            store.openJournal(model);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // enable the event listener again
+        setListening(true);
+    }
+
+    @Override
+    public void persistConcreteState(ConcreteState concreteState) {
+        // only the link between the abstract and the concrete state is kept
+        if (concreteState.getAbstractState() != null) {
+            model.addConcreteStateId(concreteState.getAbstractState().getStateId(), concreteState.getId());
+        }
+    }
+
+    @Override
+    public void persistConcreteStateTransition(ConcreteStateTransition concreteStateTransition) {
+        // concrete state transitions are not kept
+    }
+
+    @Override
+    public void persistSequence(Sequence sequence) {
+        if (sequence.isRunning() || store == null) {
+            return;
+        }
+        nrOfEndedSequences++;
+        try {
+            if (snapshotInterval > 0 && nrOfEndedSequences % snapshotInterval == 0) {
+                store.snapshot(model, true);
+            }
+            else {
+                store.force();
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void initSequenceManager(SequenceManager sequenceManager) {
+        // sequences are not kept
+    }
+
+    @Override
+    public void persistSequenceNode(SequenceNode sequenceNode) {
+        // sequences are not kept
+    }
+
+    @Override
+    public void persistSequenceStep(SequenceStep sequenceStep) {
+        // sequences are not kept
+    }
+
+    @Override
+    public boolean modelIsDeterministic(AbstractStateModel abstractStateModel) {
+        return model.isDeterministic();
+    }
+
+    @Override
+    public int getNrOfNondeterministicActions(AbstractStateModel abstractStateModel) {
+        return model.getNrOfNondeterministicActions();
+    }
+
+    @Override
+    public void eventReceived(StateModelEvent event) {
+        if (!listening) return;
+
+        try {
+            eventHelper.validateEvent(event);
+        } catch (InvalidEventException e) {
+            // There is something wrong with the event. we do nothing and exit
+            System.out.println("Received wrong payload for event: " + event.getPayload().getClass().toString());
+            return;
+        }
+
+        switch (event.getEventType()) {
+            case ABSTRACT_STATE_ADDED:
+            case ABSTRACT_STATE_CHANGED:
+                persistAbstractState((AbstractState) (event.getPayload()));
+                break;
+
+            case ABSTRACT_STATE_TRANSITION_ADDED:
+            case ABSTRACT_STATE_TRANSITION_CHANGED:
+                persistAbstractStateTransition((AbstractStateTransition) (event.getPayload()));
+                break;
+
+            case ABSTRACT_STATE_MODEL_INITIALIZED:
+                initAbstractStateModel((AbstractStateModel) (event.getPayload()));
+                break;
+
+            case SEQUENCE_STARTED:
+            case SEQUENCE_ENDED:
+                persistSequence((Sequence) event.getPayload());
+                break;
+        }
+    }
+
+    @Override
+    public void setListening(boolean listening) {
+        this.listening = listening;
+    }
+}
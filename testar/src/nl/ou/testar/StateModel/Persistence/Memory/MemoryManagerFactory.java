@@ -0,0 +1,23 @@
+package nl.ou.testar.StateModel.Persistence.Memory;
+
+import nl.ou.testar.StateModel.Persistence.PersistenceManager;
+import nl.ou.testar.StateModel.Persistence.PersistenceManagerFactory;
+import nl.ou.testar.StateModel.Util.EventHelper;
+import org.fruit.monkey.ConfigTags;
+import org.fruit.monkey.Settings;
+
+import java.io.File;
+
+public class MemoryManagerFactory implements PersistenceManagerFactory {
+
+    @Override
+    public PersistenceManager getPersistenceManager(Settings settings) {
+        // the model is kept in memory, so the changes are always processed instantly, whatever the data store mode
+        String directory = settings.get(ConfigTags.DataStoreDirectory);
+        if (directory == null || directory.isEmpty()) {
+            directory = settings.get(ConfigTags.OutputDir);
+        }
+        return new MemoryManager(new EventHelper(), new File(directory), Math.max(0, settings.get(ConfigTags.DataStoreSnapshotInterval)));
+    }
+
+}
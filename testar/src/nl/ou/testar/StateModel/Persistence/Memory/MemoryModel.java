@@ -0,0 +1,315 @@
+package nl.ou.testar.StateModel.Persistence.Memory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact representation of an abstract state model. All the identifiers are interned to int values, so that the
+ * states, actions and transitions are kept in primitive keyed structures. Every change to the model can be reported
+ * to a record sink as a fixed size record, which is what the journal and snapshot files consist of.
+ * The determinism of the model is kept up to date while the transitions are added.
+ */
+class MemoryModel {
+
+    // the record types, with the number of int values that follow the type
+    static final byte END = 0;
+    static final byte STRING = 1;
+    static final byte STATE = 2;
+    static final byte INITIAL = 3;
+    static final byte ACTION = 4;
+    static final byte VISITED = 5;
+    static final byte TRANSITION = 6;
+    static final byte CONCRETE_STATE = 7;
+    static final byte CONCRETE_ACTION = 8;
+
+    private static final int[] ARITY = {0, 1, 1, 1, 2, 2, 3, 2, 2};
+
+    private final List<String> strings = new ArrayList<>();
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+
+    // the states, by the id of their state identifier
+    private final IntMap<StateRecord> states = new IntMap<>();
+
+    // the concrete action ids, by the id of the abstract action identifier
+    private final IntMap<IntSet> concreteActionIds = new IntMap<>();
+
+    private int nrOfTransitions = 0;
+
+    // the number of (state, action) pairs that lead to more than one target state
+    private int nrOfNondeterministicPairs = 0;
+
+    // the number of transitions that belong to such a pair
+    private int nrOfNondeterministicActions = 0;
+
+    private RecordSink sink;
+
+    /**
+     * Receives the records that describe the changes to the model.
+     */
+    interface RecordSink {
+        void string(int id, String value);
+
+        void record(byte type, int first, int second, int third);
+    }
+
+    static class StateRecord {
+        boolean initial = false;
+        final IntSet actions = new IntSet();
+        final IntSet visitedActions = new IntSet();
+        final IntSet concreteStateIds = new IntSet();
+        // the target states, by action
+        final IntMap<IntSet> targets = new IntMap<>();
+    }
+
+    /**
+     * Returns the number of int values that follow a record type, or -1 if the type is unknown.
+     * @param type
+     * @return
+     */
+    static int arity(byte type) {
+        return type >= 0 && type < ARITY.length ? ARITY[type] : -1;
+    }
+
+    /**
+     * Sets the sink that receives the changes to the model from now on, may be null.
+     * @param sink
+     */
+    void setSink(RecordSink sink) {
+        this.sink = sink;
+    }
+
+    void addState(String stateId) {
+        change(STATE, intern(stateId), 0, 0);
+    }
+
+    void setInitial(String stateId) {
+        change(INITIAL, intern(stateId), 0, 0);
+    }
+
+    void addAction(String stateId, String actionId) {
+        change(ACTION, intern(stateId), intern(actionId), 0);
+    }
+
+    void addVisitedAction(String stateId, String actionId) {
+        change(VISITED, intern(stateId), intern(actionId), 0);
+    }
+
+    void addTransition(String sourceStateId, String actionId, String targetStateId) {
+        change(TRANSITION, intern(sourceStateId), intern(actionId), intern(targetStateId));
+    }
+
+    void addConcreteStateId(String stateId, String concreteStateId) {
+        change(CONCRETE_STATE, intern(stateId), intern(concreteStateId), 0);
+    }
+
+    void addConcreteActionId(String actionId, String concreteActionId) {
+        change(CONCRETE_ACTION, intern(actionId), intern(concreteActionId), 0);
+    }
+
+    private void change(byte type, int first, int second, int third) {
+        if (apply(type, first, second, third) && sink != null) {
+            sink.record(type, first, second, third);
+        }
+    }
+
+    private int intern(String value) {
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            stringIds.put(value, id);
+            if (sink != null) {
+                sink.string(id, value);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Defines a string while a journal or snapshot is being replayed. The strings have to be defined in order.
+     * @param id
+     * @param value
+     */
+    void defineString(int id, String value) {
+        if (id != strings.size()) {
+            throw new IllegalStateException("Expected string " + strings.size() + " but found string " + id);
+        }
+        strings.add(value);
+        stringIds.put(value, id);
+    }
+
+    /**
+     * Applies a record to the model.
+     * @param type
+     * @param first
+     * @param second
+     * @param third
+     * @return true if the model was changed
+     */
+    boolean apply(byte type, int first, int second, int third) {
+        checkString(first);
+        if (arity(type) > 1) {
+            checkString(second);
+        }
+        switch (type) {
+            case STATE:
+                if (states.get(first) != null) {
+                    return false;
+                }
+                states.put(first, new StateRecord());
+                return true;
+
+            case INITIAL:
+                StateRecord initialState = state(first);
+                if (initialState.initial) {
+                    return false;
+                }
+                initialState.initial = true;
+                return true;
+
+            case ACTION:
+                return state(first).actions.add(second);
+
+            case VISITED:
+                StateRecord visitedState = state(first);
+                boolean added = visitedState.actions.add(second);
+                return visitedState.visitedActions.add(second) || added;
+
+            case TRANSITION:
+                checkString(third);
+                StateRecord sourceState = state(first);
+                state(third);
+                sourceState.actions.add(second);
+                sourceState.visitedActions.add(second);
+                IntSet targets = sourceState.targets.get(second);
+                if (targets == null) {
+                    targets = new IntSet();
+                    sourceState.targets.put(second, targets);
+                }
+                if (!targets.add(third)) {
+                    return false;
+                }
+                nrOfTransitions++;
+                if (targets.size() == 2) {
+                    // the first transition of the pair becomes nondeterministic as well
+                    nrOfNondeterministicPairs++;
+                    nrOfNondeterministicActions += 2;
+                }
+                else if (targets.size() > 2) {
+                    nrOfNondeterministicActions++;
+                }
+                return true;
+
+            case CONCRETE_STATE:
+                return state(first).concreteStateIds.add(second);
+
+            case CONCRETE_ACTION:
+                IntSet concreteIds = concreteActionIds.get(first);
+                if (concreteIds == null) {
+                    concreteIds = new IntSet();
+                    concreteActionIds.put(first, concreteIds);
+                }
+                return concreteIds.add(second);
+
+            default:
+                throw new IllegalArgumentException("Unknown record type " + type);
+        }
+    }
+
+    private void checkString(int id) {
+        if (id < 0 || id >= strings.size()) {
+            throw new IllegalStateException("Unknown string " + id);
+        }
+    }
+
+    private StateRecord state(int stateId) {
+        StateRecord state = states.get(stateId);
+        if (state == null) {
+            state = new StateRecord();
+            states.put(stateId, state);
+        }
+        return state;
+    }
+
+    /**
+     * Reports the complete model to a record sink, as the content of a snapshot.
+     * @param target
+     */
+    void writeTo(RecordSink target) {
+        for (int i = 0; i < strings.size(); i++) {
+            target.string(i, strings.get(i));
+        }
+        int[] stateIds = states.keys();
+        for (int stateId : stateIds) {
+            StateRecord state = states.get(stateId);
+            target.record(STATE, stateId, 0, 0);
+            if (state.initial) {
+                target.record(INITIAL, stateId, 0, 0);
+            }
+            for (int actionId : state.actions.toArray()) {
+                target.record(ACTION, stateId, actionId, 0);
+            }
+            for (int actionId : state.visitedActions.toArray()) {
+                target.record(VISITED, stateId, actionId, 0);
+            }
+            for (int concreteStateId : state.concreteStateIds.toArray()) {
+                target.record(CONCRETE_STATE, stateId, concreteStateId, 0);
+            }
+        }
+        for (int stateId : stateIds) {
+            IntMap<IntSet> targets = states.get(stateId).targets;
+            for (int actionId : targets.keys()) {
+                for (int targetStateId : targets.get(actionId).toArray()) {
+                    target.record(TRANSITION, stateId, actionId, targetStateId);
+                }
+            }
+        }
+        for (int actionId : concreteActionIds.keys()) {
+            for (int concreteActionId : concreteActionIds.get(actionId).toArray()) {
+                target.record(CONCRETE_ACTION, actionId, concreteActionId, 0);
+            }
+        }
+    }
+
+    String string(int id) {
+        return strings.get(id);
+    }
+
+    int[] getStateIds() {
+        return states.keys();
+    }
+
+    StateRecord getState(int stateId) {
+        return states.get(stateId);
+    }
+
+    /**
+     * Returns the concrete action ids of an abstract action.
+     * @param actionId
+     * @return
+     */
+    int[] getConcreteActionIds(int actionId) {
+        IntSet concreteIds = concreteActionIds.get(actionId);
+        return concreteIds == null ? new int[0] : concreteIds.toArray();
+    }
+
+    int getNrOfStates() {
+        return states.size();
+    }
+
+    int getNrOfTransitions() {
+        return nrOfTransitions;
+    }
+
+    boolean isDeterministic() {
+        return nrOfNondeterministicPairs == 0;
+    }
+
+    int getNrOfNondeterministicActions() {
+        return nrOfNondeterministicActions;
+    }
+
+}
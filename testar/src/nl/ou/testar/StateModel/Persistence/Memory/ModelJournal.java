@@ -0,0 +1,104 @@
+package nl.ou.testar.StateModel.Persistence.Memory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only journal file of model records. The file is memory mapped in regions, so that appending a record is
+ * a plain memory write and the records survive a crash of the test process. The type of a record is written after
+ * its values, which means a record only becomes visible to a reader when it is complete. The unused part of the last
+ * region contains zeros, which mark the end of the journal.
+ */
+class ModelJournal implements MemoryModel.RecordSink, Closeable {
+
+    static final int MAGIC = 0x544A524E;
+
+    static final int VERSION = 1;
+
+    private static final int REGION_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    // the file offset of the mapped region
+    private long regionStart = 0;
+
+    /**
+     * Creates a new journal file.
+     * @param file
+     * @throws IOException
+     */
+    ModelJournal(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+    }
+
+    @Override
+    public void string(int id, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(9 + bytes.length);
+        int position = buffer.position();
+        buffer.putInt(position + 1, id);
+        buffer.putInt(position + 5, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(position + 9 + i, bytes[i]);
+        }
+        buffer.put(position, MemoryModel.STRING);
+        buffer.position(position + 9 + bytes.length);
+    }
+
+    @Override
+    public void record(byte type, int first, int second, int third) {
+        int arity = MemoryModel.arity(type);
+        ensureCapacity(1 + 4 * arity);
+        int position = buffer.position();
+        int[] values = {first, second, third};
+        for (int i = 0; i < arity; i++) {
+            buffer.putInt(position + 1 + 4 * i, values[i]);
+        }
+        buffer.put(position, type);
+        buffer.position(position + 1 + 4 * arity);
+    }
+
+    private void ensureCapacity(int size) {
+        if (buffer.remaining() >= size) {
+            return;
+        }
+        try {
+            // map the next region, starting at the end of the journal
+            regionStart += buffer.position();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(REGION_SIZE, size));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Could not extend the state model journal", e);
+        }
+    }
+
+    /**
+     * Writes the journal to the storage device.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        try {
+            channel.truncate(regionStart + buffer.position());
+        }
+        catch (IOException e) {
+            // some platforms do not allow to truncate a mapped file, the trailing zeros still mark the end
+        }
+        channel.close();
+    }
+
+}
@@ -0,0 +1,267 @@
+package nl.ou.testar.StateModel.Persistence.Memory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stores a memory model in a directory, as a snapshot file and the journal files of the changes that were made after
+ * the snapshot was taken. Every journal has a generation number. A snapshot contains the changes of all the journals
+ * up to its own generation, so that those journals can be deleted once the snapshot has been written.
+ */
+class ModelStore implements Closeable {
+
+    static final int SNAPSHOT_MAGIC = 0x54534E50;
+
+    static final int SNAPSHOT_VERSION = 1;
+
+    private final File directory;
+
+    private final String baseName;
+
+    // the generation of the current journal
+    private int generation = 0;
+
+    private ModelJournal journal;
+
+    /**
+     * Constructor
+     * @param directory the directory that contains the files
+     * @param modelIdentifier the identifier of the abstract state model
+     */
+    ModelStore(File directory, String modelIdentifier) {
+        this.directory = directory;
+        this.baseName = modelIdentifier.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    File getSnapshotFile() {
+        return new File(directory, baseName + ".snapshot");
+    }
+
+    private File getJournalFile(int journalGeneration) {
+        return new File(directory, baseName + ".journal." + journalGeneration);
+    }
+
+    /**
+     * Loads the snapshot and the journals that were written after it into a model.
+     * @param model
+     * @throws IOException
+     */
+    void load(MemoryModel model) throws IOException {
+        int snapshotGeneration = 0;
+        File snapshotFile = getSnapshotFile();
+        if (snapshotFile.exists()) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile.toPath()));
+            if (buffer.remaining() < 12 || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a state model snapshot: " + snapshotFile);
+            }
+            snapshotGeneration = buffer.getInt();
+            replay(buffer, model, snapshotFile);
+        }
+        generation = snapshotGeneration;
+
+        for (Map.Entry<Integer, File> journalFile : findJournals().entrySet()) {
+            if (journalFile.getKey() <= snapshotGeneration) {
+                // the journal is already contained in the snapshot
+                journalFile.getValue().delete();
+                continue;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journalFile.getValue().toPath()));
+            if (buffer.remaining() < 8 || buffer.getInt() != ModelJournal.MAGIC || buffer.getInt() != ModelJournal.VERSION) {
+                throw new IOException("Not a state model journal: " + journalFile.getValue());
+            }
+            replay(buffer, model, journalFile.getValue());
+            generation = journalFile.getKey();
+        }
+    }
+
+    private Map<Integer, File> findJournals() {
+        Map<Integer, File> journals = new TreeMap<>();
+        String prefix = baseName + ".journal.";
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    journals.put(Integer.parseInt(file.getName().substring(prefix.length())), file);
+                }
+                catch (NumberFormatException e) {
+                    // not one of our journals
+                }
+            }
+        }
+        return journals;
+    }
+
+    private static void replay(ByteBuffer buffer, MemoryModel model, File file) throws IOException {
+        try {
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                byte type = buffer.get();
+                if (type == MemoryModel.END) {
+                    return;
+                }
+                if (type == MemoryModel.STRING) {
+                    int id = buffer.getInt();
+                    byte[] bytes = new byte[buffer.getInt()];
+                    buffer.get(bytes);
+                    model.defineString(id, new String(bytes, StandardCharsets.UTF_8));
+                    continue;
+                }
+                int arity = MemoryModel.arity(type);
+                if (arity < 0) {
+                    throw new IOException("Unknown record type " + type + " at offset " + start + " in " + file);
+                }
+                int[] values = new int[3];
+                for (int i = 0; i < arity; i++) {
+                    values[i] = buffer.getInt();
+                }
+                model.apply(type, values[0], values[1], values[2]);
+            }
+        }
+        catch (BufferUnderflowException e) {
+            // the last record was not completely written, the records before it are valid
+            System.out.println("WARNING: " + file + " ends with an incomplete record");
+        }
+        catch (IllegalStateException | IllegalArgumentException e) {
+            throw new IOException("Invalid record in " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Starts a new journal that receives the changes to the model from now on.
+     * @param model
+     * @throws IOException
+     */
+    void openJournal(MemoryModel model) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create the directory " + directory);
+        }
+        generation++;
+        File journalFile = getJournalFile(generation);
+        // a journal that was left behind by an earlier session is not part of the model
+        Files.deleteIfExists(journalFile.toPath());
+        journal = new ModelJournal(journalFile);
+        model.setSink(journal);
+    }
+
+    /**
+     * Writes a snapshot of the model.
+     * @param model
+     * @param continueJournal should a new journal be started for the changes after the snapshot?
+     * @throws IOException
+     */
+    void snapshot(MemoryModel model, boolean continueJournal) throws IOException {
+        closeJournal(model);
+
+        File snapshotFile = getSnapshotFile();
+        File temporaryFile = new File(directory, baseName + ".snapshot.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(generation);
+            model.writeTo(new SnapshotWriter(out));
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        try {
+            Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // the journals are contained in the snapshot now. a journal that cannot be deleted yet is deleted on the next load
+        for (Map.Entry<Integer, File> journalFile : findJournals().entrySet()) {
+            if (journalFile.getKey() <= generation) {
+                journalFile.getValue().delete();
+            }
+        }
+        if (continueJournal) {
+            openJournal(model);
+        }
+    }
+
+    private void closeJournal(MemoryModel model) throws IOException {
+        if (journal != null) {
+            model.setSink(null);
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * Writes the current journal to the storage device.
+     */
+    void force() {
+        if (journal != null) {
+            journal.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Writes the records of a snapshot in the same format as the journal.
+     */
+    private static class SnapshotWriter implements MemoryModel.RecordSink {
+
+        private final DataOutputStream out;
+
+        private SnapshotWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void string(int id, String value) {
+            try {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeByte(MemoryModel.STRING);
+                out.writeInt(id);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void record(byte type, int first, int second, int third) {
+            try {
+                int arity = MemoryModel.arity(type);
+                out.writeByte(type);
+                int[] values = {first, second, third};
+                for (int i = 0; i < arity; i++) {
+                    out.writeInt(values[i]);
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+}
@@ -29,6 +29,24 @@ public class Config {
     // create/reset the database?
     private boolean resetDataStore;
 
+    // maximum number of pooled database sessions, 0 opens a new session every time
+    private int poolSize;
+
+    // maximum number of entities saved in one transaction, 0 saves the entities one by one without transactions
+    private int batchSize;
+
+    // maximum number of record ids that are cached by entity identifier, 0 disables the cache
+    private int identityCacheSize;
+
+    // how the widget trees of the concrete states are stored
+    private WidgetStorage widgetStorage = WidgetStorage.Tree;
+
+    // should an existing abstract state model be paged in on demand instead of loaded at startup?
+    private boolean lazyLoading;
+
+    // maximum number of paged in abstract states that are kept in memory
+    private int loadCacheSize;
+
     public String getConnectionType() {
         return connectionType;
     }
@@ -84,4 +102,52 @@ public class Config {
     public void setDatabaseDirectory(String databaseDirectory) {
         this.databaseDirectory = databaseDirectory;
     }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getIdentityCacheSize() {
+        return identityCacheSize;
+    }
+
+    public void setIdentityCacheSize(int identityCacheSize) {
+        this.identityCacheSize = identityCacheSize;
+    }
+
+    public WidgetStorage getWidgetStorage() {
+        return widgetStorage;
+    }
+
+    public void setWidgetStorage(WidgetStorage widgetStorage) {
+        this.widgetStorage = widgetStorage;
+    }
+
+    public boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    public void setLazyLoading(boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+    }
+
+    public int getLoadCacheSize() {
+        return loadCacheSize;
+    }
+
+    public void setLoadCacheSize(int loadCacheSize) {
+        this.loadCacheSize = loadCacheSize;
+    }
 }
@@ -1,10 +1,21 @@
 package nl.ou.testar.StateModel.Persistence.OrientDB.Entity;
 
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabasePool;
 import com.orientechnologies.orient.core.db.ODatabaseSession;
 import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Connection {
 
+    // the threads that use the data store at the same time: the test thread and the persistence writer
+    private static final int MIN_THREADS = 2;
+
+    // the sessions a thread can hold at once: a streaming query holds its session while its consumer gets another
+    private static final int SESSIONS_PER_THREAD = 2;
+
     /**
      * A configuration object
      */
@@ -15,6 +26,15 @@ public class Connection {
      */
     private OrientDB orientDB;
 
+    /**
+     * The pool of database sessions, null if the sessions are not pooled
+     */
+    private ODatabasePool pool;
+
+    // metrics: the number of sessions handed out and the time it took to get them
+    private final AtomicLong sessions = new AtomicLong();
+    private final AtomicLong sessionNanos = new AtomicLong();
+
     public Connection(OrientDB orientDB, Config config) {
         this.orientDB = orientDB;
         this.config = config;
@@ -22,21 +42,67 @@ public class Connection {
 
     /**
      * This method fetches a database session to the configured data store instance.
+     * With a pool size above 0 the session is taken from a pool, closing the session returns it to the pool.
+     * The session is bound to the calling thread until it is closed.
      * @return
      */
     public ODatabaseSession getDatabaseSession() {
-        return orientDB.open(config.getDatabase(), config.getUser(), config.getPassword());
+        long start = System.nanoTime();
+        ODatabaseSession session = getPool() != null ? pool.acquire() :
+                orientDB.open(config.getDatabase(), config.getUser(), config.getPassword());
+        sessionNanos.addAndGet(System.nanoTime() - start);
+        sessions.incrementAndGet();
+        return session;
+    }
+
+    private synchronized ODatabasePool getPool() {
+        // the pool is created on first use
+        if (pool == null && config.getPoolSize() > 0) {
+            OrientDBConfig poolConfig = OrientDBConfig.builder()
+                    .addConfig(OGlobalConfiguration.DB_POOL_MIN, 1)
+                    .addConfig(OGlobalConfiguration.DB_POOL_MAX, getMaxSessions())
+                    .build();
+            pool = new ODatabasePool(orientDB, config.getDatabase(), config.getUser(), config.getPassword(), poolConfig);
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the maximum number of sessions in the pool. A thread that waits for a session from an exhausted pool
+     * while it holds another one could wait forever, so the pool has room for the nested sessions of every thread
+     * that uses the data store at the same time.
+     * @return
+     */
+    int getMaxSessions() {
+        return Math.max(config.getPoolSize(), MIN_THREADS) * SESSIONS_PER_THREAD;
     }
 
     /**
      * This method tells the connection object to close the connection to the datastore instance.
      */
     void releaseConnection() {
+        synchronized (this) {
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
+        }
         if (orientDB.isOpen()) {
             orientDB.close();
         }
     }
 
+    /**
+     * Returns the number of sessions handed out and the average time it took to get one.
+     * @return
+     */
+    public String statistics() {
+        long count = sessions.get();
+        return String.format("%d database sessions (%s), average %.3f ms to get a session", count,
+                config.getPoolSize() > 0 ? "pool of " + getMaxSessions() : "not pooled",
+                count == 0 ? 0.0 : sessionNanos.get() / (count * 1e6));
+    }
+
     /**
      * Returns the configuration object for this connection.
      * @return
@@ -0,0 +1,79 @@
+package nl.ou.testar.StateModel.Persistence.OrientDB.Entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A unit of work: entities that the entity manager saves together, in the order in which they were added.
+ * Vertices have to be added before the edges that connect them.
+ */
+public class EntityBatch {
+
+    private final List<DocumentEntity> entities = new ArrayList<>();
+
+    // entities that are known not to exist in the data store yet, so they do not have to be looked up
+    private final Set<DocumentEntity> newEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // the vertex whose presence in the data store tells that the batch was saved completely
+    private VertexEntity completionEntity;
+
+    /**
+     * Add an entity to the batch.
+     * @param entity
+     * @param knownNew true if the entity certainly does not exist in the data store yet
+     */
+    public void add(DocumentEntity entity, boolean knownNew) {
+        entities.add(entity);
+        if (knownNew) {
+            newEntities.add(entity);
+        }
+    }
+
+    /**
+     * Mark the vertex whose presence in the data store tells that the whole batch was saved. When the batch is saved
+     * in several transactions, this vertex and the edges that connect to it are saved in the last one.
+     * @param entity a vertex entity of the batch
+     */
+    public void setCompletionEntity(VertexEntity entity) {
+        completionEntity = entity;
+    }
+
+    public VertexEntity getCompletionEntity() {
+        return completionEntity;
+    }
+
+    /**
+     * Returns true if the entity is the completion vertex, or an edge that connects to it.
+     * @param entity
+     * @return
+     */
+    public boolean completes(DocumentEntity entity) {
+        if (completionEntity == null) {
+            return false;
+        }
+        if (entity == completionEntity) {
+            return true;
+        }
+        if (entity instanceof EdgeEntity) {
+            EdgeEntity edgeEntity = (EdgeEntity) entity;
+            return edgeEntity.getSourceEntity() == completionEntity || edgeEntity.getTargetEntity() == completionEntity;
+        }
+        return false;
+    }
+
+    public List<DocumentEntity> getEntities() {
+        return Collections.unmodifiableList(entities);
+    }
+
+    public boolean isKnownNew(DocumentEntity entity) {
+        return newEntities.contains(entity);
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+}
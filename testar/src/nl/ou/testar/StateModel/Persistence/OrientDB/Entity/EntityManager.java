@@ -3,6 +3,8 @@ package nl.ou.testar.StateModel.Persistence.OrientDB.Entity;
 import com.orientechnologies.orient.core.db.ODatabaseSession;
 import com.orientechnologies.orient.core.db.OrientDB;
 import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OProperty;
 import com.orientechnologies.orient.core.metadata.schema.OSchema;
@@ -10,6 +12,7 @@ import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.metadata.sequence.OSequence;
 import com.orientechnologies.orient.core.metadata.sequence.OSequenceLibrary;
 import com.orientechnologies.orient.core.record.ODirection;
+import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.OEdge;
 import com.orientechnologies.orient.core.record.OElement;
 import com.orientechnologies.orient.core.record.OVertex;
@@ -21,13 +24,20 @@ import nl.ou.testar.StateModel.Persistence.OrientDB.Util.DependencyHelper;
 import org.fruit.alayer.Visualizer;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class EntityManager {
 
+    // the maximum number of identifier values that are looked up in one query
+    private static final int LOOKUP_SIZE = 1000;
+
     // the connection object holding the datastore instance and the connection configuration information
     private Connection connection;
 
+    // the record ids of the entities that were recently stored or retrieved
+    private IdentityCache identityCache;
+
     /**
      * Constructor
      * @param config
@@ -37,6 +47,7 @@ public class EntityManager {
                 config.getServer() : config.getDatabaseDirectory()) + "/";
         OrientDB orientDB = new OrientDB(connectionString, OrientDBConfig.defaultConfig());
         connection = new Connection(orientDB, config);
+        identityCache = new IdentityCache(config.getIdentityCacheSize());
         init();
     }
 
@@ -45,6 +56,7 @@ public class EntityManager {
      * Should be called before the entity manager itself becomes unused.
      */
     public void releaseConnection() {
+        System.out.println("State model persistence: " + connection.statistics() + ", " + identityCache.statistics());
         connection.releaseConnection();
     }
 
@@ -112,10 +124,18 @@ public class EntityManager {
         // first we prepare the statement to execute
         String className = vertexEntity.getEntityClass().getClassName();
         String idField = identifier.getPropertyName();
+        Object idValue = vertexEntity.getPropertyValue(idField).getValue();
+
+        // the vertex can be loaded directly if we know its record id
+        OElement cachedElement = loadCachedElement(className, idValue, db);
+        if (cachedElement != null && cachedElement.isVertex()) {
+            return cachedElement.asVertex().get();
+        }
+
         String stmt = "SELECT FROM " + className + " WHERE " + idField + " = :" + idField;
         // get the id parameter ready
         Map<String, Object> params = new HashMap<>();
-        params.put(idField, vertexEntity.getPropertyValue(idField).getValue());
+        params.put(idField, idValue);
         //execute the query using statement and parameters
         OResultSet rs = db.query(stmt, params);
 
@@ -126,6 +146,7 @@ public class EntityManager {
 
         Optional<OVertex> op = rs.next().getVertex();
         if (op.isPresent()) {
+            identityCache.put(className, idValue, op.get().getIdentity());
             return op.get();
         }
 
@@ -145,8 +166,15 @@ public class EntityManager {
         // an edge can have an Id field, in which case we will just look for the id, as it will be indexed and unique.
         // If an edge does not have an Id field, we will attempt to look for an edge between the source and target vertices.
         Property identifier = edgeEntity.getEntityClass().getIdentifier();
+        String className = edgeEntity.getEntityClass().getClassName();
+        Object idValue = identifier != null ? edgeEntity.getPropertyValue(identifier.getPropertyName()).getValue() : null;
         OResultSet rs;
         if (identifier != null) {
+            // the edge can be loaded directly if we know its record id
+            OElement cachedElement = loadCachedElement(className, idValue, db);
+            if (cachedElement != null && cachedElement.isEdge()) {
+                return cachedElement.asEdge().get();
+            }
             rs = retrieveEdgeWithId(edgeEntity, db);
         }
         else {
@@ -160,6 +188,9 @@ public class EntityManager {
 
         Optional<OEdge> op = rs.next().getEdge();
         if (op.isPresent()) {
+            if (idValue != null) {
+                identityCache.put(className, idValue, op.get().getIdentity());
+            }
             return op.get();
         }
 
@@ -167,6 +198,53 @@ public class EntityManager {
         throw new EntityNotFoundException();
     }
 
+    /**
+     * Method loads an element by the record id that is cached for it. Returns null if the record id is not known or
+     * if the record no longer exists.
+     * @param className
+     * @param idValue
+     * @param db
+     * @return
+     */
+    private OElement loadCachedElement(String className, Object idValue, ODatabaseSession db) {
+        ORID recordId = identityCache.get(className, idValue);
+        if (recordId == null) {
+            return null;
+        }
+        ORecord record = db.load(recordId);
+        if (record instanceof OElement) {
+            return (OElement) record;
+        }
+        // the record was deleted in the mean time
+        identityCache.remove(className, idValue);
+        return null;
+    }
+
+    /**
+     * Stores the record id of a saved element in the identity cache.
+     * @param element
+     * @param entity
+     */
+    private void cacheIdentity(OElement element, DocumentEntity entity) {
+        Property identifier = entity.getEntityClass().getIdentifier();
+        if (identifier == null || entity.getPropertyValue(identifier.getPropertyName()) == null) {
+            return;
+        }
+        identityCache.put(entity.getEntityClass().getClassName(), entity.getPropertyValue(identifier.getPropertyName()).getValue(), element.getIdentity());
+    }
+
+    /**
+     * Removes the record id of an element that was deleted again from the identity cache.
+     * @param entity
+     */
+    private void forgetIdentity(DocumentEntity entity) {
+        Property identifier = entity.getEntityClass().getIdentifier();
+        if (identifier == null || entity.getPropertyValue(identifier.getPropertyName()) == null) {
+            return;
+        }
+        identityCache.remove(entity.getEntityClass().getClassName(), entity.getPropertyValue(identifier.getPropertyName()).getValue());
+    }
+
     /**
      * Method retrieves an edge from the data store based on the value of a unique id field.
      * @param edgeEntity
@@ -356,6 +434,7 @@ public class EntityManager {
         }
 
         oVertex.save();
+        cacheIdentity(oVertex, entity);
     }
 
     /**
@@ -418,6 +497,7 @@ public class EntityManager {
             }
 
             sourceVertex.save();
+            cacheIdentity(sourceVertex, entity.getSourceEntity());
         }
 
         // retrieve and/or update/save the target vertex
@@ -450,6 +530,7 @@ public class EntityManager {
             }
 
             targetVertex.save();
+            cacheIdentity(targetVertex, entity.getTargetEntity());
         }
 
         // now create the new edge, set the properties and save
@@ -472,6 +553,312 @@ public class EntityManager {
         }
 
         edge.save();
+        cacheIdentity(edge, entity);
+    }
+
+    /**
+     * This method saves the entities of a batch in one transaction, or in transactions of at most chunkSize entities.
+     * Entities that are known to be new are created without looking them up first, and edges are connected to the
+     * vertices of the same batch without looking those up either.
+     * When the batch is split, the completion vertex of the batch is saved in the last transaction, and the elements
+     * that earlier transactions created are deleted again if a later one fails, so that the batch is either stored
+     * completely or not at all.
+     * @param batch
+     * @param chunkSize the maximum number of entities per transaction, 0 for a single transaction
+     */
+    public void saveBatch(EntityBatch batch, int chunkSize) {
+        try (ODatabaseSession db = connection.getDatabaseSession()) {
+            Map<VertexEntity, OVertex> vertices = new IdentityHashMap<>();
+            // the elements of the current transaction, that get their final record ids when it is committed
+            Map<OElement, DocumentEntity> uncommitted = new IdentityHashMap<>();
+            // the elements that the current transaction creates, and those that earlier transactions created
+            List<OElement> created = new ArrayList<>();
+            Map<ORID, DocumentEntity> committed = new LinkedHashMap<>();
+            // the completion vertex and its edges go last, so that it only exists when the rest of the batch does
+            List<DocumentEntity> completing = new ArrayList<>();
+            Map<VertexEntity, ORID> storedVertices = findStoredVertices(batch, db);
+            db.begin();
+            try {
+                int pending = 0;
+                for (DocumentEntity entity : batch.getEntities()) {
+                    if (chunkSize > 0 && batch.completes(entity)) {
+                        completing.add(entity);
+                        continue;
+                    }
+                    saveBatchEntity(entity, batch, storedVertices, vertices, uncommitted, created, db);
+                    if (chunkSize > 0 && ++pending >= chunkSize) {
+                        db.commit();
+                        uncommitted.forEach(this::cacheIdentity);
+                        for (OElement element : created) {
+                            committed.put(element.getIdentity(), uncommitted.get(element));
+                        }
+                        uncommitted.clear();
+                        created.clear();
+                        db.begin();
+                        pending = 0;
+                    }
+                }
+                for (DocumentEntity entity : completing) {
+                    saveBatchEntity(entity, batch, storedVertices, vertices, uncommitted, created, db);
+                }
+                db.commit();
+                uncommitted.forEach(this::cacheIdentity);
+            }
+            catch (RuntimeException e) {
+                db.rollback();
+                deleteCommitted(committed, db);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * This method saves one entity of a batch, and registers the element that stores it in the current transaction.
+     * @param entity
+     * @param batch
+     * @param storedVertices
+     * @param vertices
+     * @param uncommitted
+     * @param created
+     * @param db
+     */
+    private void saveBatchEntity(DocumentEntity entity, EntityBatch batch, Map<VertexEntity, ORID> storedVertices,
+                                 Map<VertexEntity, OVertex> vertices, Map<OElement, DocumentEntity> uncommitted,
+                                 List<OElement> created, ODatabaseSession db) {
+        OElement element = null;
+        if (entity.getEntityClass().isVertex()) {
+            VertexEntity vertexEntity = (VertexEntity) entity;
+            // a vertex that was looked up and not found does not have to be looked up again
+            ORID storedId = storedVertices.get(vertexEntity);
+            boolean knownNew = batch.isKnownNew(entity) || (storedId == null && storedVertices.containsKey(vertexEntity));
+            OVertex oVertex = saveBatchVertex(vertexEntity, knownNew, storedId, db);
+            vertices.put(vertexEntity, oVertex);
+            element = oVertex;
+        }
+        else if (entity.getEntityClass().isEdge()) {
+            element = saveBatchEdge((EdgeEntity) entity, batch.isKnownNew(entity), vertices, db);
+        }
+        if (element != null) {
+            uncommitted.put(element, entity);
+            // records that are created in this transaction still have a temporary record id
+            if (element.getIdentity().isNew()) {
+                created.add(element);
+            }
+        }
+    }
+
+    /**
+     * This method deletes the elements that earlier transactions of a failed batch created, edges before vertices.
+     * @param committed
+     * @param db
+     */
+    private void deleteCommitted(Map<ORID, DocumentEntity> committed, ODatabaseSession db) {
+        if (committed.isEmpty()) {
+            return;
+        }
+        List<ORID> recordIds = new ArrayList<>(committed.keySet());
+        Collections.reverse(recordIds);
+        try {
+            db.begin();
+            for (ORID recordId : recordIds) {
+                if (db.load(recordId) != null) {
+                    db.delete(recordId);
+                }
+            }
+            db.commit();
+        }
+        catch (RuntimeException e) {
+            db.rollback();
+            System.out.println("Could not remove the partially saved batch: " + e.getMessage());
+        }
+        for (DocumentEntity entity : committed.values()) {
+            forgetIdentity(entity);
+        }
+    }
+
+    /**
+     * This method looks up which of the vertices of a batch that are not known to be new are stored already, with one
+     * query per entity class for all of them instead of a query per vertex.
+     * @param batch
+     * @param db
+     * @return the record ids of the vertices that were looked up, null for the ones that are not stored yet
+     */
+    private Map<VertexEntity, ORID> findStoredVertices(EntityBatch batch, ODatabaseSession db) {
+        Map<VertexEntity, ORID> storedVertices = new IdentityHashMap<>();
+        // the vertices to look up, by class name and identifier value
+        Map<String, Map<Object, List<VertexEntity>>> lookups = new HashMap<>();
+        Map<String, String> idFields = new HashMap<>();
+        for (DocumentEntity entity : batch.getEntities()) {
+            Property identifier = entity.getEntityClass().getIdentifier();
+            if (!entity.getEntityClass().isVertex() || batch.isKnownNew(entity) || identifier == null ||
+                    entity.getPropertyValue(identifier.getPropertyName()) == null) {
+                continue;
+            }
+            String className = entity.getEntityClass().getClassName();
+            Object idValue = entity.getPropertyValue(identifier.getPropertyName()).getValue();
+            ORID recordId = identityCache.get(className, idValue);
+            if (recordId != null) {
+                storedVertices.put((VertexEntity) entity, recordId);
+                continue;
+            }
+            idFields.put(className, identifier.getPropertyName());
+            lookups.computeIfAbsent(className, k -> new HashMap<>()).computeIfAbsent(idValue, k -> new ArrayList<>()).add((VertexEntity) entity);
+        }
+
+        for (Map.Entry<String, Map<Object, List<VertexEntity>>> lookup : lookups.entrySet()) {
+            String className = lookup.getKey();
+            String idField = idFields.get(className);
+            Map<Object, List<VertexEntity>> entitiesById = lookup.getValue();
+            for (List<VertexEntity> entities : entitiesById.values()) {
+                for (VertexEntity entity : entities) {
+                    storedVertices.put(entity, null);
+                }
+            }
+
+            String stmt = "SELECT @rid AS rid, " + idField + " AS id FROM " + className + " WHERE " + idField + " IN :ids";
+            List<Object> idValues = new ArrayList<>(entitiesById.keySet());
+            for (int from = 0; from < idValues.size(); from += LOOKUP_SIZE) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("ids", idValues.subList(from, Math.min(from + LOOKUP_SIZE, idValues.size())));
+                try (OResultSet rs = db.query(stmt, params)) {
+                    while (rs.hasNext()) {
+                        OResult result = rs.next();
+                        Object rid = result.getProperty("rid");
+                        Object idValue = result.getProperty("id");
+                        List<VertexEntity> entities = entitiesById.get(idValue);
+                        if (!(rid instanceof OIdentifiable) || entities == null) {
+                            continue;
+                        }
+                        ORID recordId = ((OIdentifiable) rid).getIdentity();
+                        identityCache.put(className, idValue, recordId);
+                        for (VertexEntity entity : entities) {
+                            storedVertices.put(entity, recordId);
+                        }
+                    }
+                }
+            }
+        }
+        return storedVertices;
+    }
+
+    /**
+     * This method saves a vertex entity of a batch and returns the stored vertex.
+     * @param entity
+     * @param knownNew
+     * @param storedId the record id of the vertex if it is known to be stored, null otherwise
+     * @param db
+     * @return
+     */
+    private OVertex saveBatchVertex(VertexEntity entity, boolean knownNew, ORID storedId, ODatabaseSession db) {
+        if (!knownNew) {
+            try {
+                ORecord record = storedId == null ? null : db.load(storedId);
+                OVertex oVertex = record instanceof OElement && ((OElement) record).isVertex() ?
+                        ((OElement) record).asVertex().get() : retrieveVertex(entity, db);
+                if (entity.updateEnabled()) {
+                    storeProperties(oVertex, entity, db);
+                    oVertex.save();
+                }
+                return oVertex;
+            }
+            catch (EntityNotFoundException e) {
+                // vertex doesn't exist yet, create it below
+            }
+        }
+        OVertex oVertex = db.newVertex(entity.getEntityClass().getClassName());
+        storeProperties(oVertex, entity, db);
+        oVertex.save();
+        return oVertex;
+    }
+
+    /**
+     * This method saves an edge entity of a batch, with the vertices of the batch saved so far.
+     * @param entity
+     * @param knownNew
+     * @param vertices
+     * @param db
+     * @return the stored edge, or null if the edge has no endpoints
+     */
+    private OEdge saveBatchEdge(EdgeEntity entity, boolean knownNew, Map<VertexEntity, OVertex> vertices, ODatabaseSession db) {
+        // an edge always needs both a source and a target vertex
+        if (entity.getSourceEntity() == null || entity.getTargetEntity() == null) {
+            return null;
+        }
+
+        if (!knownNew) {
+            try {
+                OEdge edge = retrieveEdge(entity, db);
+                if (entity.updateEnabled()) {
+                    for (String propertyName : entity.getPropertyNames()) {
+                        setProperty(edge, propertyName, entity.getPropertyValue(propertyName).getValue(), db);
+                    }
+                    edge.save();
+                }
+                return edge;
+            }
+            catch (EntityNotFoundException e) {
+                // edge doesn't exist yet, create it below
+            }
+        }
+
+        OVertex sourceVertex = vertices.get(entity.getSourceEntity());
+        if (sourceVertex == null) {
+            sourceVertex = saveBatchVertex(entity.getSourceEntity(), false, null, db);
+            vertices.put(entity.getSourceEntity(), sourceVertex);
+        }
+        OVertex targetVertex = vertices.get(entity.getTargetEntity());
+        if (targetVertex == null) {
+            targetVertex = saveBatchVertex(entity.getTargetEntity(), false, null, db);
+            vertices.put(entity.getTargetEntity(), targetVertex);
+        }
+
+        OEdge edge = sourceVertex.addEdge(targetVertex, entity.getEntityClass().getClassName());
+        storeProperties(edge, entity, db);
+        edge.save();
+        return edge;
+    }
+
+    /**
+     * Sets all the properties of an entity on an element, including the auto-increment fields that have no value yet.
+     * @param element
+     * @param entity
+     * @param db
+     */
+    private void storeProperties(OElement element, DocumentEntity entity, ODatabaseSession db) {
+        for (String propertyName : entity.getPropertyNames()) {
+            setProperty(element, propertyName, entity.getPropertyValue(propertyName).getValue(), db);
+        }
+
+        for (Property property : entity.getEntityClass().getProperties()) {
+            if (property.isAutoIncrement() && element.getProperty(property.getPropertyName()) == null) {
+                OSequence sequence = db.getMetadata().getSequenceLibrary().getSequence(createSequenceId(entity.getEntityClass(), property));
+                setProperty(element, property.getPropertyName(), sequence.next(), db);
+            }
+        }
+    }
+
+    /**
+     * Method returns true if the record id of the vertex is in the identity cache, meaning it has been stored before.
+     * @param vertexEntity
+     * @return
+     */
+    public boolean entityIsCached(VertexEntity vertexEntity) {
+        Property identifier = vertexEntity.getEntityClass().getIdentifier();
+        if (identifier == null || vertexEntity.getPropertyValue(identifier.getPropertyName()) == null) {
+            return false;
+        }
+        return identityCache.get(vertexEntity.getEntityClass().getClassName(), vertexEntity.getPropertyValue(identifier.getPropertyName()).getValue()) != null;
+    }
+
+    /**
+     * Method returns true if the vertex is already present in the data store.
+     * @param vertexEntity
+     * @return
+     */
+    public boolean entityExists(VertexEntity vertexEntity) {
+        try (ODatabaseSession db = connection.getDatabaseSession()) {
+            return vertexExists(vertexEntity, db);
+        }
     }
 
     public void deleteEntity(DocumentEntity entity) {
@@ -517,6 +904,7 @@ public class EntityManager {
             Map<String, Object> params = new HashMap<>();
             params.put(identifier.getPropertyName(), idValues);
             db.command(stmt, params);
+            idValues.forEach(idValue -> identityCache.remove(entityClass.getClassName(), idValue));
         }
     }
 
@@ -554,7 +942,7 @@ public class EntityManager {
             OBlob record = db.newBlob((byte[]) propertyValue);
             element.setProperty(propertyName, record);
         }
-        else if (propertyValue instanceof Set) {
+        else if (propertyValue instanceof Set || propertyValue instanceof List) {
             element.setProperty(propertyName, propertyValue);
         }
         else if (propertyValue instanceof Date) {
@@ -617,38 +1005,54 @@ public class EntityManager {
      */
     public Set<DocumentEntity> retrieveAllOfClass(EntityClass entityClass, Map<String, PropertyValue> entityProperties) {
         HashSet<DocumentEntity> documents = new HashSet<>();
+        streamAllOfClass(entityClass, entityProperties, documents::add);
+        return documents;
+    }
+
+    /**
+     * This method passes the entities of a given class that match the given property values to a consumer, one by one
+     * while iterating over the query results, so that the entities do not have to be kept in memory all at once.
+     * The property names may also be field paths, such as out.stateId for the identifier of the source vertex of an edge.
+     * @param entityClass
+     * @param entityProperties
+     * @param consumer
+     */
+    public void streamAllOfClass(EntityClass entityClass, Map<String, PropertyValue> entityProperties, Consumer<DocumentEntity> consumer) {
         try (ODatabaseSession db = connection.getDatabaseSession()) {
             String stmt = "SELECT FROM " + entityClass.getClassName();
-
-            OResultSet rs;
+            Map<String, Object> params = new HashMap<>();
             // check if there are properties that we need
             if (entityProperties != null && !entityProperties.isEmpty()) {
-                Map<String, Object> params = new HashMap<>();
                 StringJoiner stringJoiner = new StringJoiner(" AND ");
                 stmt += " WHERE ";
                 for (String propertyName : entityProperties.keySet()) {
-                    stringJoiner.add(propertyName + " = :" + propertyName);
-                    params.put(propertyName, getConvertedValue(entityProperties.get(propertyName).getType(), entityProperties.get(propertyName).getValue()));
+                    // field paths cannot be used as parameter names
+                    String parameterName = "p" + params.size();
+                    stringJoiner.add(propertyName + " = :" + parameterName);
+                    params.put(parameterName, getConvertedValue(entityProperties.get(propertyName).getType(), entityProperties.get(propertyName).getValue()));
                 }
                 stmt += stringJoiner.toString();
-                rs = db.query(stmt, params);
-            }
-            else {
-                rs = db.query(stmt);
             }
 
-            while (rs.hasNext()) {
-                OResult result = rs.next();
-                if (result.isVertex()) {
-                    documents.add(extractVertexEntity(result, entityClass));
-                }
-                else if (result.isEdge()) {
-                    documents.add(extractEdgeEntity(result));
+            try (OResultSet rs = db.query(stmt, params)) {
+                while (rs.hasNext()) {
+                    OResult result = rs.next();
+                    DocumentEntity entity = null;
+                    if (result.isVertex()) {
+                        entity = extractVertexEntity(result, entityClass);
+                    }
+                    else if (result.isEdge()) {
+                        entity = extractEdgeEntity(result);
+                    }
+                    // should not happen, but we just ignore the result
+                    if (entity != null) {
+                        consumer.accept(entity);
+                        // the consumer may have used a session of its own on this thread
+                        db.activateOnCurrentThread();
+                    }
                 }
-                // should not happen, but we just ignore the result
             }
         }
-        return documents;
     }
 
     /**
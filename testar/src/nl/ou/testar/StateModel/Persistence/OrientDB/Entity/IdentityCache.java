@@ -0,0 +1,97 @@
+package nl.ou.testar.StateModel.Persistence.OrientDB.Entity;
+
+import com.orientechnologies.orient.core.id.ORID;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache of the record ids of the entities that were stored in or retrieved from the data store,
+ * by entity class and identifier value. A cached record id saves the query that looks up an entity by its identifier.
+ * The cache is a hint only: a record that can no longer be loaded is looked up again with a query.
+ */
+public class IdentityCache {
+
+    private final int capacity;
+
+    private final Map<String, ORID> recordIds;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    /**
+     * Constructor
+     * @param capacity the maximum number of record ids to keep, 0 disables the cache
+     */
+    public IdentityCache(int capacity) {
+        this.capacity = capacity;
+        recordIds = new LinkedHashMap<String, ORID>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ORID> eldest) {
+                return size() > IdentityCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached record id of an entity, or null if it is not known.
+     * @param className
+     * @param idValue
+     * @return
+     */
+    public synchronized ORID get(String className, Object idValue) {
+        if (capacity <= 0) {
+            return null;
+        }
+        ORID recordId = recordIds.get(key(className, idValue));
+        if (recordId == null) {
+            misses++;
+        }
+        else {
+            hits++;
+        }
+        return recordId;
+    }
+
+    /**
+     * Stores the record id of an entity. Temporary record ids of uncommitted records must not be stored.
+     * @param className
+     * @param idValue
+     * @param recordId
+     */
+    public synchronized void put(String className, Object idValue, ORID recordId) {
+        if (capacity <= 0 || idValue == null || recordId == null || !recordId.isPersistent()) {
+            return;
+        }
+        recordIds.put(key(className, idValue), recordId.copy());
+    }
+
+    /**
+     * Removes the record id of an entity.
+     * @param className
+     * @param idValue
+     */
+    public synchronized void remove(String className, Object idValue) {
+        recordIds.remove(key(className, idValue));
+    }
+
+    public synchronized void clear() {
+        recordIds.clear();
+    }
+
+    /**
+     * Returns the size and hit rate of the cache.
+     * @return
+     */
+    public synchronized String statistics() {
+        long lookups = hits + misses;
+        return String.format("identity cache of %d/%d records, %d hits and %d misses (%.1f%% hit rate)",
+                recordIds.size(), capacity, hits, misses, lookups == 0 ? 0.0 : hits * 100.0 / lookups);
+    }
+
+    private static String key(String className, Object idValue) {
+        return className + "|" + idValue;
+    }
+
+}
@@ -0,0 +1,24 @@
+package nl.ou.testar.StateModel.Persistence.OrientDB.Entity;
+
+/**
+ * The ways in which the widget trees of the concrete states can be stored.
+ */
+public enum WidgetStorage {
+
+    // every concrete state has its own widget vertices, connected by isChildOf edges
+    Tree,
+
+    // widgets are stored once per model, by their concrete id, and every concrete state
+    // lists the widgets of its tree and their parents in the widgetIds and widgetParents properties
+    Shared;
+
+    public static WidgetStorage fromName(String name) {
+        for (WidgetStorage widgetStorage : values()) {
+            if (widgetStorage.name().equalsIgnoreCase(name)) {
+                return widgetStorage;
+            }
+        }
+        return null;
+    }
+
+}
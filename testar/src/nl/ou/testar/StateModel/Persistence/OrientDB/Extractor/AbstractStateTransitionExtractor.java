@@ -104,7 +104,7 @@ public class AbstractStateTransitionExtractor implements EntityExtractor<Abstrac
             }
         }
         else {
-            abstractTargetState = abstractStateExtractor.extract(sourceEntity, abstractStateModel);
+            abstractTargetState = abstractStateExtractor.extract(targetEntity, abstractStateModel);
         }
 
         // action:
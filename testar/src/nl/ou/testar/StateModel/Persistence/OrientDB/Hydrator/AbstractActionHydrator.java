@@ -11,6 +11,8 @@ import nl.ou.testar.StateModel.Util.HydrationHelper;
 import org.fruit.alayer.Tag;
 import org.fruit.alayer.TaggableBase;
 
+import java.util.HashSet;
+
 public class AbstractActionHydrator implements EntityHydrator<EdgeEntity> {
 
     @Override
@@ -62,7 +64,7 @@ public class AbstractActionHydrator implements EntityHydrator<EdgeEntity> {
             throw new HydrationException();
         }
         if (!((AbstractAction) source).getConcreteActionIds().isEmpty()) {
-            edgeEntity.addPropertyValue(concreteActionIds.getPropertyName(), new PropertyValue(concreteActionIds.getPropertyType(), ((AbstractAction) source).getConcreteActionIds()));
+            edgeEntity.addPropertyValue(concreteActionIds.getPropertyName(), new PropertyValue(concreteActionIds.getPropertyType(), new HashSet<>(((AbstractAction) source).getConcreteActionIds())));
         }
     }
 }
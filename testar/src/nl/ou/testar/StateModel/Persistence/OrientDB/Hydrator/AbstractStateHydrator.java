@@ -11,6 +11,8 @@ import nl.ou.testar.StateModel.Util.HydrationHelper;
 import org.fruit.alayer.Tag;
 import org.fruit.alayer.TaggableBase;
 
+import java.util.HashSet;
+
 public class AbstractStateHydrator implements EntityHydrator<VertexEntity> {
 
     @Override
@@ -74,7 +76,7 @@ public class AbstractStateHydrator implements EntityHydrator<VertexEntity> {
             throw new HydrationException();
         }
         if (!((AbstractState) source).getConcreteStateIds().isEmpty()) {
-            target.addPropertyValue(concreteStateIds.getPropertyName(), new PropertyValue(concreteStateIds.getPropertyType(), ((AbstractState) source).getConcreteStateIds()));
+            target.addPropertyValue(concreteStateIds.getPropertyName(), new PropertyValue(concreteStateIds.getPropertyType(), new HashSet<>(((AbstractState) source).getConcreteStateIds())));
         }
 
     }
@@ -35,6 +35,8 @@ public abstract class HydratorFactory {
 
     public static final int HYDRATOR_FIRST_NODE = 14;
 
+    public static final int HYDRATOR_SHARED_WIDGET = 15;
+
     // a repo for generated classes, so we don't execute the same generation code over and over if not needed
     private static Map<Integer, EntityHydrator> hydrators = new HashMap<>();
 
@@ -62,6 +64,9 @@ public abstract class HydratorFactory {
             case HYDRATOR_WIDGET:
                 return createWidgetHydrator();
 
+            case HYDRATOR_SHARED_WIDGET:
+                return createSharedWidgetHydrator();
+
             case HYDRATOR_WIDGET_RELATION:
                 return createWidgetRelationHydrator();
 
@@ -121,6 +126,12 @@ public abstract class HydratorFactory {
         return widgetHydrator;
     }
 
+    private static WidgetHydrator createSharedWidgetHydrator() {
+        WidgetHydrator widgetHydrator = new WidgetHydrator(true);
+        hydrators.put(HYDRATOR_SHARED_WIDGET, widgetHydrator);
+        return widgetHydrator;
+    }
+
     private static WidgetRelationHydrator createWidgetRelationHydrator() {
         WidgetRelationHydrator widgetRelationHydrator = new WidgetRelationHydrator();
         hydrators.put(HYDRATOR_WIDGET_RELATION, widgetRelationHydrator);
@@ -15,6 +15,21 @@ import org.fruit.alayer.TaggableBase;
 
 public class WidgetHydrator implements EntityHydrator<VertexEntity> {
 
+    // are widgets with the same concrete id shared by the concrete states of a model?
+    private final boolean sharedAcrossStates;
+
+    public WidgetHydrator() {
+        this(false);
+    }
+
+    /**
+     * Constructor
+     * @param sharedAcrossStates true if the widget identifier should not contain the concrete state identifier
+     */
+    public WidgetHydrator(boolean sharedAcrossStates) {
+        this.sharedAcrossStates = sharedAcrossStates;
+    }
+
     @Override
     public void hydrate(VertexEntity target, Object source) throws HydrationException {
         if (!(source instanceof Widget)) {
@@ -39,10 +54,11 @@ public class WidgetHydrator implements EntityHydrator<VertexEntity> {
         }
 
         // we are going to combine the identifier for the concrete state and the concrete widget id into one joint identifier.
+        // shared widgets are only identified by the model and their concrete id, which is derived from their content
         String stateId = concreteState.getId();
         String widgetId = ((Widget) source).getId();
         String modelIdentifier = abstractState.getModelIdentifier();
-        String uniqueId = modelIdentifier + "-" + stateId + "-" + widgetId;
+        String uniqueId = sharedAcrossStates ? modelIdentifier + "-" + widgetId : modelIdentifier + "-" + stateId + "-" + widgetId;
 
         // make sure the java and orientdb property types are compatible
         OType identifierType = TypeConvertor.getInstance().getOrientDBType(uniqueId.getClass());
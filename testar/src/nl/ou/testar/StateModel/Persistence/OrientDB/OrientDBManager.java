@@ -1,6 +1,7 @@
 package nl.ou.testar.StateModel.Persistence.OrientDB;
 
 import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.sql.executor.OResult;
 import com.orientechnologies.orient.core.sql.executor.OResultSet;
 import nl.ou.testar.StateModel.*;
@@ -16,7 +17,7 @@ import nl.ou.testar.StateModel.Persistence.OrientDB.Extractor.ExtractorFactory;
 import nl.ou.testar.StateModel.Persistence.OrientDB.Hydrator.EntityHydrator;
 import nl.ou.testar.StateModel.Persistence.OrientDB.Hydrator.HydratorFactory;
 import nl.ou.testar.StateModel.Persistence.OrientDB.Util.DependencyHelper;
-import nl.ou.testar.StateModel.Persistence.PersistenceManager;
+import nl.ou.testar.StateModel.Persistence.StagedPersistenceManager;
 import nl.ou.testar.StateModel.Sequence.Sequence;
 import nl.ou.testar.StateModel.Sequence.SequenceManager;
 import nl.ou.testar.StateModel.Sequence.SequenceNode;
@@ -30,7 +31,12 @@ import java.util.*;
 import static java.lang.System.exit;
 
 
-public class OrientDBManager implements PersistenceManager, StateModelEventListener {
+public class OrientDBManager implements StagedPersistenceManager, StateModelEventListener {
+
+    /**
+     * The write of a request of which the entities could not be hydrated
+     */
+    private static final Runnable NOTHING_TO_WRITE = () -> { };
 
     /**
      * Helper class for dealing with events
@@ -42,6 +48,11 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
      */
     private EntityManager entityManager;
 
+    /**
+     * Loader that pages in the abstract state model, if it is loaded lazily
+     */
+    private OrientDBStateLoader stateLoader;
+
     /**
      * Is the manager listening to events?
      */
@@ -97,6 +108,9 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
 
     @Override
     public void shutdown() {
+        if (stateLoader != null) {
+            System.out.println("State model loading: " + stateLoader.statistics());
+        }
         // tell the entity manager to release its connections
         entityManager.releaseConnection();
         entityManager = null;
@@ -104,6 +118,11 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
 
     @Override
     public void persistAbstractState(AbstractState abstractState) {
+        stageAbstractState(abstractState).run();
+    }
+
+    @Override
+    public Runnable stageAbstractState(AbstractState abstractState) {
         // create an entity to persist to the database
         EntityClass entityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.AbstractState);
         VertexEntity abstractStateEntity = new VertexEntity(entityClass);
@@ -115,19 +134,20 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
         } catch (HydrationException e) {
             e.printStackTrace();
             System.out.println("Encountered a problem while saving abstract state with id " + abstractState.getStateId() + " to the orient database");
-            return;
+            return NOTHING_TO_WRITE;
         }
 
-        // save the entity!
-        entityManager.saveEntity(abstractStateEntity);
-
         // deal with the unvisited actions on the states
-        persistUnvisitedActions(abstractState, abstractStateEntity);
-    }
+        Runnable unvisitedActions = stageUnvisitedActions(abstractState, abstractStateEntity);
 
-    private void persistUnvisitedActions(AbstractState abstractState, VertexEntity abstractStateEntity) {
-        abstractStateEntity.enableUpdate(false);
+        return () -> {
+            // save the entity!
+            entityManager.saveEntity(abstractStateEntity);
+            unvisitedActions.run();
+        };
+    }
 
+    private Runnable stageUnvisitedActions(AbstractState abstractState, VertexEntity abstractStateEntity) {
         // prepare the black hole entity that is needed for the unvisited actions
         EntityClass targetEntityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.BlackHole);
         VertexEntity blackHole = new VertexEntity(targetEntityClass);
@@ -139,7 +159,7 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
         catch (HydrationException ex) {
             ex.printStackTrace();
             System.out.println("Encountered a problem while hydrating the black hole class for state " + abstractState.getStateId());
-            return;
+            return NOTHING_TO_WRITE;
         }
 
         // Steps:
@@ -157,19 +177,18 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
             String modelIdentifier = abstractState.getModelIdentifier();
             visitedActionIds.add(HydrationHelper.createOrientDbActionId(sourceId, targetId, actionId, modelIdentifier));
         }
-        // then do a batch delete from the database
         EntityClass unvisitedActionEntityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.UnvisitedAbstractAction);
-        entityManager.deleteEntities(unvisitedActionEntityClass, visitedActionIds);
 
         // step 2:
         // all unvisited actions go to the black hole vertex!
+        List<EdgeEntity> unvisitedActionEntities = new ArrayList<>();
         try {
             EntityHydrator actionHydrator = HydratorFactory.getHydrator(HydratorFactory.HYDRATOR_ABSTRACT_ACTION);
             for (AbstractAction unvisitedAction : abstractState.getUnvisitedActions()) {
                 EdgeEntity actionEntity = new EdgeEntity(unvisitedActionEntityClass, abstractStateEntity, blackHole);
                 actionEntity.enableUpdate(false);
                 actionHydrator.hydrate(actionEntity, unvisitedAction);
-                entityManager.saveEntity(actionEntity);
+                unvisitedActionEntities.add(actionEntity);
             }
         }
         catch (HydrationException ex) {
@@ -180,6 +199,16 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
             System.out.println(ex.getMessage());
             exit(1);
         }
+
+        return () -> {
+            // the state itself has been saved by now
+            abstractStateEntity.enableUpdate(false);
+            // then do a batch delete from the database
+            entityManager.deleteEntities(unvisitedActionEntityClass, visitedActionIds);
+            for (EdgeEntity actionEntity : unvisitedActionEntities) {
+                entityManager.saveEntity(actionEntity);
+            }
+        };
     }
 
     @Override
@@ -187,8 +216,18 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
 
     }
 
+    @Override
+    public Runnable stageAbstractAction(AbstractAction abstractAction) {
+        return NOTHING_TO_WRITE;
+    }
+
     @Override
     public void persistConcreteState(ConcreteState concreteState) {
+        stageConcreteState(concreteState).run();
+    }
+
+    @Override
+    public Runnable stageConcreteState(ConcreteState concreteState) {
         // create an entity to persist to the database
         EntityClass entityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.ConcreteState);
         VertexEntity concreteStateEntity = new VertexEntity(entityClass);
@@ -202,18 +241,64 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
         catch (HydrationException e) {
             e.printStackTrace();
             System.out.println("Encountered a problem while saving concrete state with id " + concreteState.getId() + " to the orient database");
-            return;
+            return NOTHING_TO_WRITE;
+        }
+
+        Runnable stateWrite;
+        Config config = entityManager.getConnection().getConfig();
+        int batchSize = config.getBatchSize();
+        if (entityManager.entityIsCached(concreteStateEntity)) {
+            // the state and its widgets have been stored before
+            stateWrite = NOTHING_TO_WRITE;
+        }
+        else if (config.getWidgetStorage() == WidgetStorage.Shared) {
+            // the state lists its widgets, and only the widgets that were not stored before are written
+            EntityBatch batch = new EntityBatch();
+            batch.add(concreteStateEntity, true);
+            batch.setCompletionEntity(concreteStateEntity);
+            if (!collectSharedWidgets(concreteState, concreteStateEntity, batch)) {
+                return NOTHING_TO_WRITE;
+            }
+            // without a batch size every entity gets its own transaction, as in the widget tree storage
+            int chunkSize = Math.max(batchSize, 1);
+            stateWrite = () -> {
+                if (!entityManager.entityExists(concreteStateEntity)) {
+                    entityManager.saveBatch(batch, chunkSize);
+                }
+            };
+        }
+        else if (batchSize > 0) {
+            // a concrete state is stored together with its widget tree, so if the state exists, so does the tree
+            EntityBatch batch = new EntityBatch();
+            batch.add(concreteStateEntity, true);
+            batch.setCompletionEntity(concreteStateEntity);
+            if (!collectWidgetTree(concreteState, concreteStateEntity, batch)) {
+                return NOTHING_TO_WRITE;
+            }
+            stateWrite = () -> {
+                if (!entityManager.entityExists(concreteStateEntity)) {
+                    entityManager.saveBatch(batch, batchSize);
+                }
+            };
+        }
+        else {
+            // the widget tree attached to this concrete state is stored one entity at a time
+            EntityBatch widgetTree = new EntityBatch();
+            if (!collectWidgetTree(concreteState, concreteStateEntity, widgetTree)) {
+                System.out.println("Encountered an error persisting the widget tree of concrete state " + concreteState.getId());
+            }
+            stateWrite = () -> {
+                // save the entity!
+                entityManager.saveEntity(concreteStateEntity);
+                for (DocumentEntity entity : widgetTree.getEntities()) {
+                    entityManager.saveEntity(entity);
+                }
+            };
         }
-
-        // save the entity!
-        entityManager.saveEntity(concreteStateEntity);
-
-        // store the widgettree attached to this concrete state
-        persistWidgetTree(concreteState, concreteStateEntity);
 
         // optional: if an abstract state is provided, we connect the concrete state to it using an isAbstractedBy relation
         if (concreteState.getAbstractState() == null) {
-            return;
+            return stateWrite;
         }
         EntityClass targetEntityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.AbstractState);
         VertexEntity abstractStateEntity = new VertexEntity(targetEntityClass);
@@ -224,11 +309,10 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
         } catch (HydrationException e) {
             e.printStackTrace();
             System.out.println("Encountered a problem while saving abstract state with id " + concreteState.getAbstractState().getStateId() + " to the orient database");
-            return;
+            return stateWrite;
         }
 
-        // set the concretestate and abstractstate entities to not update anymore. That is not required for this relation
-        concreteStateEntity.enableUpdate(false);
+        // set the abstractstate entity to not update anymore. That is not required for this relation
         abstractStateEntity.enableUpdate(false);
 
         // create the edge entity and persist it
@@ -243,84 +327,118 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
         catch (HydrationException ex) {
             //@todo add some meaningful logging here as well
         }
-        entityManager.saveEntity(edgeEntity);
+        return () -> {
+            stateWrite.run();
+            entityManager.saveEntity(edgeEntity);
+        };
     }
 
     /**
-     * This method will store a widget tree to the orient database.
+     * This method collects the widgets and inter-widget relations of a new widget tree in a batch.
+     * The widget identifiers contain the concrete state identifier, so all of them are new as well.
      * @param widget
+     * @param widgetEntity
+     * @param batch
+     * @return false if the tree could not be hydrated
      */
-    private void persistWidgetTree(Widget widget, VertexEntity widgetEntity) {
+    private boolean collectWidgetTree(Widget widget, VertexEntity widgetEntity, EntityBatch batch) {
         widgetEntity.enableUpdate(false);
-        // we assume the root widget of the tree has already been stored, as this will be the concrete state
-        // we loop through the child widgets and for each widget, store the widget and then store the needed edges between them
         for (Widget childWidget : widget.getChildren()) {
-            VertexEntity childWidgetEntity = persistWidget(childWidget);
-            if (childWidgetEntity == null) {
-                System.out.println("Encountered an error persisting the widget with id " + childWidget.getId());
-                return;
-            }
+            EntityClass entityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.Widget);
+            VertexEntity childWidgetEntity = new VertexEntity(entityClass);
             childWidgetEntity.enableUpdate(false);
 
-            // with the widget saved, we need to also store parent and child relationships between the two widgets
             EntityClass isChildEntityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.isChildOf);
             EdgeEntity isChildEntity = new EdgeEntity(isChildEntityClass, childWidgetEntity, widgetEntity);
             isChildEntity.enableUpdate(false);
 
             // hydrate the entities
             try {
-                EntityHydrator hydrator = HydratorFactory.getHydrator(HydratorFactory.HYDRATOR_WIDGET_RELATION);
-                hydrator.hydrate(isChildEntity, null);
+                HydratorFactory.getHydrator(HydratorFactory.HYDRATOR_WIDGET).hydrate(childWidgetEntity, childWidget);
+                HydratorFactory.getHydrator(HydratorFactory.HYDRATOR_WIDGET_RELATION).hydrate(isChildEntity, null);
             }
             catch (HydrationException e) {
                 e.printStackTrace();
-                System.out.println("Encountered a problem while saving the inter-widget relation to the orient database");
-                return;
+                System.out.println("Encountered a problem while saving the widget tree of concrete state " + widget.getRootWidget().getId() + " to the orient database");
+                return false;
             }
-            entityManager.saveEntity(isChildEntity);
+            batch.add(childWidgetEntity, true);
+            batch.add(isChildEntity, true);
 
             // go down the widget tree and do it again
-            persistWidgetTree(childWidget, childWidgetEntity);
+            if (!collectWidgetTree(childWidget, childWidgetEntity, batch)) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
-     * This method will persist a single widget to the OrientDB data store.
-     * @param widget
-     * @return
+     * This method collects the shared widgets of a concrete state in a batch, and packs the structure of the widget tree
+     * into the widgetIds and widgetParents properties of the concrete state: the identifiers of the widgets in pre-order,
+     * and for each widget the index of its parent in that list, -1 for the children of the concrete state itself.
+     * @param concreteState
+     * @param concreteStateEntity
+     * @param batch
+     * @return false if the tree could not be hydrated
      */
-    private VertexEntity persistWidget(Widget widget) {
-        // create an entity to persist to the database
+    private boolean collectSharedWidgets(ConcreteState concreteState, VertexEntity concreteStateEntity, EntityBatch batch) {
+        List<String> widgetIds = new ArrayList<>();
+        List<Integer> widgetParents = new ArrayList<>();
+        if (!collectSharedWidgets(concreteState, -1, widgetIds, widgetParents, new HashSet<>(), batch)) {
+            return false;
+        }
+        concreteStateEntity.addPropertyValue("widgetIds", new PropertyValue(OType.EMBEDDEDLIST, widgetIds));
+        concreteStateEntity.addPropertyValue("widgetParents", new PropertyValue(OType.EMBEDDEDLIST, widgetParents));
+        return true;
+    }
+
+    private boolean collectSharedWidgets(Widget widget, int parentIndex, List<String> widgetIds, List<Integer> widgetParents,
+                                         Set<String> batchedWidgetIds, EntityBatch batch) {
         EntityClass entityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.Widget);
-        VertexEntity vertexEntity = new VertexEntity(entityClass);
-        vertexEntity.enableUpdate(false);
+        for (Widget childWidget : widget.getChildren()) {
+            VertexEntity childWidgetEntity = new VertexEntity(entityClass);
+            childWidgetEntity.enableUpdate(false);
+            try {
+                HydratorFactory.getHydrator(HydratorFactory.HYDRATOR_SHARED_WIDGET).hydrate(childWidgetEntity, childWidget);
+            }
+            catch (HydrationException e) {
+                e.printStackTrace();
+                System.out.println("Encountered a problem while saving the widgets of concrete state " + widget.getRootWidget().getId() + " to the orient database");
+                return false;
+            }
+            String widgetId = (String) childWidgetEntity.getPropertyValue(entityClass.getIdentifier().getPropertyName()).getValue();
 
-        // hydrate the widget entity
-        try {
-            EntityHydrator hydrator = HydratorFactory.getHydrator(HydratorFactory.HYDRATOR_WIDGET);
-            hydrator.hydrate(vertexEntity, widget);
-        }
-        catch (HydrationException e) {
-            e.printStackTrace();
-            System.out.println("Encountered a problem while saving a widget to the orient database");
-            return null;
-        }
+            // widgets that are already stored, or already part of this batch, do not have to be written again
+            if (batchedWidgetIds.add(widgetId) && !entityManager.entityIsCached(childWidgetEntity)) {
+                batch.add(childWidgetEntity, false);
+            }
 
-        // save the widget
-        entityManager.saveEntity(vertexEntity);
-        return vertexEntity;
+            int index = widgetIds.size();
+            widgetIds.add(widgetId);
+            widgetParents.add(parentIndex);
+            if (!collectSharedWidgets(childWidget, index, widgetIds, widgetParents, batchedWidgetIds, batch)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public void persistAbstractStateTransition(AbstractStateTransition abstractStateTransition) {
+        stageAbstractStateTransition(abstractStateTransition).run();
+    }
+
+    @Override
+    public Runnable stageAbstractStateTransition(AbstractStateTransition abstractStateTransition) {
         if (abstractStateTransition.getSourceState() == null || abstractStateTransition.getTargetState() == null || abstractStateTransition.getAction() == null) {
             System.out.println("Objects missing in abstract state transition");
-            return;
+            return NOTHING_TO_WRITE;
         }
 
         // persist the source and target states
-        persistAbstractState(abstractStateTransition.getSourceState());
-        persistAbstractState(abstractStateTransition.getTargetState());
+        Runnable sourceStateWrite = stageAbstractState(abstractStateTransition.getSourceState());
+        Runnable targetStateWrite = stageAbstractState(abstractStateTransition.getTargetState());
 
         // create entities for the target and source states
         EntityClass entityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.AbstractState);
@@ -334,7 +452,10 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
             stateHydrator.hydrate(targetVertexEntity, abstractStateTransition.getTargetState());
         } catch (HydrationException e) {
             //@todo add some meaningful logging here
-            return;
+            return () -> {
+                sourceStateWrite.run();
+                targetStateWrite.run();
+            };
         }
 
         // no need to update the abstract states anymore
@@ -352,19 +473,28 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
         catch (HydrationException ex) {
             //@todo add some meaningful logging here as well
         }
-        entityManager.saveEntity(actionEntity);
+        return () -> {
+            sourceStateWrite.run();
+            targetStateWrite.run();
+            entityManager.saveEntity(actionEntity);
+        };
     }
 
     @Override
     public void persistConcreteStateTransition(ConcreteStateTransition concreteStateTransition) {
+        stageConcreteStateTransition(concreteStateTransition).run();
+    }
+
+    @Override
+    public Runnable stageConcreteStateTransition(ConcreteStateTransition concreteStateTransition) {
         if (concreteStateTransition.getSourceState() == null || concreteStateTransition.getTargetState() == null | concreteStateTransition.getAction() == null) {
             System.out.println("Objects missing in concrete state transition");
-            return;
+            return NOTHING_TO_WRITE;
         }
 
         // persist the source and target states
-        persistConcreteState(concreteStateTransition.getSourceState());
-        persistConcreteState(concreteStateTransition.getTargetState());
+        Runnable sourceStateWrite = stageConcreteState(concreteStateTransition.getSourceState());
+        Runnable targetStateWrite = stageConcreteState(concreteStateTransition.getTargetState());
 
         // create entities for the target and source states
         EntityClass entityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.ConcreteState);
@@ -378,7 +508,10 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
             stateHydrator.hydrate(targetVertexEntity, concreteStateTransition.getTargetState());
         } catch (HydrationException e) {
             //@todo add some meaningful logging here
-            return;
+            return () -> {
+                sourceStateWrite.run();
+                targetStateWrite.run();
+            };
         }
 
         // no need to update the concrete states anymore
@@ -397,7 +530,11 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
             //@todo add some meaningful logging here as well
         }
         actionEntity.enableUpdate(false);
-        entityManager.saveEntity(actionEntity);
+        return () -> {
+            sourceStateWrite.run();
+            targetStateWrite.run();
+            entityManager.saveEntity(actionEntity);
+        };
     }
 
     @Override
@@ -454,53 +591,70 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
         stateModelEntity.enableUpdate(false);
         entityManager.saveEntity(stateModelEntity);
 
-        // step 2: see if there are abstract states present in the data store that are tied to this abstract state model
-        EntityClass abstractStateClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.AbstractState);
-        if (abstractStateClass == null) throw new RuntimeException("Error occurred: could not retrieve an abstract state entity class.");
-
         // in order to retrieve the abstract states, we need to provide the abstract state model identifier to the query
-        Map<String, PropertyValue> entityProperties = new HashMap<>();
         Property stateModelClassIdentifier = stateModelClass.getIdentifier();
         if (stateModelClassIdentifier == null) throw new RuntimeException("Error occurred: abstract state model does not have an id property set.");
-        entityProperties.put("modelIdentifier", stateModelEntity.getPropertyValue(stateModelClassIdentifier.getPropertyName()));
-
-        Set<DocumentEntity> retrievedDocuments = entityManager.retrieveAllOfClass(abstractStateClass, entityProperties);
-        if (retrievedDocuments.isEmpty()) {
-            System.out.println("Could not find abstract states in the model");
+        PropertyValue modelIdentifier = stateModelEntity.getPropertyValue(stateModelClassIdentifier.getPropertyName());
+
+        Config config = entityManager.getConnection().getConfig();
+        if (config.isLazyLoading()) {
+            // the states and transitions will be paged in when the model needs them
+            stateLoader = new OrientDBStateLoader(entityManager, modelIdentifier);
+            abstractStateModel.setStateLoader(stateLoader, config.getLoadCacheSize());
+            setListening(true);
+            return;
         }
-        else {
-            // we need to create the abstract states from the returned document entities
-            try {
-                EntityExtractor<AbstractState> abstractStateExtractor = ExtractorFactory.getExtractor(ExtractorFactory.EXTRACTOR_ABSTRACT_STATE);
-                for (DocumentEntity documentEntity : retrievedDocuments) {
-                    AbstractState abstractState = abstractStateExtractor.extract(documentEntity, abstractStateModel);
-                    abstractStateModel.addState(abstractState);
+
+        Map<String, PropertyValue> entityProperties = new HashMap<>();
+        entityProperties.put("modelIdentifier", modelIdentifier);
+
+        // step 2: see if there are abstract states present in the data store that are tied to this abstract state model
+        EntityClass abstractStateClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.AbstractState);
+        if (abstractStateClass == null) throw new RuntimeException("Error occurred: could not retrieve an abstract state entity class.");
+
+        // we create the abstract states while iterating over the query results
+        try {
+            EntityExtractor<AbstractState> abstractStateExtractor = ExtractorFactory.getExtractor(ExtractorFactory.EXTRACTOR_ABSTRACT_STATE);
+            int[] nrOfStates = {0};
+            entityManager.streamAllOfClass(abstractStateClass, entityProperties, documentEntity -> {
+                try {
+                    abstractStateModel.addState(abstractStateExtractor.extract(documentEntity, abstractStateModel));
+                    nrOfStates[0]++;
+                } catch (ExtractionException | StateModelException e) {
+                    e.printStackTrace();
                 }
-            } catch (ExtractionException | StateModelException e) {
-                e.printStackTrace();
+            });
+            if (nrOfStates[0] == 0) {
+                System.out.println("Could not find abstract states in the model");
             }
+        } catch (ExtractionException e) {
+            e.printStackTrace();
         }
 
         // step 3: fetch the transitions from the database
         EntityClass abstractActionClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.AbstractAction);
         if (abstractActionClass == null) throw new RuntimeException("Error occurred: could not retrieve an abstract action entity class");
 
-        retrievedDocuments = entityManager.retrieveAllOfClass(abstractActionClass, entityProperties);
-        if (retrievedDocuments.isEmpty()) {
-            System.out.println("Could not find abstract actions in the model");
-        }
-        else {
-            System.out.println(retrievedDocuments.size() + " number of abstract actions were returned");
-            // we need to create the transitions from the returned document entities
-            try {
-                EntityExtractor<AbstractStateTransition> abstractStateTransitionEntityExtractor = ExtractorFactory.getExtractor(ExtractorFactory.EXTRACTOR_ABSTRACT_STATE_TRANSITION);
-                for (DocumentEntity documentEntity : retrievedDocuments) {
+        try {
+            EntityExtractor<AbstractStateTransition> abstractStateTransitionEntityExtractor = ExtractorFactory.getExtractor(ExtractorFactory.EXTRACTOR_ABSTRACT_STATE_TRANSITION);
+            int[] nrOfActions = {0};
+            entityManager.streamAllOfClass(abstractActionClass, entityProperties, documentEntity -> {
+                try {
                     AbstractStateTransition abstractStateTransition = abstractStateTransitionEntityExtractor.extract(documentEntity, abstractStateModel);
                     abstractStateModel.addTransition( abstractStateTransition.getSourceState(), abstractStateTransition.getTargetState(), abstractStateTransition.getAction());
+                    nrOfActions[0]++;
+                } catch (ExtractionException | StateModelException e) {
+                    e.printStackTrace();
                 }
-            } catch (ExtractionException | StateModelException e) {
-                e.printStackTrace();
+            });
+            if (nrOfActions[0] == 0) {
+                System.out.println("Could not find abstract actions in the model");
+            }
+            else {
+                System.out.println(nrOfActions[0] + " number of abstract actions were returned");
             }
+        } catch (ExtractionException e) {
+            e.printStackTrace();
         }
 
         // enable the event listener again
@@ -508,6 +662,11 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
     }
 
     public void persistSequence(Sequence sequence) {
+        stageSequence(sequence).run();
+    }
+
+    @Override
+    public Runnable stageSequence(Sequence sequence) {
         EntityClass entityClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.TestSequence);
         VertexEntity vertexEntity = new VertexEntity(entityClass);
 
@@ -518,11 +677,16 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
             e.printStackTrace();
         }
 
-        entityManager.saveEntity(vertexEntity);
+        return () -> entityManager.saveEntity(vertexEntity);
     }
 
     @Override
     public void persistSequenceNode(SequenceNode sequenceNode) {
+        stageSequenceNode(sequenceNode).run();
+    }
+
+    @Override
+    public Runnable stageSequenceNode(SequenceNode sequenceNode) {
         // we save the node as an edge, from sequence node to concrete state
         EntityClass nodeClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.SequenceNode);
         VertexEntity nodeEntity = new VertexEntity(nodeClass);
@@ -560,13 +724,10 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
             System.out.println("Encountered a problem while hydrating the accessed relation for sequence node " + sequenceNode.getNodeId());
         }
 
-        entityManager.saveEntity(accessedEdge);
-
         // if this is the first node in the sequence, we also have to create a relation between the sequence and this node to indicate this
-        if (!sequenceNode.isFirstNode() || sequenceNode.getSequence() == null) return;
-
-        // no need to update the node again
-        nodeEntity.enableUpdate(false);
+        if (!sequenceNode.isFirstNode() || sequenceNode.getSequence() == null) {
+            return () -> entityManager.saveEntity(accessedEdge);
+        }
 
         // create a vertex entity for the test sequence
         EntityClass sequenceClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.TestSequence);
@@ -590,7 +751,12 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
             e.printStackTrace();
         }
 
-        entityManager.saveEntity(firstNodeEntity);
+        return () -> {
+            entityManager.saveEntity(accessedEdge);
+            // no need to update the node again
+            nodeEntity.enableUpdate(false);
+            entityManager.saveEntity(firstNodeEntity);
+        };
     }
 
     @Override
@@ -599,9 +765,14 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
 
     @Override
     public void persistSequenceStep(SequenceStep sequenceStep) {
+        stageSequenceStep(sequenceStep).run();
+    }
+
+    @Override
+    public Runnable stageSequenceStep(SequenceStep sequenceStep) {
         // the assumption is that the source node has already been saved
         // so first we save the target node
-        persistSequenceNode(sequenceStep.getTargetNode());
+        Runnable targetNodeWrite = stageSequenceNode(sequenceStep.getTargetNode());
 
         // next, we hydrate the source and target nodes, and then the step
         EntityClass nodeClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.SequenceNode);
@@ -629,7 +800,10 @@ public class OrientDBManager implements PersistenceManager, StateModelEventListe
             e.printStackTrace();
         }
 
-        entityManager.saveEntity(step);
+        return () -> {
+            targetNodeWrite.run();
+            entityManager.saveEntity(step);
+        };
     }
 
     @Override
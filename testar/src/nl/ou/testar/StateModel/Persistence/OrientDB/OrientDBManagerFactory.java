@@ -3,8 +3,10 @@ package nl.ou.testar.StateModel.Persistence.OrientDB;
 import nl.ou.testar.StateModel.Persistence.DummyManager;
 import nl.ou.testar.StateModel.Persistence.OrientDB.Entity.Config;
 import nl.ou.testar.StateModel.Persistence.OrientDB.Entity.EntityManager;
+import nl.ou.testar.StateModel.Persistence.OrientDB.Entity.WidgetStorage;
 import nl.ou.testar.StateModel.Persistence.PersistenceManager;
 import nl.ou.testar.StateModel.Persistence.PersistenceManagerFactory;
+import nl.ou.testar.StateModel.Persistence.PersistenceWriter;
 import nl.ou.testar.StateModel.Persistence.QueueManager;
 import nl.ou.testar.StateModel.Util.EventHelper;
 import org.fruit.monkey.ConfigTags;
@@ -25,6 +27,17 @@ public class OrientDBManagerFactory implements PersistenceManagerFactory {
         config.setPassword(settings.get(ConfigTags.DataStorePassword));
         config.setResetDataStore(settings.get(ConfigTags.ResetDataStore));
         config.setDatabaseDirectory(settings.get(ConfigTags.DataStoreDirectory));
+        config.setPoolSize(Math.max(0, settings.get(ConfigTags.DataStorePoolSize)));
+        config.setBatchSize(Math.max(0, settings.get(ConfigTags.DataStoreBatchSize)));
+        config.setIdentityCacheSize(Math.max(0, settings.get(ConfigTags.DataStoreIdentityCacheSize)));
+        WidgetStorage widgetStorage = WidgetStorage.fromName(settings.get(ConfigTags.DataStoreWidgetStorage));
+        if (widgetStorage == null) {
+            System.out.println("WARNING: Unknown DataStoreWidgetStorage " + settings.get(ConfigTags.DataStoreWidgetStorage) + ", using Tree");
+            widgetStorage = WidgetStorage.Tree;
+        }
+        config.setWidgetStorage(widgetStorage);
+        config.setLazyLoading(settings.get(ConfigTags.DataStoreLazyLoading));
+        config.setLoadCacheSize(settings.get(ConfigTags.DataStoreLoadCacheSize));
         EntityManager entityManager = new EntityManager(config);
 
         // check if the data needs to be stored instantaneously or delayed (after sequence).
@@ -38,6 +51,16 @@ public class OrientDBManagerFactory implements PersistenceManagerFactory {
                 persistenceManager = new QueueManager(new OrientDBManager(eventHelper, entityManager), new EventHelper(), true);
                 break;
 
+            case PersistenceManager.DATA_STORE_MODE_ASYNC:
+                PersistenceWriter.Overflow overflow = PersistenceWriter.Overflow.fromName(settings.get(ConfigTags.DataStoreQueueOverflow));
+                if (overflow == null) {
+                    System.out.println("WARNING: Unknown DataStoreQueueOverflow " + settings.get(ConfigTags.DataStoreQueueOverflow) + ", using Block");
+                    overflow = PersistenceWriter.Overflow.Block;
+                }
+                PersistenceWriter writer = new PersistenceWriter(settings.get(ConfigTags.DataStoreQueueCapacity), overflow);
+                persistenceManager = new QueueManager(new OrientDBManager(eventHelper, entityManager), new EventHelper(), writer);
+                break;
+
             case PersistenceManager.DATA_STORE_MODE_INSTANT:
              default:
                  persistenceManager = new OrientDBManager(eventHelper, entityManager);
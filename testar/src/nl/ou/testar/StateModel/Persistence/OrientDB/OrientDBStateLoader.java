@@ -0,0 +1,111 @@
+package nl.ou.testar.StateModel.Persistence.OrientDB;
+
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import nl.ou.testar.StateModel.AbstractState;
+import nl.ou.testar.StateModel.AbstractStateLoader;
+import nl.ou.testar.StateModel.AbstractStateModel;
+import nl.ou.testar.StateModel.AbstractStateTransition;
+import nl.ou.testar.StateModel.Exception.ExtractionException;
+import nl.ou.testar.StateModel.Persistence.OrientDB.Entity.DocumentEntity;
+import nl.ou.testar.StateModel.Persistence.OrientDB.Entity.EntityClass;
+import nl.ou.testar.StateModel.Persistence.OrientDB.Entity.EntityClassFactory;
+import nl.ou.testar.StateModel.Persistence.OrientDB.Entity.EntityManager;
+import nl.ou.testar.StateModel.Persistence.OrientDB.Entity.PropertyValue;
+import nl.ou.testar.StateModel.Persistence.OrientDB.Extractor.EntityExtractor;
+import nl.ou.testar.StateModel.Persistence.OrientDB.Extractor.ExtractorFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class pages in the abstract states and transitions of a stored abstract state model, one state at a time.
+ */
+public class OrientDBStateLoader implements AbstractStateLoader {
+
+    /**
+     * Manager class that will handle the OrientDB specific communications with the database
+     */
+    private EntityManager entityManager;
+
+    /**
+     * The identifier of the abstract state model in the data store
+     */
+    private PropertyValue modelIdentifier;
+
+    // the number of states and transitions that were paged in
+    private int nrOfStatesLoaded = 0;
+    private int nrOfTransitionsLoaded = 0;
+
+    /**
+     * Constructor
+     * @param entityManager
+     * @param modelIdentifier
+     */
+    public OrientDBStateLoader(EntityManager entityManager, PropertyValue modelIdentifier) {
+        this.entityManager = entityManager;
+        this.modelIdentifier = modelIdentifier;
+    }
+
+    @Override
+    public AbstractState loadState(AbstractStateModel abstractStateModel, String abstractStateId) {
+        EntityClass abstractStateClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.AbstractState);
+        Map<String, PropertyValue> entityProperties = new HashMap<>();
+        entityProperties.put("modelIdentifier", modelIdentifier);
+        entityProperties.put("stateId", new PropertyValue(OType.STRING, abstractStateId));
+
+        // the entities are extracted after the query has finished, as extracting them may query the data store again
+        List<DocumentEntity> retrievedDocuments = new ArrayList<>(1);
+        entityManager.streamAllOfClass(abstractStateClass, entityProperties, retrievedDocuments::add);
+        if (retrievedDocuments.isEmpty()) {
+            return null;
+        }
+
+        try {
+            EntityExtractor<AbstractState> abstractStateExtractor = ExtractorFactory.getExtractor(ExtractorFactory.EXTRACTOR_ABSTRACT_STATE);
+            AbstractState abstractState = abstractStateExtractor.extract(retrievedDocuments.get(0), abstractStateModel);
+            nrOfStatesLoaded++;
+            return abstractState;
+        }
+        catch (ExtractionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public Set<AbstractStateTransition> loadOutgoingTransitions(AbstractStateModel abstractStateModel, String abstractStateId) {
+        EntityClass abstractActionClass = EntityClassFactory.createEntityClass(EntityClassFactory.EntityClassName.AbstractAction);
+        Map<String, PropertyValue> entityProperties = new HashMap<>();
+        entityProperties.put("modelIdentifier", modelIdentifier);
+        entityProperties.put("out.stateId", new PropertyValue(OType.STRING, abstractStateId));
+
+        List<DocumentEntity> retrievedDocuments = new ArrayList<>();
+        entityManager.streamAllOfClass(abstractActionClass, entityProperties, retrievedDocuments::add);
+
+        Set<AbstractStateTransition> transitions = new HashSet<>();
+        try {
+            EntityExtractor<AbstractStateTransition> abstractStateTransitionExtractor = ExtractorFactory.getExtractor(ExtractorFactory.EXTRACTOR_ABSTRACT_STATE_TRANSITION);
+            for (DocumentEntity documentEntity : retrievedDocuments) {
+                transitions.add(abstractStateTransitionExtractor.extract(documentEntity, abstractStateModel));
+            }
+        }
+        catch (ExtractionException e) {
+            e.printStackTrace();
+        }
+        nrOfTransitionsLoaded += transitions.size();
+        return transitions;
+    }
+
+    /**
+     * Returns the number of states and transitions that were paged in.
+     * @return
+     */
+    public String statistics() {
+        return nrOfStatesLoaded + " abstract states and " + nrOfTransitionsLoaded + " abstract transitions paged in";
+    }
+
+}
@@ -17,6 +17,9 @@ public interface PersistenceManager {
     // some data will be stored instantly and some will be stored after the sequence has finished
     String DATA_STORE_MODE_HYBRID = "hybrid";
 
+    // the data will be stored by a background writer while the test is running
+    String DATA_STORE_MODE_ASYNC = "async";
+
     // sometimes we do not want to persist data
     String DATA_STORE_MODE_NONE = "none";
 
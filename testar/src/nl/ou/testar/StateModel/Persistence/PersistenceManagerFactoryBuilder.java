@@ -1,5 +1,6 @@
 package nl.ou.testar.StateModel.Persistence;
 
+import nl.ou.testar.StateModel.Persistence.Memory.MemoryManagerFactory;
 import nl.ou.testar.StateModel.Persistence.OrientDB.OrientDBManagerFactory;
 
 /**
@@ -7,7 +8,7 @@ import nl.ou.testar.StateModel.Persistence.OrientDB.OrientDBManagerFactory;
  */
 public abstract class PersistenceManagerFactoryBuilder {
 
-    public enum ManagerType {ORIENTDB, DUMMY}
+    public enum ManagerType {ORIENTDB, MEMORY, DUMMY}
 
     /**
      * This method returns a concrete implementation of the abstract PersistManagerFactory class/interface.
@@ -19,6 +20,9 @@ public abstract class PersistenceManagerFactoryBuilder {
             case ORIENTDB:
                 return new OrientDBManagerFactory();
 
+            case MEMORY:
+                return new MemoryManagerFactory();
+
             case DUMMY:
             default:
                 return new DummyManagerFactory();
@@ -0,0 +1,267 @@
+package nl.ou.testar.StateModel.Persistence;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A writer thread that executes persistence requests in the background, in the order in which they were submitted.
+ * The queue is bounded: when it is full, the submitting thread either waits for room or the queue grows past its
+ * capacity, depending on the overflow policy. A request that carries a key replaces the request for the same key that
+ * is still waiting in the queue, as it writes newer data of the same object. The new request goes to the tail of the
+ * queue, so that it is executed after the requests that were submitted before it, which may write older data of the
+ * same object.
+ * The requests must not read objects that other threads change; requests that fail are reported by takeFailure.
+ */
+public class PersistenceWriter {
+
+    public enum Overflow {
+        // the submitting thread waits until the writer has made room in the queue
+        Block,
+        // the queue grows beyond its capacity, so that the test execution is never stalled
+        Grow;
+
+        public static Overflow fromName(String name) {
+            for (Overflow overflow : values()) {
+                if (overflow.name().equalsIgnoreCase(name)) {
+                    return overflow;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final ArrayDeque<Request> queue = new ArrayDeque<>();
+
+    // the requests in the queue that can be coalesced, by key
+    private final Map<String, Request> pendingRequests = new HashMap<>();
+
+    private final int capacity;
+
+    private final Overflow overflow;
+
+    private final Thread thread;
+
+    // is the writer currently executing a request?
+    private boolean busy = false;
+
+    private boolean stopped = false;
+
+    // metrics
+    private long nrOfSubmitted = 0;
+    private long nrOfProcessed = 0;
+    private long nrOfCoalesced = 0;
+    private long nrOfFailed = 0;
+    private int maxQueueSize = 0;
+    private long totalLagNanos = 0;
+    private long maxLagNanos = 0;
+    private long blockedNanos = 0;
+
+    // the first request failure that was not reported yet, with the later ones suppressed in it
+    private RuntimeException failure;
+
+    /**
+     * Constructor
+     * @param capacity the maximum number of requests in the queue
+     * @param overflow what to do when the queue is full
+     */
+    public PersistenceWriter(int capacity, Overflow overflow) {
+        this.capacity = Math.max(1, capacity);
+        this.overflow = overflow;
+        thread = new Thread(this::run, "TESTAR-StateModel-Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Submit a request that is executed as is.
+     * @param runnable
+     */
+    public void submit(Runnable runnable) {
+        submit(runnable, null);
+    }
+
+    /**
+     * Submit a request. If a request with the same key is still waiting in the queue, it is dropped.
+     * @param runnable
+     * @param key the key of the persisted object, or null if the request cannot be coalesced
+     */
+    public synchronized void submit(Runnable runnable, String key) {
+        if (stopped) {
+            throw new IllegalStateException("The persistence writer has been stopped");
+        }
+        nrOfSubmitted++;
+        Request pendingRequest = key == null ? null : pendingRequests.get(key);
+        if (pendingRequest != null) {
+            // the request that is dropped makes room for the new one
+            queue.remove(pendingRequest);
+            nrOfCoalesced++;
+        }
+        else if (overflow == Overflow.Block && queue.size() >= capacity) {
+            long start = System.nanoTime();
+            while (queue.size() >= capacity && thread.isAlive()) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            blockedNanos += System.nanoTime() - start;
+        }
+
+        Request request = new Request(runnable, key);
+        queue.add(request);
+        if (key != null) {
+            pendingRequests.put(key, request);
+        }
+        maxQueueSize = Math.max(maxQueueSize, queue.size());
+        notifyAll();
+    }
+
+    private void run() {
+        while (true) {
+            Request request;
+            synchronized (this) {
+                while (queue.isEmpty() && !stopped) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+                request = queue.remove();
+                // from now on a new request for the same object has to be executed again
+                if (request.key != null) {
+                    pendingRequests.remove(request.key);
+                }
+                busy = true;
+                long lag = System.nanoTime() - request.submitted;
+                totalLagNanos += lag;
+                maxLagNanos = Math.max(maxLagNanos, lag);
+                notifyAll();
+            }
+
+            RuntimeException requestFailure = null;
+            try {
+                request.runnable.run();
+            }
+            catch (RuntimeException e) {
+                requestFailure = e;
+            }
+
+            synchronized (this) {
+                busy = false;
+                nrOfProcessed++;
+                if (requestFailure != null) {
+                    nrOfFailed++;
+                    if (failure == null) {
+                        failure = requestFailure;
+                    }
+                    else {
+                        failure.addSuppressed(requestFailure);
+                    }
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the failure of the first request that failed since the previous call, with the failures of the later
+     * requests suppressed in it, or null if all the requests succeeded.
+     * @return
+     */
+    public synchronized RuntimeException takeFailure() {
+        RuntimeException takenFailure = failure;
+        failure = null;
+        return takenFailure;
+    }
+
+    /**
+     * Returns the number of requests that are waiting or being executed.
+     * @return
+     */
+    public synchronized int getBacklog() {
+        return queue.size() + (busy ? 1 : 0);
+    }
+
+    /**
+     * Waits until all the submitted requests have been executed.
+     * @param listener notified with the remaining backlog every time a request has been executed, may be null
+     */
+    public void drain(BacklogListener listener) {
+        int lastBacklog = -1;
+        synchronized (this) {
+            while ((!queue.isEmpty() || busy) && thread.isAlive()) {
+                int backlog = getBacklog();
+                if (listener != null && backlog != lastBacklog) {
+                    listener.backlogChanged(backlog);
+                    lastBacklog = backlog;
+                }
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        if (listener != null) {
+            listener.backlogChanged(0);
+        }
+    }
+
+    /**
+     * Executes the remaining requests and stops the writer thread.
+     */
+    public void stop() {
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns a summary of the progress and the lag of the writer.
+     * @return
+     */
+    public synchronized String statistics() {
+        long executed = Math.max(1, nrOfProcessed);
+        return String.format("Persistence writer: %d requests submitted, %d coalesced, %d processed (%d failed), %d waiting, " +
+                        "max queue size %d (capacity %d, %s), average lag %.1f ms, max lag %.1f ms, submitters blocked %.1f ms",
+                nrOfSubmitted, nrOfCoalesced, nrOfProcessed, nrOfFailed, queue.size(), maxQueueSize, capacity, overflow,
+                totalLagNanos / 1e6 / executed, maxLagNanos / 1e6, blockedNanos / 1e6);
+    }
+
+    public interface BacklogListener {
+        void backlogChanged(int backlog);
+    }
+
+    private static class Request {
+
+        private final Runnable runnable;
+
+        private final String key;
+
+        private final long submitted = System.nanoTime();
+
+        private Request(Runnable runnable, String key) {
+            this.runnable = runnable;
+            this.key = key;
+        }
+    }
+
+}
@@ -11,6 +11,7 @@ import nl.ou.testar.StateModel.Sequence.SequenceStep;
 import nl.ou.testar.StateModel.Util.EventHelper;
 
 import java.util.ArrayDeque;
+import java.util.function.Function;
 
 public class QueueManager implements PersistenceManager, StateModelEventListener {
 
@@ -39,6 +40,16 @@ public class QueueManager implements PersistenceManager, StateModelEventListener
      */
     private boolean hybridMode;
 
+    /**
+     * Background writer that executes the requests during the test, null if the queue is processed at shutdown.
+     */
+    private PersistenceWriter writer;
+
+    /**
+     * The delegate manager that reads the requests into entities on the test thread, for the background writer.
+     */
+    private StagedPersistenceManager stagedManager;
+
     public QueueManager(PersistenceManager persistenceManager, EventHelper eventHelper, boolean hybridMode) {
         delegateManager = persistenceManager;
         queue = new ArrayDeque<>();
@@ -46,8 +57,24 @@ public class QueueManager implements PersistenceManager, StateModelEventListener
         this.hybridMode = hybridMode;
     }
 
-    private void processRequest(Runnable runnable, Persistable persistable) {
-        if (!hybridMode || persistable.canBeDelayed()) {
+    /**
+     * Constructor for a queue manager that persists the requests asynchronously with a background writer.
+     * The state model objects are read on the calling thread, the writer only stores the resulting entities.
+     * @param persistenceManager
+     * @param eventHelper
+     * @param writer
+     */
+    public QueueManager(StagedPersistenceManager persistenceManager, EventHelper eventHelper, PersistenceWriter writer) {
+        this(persistenceManager, eventHelper, false);
+        this.writer = writer;
+        stagedManager = persistenceManager;
+    }
+
+    private void processRequest(Runnable runnable, Function<StagedPersistenceManager, Runnable> stage, Persistable persistable) {
+        if (writer != null) {
+            writer.submit(stage.apply(stagedManager), coalescingKey(persistable));
+        }
+        else if (!hybridMode || persistable.canBeDelayed()) {
             queue.add(runnable);
         }
         else {
@@ -55,8 +82,51 @@ public class QueueManager implements PersistenceManager, StateModelEventListener
         }
     }
 
+    /**
+     * Returns the key under which repeated requests for the same object can be coalesced, or null if they cannot.
+     * @param persistable
+     * @return
+     */
+    private String coalescingKey(Persistable persistable) {
+        if (persistable instanceof AbstractState) {
+            return "AbstractState:" + ((AbstractState) persistable).getStateId();
+        }
+        if (persistable instanceof AbstractStateTransition) {
+            AbstractStateTransition transition = (AbstractStateTransition) persistable;
+            return "AbstractStateTransition:" + transition.getSourceStateId() + "-" + transition.getActionId() + "-" + transition.getTargetStateId();
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the background writer, if any, to persist the requests that were submitted so far.
+     * @throws RuntimeException if one of those requests failed
+     */
+    private void flushWriter() {
+        if (writer != null) {
+            writer.drain(null);
+            RuntimeException failure = writer.takeFailure();
+            if (failure != null) {
+                throw new RuntimeException("Error occurred: the persistence writer could not store all the requests", failure);
+            }
+        }
+    }
+
     @Override
     public void shutdown() {
+        if (writer != null) {
+            if (writer.getBacklog() > 0) {
+                QueueVisualizer visualizer = new QueueVisualizer("Processing persistence queue");
+                writer.drain(backlog -> visualizer.updateMessage("Processing persistence queue : " + backlog + " remaining"));
+                visualizer.stop();
+            }
+            writer.stop();
+            System.out.println(writer.statistics());
+            RuntimeException failure = writer.takeFailure();
+            if (failure != null) {
+                failure.printStackTrace();
+            }
+        }
         if (!queue.isEmpty()) {
             int nrOfItemsProcessed = 0;
             int totalNrOfItems = queue.size();
@@ -74,31 +144,32 @@ public class QueueManager implements PersistenceManager, StateModelEventListener
 
     @Override
     public void persistAbstractState(AbstractState abstractState) {
-        processRequest(() -> delegateManager.persistAbstractState(abstractState), abstractState);
+        processRequest(() -> delegateManager.persistAbstractState(abstractState), manager -> manager.stageAbstractState(abstractState), abstractState);
     }
 
     @Override
     public void persistAbstractAction(AbstractAction abstractAction) {
-        processRequest(() -> delegateManager.persistAbstractAction(abstractAction), abstractAction);
+        processRequest(() -> delegateManager.persistAbstractAction(abstractAction), manager -> manager.stageAbstractAction(abstractAction), abstractAction);
     }
 
     @Override
     public void persistAbstractStateTransition(AbstractStateTransition abstractStateTransition) {
-        processRequest(() -> delegateManager.persistAbstractStateTransition(abstractStateTransition), abstractStateTransition);
+        processRequest(() -> delegateManager.persistAbstractStateTransition(abstractStateTransition), manager -> manager.stageAbstractStateTransition(abstractStateTransition), abstractStateTransition);
     }
 
     @Override
     public void persistConcreteState(ConcreteState concreteState) {
-        processRequest(() -> delegateManager.persistConcreteState(concreteState), concreteState);
+        processRequest(() -> delegateManager.persistConcreteState(concreteState), manager -> manager.stageConcreteState(concreteState), concreteState);
     }
 
     @Override
     public void persistConcreteStateTransition(ConcreteStateTransition concreteStateTransition) {
-        processRequest(() -> delegateManager.persistConcreteStateTransition(concreteStateTransition), concreteStateTransition);
+        processRequest(() -> delegateManager.persistConcreteStateTransition(concreteStateTransition), manager -> manager.stageConcreteStateTransition(concreteStateTransition), concreteStateTransition);
     }
 
     @Override
     public void initAbstractStateModel(AbstractStateModel abstractStateModel) {
+        flushWriter();
         setListening(false);
         delegateManager.initAbstractStateModel(abstractStateModel);
         setListening(true);
@@ -106,11 +177,12 @@ public class QueueManager implements PersistenceManager, StateModelEventListener
 
     @Override
     public void persistSequence(Sequence sequence) {
-        processRequest(() -> delegateManager.persistSequence(sequence), sequence);
+        processRequest(() -> delegateManager.persistSequence(sequence), manager -> manager.stageSequence(sequence), sequence);
     }
 
     @Override
     public void initSequenceManager(SequenceManager sequenceManager) {
+        flushWriter();
         setListening(false);
         delegateManager.initSequenceManager(sequenceManager);
         setListening(true);
@@ -118,21 +190,23 @@ public class QueueManager implements PersistenceManager, StateModelEventListener
 
     @Override
     public void persistSequenceNode(SequenceNode sequenceNode) {
-        processRequest(() -> delegateManager.persistSequenceNode(sequenceNode), sequenceNode);
+        processRequest(() -> delegateManager.persistSequenceNode(sequenceNode), manager -> manager.stageSequenceNode(sequenceNode), sequenceNode);
     }
 
     @Override
     public void persistSequenceStep(SequenceStep sequenceStep) {
-        processRequest(() -> delegateManager.persistSequenceStep(sequenceStep), sequenceStep);
+        processRequest(() -> delegateManager.persistSequenceStep(sequenceStep), manager -> manager.stageSequenceStep(sequenceStep), sequenceStep);
     }
 
     @Override
     public boolean modelIsDeterministic(AbstractStateModel abstractStateModel) {
+        flushWriter();
         return delegateManager.modelIsDeterministic(abstractStateModel);
     }
 
     @Override
     public int getNrOfNondeterministicActions(AbstractStateModel abstractStateModel) {
+        flushWriter();
         return delegateManager.getNrOfNondeterministicActions(abstractStateModel);
     }
 
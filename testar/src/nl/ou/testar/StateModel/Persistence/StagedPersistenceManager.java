@@ -0,0 +1,71 @@
+package nl.ou.testar.StateModel.Persistence;
+
+import nl.ou.testar.StateModel.*;
+import nl.ou.testar.StateModel.Sequence.Sequence;
+import nl.ou.testar.StateModel.Sequence.SequenceNode;
+import nl.ou.testar.StateModel.Sequence.SequenceStep;
+
+/**
+ * A persistence manager that splits a request in two stages: reading the state model objects into entities for the
+ * data store, which has to happen on the thread that changes the model, and writing those entities, which can happen
+ * later on another thread. The returned writes no longer read the state model objects.
+ */
+public interface StagedPersistenceManager extends PersistenceManager {
+
+    /**
+     * This method reads an abstract state and returns the write that persists it.
+     * @param abstractState
+     * @return
+     */
+    Runnable stageAbstractState(AbstractState abstractState);
+
+    /**
+     * This method reads an abstract action and returns the write that persists it.
+     * @param abstractAction
+     * @return
+     */
+    Runnable stageAbstractAction(AbstractAction abstractAction);
+
+    /**
+     * This method reads an abstract state transition and returns the write that persists it.
+     * @param abstractStateTransition
+     * @return
+     */
+    Runnable stageAbstractStateTransition(AbstractStateTransition abstractStateTransition);
+
+    /**
+     * This method reads a concrete state and returns the write that persists it.
+     * @param concreteState
+     * @return
+     */
+    Runnable stageConcreteState(ConcreteState concreteState);
+
+    /**
+     * This method reads a concrete state transition and returns the write that persists it.
+     * @param concreteStateTransition
+     * @return
+     */
+    Runnable stageConcreteStateTransition(ConcreteStateTransition concreteStateTransition);
+
+    /**
+     * This method reads a sequence and returns the write that persists it.
+     * @param sequence
+     * @return
+     */
+    Runnable stageSequence(Sequence sequence);
+
+    /**
+     * This method reads a sequence node and returns the write that persists it.
+     * @param sequenceNode
+     * @return
+     */
+    Runnable stageSequenceNode(SequenceNode sequenceNode);
+
+    /**
+     * This method reads a sequence step and returns the write that persists it.
+     * @param sequenceStep
+     * @return
+     */
+    Runnable stageSequenceStep(SequenceStep sequenceStep);
+
+}
@@ -0,0 +1,353 @@
+package nl.ou.testar.StateModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * An adjacency index of the abstract state model. The states and actions are numbered densely, and the outgoing and
+ * incoming transitions of every state are kept in primitive arrays. For every state the index keeps the distance,
+ * in transitions, to the nearest state that still has unvisited actions. The distances are updated when transitions
+ * are added and when states gain or lose their unvisited actions, so that a path to unvisited actions can be found
+ * without searching the model.
+ */
+public class StateModelIndex {
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final Map<String, Integer> stateNumbers = new HashMap<>();
+
+    private final List<String> stateIds = new ArrayList<>();
+
+    private final Map<String, Integer> actionNumbers = new HashMap<>();
+
+    private final List<String> actionIds = new ArrayList<>();
+
+    private int nrOfStates = 0;
+
+    // the outgoing transitions per state, as target state and action numbers
+    private int[][] successorStates = new int[16][];
+    private int[][] successorActions = new int[16][];
+    private int[] nrOfSuccessors = new int[16];
+
+    // the source states of the incoming transitions per state
+    private int[][] predecessorStates = new int[16][];
+    private int[] nrOfPredecessors = new int[16];
+
+    // the distance to the nearest state with unvisited actions
+    private int[] distances = new int[16];
+
+    private boolean[] hasUnvisitedActions = new boolean[16];
+
+    private int[] nrOfUnvisitedActions = new int[16];
+
+    // marks the states that are affected by a distance increase, using a new stamp for every update
+    private int[] marks = new int[16];
+    private int stamp = 0;
+
+    private int[] queue = new int[16];
+
+    /**
+     * A step on a path through the model.
+     */
+    public static class Step {
+
+        private final String actionId;
+
+        private final String targetStateId;
+
+        private Step(String actionId, String targetStateId) {
+            this.actionId = actionId;
+            this.targetStateId = targetStateId;
+        }
+
+        public String getActionId() {
+            return actionId;
+        }
+
+        public String getTargetStateId() {
+            return targetStateId;
+        }
+    }
+
+    private int state(String stateId) {
+        Integer number = stateNumbers.get(stateId);
+        if (number != null) {
+            return number;
+        }
+        if (nrOfStates == distances.length) {
+            int capacity = nrOfStates * 2;
+            successorStates = Arrays.copyOf(successorStates, capacity);
+            successorActions = Arrays.copyOf(successorActions, capacity);
+            nrOfSuccessors = Arrays.copyOf(nrOfSuccessors, capacity);
+            predecessorStates = Arrays.copyOf(predecessorStates, capacity);
+            nrOfPredecessors = Arrays.copyOf(nrOfPredecessors, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+            hasUnvisitedActions = Arrays.copyOf(hasUnvisitedActions, capacity);
+            nrOfUnvisitedActions = Arrays.copyOf(nrOfUnvisitedActions, capacity);
+            marks = Arrays.copyOf(marks, capacity);
+            queue = Arrays.copyOf(queue, capacity);
+        }
+        number = nrOfStates++;
+        successorStates[number] = new int[2];
+        successorActions[number] = new int[2];
+        predecessorStates[number] = new int[2];
+        distances[number] = UNREACHABLE;
+        stateNumbers.put(stateId, number);
+        stateIds.add(stateId);
+        return number;
+    }
+
+    private int action(String actionId) {
+        Integer number = actionNumbers.get(actionId);
+        if (number == null) {
+            number = actionIds.size();
+            actionNumbers.put(actionId, number);
+            actionIds.add(actionId);
+        }
+        return number;
+    }
+
+    /**
+     * Adds a transition to the index. A transition that is already known is ignored.
+     * @param sourceStateId
+     * @param actionId
+     * @param targetStateId
+     */
+    public void addTransition(String sourceStateId, String actionId, String targetStateId) {
+        int source = state(sourceStateId);
+        int target = state(targetStateId);
+        int action = action(actionId);
+        int[] targets = successorStates[source];
+        int[] actions = successorActions[source];
+        int count = nrOfSuccessors[source];
+        for (int i = 0; i < count; i++) {
+            if (targets[i] == target && actions[i] == action) {
+                return;
+            }
+        }
+        if (count == targets.length) {
+            successorStates[source] = targets = Arrays.copyOf(targets, count * 2);
+            successorActions[source] = actions = Arrays.copyOf(actions, count * 2);
+        }
+        targets[count] = target;
+        actions[count] = action;
+        nrOfSuccessors[source]++;
+
+        int[] sources = predecessorStates[target];
+        if (nrOfPredecessors[target] == sources.length) {
+            predecessorStates[target] = sources = Arrays.copyOf(sources, sources.length * 2);
+        }
+        sources[nrOfPredecessors[target]++] = source;
+
+        if (distances[target] != UNREACHABLE) {
+            lower(source, distances[target] + 1);
+        }
+    }
+
+    /**
+     * Sets whether a state has unvisited actions.
+     * @param stateId
+     * @param unvisitedActions
+     */
+    public void setUnvisitedActions(String stateId, boolean unvisitedActions) {
+        setUnvisitedActions(stateId, unvisitedActions ? 1 : 0);
+    }
+
+    /**
+     * Sets the number of unvisited actions of a state.
+     * @param stateId
+     * @param nrOfUnvisitedActions
+     */
+    public void setUnvisitedActions(String stateId, int nrOfUnvisitedActions) {
+        int state = state(stateId);
+        this.nrOfUnvisitedActions[state] = nrOfUnvisitedActions;
+        boolean unvisitedActions = nrOfUnvisitedActions > 0;
+        if (hasUnvisitedActions[state] == unvisitedActions) {
+            return;
+        }
+        hasUnvisitedActions[state] = unvisitedActions;
+        if (unvisitedActions) {
+            lower(state, 0);
+        }
+        else {
+            raise(state);
+        }
+    }
+
+    /**
+     * Returns the number of transitions to the nearest state with unvisited actions, or -1 if no such state can be
+     * reached.
+     * @param stateId
+     * @return
+     */
+    public int getDistance(String stateId) {
+        Integer state = stateNumbers.get(stateId);
+        return state == null || distances[state] == UNREACHABLE ? -1 : distances[state];
+    }
+
+    /**
+     * Returns a shortest path from a state to a state with unvisited actions. Of the nearest states with unvisited
+     * actions, the path leads to the one with the most unvisited actions.
+     * @param stateId
+     * @return the steps of the path, an empty list if the state itself has unvisited actions,
+     *         or null if no state with unvisited actions can be reached or no path can be followed
+     */
+    public List<Step> getPathToUnvisitedActions(String stateId) {
+        if (getDistance(stateId) < 0) {
+            return null;
+        }
+        int start = stateNumbers.get(stateId);
+
+        // breadth first search over the successors that are one step closer, which reaches all the nearest states
+        // with unvisited actions, and every state along a shortest path
+        stamp++;
+        Map<Integer, Integer> parents = new HashMap<>();
+        Map<Integer, Integer> parentSuccessors = new HashMap<>();
+        List<Integer> layer = Collections.singletonList(start);
+        marks[start] = stamp;
+        while (distances[layer.get(0)] > 0) {
+            List<Integer> nextLayer = new ArrayList<>();
+            for (int state : layer) {
+                for (int i = 0; i < nrOfSuccessors[state]; i++) {
+                    int successor = successorStates[state][i];
+                    if (marks[successor] != stamp && distances[successor] == distances[state] - 1) {
+                        marks[successor] = stamp;
+                        parents.put(successor, state);
+                        parentSuccessors.put(successor, i);
+                        nextLayer.add(successor);
+                    }
+                }
+            }
+            if (nextLayer.isEmpty()) {
+                // the distances are inconsistent, no successor leads closer to a state with unvisited actions
+                return null;
+            }
+            layer = nextLayer;
+        }
+
+        // the first of the nearest states with the most unvisited actions
+        int target = layer.get(0);
+        for (int state : layer) {
+            if (nrOfUnvisitedActions[state] > nrOfUnvisitedActions[target]) {
+                target = state;
+            }
+        }
+
+        List<Step> path = new ArrayList<>();
+        for (int state = target; state != start; state = parents.get(state)) {
+            int parent = parents.get(state);
+            path.add(new Step(actionIds.get(successorActions[parent][parentSuccessors.get(state)]), stateIds.get(state)));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Helper method that lowers the distance of a state and propagates the new distance to its predecessors.
+     * @param state
+     * @param distance
+     */
+    private void lower(int state, int distance) {
+        if (distance >= distances[state]) {
+            return;
+        }
+        distances[state] = distance;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = state;
+        while (head < tail) {
+            int current = queue[head++];
+            int distanceViaCurrent = distances[current] + 1;
+            for (int i = 0; i < nrOfPredecessors[current]; i++) {
+                int predecessor = predecessorStates[current][i];
+                if (distanceViaCurrent < distances[predecessor]) {
+                    // a state only enters the queue once, as the distances are set in breadth first order
+                    distances[predecessor] = distanceViaCurrent;
+                    queue[tail++] = predecessor;
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method that updates the distances after a state has lost its unvisited actions. Only the states
+     * whose shortest paths all ran through that state are recalculated.
+     * @param state
+     */
+    private void raise(int state) {
+        stamp++;
+        // step 1: collect the affected states in breadth first order. A state is affected when none of its
+        // successors that are not affected can still be reached in one step less.
+        int nrOfAffected = 0;
+        marks[state] = stamp;
+        queue[nrOfAffected++] = state;
+        for (int head = 0; head < nrOfAffected; head++) {
+            int current = queue[head];
+            for (int i = 0; i < nrOfPredecessors[current]; i++) {
+                int predecessor = predecessorStates[current][i];
+                if (marks[predecessor] != stamp && !hasUnvisitedActions[predecessor]
+                        && distances[predecessor] == distances[current] + 1 && !isSupported(predecessor)) {
+                    marks[predecessor] = stamp;
+                    queue[nrOfAffected++] = predecessor;
+                }
+            }
+        }
+
+        // step 2: recalculate the affected states, starting from the states around them that were not affected
+        for (int i = 0; i < nrOfAffected; i++) {
+            distances[queue[i]] = UNREACHABLE;
+        }
+        PriorityQueue<Long> boundary = new PriorityQueue<>();
+        for (int i = 0; i < nrOfAffected; i++) {
+            int affected = queue[i];
+            int distance = UNREACHABLE;
+            for (int j = 0; j < nrOfSuccessors[affected]; j++) {
+                int successorDistance = distances[successorStates[affected][j]];
+                if (successorDistance != UNREACHABLE) {
+                    distance = Math.min(distance, successorDistance + 1);
+                }
+            }
+            if (distance != UNREACHABLE) {
+                distances[affected] = distance;
+                boundary.add(((long) distance << 32) | affected);
+            }
+        }
+        while (!boundary.isEmpty()) {
+            long entry = boundary.poll();
+            int current = (int) entry;
+            int distance = (int) (entry >>> 32);
+            if (distance != distances[current]) {
+                continue;
+            }
+            for (int i = 0; i < nrOfPredecessors[current]; i++) {
+                int predecessor = predecessorStates[current][i];
+                if (marks[predecessor] == stamp && distance + 1 < distances[predecessor]) {
+                    distances[predecessor] = distance + 1;
+                    boundary.add(((long) (distance + 1) << 32) | predecessor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method that checks if a state still has a successor that is not affected by a distance increase
+     * and that is one step closer to a state with unvisited actions.
+     * @param state
+     * @return
+     */
+    private boolean isSupported(int state) {
+        for (int i = 0; i < nrOfSuccessors[state]; i++) {
+            int successor = successorStates[state][i];
+            if (marks[successor] != stamp && distances[successor] != UNREACHABLE && distances[successor] + 1 == distances[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
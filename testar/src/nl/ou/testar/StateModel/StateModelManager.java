@@ -21,4 +21,8 @@ public interface StateModelManager {
     void notifyTestSequenceInterruptedByUser();
 
     void notifyTestSequenceInterruptedBySystem(String message);
+
+    boolean modelIsDeterministic();
+
+    int getNrOfNondeterministicActions();
 }
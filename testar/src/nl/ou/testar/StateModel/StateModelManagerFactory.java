@@ -4,6 +4,7 @@ import es.upv.staq.testar.CodingManager;
 import nl.ou.testar.StateModel.ActionSelection.ActionSelector;
 import nl.ou.testar.StateModel.ActionSelection.CompoundFactory;
 import nl.ou.testar.StateModel.Event.StateModelEventListener;
+import nl.ou.testar.StateModel.Metrics.TimingMetrics;
 import nl.ou.testar.StateModel.Persistence.PersistenceManager;
 import nl.ou.testar.StateModel.Persistence.PersistenceManagerFactory;
 import nl.ou.testar.StateModel.Persistence.PersistenceManagerFactoryBuilder;
@@ -61,12 +62,18 @@ public class StateModelManagerFactory {
                 settings.get(ConfigTags.ApplicationVersion),
                 abstractTags,
                 persistenceManager instanceof StateModelEventListener ? (StateModelEventListener) persistenceManager : null);
-        ActionSelector actionSelector = CompoundFactory.getCompoundActionSelector(settings);
+        // should we record how long the action selection and the state model updates take?
+        TimingMetrics metrics = settings.get(ConfigTags.StateModelTimings) ? new TimingMetrics() : null;
+        ActionSelector actionSelector = CompoundFactory.getCompoundActionSelector(settings, metrics);
 
         // should we store widgets?
         boolean storeWidgets = settings.get(ConfigTags.StateModelStoreWidgets);
 
-        return new ModelManager(abstractStateModel, actionSelector, persistenceManager, concreteStateTags, sequenceManager, storeWidgets);
+        StateModelManager modelManager = new ModelManager(abstractStateModel, actionSelector, persistenceManager, concreteStateTags, sequenceManager, storeWidgets);
+        if (metrics != null) {
+            modelManager = new TimedModelManager(modelManager, metrics, settings.get(ConfigTags.OutputDir));
+        }
+        return modelManager;
     }
 
 }
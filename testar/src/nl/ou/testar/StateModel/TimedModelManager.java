@@ -0,0 +1,106 @@
+package nl.ou.testar.StateModel;
+
+import nl.ou.testar.StateModel.Metrics.TimingMetrics;
+import org.fruit.alayer.Action;
+import org.fruit.alayer.State;
+import org.testar.OutputStructure;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * A state model manager that records how long the calls to another state model manager take. The durations are
+ * exported to the output folder at the end of every sequence.
+ */
+public class TimedModelManager implements StateModelManager {
+
+    private final StateModelManager modelManager;
+
+    private final TimingMetrics metrics;
+
+    // the directory to export to when the output folders of the run have not been created
+    private final String outputDir;
+
+    /**
+     * Constructor
+     * @param modelManager the state model manager to time
+     * @param metrics the metrics to record the durations in, shared with the action selectors
+     * @param outputDir the directory to export to when the output folders of the run have not been created
+     */
+    public TimedModelManager(StateModelManager modelManager, TimingMetrics metrics, String outputDir) {
+        this.modelManager = modelManager;
+        this.metrics = metrics;
+        this.outputDir = outputDir;
+    }
+
+    @Override
+    public void notifyNewStateReached(State newState, Set<Action> actions) {
+        long start = System.nanoTime();
+        try {
+            modelManager.notifyNewStateReached(newState, actions);
+        }
+        finally {
+            metrics.record("notifyNewStateReached", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void notifyActionExecution(Action action) {
+        long start = System.nanoTime();
+        try {
+            modelManager.notifyActionExecution(action);
+        }
+        finally {
+            metrics.record("notifyActionExecution", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Action getAbstractActionToExecute(Set<Action> actions) {
+        long start = System.nanoTime();
+        try {
+            return modelManager.getAbstractActionToExecute(actions);
+        }
+        finally {
+            metrics.record("getAbstractActionToExecute", System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void notifyTestingEnded() {
+        modelManager.notifyTestingEnded();
+        System.out.println(metrics.summary());
+    }
+
+    @Override
+    public void notifyTestSequencedStarted() {
+        modelManager.notifyTestSequencedStarted();
+    }
+
+    @Override
+    public void notifyTestSequenceStopped() {
+        modelManager.notifyTestSequenceStopped();
+        String directory = OutputStructure.logsOutputDir != null ? OutputStructure.logsOutputDir : outputDir;
+        metrics.endSequence(new File(directory));
+    }
+
+    @Override
+    public void notifyTestSequenceInterruptedByUser() {
+        modelManager.notifyTestSequenceInterruptedByUser();
+    }
+
+    @Override
+    public void notifyTestSequenceInterruptedBySystem(String message) {
+        modelManager.notifyTestSequenceInterruptedBySystem(message);
+    }
+
+    @Override
+    public boolean modelIsDeterministic() {
+        return modelManager.modelIsDeterministic();
+    }
+
+    @Override
+    public int getNrOfNondeterministicActions() {
+        return modelManager.getNrOfNondeterministicActions();
+    }
+}
@@ -45,6 +45,7 @@ public final class ConfigTags {
   public static final Tag<String> OutputDir = Tag.from("OutputDir", String.class);
   public static final Tag<String> TempDir = Tag.from("TempDir", String.class);
   public static final Tag<Boolean> OnlySaveFaultySequences = Tag.from("OnlySaveFaultySequences", Boolean.class);
+  public static final Tag<Boolean> CompressSequenceFragments = Tag.from("CompressSequenceFragments", Boolean.class);
   public static final Tag<Boolean> ForceForeground = Tag.from("ForceForeground", Boolean.class);
   public static final Tag<Double> ActionDuration = Tag.from("ActionDuration", Double.class);
   public static final Tag<Double> FaultThreshold = Tag.from("FaultThreshold", Double.class);
@@ -105,10 +106,29 @@ public final class ConfigTags {
   public static final Tag<String> DataStoreMode = Tag.from("DataStoreMode", String.class);
   public static final Tag<String> DataStoreDirectory = Tag.from("DataStoreDirectory", String.class);
   public static final Tag<Boolean> ResetDataStore = Tag.from("ResetDataStore", Boolean.class);
+  public static final Tag<Integer> DataStorePoolSize = Tag.from("DataStorePoolSize", Integer.class);
+  public static final Tag<Integer> DataStoreBatchSize = Tag.from("DataStoreBatchSize", Integer.class);
+  public static final Tag<Integer> DataStoreIdentityCacheSize = Tag.from("DataStoreIdentityCacheSize", Integer.class);
+  public static final Tag<String> DataStoreWidgetStorage = Tag.from("DataStoreWidgetStorage", String.class);
+  public static final Tag<Boolean> DataStoreLazyLoading = Tag.from("DataStoreLazyLoading", Boolean.class);
+  public static final Tag<Integer> DataStoreLoadCacheSize = Tag.from("DataStoreLoadCacheSize", Integer.class);
+  public static final Tag<Integer> DataStoreQueueCapacity = Tag.from("DataStoreQueueCapacity", Integer.class);
+  public static final Tag<String> DataStoreQueueOverflow = Tag.from("DataStoreQueueOverflow", String.class);
+  public static final Tag<Integer> DataStoreSnapshotInterval = Tag.from("DataStoreSnapshotInterval", Integer.class);
   public static final Tag<String> ApplicationName = Tag.from("ApplicationName", String.class);
   public static final Tag<String> ApplicationVersion = Tag.from("ApplicationVersion", String.class);
   public static final Tag<String> ActionSelectionAlgorithm = Tag.from("ActionSelectionAlgorithm", String.class);
   public static final Tag<Boolean> StateModelStoreWidgets = Tag.from("StateModelStoreWidgets", Boolean.class);
+  public static final Tag<Boolean> StateModelTimings = Tag.from("StateModelTimings", Boolean.class);
+  public static final Tag<String> IdentifierHashFunction = Tag.from("IdentifierHashFunction", String.class);
+  public static final Tag<Boolean> IdentifierCollisionDetection = Tag.from("IdentifierCollisionDetection", Boolean.class);
+  public static final Tag<Integer> ScreenshotWorkers = Tag.from("ScreenshotWorkers", Integer.class);
+  public static final Tag<Integer> ScreenshotQueueCapacity = Tag.from("ScreenshotQueueCapacity", Integer.class);
+  public static final Tag<String> ScreenshotEncoder = Tag.from("ScreenshotEncoder", String.class);
+  public static final Tag<String> ScreenshotOverflowPolicy = Tag.from("ScreenshotOverflowPolicy", String.class);
+  public static final Tag<Boolean> ScreenshotDeduplication = Tag.from("ScreenshotDeduplication", Boolean.class);
+  public static final Tag<Boolean> ScreenshotDeltaEncoding = Tag.from("ScreenshotDeltaEncoding", Boolean.class);
+  public static final Tag<Integer> ScreenshotKeyframeInterval = Tag.from("ScreenshotKeyframeInterval", Integer.class);
   @SuppressWarnings("unchecked")
   public static final Tag<List<String>> AbstractStateAttributes = Tag.from("AbstractStateAttributes", (Class<List<String>>) (Class<?>) List.class);
 
@@ -141,9 +161,13 @@ public final class ConfigTags {
   public static final Tag<List<String>> TagsToFilter = Tag.from("TagsToFilter", (Class<List<String>>) (Class<?>) List.class);
   @SuppressWarnings("unchecked")
   public static final Tag<List<String>> TagsForSuspiciousOracle = Tag.from("TagsForSuspiciousOracle", (Class<List<String>>) (Class<?>) List.class);
+  public static final Tag<String> SuspiciousTitlesMatching = Tag.from("SuspiciousTitlesMatching", String.class);
+  public static final Tag<Boolean> ParallelOracles = Tag.from("ParallelOracles", Boolean.class);
   public static final Tag<Boolean> FollowLinks = Tag.from("FollowLinks", Boolean.class);
   public static final Tag<Boolean> BrowserFullScreen = Tag.from("BrowserFullScreen", Boolean.class);
   public static final Tag<Boolean> SwitchNewTabs = Tag.from("SwitchNewTabs", Boolean.class);
+  public static final Tag<Boolean> IncrementalStateCapture = Tag.from("IncrementalStateCapture", Boolean.class);
+  public static final Tag<Boolean> ColumnarStatePayload = Tag.from("ColumnarStatePayload", Boolean.class);
   public static final Tag<Boolean> FlashFeedback = Tag.from("FlashFeedback", Boolean.class);
   public static final Tag<String> ProtocolCompileDirectory = Tag.from("ProtocolCompileDirectory", String.class);
   public static final Tag<String> ReportingClass = Tag.from("ReportingClass", String.class);
@@ -42,21 +42,16 @@ import static org.fruit.alayer.Tags.SystemState;
 import static org.fruit.monkey.ConfigTags.LogLevel;
 
 import java.awt.Desktop;
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.PrintStream;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
@@ -88,8 +83,13 @@ import org.fruit.alayer.webdriver.WdProtocolUtil;
 import org.fruit.alayer.windows.WinApiException;
 
 import es.upv.staq.testar.managers.DataManager;
+import es.upv.staq.testar.oracles.MultiPatternMatcher;
+import es.upv.staq.testar.oracles.SuspiciousTitlesOracle;
+import es.upv.staq.testar.oracles.SystemCrashOracle;
+import es.upv.staq.testar.oracles.VerdictEngine;
 import es.upv.staq.testar.serialisation.LogSerialiser;
 import es.upv.staq.testar.serialisation.ScreenshotSerialiser;
+import es.upv.staq.testar.serialisation.SequenceReader;
 import es.upv.staq.testar.serialisation.TestSerialiser;
 import org.jnativehook.GlobalScreen;
 import org.jnativehook.NativeHookException;
@@ -169,8 +169,7 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 	protected Canvas cv;
 	protected Pattern clickFilterPattern = null;
 	protected Map<String, Matcher> clickFilterMatchers = new WeakHashMap<String, Matcher>();
-	protected Pattern suspiciousTitlesPattern = null;
-	protected Map<String, Matcher> suspiciousTitlesMatchers = new WeakHashMap<String, Matcher>();
+	protected VerdictEngine verdictEngine;
 	private StateBuilder builder;
 	protected String forceKillProcess = null;
 	protected boolean forceToForeground = false;
@@ -342,6 +341,8 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 		//EventHandler is implemented in RuntimeControlsProtocol (super class):
 		eventHandler = initializeEventHandler();
 
+		verdictEngine = buildVerdictEngine(settings);
+
 		builder = NativeLinker.getNativeStateBuilder(
 				settings.get(ConfigTags.TimeToFreeze),
 				settings.get(ConfigTags.AccessBridgeEnabled),
@@ -394,13 +395,9 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 
 			File seqFile = new File(settings.get(ConfigTags.PathToReplaySequence));
 
-			FileInputStream fis = new FileInputStream(seqFile);
-			BufferedInputStream bis = new BufferedInputStream(fis);
-			GZIPInputStream gis = new GZIPInputStream(bis);
-			ObjectInputStream ois = new ObjectInputStream(gis);
-
-			ois.readObject();
-			ois.close();
+			try (SequenceReader reader = SequenceReader.open(seqFile)) {
+				reader.read();
+			}
 
 		} catch (ClassNotFoundException | IOException e) {
 			popupMessage("ERROR: File is not a readable, please select a correct testar sequence file");
@@ -506,11 +503,33 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 			e3.printStackTrace();
 		}
 
+		configureScreenshotSerialiser();
 		ScreenshotSerialiser.start(OutputStructure.screenshotsOutputDir, screenshotsDirectory);
 
 		return generatedSequenceName;
 	}
 
+	/**
+	 * Applies the screenshot settings (workers, queue, encoder, overflow policy and deduplication) to the ScreenshotSerialiser
+	 */
+	private void configureScreenshotSerialiser() {
+		ScreenshotSerialiser.Encoder encoder = ScreenshotSerialiser.Encoder.fromName(settings.get(ConfigTags.ScreenshotEncoder));
+		if (encoder == null) {
+			System.out.println("WARNING: Unknown ScreenshotEncoder " + settings.get(ConfigTags.ScreenshotEncoder) + ", using " + ScreenshotSerialiser.Encoder.FastPng.name());
+			encoder = ScreenshotSerialiser.Encoder.FastPng;
+		}
+		ScreenshotSerialiser.OverflowPolicy policy = ScreenshotSerialiser.OverflowPolicy.fromName(settings.get(ConfigTags.ScreenshotOverflowPolicy));
+		if (policy == null) {
+			System.out.println("WARNING: Unknown ScreenshotOverflowPolicy " + settings.get(ConfigTags.ScreenshotOverflowPolicy) + ", using " + ScreenshotSerialiser.OverflowPolicy.Block.name());
+			policy = ScreenshotSerialiser.OverflowPolicy.Block;
+		}
+		ScreenshotSerialiser.configure(Math.max(1, settings.get(ConfigTags.ScreenshotWorkers)),
+				Math.max(1, settings.get(ConfigTags.ScreenshotQueueCapacity)), encoder, policy,
+				settings.get(ConfigTags.ScreenshotDeduplication));
+		ScreenshotSerialiser.configureDeltaEncoding(settings.get(ConfigTags.ScreenshotDeltaEncoding) ?
+				Math.max(1, settings.get(ConfigTags.ScreenshotKeyframeInterval)) : 0);
+	}
+
 	/**
 	 * This method creates a temporary file for saving the test sequence (that can be replayed)
 	 * The name of the temporary file is changed in the end of the test sequence (not in this function)
@@ -528,7 +547,8 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 		final File currentSeqObject = new File(sequenceObject);
 
 		try {
-			TestSerialiser.start(new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(currentSeqObject, true))));
+			TestSerialiser.start(new BufferedOutputStream(new FileOutputStream(currentSeqObject, true)),
+					settings.get(ConfigTags.CompressSequenceFragments));
 			LogSerialiser.log("Created new sequence file!\n", LogSerialiser.LogLevel.Debug);
 		} catch (IOException e) {
 			LogSerialiser.log("I/O exception creating new sequence file\n", LogSerialiser.LogLevel.Critical);
@@ -591,6 +611,8 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 	private void endTestSequence(){
 		LogSerialiser.log("Releasing canvas...\n", LogSerialiser.LogLevel.Debug);
 		cv.release();
+		LogSerialiser.log("Oracles: " + verdictEngine.statistics() + "\n", LogSerialiser.LogLevel.Debug);
+		verdictEngine.resetTimings();
 		ScreenshotSerialiser.exit();
 		TestSerialiser.exit();
 		//        String stopDateString = Util.dateString(DATE_FORMAT);
@@ -857,7 +879,9 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 	    fragment.set(ActionDuration, settings().get(ConfigTags.ActionDuration));
 	    fragment.set(ActionDelay, settings().get(ConfigTags.TimeToWaitAfterAction));
 	    fragment.set(SystemState, state);
-	    fragment.set(OracleVerdict, getVerdict(state));
+	    // the verdict of getState(), which also includes the one-time verdicts (e.g. non suitable action)
+	    Verdict verdict = state.get(OracleVerdict, null);
+	    fragment.set(OracleVerdict, verdict != null ? verdict : getVerdict(state));
 
 	    //Find the target widget of the current action, and save the title into the fragment
 	    if (state != null && action.get(Tags.OriginWidget, null) != null){
@@ -872,18 +896,7 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 	 * Wait until fragments have been written then close the test serialiser
 	 */
 	private void writeAndCloseFragmentForReplayableSequence() {
-	    //Wait since TestSerialiser and ScreenshotSerialiser write all fragments/src on sequence File
-	    while(!TestSerialiser.isSavingQueueEmpty() || !ScreenshotSerialiser.isSavingQueueEmpty()) {
-	        synchronized (this) {
-	            try {
-	                this.wait(1000);
-	            } catch (InterruptedException e) {
-	                e.printStackTrace();
-	            }
-	        }
-	    }
-
-	    //closing ScreenshotSerialiser and TestSerialiser
+	    //closing ScreenshotSerialiser and TestSerialiser, exit() returns when all the queued fragments/screenshots have been written
 	    ScreenshotSerialiser.finish();
 	    ScreenshotSerialiser.exit();
 	    TestSerialiser.finish();
@@ -1121,10 +1134,7 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 	 * Read the replayable file, repeat saved actions and generate new sequences, oracles and logs
 	 */
 	protected void runReplayLoop(){
-	    FileInputStream fis = null;
-	    BufferedInputStream bis = null;
-	    GZIPInputStream gis = null;
-	    ObjectInputStream ois = null;
+	    SequenceReader sequenceReader = null;
 
 	    actionCount = 1;
 	    boolean success = true;
@@ -1148,10 +1158,7 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 	    try{
 	        File seqFile = new File(settings.get(ConfigTags.PathToReplaySequence));
 
-	        fis = new FileInputStream(seqFile);
-	        bis = new BufferedInputStream(fis);
-	        gis = new GZIPInputStream(bis);
-	        ois = new ObjectInputStream(gis);
+	        sequenceReader = SequenceReader.open(seqFile);
 
 	        /**
 	         * Initialize the fragment to create a new sequence and logs
@@ -1177,20 +1184,19 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 	            Taggable replayableFragment;
 	            Action actionToReplay;
 	            try {
-	                replayableFragment = (Taggable) ois.readObject();
-	                actionToReplay = replayableFragment.get(ExecutedAction); 
-	            } catch(IOException ioe){
-	                // Check if exception thrown because we finished replaying data
-	                if(fis.available() <= 0) {
+	                replayableFragment = sequenceReader.read();
+	                // we finished replaying data
+	                if(replayableFragment == null) {
 	                    success = true;
 	                    break;
-	                } else {
-	                    success = false;
-	                    String msg = "Exception " + ioe.getMessage() + " reading TESTAR replayableFragment: " + seqFile;
-	                    setReplayVerdict(new Verdict(Verdict.SEVERITY_UNREPLAYABLE, msg));
-	                    stateModelManager.notifyTestSequenceInterruptedBySystem(ioe.toString());
-	                    break;
 	                }
+	                actionToReplay = replayableFragment.get(ExecutedAction); 
+	            } catch(IOException ioe){
+	                success = false;
+	                String msg = "Exception " + ioe.getMessage() + " reading TESTAR replayableFragment: " + seqFile;
+	                setReplayVerdict(new Verdict(Verdict.SEVERITY_UNREPLAYABLE, msg));
+	                stateModelManager.notifyTestSequenceInterruptedBySystem(ioe.toString());
+	                break;
 	            } catch(NullPointerException npe) {
 	                success = false;
 	                String msg = "Null exception replaying TESTAR action";
@@ -1314,17 +1320,8 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 	    } catch (ClassNotFoundException cnfe) {
 	        throw new RuntimeException("Cannot read file.", cnfe);
 	    } finally {
-	        if (ois != null){
-	            try { ois.close(); } catch (IOException e) { e.printStackTrace(); }
-	        }
-	        if (gis != null){
-	            try { gis.close(); } catch (IOException e) { e.printStackTrace(); }
-	        }
-	        if (bis != null){
-	            try { bis.close(); } catch (IOException e) { e.printStackTrace(); }
-	        }
-	        if (fis != null){
-	            try { fis.close(); } catch (IOException e) { e.printStackTrace(); }
+	        if (sequenceReader != null){
+	            try { sequenceReader.close(); } catch (IOException e) { e.printStackTrace(); }
 	        }
 	        if (cv != null)
 	            cv.release();
@@ -1505,33 +1502,12 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 	@Override
 	protected Verdict getVerdict(State state){
 		Assert.notNull(state);
-		//-------------------
-		// ORACLES FOR FREE
-		//-------------------
-
-		// if the SUT is not running, we assume it crashed
-		if(!state.get(IsRunning, false))
-			return new Verdict(Verdict.SEVERITY_NOT_RUNNING, "System is offline! I assume it crashed!");
-
-		// if the SUT does not respond within a given amount of time, we assume it crashed
-		if(state.get(Tags.NotResponding, false)){
-			return new Verdict(Verdict.SEVERITY_NOT_RESPONDING, "System is unresponsive! I assume something is wrong!");
-		}
-		//------------------------
-		// ORACLES ALMOST FOR FREE
-		//------------------------
-
-		if (this.suspiciousTitlesPattern == null)
-			this.suspiciousTitlesPattern = Pattern.compile(settings().get(ConfigTags.SuspiciousTitles), Pattern.UNICODE_CHARACTER_CLASS);
-
-		// search all widgets for suspicious String Values
-		Verdict suspiciousValueVerdict = Verdict.OK;
-		for(Widget w : state) {
-			suspiciousValueVerdict = suspiciousStringValueMatcher(w);
-			if(suspiciousValueVerdict.severity() == Verdict.SEVERITY_SUSPICIOUS_TITLE) {
-				return suspiciousValueVerdict;
-			}
-		}
+		//-------------------------------------------------------------------
+		// ORACLES FOR FREE (crashes) AND ALMOST FOR FREE (suspicious titles)
+		//-------------------------------------------------------------------
+		Verdict verdict = verdictEngine.evaluate(state);
+		if(verdict.severity() != Verdict.SEVERITY_OK)
+			return verdict;
 
 		if (this.nonSuitableAction){
 			this.nonSuitableAction = false;
@@ -1542,45 +1518,22 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 		return Verdict.OK;
 	}
 	
-	private Verdict suspiciousStringValueMatcher(Widget w) {
-		Matcher m;
-
-		for(String tagForSuspiciousOracle : settings.get(ConfigTags.TagsForSuspiciousOracle)){
-			String tagValue = "";
-			// First finding the Tag that matches the TagsToFilter string, then getting the value of that Tag:
-			for(Tag tag : w.tags()){
-				if(tag.name().equals(tagForSuspiciousOracle)){
-					tagValue = w.get(tag, "");
-					break;
-					//System.out.println("DEBUG: tag found, "+tagToFilter+"="+tagValue);
-				}
-			}
-
-			//Check whether the Tag value is empty or null
-			if (tagValue == null || tagValue.isEmpty())
-				continue; //no action
-
-			//Ignore value ValuePattern for UIAEdit widgets
-			if(tagValue.equals("ValuePattern") && w.get(Tags.Role, Roles.Widget).toString().equalsIgnoreCase("UIAEdit")) {
-				continue;
-			}
-
-			m = this.suspiciousTitlesMatchers.get(tagValue);
-			if (m == null){
-				m = this.suspiciousTitlesPattern.matcher(tagValue);
-				this.suspiciousTitlesMatchers.put(tagValue, m);
-			}
-
-			if (m.matches()){
-				Visualizer visualizer = Util.NullVisualizer;
-				// visualize the problematic widget, by marking it with a red box
-				if(w.get(Tags.Shape, null) != null)
-					visualizer = new ShapeVisualizer(RedPen, w.get(Tags.Shape), "Suspicious Title", 0.5, 0.5);
-				return new Verdict(Verdict.SEVERITY_SUSPICIOUS_TITLE,
-						"Discovered suspicious widget '" + tagForSuspiciousOracle + "' : '" + tagValue + "'.", visualizer);
-			}
+	/**
+	 * Builds the engine of the oracles for free and almost for free. Protocols can add their own oracles to it,
+	 * which are then evaluated in the same traversal of the widgets.
+	 */
+	protected VerdictEngine buildVerdictEngine(Settings settings) {
+		if (verdictEngine != null)
+			verdictEngine.close();
+		MultiPatternMatcher.Mode matching = MultiPatternMatcher.Mode.fromName(settings.get(ConfigTags.SuspiciousTitlesMatching));
+		if (matching == null) {
+			System.out.println("WARNING: Unknown SuspiciousTitlesMatching " + settings.get(ConfigTags.SuspiciousTitlesMatching) + ", using " + MultiPatternMatcher.Mode.Literals.name());
+			matching = MultiPatternMatcher.Mode.Literals;
 		}
-		return Verdict.OK;
+		return new VerdictEngine(settings.get(ConfigTags.ParallelOracles))
+				.add(new SystemCrashOracle())
+				.add(new SuspiciousTitlesOracle(MultiPatternMatcher.compile(settings.get(ConfigTags.SuspiciousTitles),
+						Pattern.UNICODE_CHARACTER_CLASS, matching), settings.get(ConfigTags.TagsForSuspiciousOracle), RedPen));
 	}
 
 	/**
@@ -1845,6 +1798,8 @@ public class DefaultProtocol extends RuntimeControlsProtocol {
 
 	@Override
 	protected void closeTestSession() {
+		if (verdictEngine != null)
+			verdictEngine.close();
 	}
 
 	//TODO move to ManualRecording helper class??
@@ -31,6 +31,9 @@
 package org.fruit.monkey;
 
 import es.upv.staq.testar.CodingManager;
+import es.upv.staq.testar.IdCollisionDetector;
+import es.upv.staq.testar.IdHashFunction;
+import es.upv.staq.testar.IdHashFunctions;
 import es.upv.staq.testar.NativeLinker;
 import es.upv.staq.testar.OperatingSystems;
 import es.upv.staq.testar.StateManagementTags;
@@ -396,6 +399,11 @@ public class Main {
 				}
 			}
 
+			if (CodingManager.getCollisionDetector() != null) {
+				LogSerialiser.log(CodingManager.getCollisionDetector() + "\n", LogSerialiser.LogLevel.Critical);
+				System.out.println(CodingManager.getCollisionDetector());
+			}
+
 			TestSerialiser.exit();
 			ScreenshotSerialiser.exit();
 			LogSerialiser.exit();
@@ -423,6 +431,7 @@ public class Main {
 			defaults.add(Pair.from(OutputDir, outputDir));
 			defaults.add(Pair.from(TempDir, tempDir));
 			defaults.add(Pair.from(OnlySaveFaultySequences, false));
+			defaults.add(Pair.from(CompressSequenceFragments, true));
 			defaults.add(Pair.from(PathToReplaySequence, tempDir));
 			defaults.add(Pair.from(ActionDuration, 0.1));
 			defaults.add(Pair.from(TimeToWaitAfterAction, 0.1));
@@ -477,10 +486,29 @@ public class Main {
 			defaults.add(Pair.from(DataStorePassword, ""));
 			defaults.add(Pair.from(DataStoreMode, ""));
 			defaults.add(Pair.from(ResetDataStore, false));
+			defaults.add(Pair.from(DataStorePoolSize, 4));
+			defaults.add(Pair.from(DataStoreBatchSize, 5000));
+			defaults.add(Pair.from(DataStoreIdentityCacheSize, 50000));
+			defaults.add(Pair.from(DataStoreWidgetStorage, "Tree"));
+			defaults.add(Pair.from(DataStoreLazyLoading, false));
+			defaults.add(Pair.from(DataStoreLoadCacheSize, 10000));
+			defaults.add(Pair.from(DataStoreQueueCapacity, 10000));
+			defaults.add(Pair.from(DataStoreQueueOverflow, "Block"));
+			defaults.add(Pair.from(DataStoreSnapshotInterval, 10));
 			defaults.add(Pair.from(ApplicationName, ""));
 			defaults.add(Pair.from(ApplicationVersion, ""));
 			defaults.add(Pair.from(ActionSelectionAlgorithm, "random"));
 			defaults.add(Pair.from(StateModelStoreWidgets, true));
+			defaults.add(Pair.from(StateModelTimings, false));
+			defaults.add(Pair.from(IdentifierHashFunction, IdHashFunctions.LowCollision.name()));
+			defaults.add(Pair.from(IdentifierCollisionDetection, false));
+			defaults.add(Pair.from(ScreenshotWorkers, 2));
+			defaults.add(Pair.from(ScreenshotQueueCapacity, 32));
+			defaults.add(Pair.from(ScreenshotEncoder, ScreenshotSerialiser.Encoder.FastPng.name()));
+			defaults.add(Pair.from(ScreenshotOverflowPolicy, ScreenshotSerialiser.OverflowPolicy.Block.name()));
+			defaults.add(Pair.from(ScreenshotDeduplication, false));
+			defaults.add(Pair.from(ScreenshotDeltaEncoding, false));
+			defaults.add(Pair.from(ScreenshotKeyframeInterval, 20));
 			defaults.add(Pair.from(AlwaysCompile, true));
 			defaults.add(Pair.from(ProcessListenerEnabled, false));
 			defaults.add(Pair.from(SuspiciousProcessOutput, "(?!x)x"));
@@ -540,10 +568,14 @@ public class Main {
 					add("WebTagName");
 				}
 			}));
+			defaults.add(Pair.from(SuspiciousTitlesMatching, "Literals"));
+			defaults.add(Pair.from(ParallelOracles, false));
 
 			defaults.add(Pair.from(FollowLinks, true));
 			defaults.add(Pair.from(BrowserFullScreen, true));
 			defaults.add(Pair.from(SwitchNewTabs, true));
+			defaults.add(Pair.from(IncrementalStateCapture, false));
+			defaults.add(Pair.from(ColumnarStatePayload, false));
 
 			/*
 			//TODO web driver settings for login feature
@@ -758,6 +790,15 @@ public class Main {
             Tag<?>[] abstractTags = settings.get(AbstractStateAttributes).stream().map(StateManagementTags::getTagFromSettingsString).filter(Objects::nonNull).toArray(Tag<?>[]::new);
             CodingManager.setCustomTagsForAbstractId(abstractTags);
         }
+
+        // the hash function for the identifiers and the optional collision detection
+        IdHashFunction idHashFunction = IdHashFunctions.fromName(settings.get(ConfigTags.IdentifierHashFunction));
+        if (idHashFunction == null) {
+            System.out.println("WARNING: Unknown IdentifierHashFunction " + settings.get(ConfigTags.IdentifierHashFunction) + ", using " + IdHashFunctions.LowCollision.name());
+            idHashFunction = IdHashFunctions.LowCollision;
+        }
+        CodingManager.setIdHashFunction(idHashFunction);
+        CodingManager.setCollisionDetector(settings.get(ConfigTags.IdentifierCollisionDetection) ? new IdCollisionDetector() : null);
     }
 
 	/**
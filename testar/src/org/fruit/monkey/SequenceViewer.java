@@ -41,14 +41,10 @@ import java.awt.Graphics;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
 
 import org.fruit.Assert;
 import org.fruit.Util;
@@ -71,11 +67,14 @@ import org.fruit.alayer.Widget;
 import org.fruit.alayer.actions.NOP;
 import org.fruit.alayer.visualizers.ShapeVisualizer;
 
+import es.upv.staq.testar.serialisation.ScreenshotDeltas;
+import es.upv.staq.testar.serialisation.SequenceReader;
+
 
 public class SequenceViewer extends javax.swing.JFrame{
 
 	private static final long serialVersionUID = -7545369239319448135L;
-	ObjectInputStream stream;
+	SequenceReader stream;
 	BufferedImage buffer = new BufferedImage(1024, 768, BufferedImage.TYPE_INT_ARGB);
 	int stateCount;
 	
@@ -253,7 +252,9 @@ public class SequenceViewer extends javax.swing.JFrame{
 		State state = fragment.get(Tags.SystemState, new StdState());
 
 		String scrshotPath = state.get(Tags.ScreenshotPath, null);
-		Image img = AWTCanvas.fromFile(scrshotPath);
+		// delta screenshots are drawn over their keyframe
+		BufferedImage scrshot = scrshotPath == null ? null : ScreenshotDeltas.read(scrshotPath);
+		Image img = scrshot == null ? null : new AWTCanvas(0.0, 0.0, scrshot, AWTCanvas.StorageFormat.PNG, 1.0);
 
 		if(img == null){
 			AWTCanvas awtc = new AWTCanvas(0.0, 0.0, new BufferedImage(1024, 768, BufferedImage.TYPE_INT_ARGB), AWTCanvas.StorageFormat.PNG, 1.0);
@@ -324,9 +325,7 @@ public class SequenceViewer extends javax.swing.JFrame{
 			if (sequenceViewIndex <= 0)
 				return; // next must be invoked first! 
 	
-			int steps = sequenceViewIndex;
-			sequenceViewIndex = 0;		
-			movePic(cachedSequence.get(sequenceViewIndex),-steps);
+			showPic(0);
 		}
 	}
 
@@ -335,65 +334,60 @@ public class SequenceViewer extends javax.swing.JFrame{
 			if (sequenceViewIndex <= 0)
 				return; // next must be invoked first! 
 	
-			sequenceViewIndex--;		
-			movePic(cachedSequence.get(sequenceViewIndex),DIRECTION_PREVIOUS);
+			showPic(sequenceViewIndex - 1);
 		}
 	}
 
 	public void nextPic() throws IOException, ClassNotFoundException{
 		synchronized(cachedSequence){			
-			if(stream == null){
-				FileInputStream fis = new FileInputStream(new File(settings.get(PathToReplaySequence)));
-				//BufferedInputStream bis = new BufferedInputStream(fis);
-				BufferedInputStream bis = new BufferedInputStream(new GZIPInputStream(fis));
-				stream = new ObjectInputStream(bis);
-			}
-
-			Taggable fragment = null;
-
-			if (sequenceViewIndex < cachedSequence.size() - 1)
-				fragment = cachedSequence.get(sequenceViewIndex + 1);
-			else {
-				//This try catch is used for the case of reaching the end of the fragment
-				try{
-					fragment = (Taggable) stream.readObject();
-					cachedSequence.add(fragment);
-				} catch (IOException ioe){ return; }
-			}
-
-			sequenceViewIndex++;
-			movePic(fragment,DIRECTION_NEXT);
+			showPic(sequenceViewIndex + 1);
 		}
 	}
 
 	public void endPic() throws IOException, ClassNotFoundException{
 		synchronized(cachedSequence){		
-			if(stream == null){
-				FileInputStream fis = new FileInputStream(new File(settings.get(PathToReplaySequence)));
-				//BufferedInputStream bis = new BufferedInputStream(fis);
-				BufferedInputStream bis = new BufferedInputStream(new GZIPInputStream(fis));
-				stream = new ObjectInputStream(bis);
+			int fragments;
+			if (reader().isLegacyFormat()){
+				while (fragment(cachedSequence.size()) != null);
+				fragments = cachedSequence.size();
+			} else {
+				fragments = reader().seekEnd();
 			}
-
-			int steps = cachedSequence.size() - sequenceViewIndex - 1;
-			sequenceViewIndex = cachedSequence.size() - 1;
-			
-			Taggable fragment = null;
-			
-			//This try catch is used for the case of reaching the end of the fragment
-			try{
-				do{
-					fragment = (Taggable) stream.readObject();
-					cachedSequence.add(fragment);
-					steps++;
-					sequenceViewIndex++;
-				}while(true); // til end of file
-			} catch (IOException ioe) { // end of file reached?
-				movePic(fragment == null ? cachedSequence.get(sequenceViewIndex) : fragment, steps);
-			}		
+			if (fragments > 0)
+				showPic(fragments - 1);
 		}
 	}	
 
+	private void showPic(int index) throws IOException, ClassNotFoundException{
+		Taggable fragment = fragment(index);
+		if (fragment == null)
+			return; // end of the sequence
+		int steps = index - sequenceViewIndex;
+		sequenceViewIndex = index;
+		movePic(fragment, steps);
+	}
+
+	private SequenceReader reader() throws IOException{
+		if (stream == null)
+			stream = SequenceReader.open(new File(settings.get(PathToReplaySequence)));
+		return stream;
+	}
+
+	/**
+	 * Fragments of binary sequences are read by seeking, fragments of the former format
+	 * are kept in memory, as seeking means deserialising all the preceding fragments.
+	 */
+	private Taggable fragment(int index) throws IOException, ClassNotFoundException{
+		if (index < cachedSequence.size())
+			return cachedSequence.get(index);
+		SequenceReader reader = reader();
+		reader.seek(index);
+		Taggable fragment = reader.read();
+		if (fragment != null && reader.isLegacyFormat() && index == cachedSequence.size())
+			cachedSequence.add(fragment);
+		return fragment;
+	}
+
 	public void updateInfo(String actionText){
 		lblInfo.setText("State: " + Integer.toString(stateCount+1) + "  Action: " + actionText);
 	}
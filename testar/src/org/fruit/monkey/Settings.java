@@ -314,10 +314,16 @@ public class Settings extends TaggableBase implements Serializable {
 					+"# Oracles based on suspicious titles\n"
 					+"#\n"
 					+"# Regular expression and Tags to apply them\n"
+					+"# SuspiciousTitlesMatching: Literals (default) looks up the literal\n"
+					+"# alternatives (e.g. .*[eE]rror.*) all at once, Regex only uses the\n"
+					+"# regular expression. Both give the same results.\n"
+					+"# ParallelOracles evaluates each oracle in its own thread\n"
 					+"#################################################################\n"
 					+"\n"
 					+"SuspiciousTitles = " + Util.lineSep()
 					+"TagsForSuspiciousOracle = " + Util.lineSep()
+					+"SuspiciousTitlesMatching = " + Util.lineSep()
+					+"ParallelOracles = " + Util.lineSep()
 					+"\n"
 					+"#################################################################\n"
 					+"# Oracles based on Suspicious Outputs detected by Process Listeners\n"
@@ -376,6 +382,28 @@ public class Settings extends TaggableBase implements Serializable {
 					+"\n"
 					+"#################################################################\n"
 					+"# State model inference settings\n"
+					+"#\n"
+					+"# DataStorePoolSize: number of threads for which database sessions are\n"
+					+"# kept open and reused, two per thread as queries can be nested (0 opens\n"
+					+"# a new session for every operation).\n"
+					+"# DataStoreBatchSize: maximum number of entities that are written in one\n"
+					+"# transaction when a new state and its widget tree are stored (0 stores\n"
+					+"# every widget and relation separately).\n"
+					+"# DataStoreIdentityCacheSize: number of stored entities whose record id is\n"
+					+"# remembered, so that they can be found without a query (0 disables it).\n"
+					+"# DataStoreWidgetStorage: Tree (every state stores its own widgets) or\n"
+					+"# Shared (widgets with the same concrete id are stored once per model).\n"
+					+"# DataStoreLazyLoading: load the states and transitions of an existing\n"
+					+"# abstract state model when they are needed instead of all at startup.\n"
+					+"# DataStoreLoadCacheSize: maximum number of loaded states kept in memory.\n"
+					+"# DataStoreQueueCapacity: maximum number of pending requests of the\n"
+					+"# background writer in the async DataStoreMode.\n"
+					+"# DataStoreQueueOverflow: Block (wait for the writer when the queue is full)\n"
+					+"# or Grow (let the queue grow beyond its capacity).\n"
+					+"# DataStoreSnapshotInterval: number of sequences after which the Memory\n"
+					+"# DataStore writes a snapshot of the model (0 only at the end of the run).\n"
+					+"# StateModelTimings: record how long the action selection and the state\n"
+					+"# model updates take, exported to the logs folder after every sequence.\n"
 					+"#################################################################\n"
 					+"StateModelEnabled = " + Util.lineSep()
 					+"DataStore = " + Util.lineSep()
@@ -386,10 +414,20 @@ public class Settings extends TaggableBase implements Serializable {
 					+"DataStoreUser = " + Util.lineSep()
 					+"DataStorePassword = " + Util.lineSep()
 					+"DataStoreMode = " + Util.lineSep()
+					+"DataStorePoolSize = " + Util.lineSep()
+					+"DataStoreBatchSize = " + Util.lineSep()
+					+"DataStoreIdentityCacheSize = " + Util.lineSep()
+					+"DataStoreWidgetStorage = " + Util.lineSep()
+					+"DataStoreLazyLoading = " + Util.lineSep()
+					+"DataStoreLoadCacheSize = " + Util.lineSep()
+					+"DataStoreQueueCapacity = " + Util.lineSep()
+					+"DataStoreQueueOverflow = " + Util.lineSep()
+					+"DataStoreSnapshotInterval = " + Util.lineSep()
 					+"ApplicationName = " + Util.lineSep()
 					+"ApplicationVersion = " + Util.lineSep()
 					+"ActionSelectionAlgorithm = " + Util.lineSep()
 					+"StateModelStoreWidgets = " + Util.lineSep()
+					+"StateModelTimings = " + Util.lineSep()
 					+"\n"
 					+"#################################################################\n"
 					+"# State identifier attributes\n"
@@ -400,6 +438,43 @@ public class Settings extends TaggableBase implements Serializable {
 					+"AbstractStateAttributes = " + Util.lineSep()
 					+"\n"
 					+"#################################################################\n"
+					+"# State identifier hash function\n"
+					+"#\n"
+					+"# Hash function for the widget, state and action identifiers:\n"
+					+"# LowCollision (default), XxHash64 or Murmur3_128. Models inferred\n"
+					+"# with different functions are not compatible.\n"
+					+"# IdentifierCollisionDetection counts and logs identifier collisions.\n"
+					+"#################################################################\n"
+					+"IdentifierHashFunction = " + Util.lineSep()
+					+"IdentifierCollisionDetection = " + Util.lineSep()
+					+"\n"
+					+"#################################################################\n"
+					+"# Screenshots\n"
+					+"#\n"
+					+"# Number of threads that save screenshots, and number of screenshots\n"
+					+"# that can wait to be saved. ScreenshotEncoder: FastPng (default),\n"
+					+"# StoredPng (uncompressed) or ImageIO (smallest files, slowest).\n"
+					+"# ScreenshotOverflowPolicy, when the queue is full: Block (default)\n"
+					+"# waits, Drop skips the screenshot, Degrade waits and saves\n"
+					+"# uncompressed screenshots while the queue is more than half full.\n"
+					+"# ScreenshotDeduplication (off by default) saves identical screenshots\n"
+					+"# only once per run (scrshots/content) and links the screenshot files\n"
+					+"# to them. The content folder is not cleaned up when sequences are\n"
+					+"# deleted.\n"
+					+"# ScreenshotDeltaEncoding saves state screenshots that changed little\n"
+					+"# as delta images that only contain the changed tiles, drawn over the\n"
+					+"# last full screenshot (keyframe). A keyframe is saved at least every\n"
+					+"# ScreenshotKeyframeInterval state screenshots.\n"
+					+"#################################################################\n"
+					+"ScreenshotWorkers = " + Util.lineSep()
+					+"ScreenshotQueueCapacity = " + Util.lineSep()
+					+"ScreenshotEncoder = " + Util.lineSep()
+					+"ScreenshotOverflowPolicy = " + Util.lineSep()
+					+"ScreenshotDeduplication = " + Util.lineSep()
+					+"ScreenshotDeltaEncoding = " + Util.lineSep()
+					+"ScreenshotKeyframeInterval = " + Util.lineSep()
+					+"\n"
+					+"#################################################################\n"
 					+"# WebDriver features\n"
 					+"#################################################################\n"
 					+"\n"
@@ -409,6 +484,8 @@ public class Settings extends TaggableBase implements Serializable {
 					+"FollowLinks = " + Util.lineSep()
 					+"BrowserFullScreen = " + Util.lineSep()
 					+"SwitchNewTabs = " + Util.lineSep()
+					+"IncrementalStateCapture = " + Util.lineSep()
+					+"ColumnarStatePayload = " + Util.lineSep()
 					+"\n"
 					+"#################################################################\n"
 					+"# Override display scale\n"
@@ -63,6 +63,7 @@ import org.fruit.alayer.exceptions.StateBuildException;
 import org.fruit.alayer.exceptions.SystemStartException;
 import org.fruit.alayer.webdriver.WdDriver;
 import org.fruit.alayer.webdriver.WdElement;
+import org.fruit.alayer.webdriver.WdProtocolUtil;
 import org.fruit.alayer.webdriver.WdWidget;
 import org.fruit.alayer.webdriver.enums.WdTags;
 import org.fruit.alayer.windows.WinProcess;
@@ -169,6 +170,13 @@ public class WebdriverProtocol extends GenericUtilsProtocol {
     	
     	SUT sut = super.startSystem();
 
+    	if (sut instanceof WdDriver) {
+    		//Only fetch the changes of the page since the previous state, instead of the whole page
+    		((WdDriver) sut).setIncrementalCapture(settings.get(ConfigTags.IncrementalStateCapture));
+    		//Transfer the whole page as columns of numbers and a string table, instead of nested maps
+    		((WdDriver) sut).setColumnarPayload(settings.get(ConfigTags.ColumnarStatePayload));
+    	}
+
     	// A workaround to obtain the browsers window handle, ideally this information is acquired when starting the
     	// webdriver in the constructor of WdDriver.
     	// A possible solution could be creating a snapshot of the running browser processes before and after
@@ -490,8 +498,8 @@ public class WebdriverProtocol extends GenericUtilsProtocol {
 		}
 
 		for (Widget widget : state) {
-			// Only enabled, visible widgets
-			if (!widget.get(Enabled, true) || widget.get(Blocked, false)) {
+			// Only enabled, visible widgets, that can be clicked at a hit point
+			if (!widget.get(Enabled, true) || WdProtocolUtil.isBlocked(widget)) {
 				continue;
 			}
 
@@ -502,7 +510,7 @@ public class WebdriverProtocol extends GenericUtilsProtocol {
 				isPopup &= entry.getValue().equals(attribute);
 			}
 			if (isPopup) {
-				return new HashSet<>(Collections.singletonList(ac.leftClickAt(widget)));
+				return new HashSet<>(Collections.singletonList(WdProtocolUtil.leftClickAt(ac, widget)));
 			}
 		}
 
@@ -0,0 +1,211 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+
+package nl.ou.testar.StateModel;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class AbstractStateModelTest {
+
+	/**
+	 * A stored model of a chain of states s0 -a-> s1 -a-> s2 ...
+	 */
+	private static class ChainLoader implements AbstractStateLoader {
+
+		private final int length;
+		private final Map<String, Integer> loads = new HashMap<>();
+
+		ChainLoader(int length) {
+			this.length = length;
+		}
+
+		@Override
+		public AbstractState loadState(AbstractStateModel abstractStateModel, String abstractStateId) {
+			int nr = number(abstractStateId);
+			if (nr < 0 || nr >= length) {
+				return null;
+			}
+			loads.merge(abstractStateId, 1, Integer::sum);
+			return new AbstractState(abstractStateId, new HashSet<>(Collections.singleton(new AbstractAction("a"))));
+		}
+
+		@Override
+		public Set<AbstractStateTransition> loadOutgoingTransitions(AbstractStateModel abstractStateModel, String abstractStateId) {
+			int nr = number(abstractStateId);
+			Set<AbstractStateTransition> transitions = new HashSet<>();
+			if (nr < 0) {
+				return transitions;
+			}
+			String targetId = "s" + (nr + 1);
+			if (abstractStateModel.containsState(targetId)) {
+				try {
+					AbstractState source = abstractStateModel.getState(abstractStateId);
+					AbstractState target = abstractStateModel.getState(targetId);
+					transitions.add(new AbstractStateTransition(source, target, source.getAction("a")));
+				}
+				catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return transitions;
+		}
+
+		private static int number(String abstractStateId) {
+			return abstractStateId.matches("s[0-9]+") ? Integer.parseInt(abstractStateId.substring(1)) : -1;
+		}
+	}
+
+	@Test
+	public void testStatesArePagedInOnDemand() throws Exception {
+		AbstractStateModel model = new AbstractStateModel("model", "app", "1", new HashSet<>());
+		ChainLoader loader = new ChainLoader(10);
+		model.setStateLoader(loader, 100);
+
+		assertTrue(model.getStates().isEmpty());
+		assertTrue(model.containsState("s3"));
+		assertFalse(model.containsState("s42"));
+		assertEquals(1, model.getStates().size());
+
+		Set<AbstractStateTransition> transitions = model.getOutgoingTransitionsForState("s3");
+		assertEquals(1, transitions.size());
+		assertEquals("s4", transitions.iterator().next().getTargetStateId());
+		assertEquals(2, model.getStates().size());
+
+		// a paged in state is not loaded twice
+		model.getState("s3");
+		model.getOutgoingTransitionsForState("s3");
+		assertEquals(1, (int) loader.loads.get("s3"));
+	}
+
+	@Test
+	public void testOnlyUnchangedStatesAreEvicted() throws Exception {
+		AbstractStateModel model = new AbstractStateModel("model", "app", "1", new HashSet<>());
+		ChainLoader loader = new ChainLoader(100);
+		model.setStateLoader(loader, 2);
+
+		// a state that is changed in this session stays in memory
+		AbstractState changed = model.getState("s0");
+		AbstractState created = new AbstractState("new", new HashSet<>(Collections.singleton(new AbstractAction("b"))));
+		model.addTransition(changed, created, changed.getAction("a"));
+
+		for (int i = 1; i < 20; i++) {
+			model.getOutgoingTransitionsForState("s" + i);
+		}
+		assertTrue(model.getStates().size() <= 4);
+		assertSame(changed, model.getState("s0"));
+		assertSame(created, model.getState("new"));
+		assertEquals(1, (int) loader.loads.get("s0"));
+
+		// an evicted state is paged in again when it is needed
+		assertTrue(model.containsState("s1"));
+		assertEquals(2, (int) loader.loads.get("s1"));
+		assertEquals(2, model.getOutgoingTransitionsForState("s0").size());
+	}
+
+	@Test
+	public void testStatesChangedThroughTheirMethodsAreNotEvicted() throws Exception {
+		AbstractStateModel model = new AbstractStateModel("model", "app", "1", new HashSet<>());
+		ChainLoader loader = new ChainLoader(100);
+		model.setStateLoader(loader, 2);
+
+		// the model manager changes a state that it got from the model, before it adds a transition to it
+		AbstractState reached = model.getState("s0");
+		reached.addConcreteStateId("c0");
+		AbstractState visited = model.getState("s1");
+		visited.addVisitedAction(visited.getAction("a"));
+
+		for (int i = 2; i < 20; i++) {
+			model.getOutgoingTransitionsForState("s" + i);
+		}
+		assertSame(reached, model.getState("s0"));
+		assertSame(visited, model.getState("s1"));
+		assertEquals(1, (int) loader.loads.get("s0"));
+		assertEquals(1, (int) loader.loads.get("s1"));
+		assertTrue(model.getStates().size() <= 6);
+	}
+
+	@Test
+	public void testDeterminismIsTrackedIncrementally() throws Exception {
+		AbstractStateModel model = new AbstractStateModel("model", "app", "1", new HashSet<>());
+		AbstractState s0 = new AbstractState("s0", new HashSet<>(Arrays.asList(new AbstractAction("a"), new AbstractAction("b"))));
+		AbstractState s1 = new AbstractState("s1", new HashSet<>());
+		AbstractState s2 = new AbstractState("s2", new HashSet<>());
+		AbstractState s3 = new AbstractState("s3", new HashSet<>());
+
+		model.addTransition(s0, s1, s0.getAction("a"));
+		model.addTransition(s0, s1, s0.getAction("b"));
+		model.addTransition(s0, s1, s0.getAction("a"));
+		assertTrue(model.isDeterministic());
+		assertEquals(0, model.getNrOfNondeterministicActions());
+		assertEquals(1, model.getNrOfTargetStates("s0", "a"));
+
+		model.addTransition(s0, s2, s0.getAction("a"));
+		assertFalse(model.isDeterministic());
+		assertEquals(2, model.getNrOfNondeterministicActions());
+
+		model.addTransition(s0, s3, s0.getAction("a"));
+		model.addTransition(s0, s2, s0.getAction("a"));
+		assertEquals(3, model.getNrOfTargetStates("s0", "a"));
+		assertEquals(3, model.getNrOfNondeterministicActions());
+		assertEquals(0, model.getNrOfTargetStates("s1", "a"));
+	}
+
+	@Test
+	public void testDeterminismCountsTheTransitionsInMemory() throws Exception {
+		AbstractStateModel model = new AbstractStateModel("model", "app", "1", new HashSet<>());
+		ChainLoader loader = new ChainLoader(100);
+		model.setStateLoader(loader, 2);
+
+		AbstractState changed = model.getState("s0");
+		AbstractState created = new AbstractState("new", new HashSet<>());
+		int nrOfTargetStates = model.getNrOfTargetStates("s0", "a");
+		model.addTransition(changed, created, changed.getAction("a"));
+		assertEquals(1, nrOfTargetStates);
+		assertEquals(2, model.getNrOfTargetStates("s0", "a"));
+		assertEquals(2, model.getNrOfNondeterministicActions());
+
+		// the transitions of evicted states no longer count, the pinned ones do
+		for (int i = 1; i < 20; i++) {
+			model.getOutgoingTransitionsForState("s" + i);
+		}
+		assertTrue(model.isLoadedLazily());
+		assertEquals(2, model.getNrOfNondeterministicActions());
+		assertEquals(1, model.getNrOfTargetStates("s5", "a"));
+	}
+}
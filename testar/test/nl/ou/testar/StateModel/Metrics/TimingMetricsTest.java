@@ -0,0 +1,98 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+
+package nl.ou.testar.StateModel.Metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+public class TimingMetricsTest {
+
+	@Test
+	public void testBucketsCoverAllDurations() {
+		for (long nanos : new long[]{0, 1, 3, 4, 5, 7, 8, 1000, 123456789, Long.MAX_VALUE}) {
+			int bucket = LatencyHistogram.bucket(nanos);
+			assertTrue(LatencyHistogram.upperBound(bucket) >= nanos);
+			assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < nanos);
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(1000, histogram.getMin());
+		assertEquals(100000, histogram.getMax());
+		assertEquals(50500.0, histogram.getMean(), 0.001);
+		// the buckets are precise to 25%
+		long median = histogram.getPercentile(50);
+		assertTrue(median >= 50000 && median <= 62500);
+		assertEquals(100000, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void testExportAfterEverySequence() throws IOException {
+		File directory = Files.createTempDirectory("testar-timings").toFile();
+		try {
+			TimingMetrics metrics = new TimingMetrics();
+			metrics.record("selectAction.RandomActionSelector", 2000000);
+			metrics.record("selectAction.RandomActionSelector", 4000000);
+			metrics.endSequence(directory);
+			metrics.record("notifyNewStateReached", 1000000);
+			metrics.endSequence(directory);
+
+			List<String> rows = Files.readAllLines(new File(directory, TimingMetrics.CSV_FILE_NAME).toPath());
+			assertEquals(3, rows.size());
+			assertTrue(rows.get(1).startsWith("1,selectAction.RandomActionSelector,2,6.000,3.000,2.000,"));
+			assertTrue(rows.get(2).startsWith("2,notifyNewStateReached,1,1.000,"));
+
+			String json = new String(Files.readAllBytes(new File(directory, TimingMetrics.JSON_FILE_NAME).toPath()), "UTF-8");
+			assertTrue(json.contains("\"sequences\": 2"));
+			assertTrue(json.contains("\"selectAction.RandomActionSelector\": {"));
+			assertTrue(json.contains("\"count\": 2, \"totalNanos\": 6000000"));
+		}
+		finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+
+package nl.ou.testar.StateModel.Persistence.Memory;
+
+import static org.junit.Assert.*;
+
+import nl.ou.testar.StateModel.AbstractAction;
+import nl.ou.testar.StateModel.AbstractState;
+import nl.ou.testar.StateModel.AbstractStateModel;
+import nl.ou.testar.StateModel.Exception.StateModelException;
+import nl.ou.testar.StateModel.Util.EventHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class MemoryManagerTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("testar-memory").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	private static AbstractState state(String stateId, String... actionIds) {
+		HashSet<AbstractAction> actions = new HashSet<>();
+		for (String actionId : actionIds) {
+			actions.add(new AbstractAction(actionId));
+		}
+		return new AbstractState(stateId, actions);
+	}
+
+	private static void transition(AbstractStateModel model, String source, String action, String target) throws StateModelException {
+		AbstractState sourceState = model.getState(source);
+		model.addTransition(sourceState, model.getState(target), sourceState.getAction(action));
+	}
+
+	private static AbstractStateModel recordModel(MemoryManager manager) throws StateModelException {
+		AbstractStateModel model = new AbstractStateModel("model", "app", "1", new HashSet<>(), manager);
+		AbstractState initial = state("s0", "a", "b");
+		initial.setInitial(true);
+		initial.addConcreteStateId("c0");
+		model.addState(initial);
+		model.addState(state("s1", "a"));
+		model.addState(state("s2"));
+		transition(model, "s0", "a", "s1");
+		transition(model, "s1", "a", "s2");
+		return model;
+	}
+
+	@Test
+	public void testDeterminism() throws StateModelException {
+		MemoryManager manager = new MemoryManager(new EventHelper(), directory, 0);
+		AbstractStateModel model = recordModel(manager);
+		assertTrue(manager.modelIsDeterministic(model));
+		assertEquals(0, manager.getNrOfNondeterministicActions(model));
+
+		// the same action leads to two different states
+		transition(model, "s0", "a", "s2");
+		assertFalse(manager.modelIsDeterministic(model));
+		assertEquals(2, manager.getNrOfNondeterministicActions(model));
+
+		// and then to a third one
+		model.addState(state("s3"));
+		transition(model, "s0", "a", "s3");
+		assertEquals(3, manager.getNrOfNondeterministicActions(model));
+
+		// a transition that is already known does not change anything
+		transition(model, "s0", "a", "s3");
+		assertEquals(3, manager.getNrOfNondeterministicActions(model));
+		manager.shutdown();
+	}
+
+	@Test
+	public void testReloadFromSnapshotAndJournal() throws StateModelException {
+		MemoryManager manager = new MemoryManager(new EventHelper(), directory, 0);
+		AbstractStateModel model = recordModel(manager);
+		manager.shutdown();
+
+		// a second run adds a nondeterministic transition, which is only written to the journal
+		MemoryManager secondManager = new MemoryManager(new EventHelper(), directory, 0);
+		AbstractStateModel secondModel = new AbstractStateModel("model", "app", "1", new HashSet<>(), secondManager);
+		assertTrue(secondModel.containsState("s2"));
+		transition(secondModel, "s0", "a", "s2");
+
+		MemoryManager thirdManager = new MemoryManager(new EventHelper(), directory, 0);
+		AbstractStateModel thirdModel = new AbstractStateModel("model", "app", "1", new HashSet<>(), thirdManager);
+		AbstractState initial = thirdModel.getState("s0");
+		assertTrue(initial.isInitial());
+		assertEquals(new HashSet<>(Arrays.asList("c0")), initial.getConcreteStateIds());
+		assertEquals(2, initial.getActions().size());
+		assertEquals(1, initial.getUnvisitedActions().size());
+		assertEquals(2, thirdModel.getOutgoingTransitionsForState("s0").size());
+		assertFalse(thirdManager.modelIsDeterministic(thirdModel));
+		assertEquals(2, thirdManager.getNrOfNondeterministicActions(thirdModel));
+		thirdManager.shutdown();
+		secondManager.shutdown();
+	}
+
+}
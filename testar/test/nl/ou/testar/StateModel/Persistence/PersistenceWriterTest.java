@@ -0,0 +1,135 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+
+package nl.ou.testar.StateModel.Persistence;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class PersistenceWriterTest {
+
+	@Test
+	public void testRequestsAreExecutedInOrder() {
+		PersistenceWriter writer = new PersistenceWriter(4, PersistenceWriter.Overflow.Block);
+		List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+		for (int i = 0; i < 100; i++) {
+			int nr = i;
+			writer.submit(() -> executed.add(nr));
+		}
+		writer.drain(null);
+		assertEquals(100, executed.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, (int) executed.get(i));
+		}
+		writer.stop();
+	}
+
+	@Test
+	public void testPendingRequestsAreCoalesced() throws InterruptedException {
+		PersistenceWriter writer = new PersistenceWriter(10, PersistenceWriter.Overflow.Block);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> executed = Collections.synchronizedList(new ArrayList<>());
+		// keep the writer busy, so that the next requests stay in the queue
+		writer.submit(() -> {
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		writer.submit(() -> executed.add("state1"), "state1");
+		writer.submit(() -> executed.add("state2"), "state2");
+		writer.submit(() -> executed.add("state1 again"), "state1");
+		release.countDown();
+		writer.drain(null);
+
+		// the newer request for state1 replaced the pending one, after the requests that were submitted before it
+		assertEquals(2, executed.size());
+		assertEquals("state2", executed.get(0));
+		assertEquals("state1 again", executed.get(1));
+
+		// once executed, a new request for the same key is executed again
+		writer.submit(() -> executed.add("state1 later"), "state1");
+		writer.stop();
+		assertEquals(3, executed.size());
+		assertTrue(writer.statistics().contains("1 coalesced"));
+	}
+
+	@Test
+	public void testFailuresAreReported() {
+		PersistenceWriter writer = new PersistenceWriter(4, PersistenceWriter.Overflow.Block);
+		List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+		writer.submit(() -> { throw new IllegalStateException("first"); });
+		writer.submit(() -> executed.add(1));
+		writer.submit(() -> { throw new IllegalStateException("second"); });
+		writer.drain(null);
+
+		// the requests after a failed one are still executed
+		assertEquals(1, executed.size());
+		RuntimeException failure = writer.takeFailure();
+		assertNotNull(failure);
+		assertEquals("first", failure.getMessage());
+		assertEquals(1, failure.getSuppressed().length);
+		assertEquals("second", failure.getSuppressed()[0].getMessage());
+		// a failure is reported once
+		assertNull(writer.takeFailure());
+		writer.stop();
+		assertTrue(writer.statistics().contains("(2 failed)"));
+	}
+
+	@Test
+	public void testGrowingQueueDoesNotBlock() {
+		PersistenceWriter writer = new PersistenceWriter(1, PersistenceWriter.Overflow.Grow);
+		CountDownLatch release = new CountDownLatch(1);
+		writer.submit(() -> {
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		for (int i = 0; i < 10; i++) {
+			writer.submit(() -> { });
+		}
+		assertTrue(writer.getBacklog() >= 10);
+		release.countDown();
+		writer.stop();
+		assertEquals(0, writer.getBacklog());
+	}
+
+}
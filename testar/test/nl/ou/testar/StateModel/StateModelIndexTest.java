@@ -0,0 +1,151 @@
+/***************************************************************************************************
+*
+* Copyright (c) 2020 Open Universiteit - www.ou.nl
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* 1. Redistributions of source code must retain the above copyright notice,
+* this list of conditions and the following disclaimer.
+* 2. Redistributions in binary form must reproduce the above copyright
+* notice, this list of conditions and the following disclaimer in the
+* documentation and/or other materials provided with the distribution.
+* 3. Neither the name of the copyright holder nor the names of its
+* contributors may be used to endorse or promote products derived from
+* this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*******************************************************************************************************/
+
+
+package nl.ou.testar.StateModel;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class StateModelIndexTest {
+
+	@Test
+	public void testPathToUnvisitedActions() {
+		StateModelIndex index = new StateModelIndex();
+		index.addTransition("s0", "a", "s1");
+		index.addTransition("s1", "a", "s2");
+		index.addTransition("s0", "b", "s3");
+		assertNull(index.getPathToUnvisitedActions("s0"));
+
+		index.setUnvisitedActions("s2", true);
+		assertEquals(2, index.getDistance("s0"));
+		List<StateModelIndex.Step> path = index.getPathToUnvisitedActions("s0");
+		assertEquals(2, path.size());
+		assertEquals("a", path.get(0).getActionId());
+		assertEquals("s2", path.get(1).getTargetStateId());
+
+		// a shortcut lowers the distance
+		index.setUnvisitedActions("s3", true);
+		assertEquals(1, index.getDistance("s0"));
+		assertEquals("s3", index.getPathToUnvisitedActions("s0").get(0).getTargetStateId());
+
+		// and when its actions have been visited, the longer path is used again
+		index.setUnvisitedActions("s3", false);
+		assertEquals(2, index.getDistance("s0"));
+		index.setUnvisitedActions("s2", false);
+		assertEquals(-1, index.getDistance("s0"));
+		assertTrue(index.getPathToUnvisitedActions("s2") == null);
+	}
+
+	@Test
+	public void testPathLeadsToNearestStateWithMostUnvisitedActions() {
+		StateModelIndex index = new StateModelIndex();
+		index.addTransition("s0", "a", "s1");
+		index.addTransition("s1", "a", "s2");
+		index.addTransition("s0", "b", "s3");
+		index.addTransition("s3", "b", "s4");
+		index.addTransition("s0", "c", "s5");
+		index.setUnvisitedActions("s2", 1);
+		index.setUnvisitedActions("s4", 3);
+
+		List<StateModelIndex.Step> path = index.getPathToUnvisitedActions("s0");
+		assertEquals(2, path.size());
+		assertEquals("b", path.get(0).getActionId());
+		assertEquals("s3", path.get(0).getTargetStateId());
+		assertEquals("s4", path.get(1).getTargetStateId());
+
+		// a nearer state wins, whatever its number of unvisited actions
+		index.setUnvisitedActions("s5", 1);
+		assertEquals("s5", index.getPathToUnvisitedActions("s0").get(0).getTargetStateId());
+	}
+
+	@Test
+	public void testDistancesMatchBreadthFirstSearch() {
+		Random random = new Random(42);
+		int nrOfStates = 60;
+		StateModelIndex index = new StateModelIndex();
+		List<List<Integer>> successors = new ArrayList<>();
+		boolean[] unvisited = new boolean[nrOfStates];
+		for (int i = 0; i < nrOfStates; i++) {
+			successors.add(new ArrayList<>());
+			index.setUnvisitedActions("s" + i, false);
+		}
+
+		for (int step = 0; step < 2000; step++) {
+			int state = random.nextInt(nrOfStates);
+			if (random.nextInt(3) == 0) {
+				unvisited[state] = !unvisited[state];
+				index.setUnvisitedActions("s" + state, unvisited[state]);
+			}
+			else {
+				int target = random.nextInt(nrOfStates);
+				successors.get(state).add(target);
+				index.addTransition("s" + state, "a" + random.nextInt(3), "s" + target);
+			}
+
+			int[] expected = distances(successors, unvisited);
+			for (int i = 0; i < nrOfStates; i++) {
+				assertEquals("distance of s" + i + " after step " + step, expected[i], index.getDistance("s" + i));
+			}
+		}
+	}
+
+	private static int[] distances(List<List<Integer>> successors, boolean[] unvisited) {
+		int[] distances = new int[unvisited.length];
+		for (int start = 0; start < unvisited.length; start++) {
+			distances[start] = -1;
+			Set<Integer> seen = new HashSet<>(Arrays.asList(start));
+			ArrayDeque<int[]> queue = new ArrayDeque<>();
+			queue.add(new int[]{start, 0});
+			while (!queue.isEmpty()) {
+				int[] current = queue.poll();
+				if (unvisited[current[0]]) {
+					distances[start] = current[1];
+					break;
+				}
+				for (int next : successors.get(current[0])) {
+					if (seen.add(next)) {
+						queue.add(new int[]{next, current[1] + 1});
+					}
+				}
+			}
+		}
+		return distances;
+	}
+
+}
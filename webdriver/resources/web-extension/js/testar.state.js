@@ -21,14 +21,35 @@ var getStateTreeTestar = function (ignoredTags) {
     if (window.navigator.userAgent.indexOf("Edge") > -1) {
         var treeArray = [];
         traverseElementArrayTestar(treeArray, bodyWrapped, body, -1, ignoredTags);
+        hitTestElementsTestar();
         return treeArray;
     }
     else {
         traverseElementTestar(bodyWrapped, body, ignoredTags);
+        hitTestElementsTestar();
         return bodyWrapped;
     }
 };
 
+/*
+ * Get the widget tree as a columnar payload, see encodeColumnsTestar and WdColumns
+ * @param {Array} array of tags that can be skipped, like <style>, <script> etc.
+ * @return {Object} the columnar payload
+ */
+var getStateTreeColumnsTestar = function (ignoredTags) {
+    var body = document.body;
+    var bodyWrapped = wrapElementTestar(body, 0, 0);
+
+    // Find all labels on the page
+    getLabelMapTestar();
+
+    // The flattened tree also avoids the recursion limit of Edge
+    var treeArray = [];
+    traverseElementArrayTestar(treeArray, bodyWrapped, body, -1, ignoredTags);
+    hitTestElementsTestar();
+    return encodeColumnsTestar(treeArray, document.title, document.hasFocus());
+};
+
 /*
  * Traverse the children from the parent element
  * @param {object} parentWrapped, the (wrapped) parent object
@@ -117,6 +138,442 @@ function traverseElementArrayTestar(treeArray, parentWrapped, rootElement, paren
     }
 }
 
+/*
+ * The columns of the columnar payload, these must match WdColumns
+ */
+var COLUMNS_VERSION_TESTAR = 1;
+var COLUMNS_TESTAR = ["parentId", "name", "tagName", "textContent", "display", "zIndex",
+    "rectX", "rectY", "rectWidth", "rectHeight", "overflowX", "overflowY",
+    "clientWidth", "clientHeight", "offsetWidth", "offsetHeight", "scrollWidth", "scrollHeight",
+    "scrollLeft", "scrollTop", "borderWidth", "borderHeight", "flags", "firstAttribute", "attributeCount"];
+
+/*
+ * Encode a flattened tree as columns: a table with every distinct string once and one base64 encoded
+ * array of little endian 32 bit integers, holding every column for all the elements followed by the
+ * attributes as pairs of string indices. This is much cheaper to serialize and parse than nested objects
+ * @param {Array} treeArray, array of wrapped elements with their parentId
+ * @param {string} documentTitle, the title of the document
+ * @param {bool} documentHasFocus, true if the document has the focus
+ * @return {Object} the columnar payload
+ */
+function encodeColumnsTestar(treeArray, documentTitle, documentHasFocus) {
+    var strings = [];
+    var stringIds = new Map();
+    var stringId = function (value) {
+        if (value === undefined || value === null) {
+            value = "";
+        }
+        value = String(value);
+        var id = stringIds.get(value);
+        if (id === undefined) {
+            id = strings.length;
+            strings.push(value);
+            stringIds.set(value, id);
+        }
+        return id;
+    };
+
+    var count = treeArray.length;
+    var columns = new Int32Array(count * COLUMNS_TESTAR.length);
+    var attributes = [];
+    var set = function (column, index, value) {
+        // NaN and fractions are stored as (truncated) integers
+        columns[column * count + index] = value | 0;
+    };
+
+    for (var i = 0; i < count; i++) {
+        var wrapped = treeArray[i];
+        var dimensions = wrapped.dimensions;
+
+        set(0, i, wrapped.parentId);
+        set(1, i, stringId(wrapped.name));
+        set(2, i, stringId(wrapped.tagName));
+        set(3, i, stringId(wrapped.textContent));
+        set(4, i, stringId(wrapped.display));
+        set(5, i, wrapped.zIndex);
+        for (var r = 0; r < 4; r++) {
+            set(6 + r, i, wrapped.rect[r]);
+        }
+        set(10, i, stringId(dimensions.overflowX));
+        set(11, i, stringId(dimensions.overflowY));
+        set(12, i, dimensions.clientWidth);
+        set(13, i, dimensions.clientHeight);
+        set(14, i, dimensions.offsetWidth);
+        set(15, i, dimensions.offsetHeight);
+        set(16, i, dimensions.scrollWidth);
+        set(17, i, dimensions.scrollHeight);
+        set(18, i, dimensions.scrollLeft);
+        set(19, i, dimensions.scrollTop);
+        set(20, i, dimensions.borderWidth);
+        set(21, i, dimensions.borderHeight);
+        set(22, i, (wrapped.isBlocked ? 1 : 0) | (wrapped.isClickable ? 2 : 0) |
+            (wrapped.isShadowElement ? 4 : 0) | (wrapped.hasKeyboardFocus ? 8 : 0) | (wrapped.hitMask << 4));
+
+        set(23, i, attributes.length / 2);
+        var names = Object.keys(wrapped.attributeMap);
+        for (var a = 0; a < names.length; a++) {
+            attributes.push(stringId(names[a]), stringId(wrapped.attributeMap[names[a]]));
+        }
+        set(24, i, names.length);
+    }
+
+    var data = new Int32Array(columns.length + attributes.length);
+    data.set(columns);
+    data.set(attributes, columns.length);
+
+    return {
+        version: COLUMNS_VERSION_TESTAR,
+        columns: COLUMNS_TESTAR.length,
+        count: count,
+        documentTitle: documentTitle,
+        documentHasFocus: documentHasFocus,
+        strings: strings,
+        data: encodeBase64Testar(data)
+    };
+}
+
+/*
+ * Encode a typed array as base64, with the integers in little endian byte order
+ * @param {Int32Array} data, the integers
+ * @return {string} the base64 encoded bytes
+ */
+function encodeBase64Testar(data) {
+    var bytes = new Uint8Array(data.length * 4);
+    var view = new DataView(bytes.buffer);
+    for (var i = 0; i < data.length; i++) {
+        view.setInt32(i * 4, data[i], true);
+    }
+
+    var binary = "";
+    for (var offset = 0; offset < bytes.length; offset += 0x8000) {
+        binary += String.fromCharCode.apply(null, bytes.subarray(offset, offset + 0x8000));
+    }
+    return btoa(binary);
+}
+
+/*
+ * The elements of the last incremental state fetch, see getStateTreeDeltaTestar
+ */
+var incrementalStateTestar = null;
+
+/*
+ * Get the changes of the widget tree since the previous incremental state fetch (Chrome, Firefox, Edge)
+ * Every element has a stable id and lists the ids of its children, so the changes can be merged
+ * into the previous state in WdStateFetcher. A MutationObserver tracks the elements that changed.
+ * After any change, the rect, hit test, isClickable and hasKeyboardFocus of the other elements are
+ * checked again, as the layout may have moved them, but only the elements that differ are returned.
+ * A full capture is returned when the epoch is unknown, e.g. after a page load
+ * @param {Array} array of tags that can be skipped, like <style>, <script> etc.
+ * @param {string} epoch, the epoch of the previous fetch, or null to request a full capture
+ * @return {Object} the epoch, the changed (wrapped) elements and the patched properties of the other elements
+ */
+var getStateTreeDeltaTestar = function (ignoredTags, epoch) {
+    var state = incrementalStateTestar;
+    var full = state === null || state.epoch !== epoch || state.body !== document.body;
+    if (full) {
+        if (state !== null) {
+            state.observer.disconnect();
+        }
+        state = incrementalStateTestar = createIncrementalStateTestar();
+    }
+    handleMutationsTestar(state, state.observer.takeRecords());
+
+    // Find all labels on the page, a changed label changes the name of the labelled element
+    getLabelMapTestar();
+    var labels = JSON.stringify(labelMap);
+    if (labels !== state.labels) {
+        markLabelledElementsTestar(state, JSON.parse(state.labels));
+        markLabelledElementsTestar(state, labelMap);
+        state.labels = labels;
+    }
+
+    var delta = {
+        epoch: state.epoch,
+        full: full,
+        rootId: getNodeIdTestar(state, document.body),
+        documentHasFocus: document.hasFocus(),
+        documentTitle: document.title,
+        elements: [],
+        patches: []
+    };
+
+    if (full || state.layoutChanged || state.dirty.size > 0) {
+        state.stamp++;
+        var checks = [];
+        visitElementTestar(state, document.body, 0, 0, ignoredTags, delta, checks);
+        hitTestElementsTestar();
+
+        for (var i = 0; i < delta.elements.length; i++) {
+            var record = state.records[delta.elements[i].id];
+            record.isBlocked = delta.elements[i].isBlocked;
+            record.hitMask = delta.elements[i].hitMask;
+        }
+        for (var c = 0; c < checks.length; c++) {
+            var check = checks[c];
+            var checked = check.record;
+            if (check.isBlocked !== checked.isBlocked || check.hitMask !== checked.hitMask ||
+                check.isClickable !== checked.isClickable || check.hasKeyboardFocus !== checked.hasKeyboardFocus) {
+                checked.isBlocked = check.isBlocked;
+                checked.hitMask = check.hitMask;
+                checked.isClickable = check.isClickable;
+                checked.hasKeyboardFocus = check.hasKeyboardFocus;
+                delta.patches.push({
+                    id: check.id,
+                    isBlocked: check.isBlocked,
+                    hitMask: check.hitMask,
+                    isClickable: check.isClickable,
+                    hasKeyboardFocus: check.hasKeyboardFocus
+                });
+            }
+        }
+
+        // Forget the elements that are no longer part of the page
+        for (var id in state.records) {
+            if (state.records[id].stamp !== state.stamp) {
+                delete state.records[id];
+            }
+        }
+    }
+    state.dirty.clear();
+    state.layoutChanged = false;
+
+    return delta;
+};
+
+/*
+ * Create an empty incremental state that observes the document
+ * @return {object} the incremental state
+ */
+function createIncrementalStateTestar() {
+    var state = {
+        epoch: Date.now().toString(36) + Math.random().toString(36).substring(2),
+        body: document.body,
+        nextId: 0,
+        ids: new WeakMap(),
+        records: {},
+        dirty: new Set(),
+        layoutChanged: true,
+        stamp: 0,
+        labels: "{}"
+    };
+    state.observer = new MutationObserver(function (mutations) {
+        handleMutationsTestar(state, mutations);
+    });
+    observeNodeTestar(state, document);
+    return state;
+}
+
+/*
+ * Observe a document or shadow root for changes
+ * @param {object} state, the incremental state
+ * @param {node} node, the document or shadow root
+ */
+function observeNodeTestar(state, node) {
+    state.observer.observe(node, {
+        childList: true,
+        attributes: true,
+        characterData: true,
+        subtree: true
+    });
+
+    if (node.nodeType !== 9 || node.incrementalListenersTestar) {
+        return;
+    }
+    node.incrementalListenersTestar = true;
+
+    // Changes that are not mutations of the DOM, the listeners serve every (later) incremental state
+    var markTarget = function (event) {
+        var current = incrementalStateTestar;
+        if (current !== null) {
+            // Scrolling or resizing the window changes the body
+            var target = event.target;
+            if (target === undefined || target === null || target.nodeType !== 1) {
+                target = document.body;
+            }
+            current.dirty.add(target);
+            current.layoutChanged = true;
+        }
+    };
+    var markLayout = function () {
+        if (incrementalStateTestar !== null) {
+            incrementalStateTestar.layoutChanged = true;
+        }
+    };
+    ["scroll", "input", "change", "load"].forEach(function (type) {
+        node.addEventListener(type, markTarget, true);
+    });
+    ["mouseover", "mouseout", "focusin", "focusout", "transitionend", "animationend"].forEach(function (type) {
+        node.addEventListener(type, markLayout, true);
+    });
+    if (node === document) {
+        window.addEventListener("resize", markTarget, true);
+    }
+}
+
+/*
+ * Mark the elements that are affected by DOM mutations as changed
+ * @param {object} state, the incremental state
+ * @param {Array} mutations, the mutation records
+ */
+function handleMutationsTestar(state, mutations) {
+    for (var i = 0; i < mutations.length; i++) {
+        var target = mutations[i].target;
+
+        // The text of an element is taken from its text nodes
+        if (mutations[i].type === "characterData") {
+            target = target.parentNode;
+        }
+        if (target === null) {
+            continue;
+        }
+        // Shadow root
+        if (target.nodeType === 11 && target.host !== undefined) {
+            target = target.host;
+        }
+        // Document of an iFrame
+        if (target.nodeType === 9 && target.defaultView !== null && target.defaultView.frameElement) {
+            target = target.defaultView.frameElement;
+        }
+        if (target.nodeType === 1) {
+            state.dirty.add(target);
+        }
+    }
+    if (mutations.length > 0) {
+        state.layoutChanged = true;
+    }
+}
+
+/*
+ * Mark the elements that are referred to by labels as changed
+ * @param {object} state, the incremental state
+ * @param {object} labels, map of element ids to label texts
+ */
+function markLabelledElementsTestar(state, labels) {
+    for (var id in labels) {
+        var element = document.getElementById(id);
+        if (element !== null) {
+            state.dirty.add(element);
+        }
+    }
+}
+
+/*
+ * Get the stable id of an element
+ * @param {object} state, the incremental state
+ * @param {node} element, the HTML element
+ * @return {number} the id
+ */
+function getNodeIdTestar(state, element) {
+    var id = state.ids.get(element);
+    if (id === undefined) {
+        id = state.nextId++;
+        state.ids.set(element, id);
+    }
+    return id;
+}
+
+/*
+ * Check an element and its children for changes, and add the changes to the delta
+ * A new or changed element, or an element that moved, is wrapped again
+ * @param {object} state, the incremental state
+ * @param {node} element, the HTML element
+ * @param {object} xOffset, offset off the iFrame (if applicable)
+ * @param {object} yOffset, offset off the iFrame (if applicable)
+ * @param {object} ignoredTags, list of tags to skip, <style>, <script> etc.
+ * @param {object} delta, the delta that is returned
+ * @param {Array} checks, the hit tests and flags of the unchanged elements, compared after the hit tests
+ */
+function visitElementTestar(state, element, xOffset, yOffset, ignoredTags, delta, checks) {
+    var id = getNodeIdTestar(state, element);
+    var record = state.records[id];
+
+    if (record === undefined || state.dirty.has(element) ||
+        record.rect.join() !== getRectTestar(element, xOffset, yOffset).join()) {
+        record = wrapIncrementalElementTestar(state, element, id, xOffset, yOffset, ignoredTags);
+        delta.elements.push(record.wrapped);
+        delete record.wrapped;
+    }
+    else {
+        var check = {
+            id: id,
+            record: record,
+            isClickable: isClickableTestar(element),
+            hasKeyboardFocus: document.activeElement === element
+        };
+        queueHitTestTestar(element, record.rect, check);
+        checks.push(check);
+    }
+    record.stamp = state.stamp;
+
+    for (var i = 0; i < record.children.length; i++) {
+        visitElementTestar(state, record.children[i], record.childXOffset, record.childYOffset, ignoredTags, delta, checks);
+    }
+}
+
+/*
+ * Wrap an element and find its children, like traverseElementTestar does, but without the children
+ * @param {object} state, the incremental state
+ * @param {node} element, the HTML element
+ * @param {number} id, the id of the element
+ * @param {object} xOffset, offset off the iFrame (if applicable)
+ * @param {object} yOffset, offset off the iFrame (if applicable)
+ * @param {object} ignoredTags, list of tags to skip, <style>, <script> etc.
+ * @return {object} the record of the element, with the wrapped element
+ */
+function wrapIncrementalElementTestar(state, element, id, xOffset, yOffset, ignoredTags) {
+    var wrapped = wrapElementTestar(element, xOffset, yOffset);
+    var childNodes = Array.from(getChildNodesTestar(wrapped));
+    if (element.shadowRoot !== null) {
+        observeNodeTestar(state, element.shadowRoot);
+        childNodes = childNodes.concat(Array.from(element.shadowRoot.childNodes));
+    }
+    // An iFrame shows its own document
+    if (element.contentDocument !== undefined && element.contentDocument !== null) {
+        observeNodeTestar(state, element.contentDocument);
+    }
+
+    var children = [];
+    for (var i = 0; i < childNodes.length; i++) {
+        var childElement = childNodes[i];
+
+        // Filter ignored tags or non-element nodes
+        if (childElement.nodeType === 3) {
+            wrapped.textContent += childElement.textContent;
+            wrapped.textContent = wrapped.textContent.trim();
+            continue;
+        }
+        if (childElement.nodeType !== 1 ||
+            ignoredTags.includes(childElement.nodeName.toLowerCase())) {
+            continue;
+        }
+        children.push(childElement);
+    }
+
+    wrapped['id'] = id;
+    wrapped['childIds'] = children.map(function (child) {
+        return getNodeIdTestar(state, child);
+    });
+    // No need for these anymore, save serialization effort
+    delete wrapped['element'];
+    delete wrapped['wrappedChildren'];
+
+    var record = {
+        wrapped: wrapped,
+        children: children,
+        childXOffset: wrapped["xOffset"],
+        childYOffset: wrapped["yOffset"],
+        rect: wrapped.rect,
+        // Set after the hit tests
+        isBlocked: null,
+        hitMask: null,
+        isClickable: wrapped.isClickable,
+        hasKeyboardFocus: wrapped.hasKeyboardFocus,
+        stamp: state.stamp
+    };
+    state.records[id] = record;
+    return record;
+}
+
 /*
  * Get all the childnodes of an (wrapped) element
  * Anticipate the use of iFrames
@@ -160,7 +617,7 @@ function wrapElementTestar(element, xOffset, yOffset) {
 		shadowElement = true;
 	}
 
-    return {
+    var wrapped = {
         element: element,
 
         attributeMap: getAttributeMapTestar(element),
@@ -174,7 +631,9 @@ function wrapElementTestar(element, xOffset, yOffset) {
         zIndex: getZIndexTestar(element),
         rect: getRectTestar(element, xOffset, yOffset),
         dimensions: getDimensionsTestar(element),
-        isBlocked: getIsBlockedTestar(element, xOffset, yOffset),
+        // Set by hitTestElementsTestar
+        isBlocked: false,
+        hitMask: 0,
         isClickable: isClickableTestar(element, xOffset, yOffset),
 		isShadowElement: shadowElement,
         hasKeyboardFocus: document.activeElement === element,
@@ -183,6 +642,8 @@ function wrapElementTestar(element, xOffset, yOffset) {
         xOffset: xOffset,
         yOffset: yOffset
     };
+    queueHitTestTestar(element, wrapped.rect, wrapped);
+    return wrapped;
 }
 
 /*
@@ -307,18 +768,83 @@ function isPageHorizontalScrollable(){
 }
 
 /*
- * Determin if an element is blocked by another element,
- * but does not contain said element (e.g. <img> inside <a>)
- * @param {node} element, the parent HTML element
- * @param {object} xOffset, offset off the iFrame (if applicable)
- * @param {object} yOffset, offset off the iFrame (if applicable)
- * @return {bool} true if the element is blocked by another element
+ * The elements that are hit tested in one batch after the tree walk, see hitTestElementsTestar
  */
-function getIsBlockedTestar(element, xOffset, yOffset) {
-    // get element at element's (click) position
-    var rect = element.getBoundingClientRect();
-    var x = rect.left + rect.width / 2 + xOffset;
-    var y = rect.top + rect.height / 2 + yOffset;
+var hitTestBatchTestar = [];
+
+/*
+ * The points at which an element is hit tested, relative to its rect, the center first
+ * The bits of the hitMask refer to these points, these must match WdElement
+ */
+var HIT_POINTS_TESTAR = [[0.5, 0.5], [0.25, 0.25], [0.75, 0.25], [0.25, 0.75], [0.75, 0.75]];
+var ALL_HIT_POINTS_TESTAR = 31;
+
+/*
+ * Queue an element to be hit tested by hitTestElementsTestar
+ * @param {node} element, the HTML element
+ * @param {Array} rect, the position and dimensions of the element, including the iFrame offset
+ * @param {object} result, gets the isBlocked and hitMask of the element
+ */
+function queueHitTestTestar(element, rect, result) {
+    hitTestBatchTestar.push({element: element, rect: rect, result: result});
+}
+
+/*
+ * Hit test all queued elements in one pass, after the tree walk
+ * The element at a point is looked up once for all the elements that share the point, and elements
+ * outside the viewport are not looked up at all. isBlocked only refers to the center of an element, where
+ * the protocols click by default. Only when the center is obscured the other points are tested too, so
+ * that an element that is partly covered can still be clicked at a point that is not covered.
+ * Sets isBlocked and hitMask, the bitset of the HIT_POINTS_TESTAR at which the element can be hit
+ */
+function hitTestElementsTestar() {
+    var batch = hitTestBatchTestar;
+    hitTestBatchTestar = [];
+    var hits = new Map();
+
+    for (var i = 0; i < batch.length; i++) {
+        var element = batch[i].element;
+        var rect = batch[i].rect;
+        var hitMask = 0;
+
+        // The center is not obscured, no need to look any further
+        if (canHitTestar(element, getElementAtPointTestar(hits, rect[0] + rect[2] / 2, rect[1] + rect[3] / 2))) {
+            hitMask = ALL_HIT_POINTS_TESTAR;
+        }
+        else if (rect[2] > 0 && rect[3] > 0) {
+            for (var p = 1; p < HIT_POINTS_TESTAR.length; p++) {
+                var x = rect[0] + rect[2] * HIT_POINTS_TESTAR[p][0];
+                var y = rect[1] + rect[3] * HIT_POINTS_TESTAR[p][1];
+                if (canHitTestar(element, getElementAtPointTestar(hits, x, y))) {
+                    hitMask |= 1 << p;
+                }
+            }
+        }
+
+        batch[i].result.isBlocked = (hitMask & 1) === 0;
+        batch[i].result.hitMask = hitMask;
+    }
+}
+
+/*
+ * Get the element at a point, looking into (same origin) iFrames
+ * @param {Map} hits, the elements that were found before, by point
+ * @param {number} x, the x-coordinate in the viewport
+ * @param {number} y, the y-coordinate in the viewport
+ * @return {node} the element, null if there is none (e.g. outside the viewport)
+ * or undefined if the element is in a cross-origin frame
+ */
+function getElementAtPointTestar(hits, x, y) {
+    x = Math.floor(x);
+    y = Math.floor(y);
+    if (x < 0 || y < 0 || x >= window.innerWidth || y >= window.innerHeight) {
+        return null;
+    }
+    var key = x + "," + y;
+    if (hits.has(key)) {
+        return hits.get(key);
+    }
+
     var elem = document.elementFromPoint(x, y);
 
     // element is inside iframe(s)
@@ -339,28 +865,44 @@ function getIsBlockedTestar(element, xOffset, yOffset) {
             elem = elem.contentWindow.document.elementFromPoint(x, y);
         }
         catch(exception) {
-            return true
+            elem = undefined;
         }
     }
 
+    hits.set(key, elem);
+    return elem;
+}
+
+/*
+ * Determine if an element can be hit, given the element that was found at a point
+ * It is not obscured by the children of a link (e.g. <img> inside <a>), labels and siblings
+ * @param {node} element, the HTML element
+ * @param {node} elem, the element at the point
+ * @return {bool} true if the element is not obscured at the point
+ */
+function canHitTestar(element, elem) {
     // elem can not be found, asssume the originating element is not blocked
     if (elem === null) {
-        return false;
+        return true;
     }
-
-    // Ignore encapsulated childs of <a>
-    if (element.tagName === "A" && element.contains(elem)) {
+    // Elements from a cross-origin frame are not reachable
+    if (elem === undefined) {
         return false;
     }
 
     // Ignore "label for"
     if (elem.tagName === "LABEL") {
-        return false;
+        return true;
+    }
+
+    // Ignore encapsulated childs of <a>
+    if (element.tagName === "A" && element.contains(elem)) {
+        return true;
     }
 
-    // return whether obscured element has same parent node
-    // (will also return false if element === elem)
-    return elem.parentNode !== element.parentNode;
+    // obscured element has same parent node
+    // (will also return true if element === elem)
+    return elem.parentNode === element.parentNode;
 }
 
 /*
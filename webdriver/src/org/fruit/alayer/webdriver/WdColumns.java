@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2020 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package org.fruit.alayer.webdriver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The columnar state payload of getStateTreeColumnsTestar. All strings are kept once in a string table,
+ * the numbers of the elements are sent as one base64 encoded array of little endian 32 bit integers:
+ * first every column for all the elements, then the attributes as pairs of string table indices.
+ * The elements are in document order, the body first and every parent before its children.
+ * Compared to the nested maps this saves the serialization, the JSON parsing and the boxing of every value.
+ */
+class WdColumns {
+  static final int VERSION = 1;
+
+  // The columns, every column holds one integer per element
+  static final int PARENT = 0;
+  static final int NAME = 1;
+  static final int TAG_NAME = 2;
+  static final int TEXT_CONTENT = 3;
+  static final int DISPLAY = 4;
+  static final int Z_INDEX = 5;
+  static final int RECT_X = 6;
+  static final int RECT_Y = 7;
+  static final int RECT_WIDTH = 8;
+  static final int RECT_HEIGHT = 9;
+  static final int OVERFLOW_X = 10;
+  static final int OVERFLOW_Y = 11;
+  static final int CLIENT_WIDTH = 12;
+  static final int CLIENT_HEIGHT = 13;
+  static final int OFFSET_WIDTH = 14;
+  static final int OFFSET_HEIGHT = 15;
+  static final int SCROLL_WIDTH = 16;
+  static final int SCROLL_HEIGHT = 17;
+  static final int SCROLL_LEFT = 18;
+  static final int SCROLL_TOP = 19;
+  static final int BORDER_WIDTH = 20;
+  static final int BORDER_HEIGHT = 21;
+  static final int FLAGS = 22;
+  static final int FIRST_ATTRIBUTE = 23;
+  static final int ATTRIBUTE_COUNT = 24;
+  static final int COLUMNS = 25;
+
+  // The bits of the FLAGS column
+  static final int BLOCKED = 1;
+  static final int CLICKABLE = 2;
+  static final int SHADOW_ELEMENT = 4;
+  static final int KEYBOARD_FOCUS = 8;
+  // The hit mask of the element is kept in the higher bits of the FLAGS column
+  static final int HIT_MASK_SHIFT = 4;
+
+  final String documentTitle;
+  final boolean documentHasFocus;
+
+  private final int size;
+  private final String[] strings;
+  private final int[] data;
+  private final int[] firstChild;
+  private final int[] nextSibling;
+
+  @SuppressWarnings("unchecked")
+  WdColumns(Map<String, Object> payload) {
+    int version = ((Number) payload.get("version")).intValue();
+    if (version != VERSION || ((Number) payload.get("columns")).intValue() != COLUMNS) {
+      throw new IllegalArgumentException("Unsupported state payload version " + version);
+    }
+    documentTitle = (String) payload.get("documentTitle");
+    documentHasFocus = Boolean.TRUE.equals(payload.get("documentHasFocus"));
+    size = ((Number) payload.get("count")).intValue();
+    strings = ((List<String>) payload.get("strings")).toArray(new String[0]);
+
+    IntBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode((String) payload.get("data")))
+        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    data = new int[buffer.remaining()];
+    buffer.get(data);
+    if (size < 1 || data.length < size * COLUMNS) {
+      throw new IllegalArgumentException("Incomplete state payload of " + size + " elements");
+    }
+
+    firstChild = new int[size];
+    nextSibling = new int[size];
+    int[] lastChild = new int[size];
+    Arrays.fill(firstChild, -1);
+    Arrays.fill(nextSibling, -1);
+    Arrays.fill(lastChild, -1);
+    for (int index = 1; index < size; index++) {
+      int parent = get(index, PARENT);
+      if (parent < 0 || parent >= index) {
+        throw new IllegalArgumentException(
+            "Element " + index + " refers to an invalid parent " + parent);
+      }
+      if (lastChild[parent] < 0) {
+        firstChild[parent] = index;
+      }
+      else {
+        nextSibling[lastChild[parent]] = index;
+      }
+      lastChild[parent] = index;
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  int get(int index, int column) {
+    return data[column * size + index];
+  }
+
+  String string(int index, int column) {
+    return strings[get(index, column)];
+  }
+
+  boolean flag(int index, int flag) {
+    return (get(index, FLAGS) & flag) != 0;
+  }
+
+  Map<String, String> attributes(int index) {
+    int first = size * COLUMNS + 2 * get(index, FIRST_ATTRIBUTE);
+    int count = get(index, ATTRIBUTE_COUNT);
+    Map<String, String> attributes = new HashMap<>(count * 2);
+    for (int i = first; i < first + 2 * count; i += 2) {
+      attributes.put(strings[data[i]], strings[data[i + 1]]);
+    }
+    return attributes;
+  }
+
+  /**
+   * @return the index of the first child of an element, or -1 if it has no children
+   */
+  int firstChild(int index) {
+    return firstChild[index];
+  }
+
+  /**
+   * @return the index of the next child of the parent of an element, or -1 if it is the last one
+   */
+  int nextSibling(int index) {
+    return nextSibling[index];
+  }
+}
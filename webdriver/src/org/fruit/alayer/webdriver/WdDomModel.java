@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2020 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package org.fruit.alayer.webdriver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The elements of the page as they were returned by the incremental state fetches (getStateTreeDeltaTestar),
+ * by the stable ids that the state script assigns to them. A delta replaces the elements that changed,
+ * including the ids of their children, and patches the properties of elements that only moved in the layout.
+ * The merged elements are flattened into a WdFlatTree, so every state is built from its own element objects.
+ */
+class WdDomModel {
+  private String epoch;
+  private long rootId = -1;
+  private Map<String, Object> rootProperties = new HashMap<>();
+  private final Map<Long, Map<String, Object>> elements = new HashMap<>();
+
+  /**
+   * @return the epoch of the last delta, or null if a full capture is required
+   */
+  String getEpoch() {
+    return epoch;
+  }
+
+  void clear() {
+    epoch = null;
+    rootId = -1;
+    elements.clear();
+  }
+
+  /**
+   * Merges a delta into the elements
+   * @return false if the delta is malformed or refers to elements that are not known,
+   *     the model has been cleared then
+   */
+  @SuppressWarnings("unchecked")
+  boolean apply(Map<String, Object> delta) {
+    if (!isValid(delta)) {
+      clear();
+      return false;
+    }
+    if (Boolean.TRUE.equals(delta.get("full"))) {
+      clear();
+    }
+    else if (epoch == null || !epoch.equals(delta.get("epoch"))) {
+      clear();
+      return false;
+    }
+
+    for (Map<String, Object> element : (List<Map<String, Object>>) delta.get("elements")) {
+      elements.put(id(element.get("id")), element);
+    }
+    for (Map<String, Object> patch : (List<Map<String, Object>>) delta.get("patches")) {
+      Map<String, Object> element = elements.get(id(patch.get("id")));
+      if (element == null) {
+        clear();
+        return false;
+      }
+      // The previous states keep their own element objects, the maps are not shared with them
+      element = new HashMap<>(element);
+      element.putAll(patch);
+      elements.put(id(patch.get("id")), element);
+    }
+
+    epoch = (String) delta.get("epoch");
+    rootId = id(delta.get("rootId"));
+    rootProperties = new HashMap<>();
+    rootProperties.put("documentHasFocus", delta.get("documentHasFocus"));
+    rootProperties.put("documentTitle", delta.get("documentTitle"));
+    if (!elements.containsKey(rootId)) {
+      clear();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Flattens the elements that can be reached from the body in document order, and forgets the other elements
+   * @return the flattened tree, or null if an element refers to a child that is not known
+   */
+  @SuppressWarnings("unchecked")
+  WdFlatTree flatten() {
+    List<Map<String, Object>> list = new ArrayList<>(elements.size());
+    List<Integer> parents = new ArrayList<>(elements.size());
+    Set<Long> reached = new HashSet<>();
+
+    Map<String, Object> body = new HashMap<>(elements.get(rootId));
+    body.putAll(rootProperties);
+
+    // Depth first, the children are pushed in reverse order to pop them in document order
+    List<Long> stack = new ArrayList<>();
+    List<Integer> stackParents = new ArrayList<>();
+    stack.add(rootId);
+    stackParents.add(-1);
+    while (!stack.isEmpty()) {
+      long id = stack.remove(stack.size() - 1);
+      int parent = stackParents.remove(stackParents.size() - 1);
+      Map<String, Object> element = id == rootId ? body : elements.get(id);
+      if (element == null || !reached.add(id)) {
+        clear();
+        return null;
+      }
+      int index = list.size();
+      list.add(element);
+      parents.add(parent);
+
+      List<Object> childIds = (List<Object>) element.get("childIds");
+      if (childIds == null) {
+        clear();
+        return null;
+      }
+      for (int i = childIds.size() - 1; i >= 0; i--) {
+        stack.add(id(childIds.get(i)));
+        stackParents.add(index);
+      }
+    }
+
+    if (reached.size() < elements.size()) {
+      elements.keySet().retainAll(reached);
+    }
+
+    int[] parentArray = new int[parents.size()];
+    for (int i = 0; i < parentArray.length; i++) {
+      parentArray[i] = parents.get(i);
+    }
+    return new WdFlatTree(list, parentArray);
+  }
+
+  /**
+   * @return true if the delta has the fields and the types that apply relies on,
+   *     so that merging it cannot fail halfway
+   */
+  private static boolean isValid(Map<String, Object> delta) {
+    if (!(delta.get("epoch") instanceof String) || !(delta.get("rootId") instanceof Number)
+        || !(delta.get("elements") instanceof List) || !(delta.get("patches") instanceof List)) {
+      return false;
+    }
+    for (Object element : (List<?>) delta.get("elements")) {
+      if (!(element instanceof Map) || !(((Map<?, ?>) element).get("id") instanceof Number)
+          || !isIdList(((Map<?, ?>) element).get("childIds"))) {
+        return false;
+      }
+    }
+    for (Object patch : (List<?>) delta.get("patches")) {
+      if (!(patch instanceof Map) || !(((Map<?, ?>) patch).get("id") instanceof Number)) {
+        return false;
+      }
+      if (((Map<?, ?>) patch).containsKey("childIds") && !isIdList(((Map<?, ?>) patch).get("childIds"))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isIdList(Object ids) {
+    if (!(ids instanceof List)) {
+      return false;
+    }
+    for (Object id : (List<?>) ids) {
+      if (!(id instanceof Number)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long id(Object id) {
+    return ((Number) id).longValue();
+  }
+}
@@ -79,6 +79,13 @@ public class WdDriver extends SUTBase {
   public static boolean forceActivateTab = true;
   public static boolean disableSecurity = false;
 
+  // Only fetch the changes of the page since the previous state, see getStateTreeDeltaTestar
+  private boolean incrementalCapture = false;
+  // Transfer the page as a columnar payload instead of nested maps, see getStateTreeColumnsTestar
+  private boolean columnarPayload = false;
+  // The elements of the page in this browser session, as merged from the incremental captures
+  private final WdDomModel domModel = new WdDomModel();
+
   private final Keyboard kbd = AWTKeyboard.build();
   private final Mouse mouse = WdMouse.build();
 
@@ -311,6 +318,9 @@ public class WdDriver extends SUTBase {
       webDriver.quit();
       webDriver = null;
     }
+    synchronized (domModel) {
+      domModel.clear();
+    }
 
     CanvasDimensions.stopThread();
   }
@@ -341,6 +351,26 @@ public class WdDriver extends SUTBase {
   public void setNativeAutomationCache() {
   }
 
+  public void setIncrementalCapture(boolean incrementalCapture) {
+    this.incrementalCapture = incrementalCapture;
+  }
+
+  boolean isIncrementalCapture() {
+    return incrementalCapture;
+  }
+
+  public void setColumnarPayload(boolean columnarPayload) {
+    this.columnarPayload = columnarPayload;
+  }
+
+  boolean isColumnarPayload() {
+    return columnarPayload;
+  }
+
+  WdDomModel getDomModel() {
+    return domModel;
+  }
+
   public static List<SUT> fromAll() {
     if (wdDriver == null) {
       return new ArrayList<>();
@@ -49,6 +49,10 @@ public class WdElement extends TaggableBase implements Serializable {
       "inline-table", "inline-flex", "inline-grid");
   private static final List<String> focusableTags = Arrays.asList(
       "input", "select", "textarea", "a", "button", "area");
+  // The points at which the state script hit tests an element, relative to its rect (see HIT_POINTS_TESTAR)
+  private static final double[][] hitPoints = {
+      {0.5, 0.5}, {0.25, 0.25}, {0.75, 0.25}, {0.25, 0.75}, {0.75, 0.75}};
+  static final int allHitPoints = (1 << hitPoints.length) - 1;
 
   List<WdElement> children = new ArrayList<>();
   WdElement parent;
@@ -56,6 +60,8 @@ public class WdElement extends TaggableBase implements Serializable {
   WdWidget backRef;
 
   public boolean blocked;
+  // The bitset of the hitPoints at which the element is not obscured by other elements
+  int hitMask = allHitPoints;
   //long culture = 0L;
   boolean isModal = false; // i.c.w. access key
 
@@ -87,9 +93,21 @@ public class WdElement extends TaggableBase implements Serializable {
 
   public transient Map<String, String> attributeMap;
 
-  @SuppressWarnings("unchecked")
   public WdElement(Map<String, Object> packedElement,
 		  			WdRootElement root, WdElement parent) {
+    this(packedElement, root, parent, null, 0);
+  }
+
+  /**
+   * Creates an element of a flattened tree, with its children taken from the flat tree
+   */
+  WdElement(WdFlatTree flatTree, int index, WdRootElement root, WdElement parent) {
+    this(flatTree.element(index), root, parent, flatTree, index);
+  }
+
+  @SuppressWarnings("unchecked")
+  private WdElement(Map<String, Object> packedElement, WdRootElement root,
+                    WdElement parent, WdFlatTree flatTree, int index) {
     this.root = root;
     this.parent = parent;
 
@@ -104,24 +122,10 @@ public class WdElement extends TaggableBase implements Serializable {
     	throw e;
     }
     
-    id = attributeMap.getOrDefault("id", "");
-    name = attributeMap.getOrDefault("name", "");
+    fillAttributes();
     genericTitle = (String) packedElement.get("name");
     tagName = (String) packedElement.get("tagName");
     textContent = ((String) packedElement.get("textContent")).replaceAll("\\s+", " ").trim();
-    title = attributeMap.getOrDefault("title","");
-    href = attributeMap.getOrDefault("href", "");
-    value = attributeMap.getOrDefault("value", "");
-    style = attributeMap.getOrDefault("style", "");
-    target = attributeMap.getOrDefault("target", "");
-    alt = attributeMap.getOrDefault("alt", "");
-    type = attributeMap.getOrDefault("type", "");
-    src = attributeMap.getOrDefault("src", "");
-
-    String classesString = attributeMap.getOrDefault("class", "");
-    if (classesString != null) {
-      cssClasses = Arrays.asList(classesString.split(" "));
-    }
     display = (String) packedElement.get("display");
 
     zindex = (double) (long) packedElement.get("zIndex");
@@ -131,23 +135,25 @@ public class WdElement extends TaggableBase implements Serializable {
     isFullVisibleOnScreen = isFullVisibleAtCanvasBrowser();
 
     blocked = (Boolean) packedElement.get("isBlocked");
+    if (packedElement.get("hitMask") instanceof Number) {
+      hitMask = ((Number) packedElement.get("hitMask")).intValue();
+    }
     isClickable = (Boolean) packedElement.get("isClickable");
     isShadow = (parent != null && parent.isShadow) || (Boolean) packedElement.get("isShadowElement");
     isKeyboardFocusable = getIsFocusable();
     hasKeyboardFocus = (Boolean) packedElement.get("hasKeyboardFocus");
+    fillEnabled();
 
-    enabled = !Constants.hiddenTags.contains(tagName);
-    if (display != null && display.toLowerCase().equals("none")) {
-      enabled = false;
+    if (flatTree == null) {
+      List<Map<String, Object>> wrappedChildren =
+          (List<Map<String, Object>>) packedElement.get("wrappedChildren");
+      for (Map<String, Object> wrappedChild : wrappedChildren) {
+        addChild(new WdElement(wrappedChild, root, this));
+      }
     }
-
-    List<Map<String, Object>> wrappedChildren =
-        (List<Map<String, Object>>) packedElement.get("wrappedChildren");
-    for (Map<String, Object> wrappedChild : wrappedChildren) {
-      WdElement child = new WdElement(wrappedChild, root, this);
-      if (!Constants.hiddenTags.contains(child.tagName) &&
-          !Constants.ignoredTags.contains(child.tagName)) {
-        children.add(child);
+    else {
+      for (int child = flatTree.firstChild(index); child >= 0; child = flatTree.nextSibling(child)) {
+        addChild(new WdElement(flatTree, child, root, this));
       }
     }
 
@@ -164,6 +170,86 @@ public class WdElement extends TaggableBase implements Serializable {
     }*/
   }
 
+  /**
+   * Creates an element of a columnar state payload, with its children taken from the payload
+   */
+  WdElement(WdColumns columns, int index, WdRootElement root, WdElement parent) {
+    this.root = root;
+    this.parent = parent;
+
+    attributeMap = columns.attributes(index);
+    fillAttributes();
+    genericTitle = columns.string(index, WdColumns.NAME);
+    tagName = columns.string(index, WdColumns.TAG_NAME);
+    textContent = columns.string(index, WdColumns.TEXT_CONTENT).replaceAll("\\s+", " ").trim();
+    display = columns.string(index, WdColumns.DISPLAY);
+
+    zindex = columns.get(index, WdColumns.Z_INDEX);
+    rect = Rect.from(columns.get(index, WdColumns.RECT_X), columns.get(index, WdColumns.RECT_Y),
+        columns.get(index, WdColumns.RECT_WIDTH), columns.get(index, WdColumns.RECT_HEIGHT));
+    overflowX = columns.string(index, WdColumns.OVERFLOW_X);
+    overflowY = columns.string(index, WdColumns.OVERFLOW_Y);
+    clientWidth = columns.get(index, WdColumns.CLIENT_WIDTH);
+    clientHeight = columns.get(index, WdColumns.CLIENT_HEIGHT);
+    offsetWidth = columns.get(index, WdColumns.OFFSET_WIDTH);
+    offsetHeight = columns.get(index, WdColumns.OFFSET_HEIGHT);
+    scrollWidth = columns.get(index, WdColumns.SCROLL_WIDTH);
+    scrollHeight = columns.get(index, WdColumns.SCROLL_HEIGHT);
+    scrollLeft = columns.get(index, WdColumns.SCROLL_LEFT);
+    scrollTop = columns.get(index, WdColumns.SCROLL_TOP);
+    borderWidth = columns.get(index, WdColumns.BORDER_WIDTH);
+    borderHeight = columns.get(index, WdColumns.BORDER_HEIGHT);
+
+    isFullVisibleOnScreen = isFullVisibleAtCanvasBrowser();
+
+    blocked = columns.flag(index, WdColumns.BLOCKED);
+    hitMask = columns.get(index, WdColumns.FLAGS) >> WdColumns.HIT_MASK_SHIFT & allHitPoints;
+    isClickable = columns.flag(index, WdColumns.CLICKABLE);
+    isShadow = (parent != null && parent.isShadow) || columns.flag(index, WdColumns.SHADOW_ELEMENT);
+    isKeyboardFocusable = getIsFocusable();
+    hasKeyboardFocus = columns.flag(index, WdColumns.KEYBOARD_FOCUS);
+    fillEnabled();
+
+    for (int child = columns.firstChild(index); child >= 0; child = columns.nextSibling(child)) {
+      addChild(new WdElement(columns, child, root, this));
+    }
+
+    setName();
+    fillScrollValues();
+  }
+
+  private void fillAttributes() {
+    id = attributeMap.getOrDefault("id", "");
+    name = attributeMap.getOrDefault("name", "");
+    title = attributeMap.getOrDefault("title","");
+    href = attributeMap.getOrDefault("href", "");
+    value = attributeMap.getOrDefault("value", "");
+    style = attributeMap.getOrDefault("style", "");
+    target = attributeMap.getOrDefault("target", "");
+    alt = attributeMap.getOrDefault("alt", "");
+    type = attributeMap.getOrDefault("type", "");
+    src = attributeMap.getOrDefault("src", "");
+
+    String classesString = attributeMap.getOrDefault("class", "");
+    if (classesString != null) {
+      cssClasses = Arrays.asList(classesString.split(" "));
+    }
+  }
+
+  private void fillEnabled() {
+    enabled = !Constants.hiddenTags.contains(tagName);
+    if (display != null && display.toLowerCase().equals("none")) {
+      enabled = false;
+    }
+  }
+
+  private void addChild(WdElement child) {
+    if (!Constants.hiddenTags.contains(child.tagName) &&
+        !Constants.ignoredTags.contains(child.tagName)) {
+      children.add(child);
+    }
+  }
+
   private void writeObject(ObjectOutputStream oos) throws IOException {
     oos.defaultWriteObject();
   }
@@ -243,7 +329,49 @@ public class WdElement extends TaggableBase implements Serializable {
   public boolean visibleAt(double x, double y) {
     int scrollLeft = (root == null) ? 0 : (int) root.scrollLeft;
     int scrollHeight = (root == null) ? 0 : (int) root.scrollHeight;
-    return rect != null && rect.contains(x - scrollLeft, y - scrollHeight);
+    return rect != null && rect.contains(x - scrollLeft, y - scrollHeight) &&
+           hitAt(x - scrollLeft, y - scrollHeight);
+  }
+
+  /*
+   * Is the hit point closest to a point not obscured by other elements
+   */
+  private boolean hitAt(double x, double y) {
+    if (hitMask == allHitPoints) {
+      return true;
+    }
+    double relX = (x - rect.x()) / rect.width();
+    double relY = (y - rect.y()) / rect.height();
+    int closest = 0;
+    double closestDistance = Double.MAX_VALUE;
+    for (int i = 0; i < hitPoints.length; i++) {
+      double distance = Math.pow(relX - hitPoints[i][0], 2) + Math.pow(relY - hitPoints[i][1], 2);
+      if (distance < closestDistance) {
+        closest = i;
+        closestDistance = distance;
+      }
+    }
+    return (hitMask & (1 << closest)) != 0;
+  }
+
+  /**
+   * @return the relative x-coordinate of the first hit point at which the element is not obscured,
+   * the center if it is obscured at every hit point
+   */
+  public double getHitPointX() {
+    return hitPoints[firstHitPoint()][0];
+  }
+
+  /**
+   * @return the relative y-coordinate of the first hit point at which the element is not obscured,
+   * the center if it is obscured at every hit point
+   */
+  public double getHitPointY() {
+    return hitPoints[firstHitPoint()][1];
+  }
+
+  private int firstHitPoint() {
+    return hitMask == 0 ? 0 : Integer.numberOfTrailingZeros(hitMask);
   }
 
   public boolean visibleAt(double x, double y, boolean obscuredByChildFeature) {
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2020 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package org.fruit.alayer.webdriver;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The flattened DOM tree that the state script returns for browsers that limit the recursion depth (Edge).
+ * The first element is the body, every other element holds the index of its parent element in "parentId",
+ * and a parent always comes before its children. The children of all the elements are indexed in one pass,
+ * in document order, so that the elements can be built without unflattening the list into nested maps.
+ */
+class WdFlatTree {
+  private final List<Map<String, Object>> elements;
+  private final int[] firstChild;
+  private final int[] nextSibling;
+
+  WdFlatTree(List<Map<String, Object>> elements) {
+    this(elements, parentIds(elements));
+  }
+
+  /**
+   * @param elements the elements, the body first and every parent before its children
+   * @param parents the index of the parent of every element, the parent of the body is ignored
+   */
+  WdFlatTree(List<Map<String, Object>> elements, int[] parents) {
+    this.elements = elements;
+    int size = elements.size();
+    firstChild = new int[size];
+    nextSibling = new int[size];
+    int[] lastChild = new int[size];
+    Arrays.fill(firstChild, -1);
+    Arrays.fill(nextSibling, -1);
+    Arrays.fill(lastChild, -1);
+
+    for (int index = 1; index < size; index++) {
+      int parent = parents[index];
+      if (parent < 0 || parent >= index) {
+        throw new IllegalArgumentException(
+            "Element " + index + " refers to an invalid parent " + parent);
+      }
+      if (lastChild[parent] < 0) {
+        firstChild[parent] = index;
+      }
+      else {
+        nextSibling[lastChild[parent]] = index;
+      }
+      lastChild[parent] = index;
+    }
+  }
+
+  private static int[] parentIds(List<Map<String, Object>> elements) {
+    int[] parents = new int[elements.size()];
+    for (int index = 1; index < parents.length; index++) {
+      parents[index] = ((Number) elements.get(index).get("parentId")).intValue();
+    }
+    return parents;
+  }
+
+  int size() {
+    return elements.size();
+  }
+
+  Map<String, Object> element(int index) {
+    return elements.get(index);
+  }
+
+  /**
+   * @return the index of the first child of an element, or -1 if it has no children
+   */
+  int firstChild(int index) {
+    return firstChild[index];
+  }
+
+  /**
+   * @return the index of the next child of the parent of an element, or -1 if it is the last one
+   */
+  int nextSibling(int index) {
+    return nextSibling[index];
+  }
+}
@@ -34,6 +34,8 @@ import org.fruit.alayer.HitTester;
 
 import java.io.Serializable;
 
+// Not a ShapeBoundHitTester, as visibleAt translates the point by the scroll offsets of the page,
+// it may accept points outside the rect of the element (its Tags.Shape)
 public class WdHitTester implements HitTester, Serializable {
   private static final long serialVersionUID = 2627030651264566538L;
 
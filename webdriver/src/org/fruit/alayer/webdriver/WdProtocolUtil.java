@@ -34,6 +34,7 @@ import es.upv.staq.testar.ProtocolUtil;
 import es.upv.staq.testar.serialisation.ScreenshotSerialiser;
 import org.fruit.alayer.Shape;
 import org.fruit.alayer.*;
+import org.fruit.alayer.actions.StdActionCompiler;
 import org.fruit.alayer.webdriver.enums.WdTags;
 
 import java.awt.*;
@@ -44,6 +45,40 @@ import static org.fruit.alayer.webdriver.Constants.scrollThick;
 
 public class WdProtocolUtil extends ProtocolUtil {
 
+  /**
+   * Tags.Blocked only refers to the center of a widget, where the StdActionCompiler clicks.
+   * Use this instead when the actions are derived with leftClickAt and clickTypeInto of this class.
+   * @return true if the widget is obscured by other elements at every hit point
+   */
+  public static boolean isBlocked(Widget widget) {
+    if (widget instanceof WdWidget) {
+      return ((WdWidget) widget).element.hitMask == 0;
+    }
+    return widget.get(Tags.Blocked, false);
+  }
+
+  /**
+   * Left click on a widget, at a point where it is not obscured by other elements
+   */
+  public static Action leftClickAt(StdActionCompiler ac, Widget widget) {
+    if (widget instanceof WdWidget) {
+      WdElement element = ((WdWidget) widget).element;
+      return ac.leftClickAt(widget, element.getHitPointX(), element.getHitPointY());
+    }
+    return ac.leftClickAt(widget);
+  }
+
+  /**
+   * Click on a widget and type into it, at a point where it is not obscured by other elements
+   */
+  public static Action clickTypeInto(StdActionCompiler ac, Widget widget, String text, boolean replaceText) {
+    if (widget instanceof WdWidget) {
+      WdElement element = ((WdWidget) widget).element;
+      return ac.clickTypeInto(widget, element.getHitPointX(), element.getHitPointY(), text, replaceText);
+    }
+    return ac.clickTypeInto(widget, text, replaceText);
+  }
+
   public static String getStateshot(State state) {
     double width = CanvasDimensions.getCanvasWidth() + (
         state.get(WdTags.WebVerticallyScrollable) ? scrollThick : 0);
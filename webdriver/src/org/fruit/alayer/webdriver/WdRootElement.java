@@ -45,11 +45,33 @@ public class WdRootElement extends WdElement {
 
   public WdRootElement(Map<String, Object> packedbody) {
     super(packedbody, null, null);
+    init((Boolean) packedbody.get("documentHasFocus"), (String) packedbody.get("documentTitle"));
+  }
+
+  /**
+   * Creates the root element of a flattened tree, the body is the first element of the tree
+   */
+  WdRootElement(WdFlatTree flatTree) {
+    super(flatTree, 0, null, null);
+    Map<String, Object> packedbody = flatTree.element(0);
+    init((Boolean) packedbody.get("documentHasFocus"), (String) packedbody.get("documentTitle"));
+  }
+
+  /**
+   * Creates the root element of a columnar state payload, the body is the first element of the payload
+   */
+  WdRootElement(WdColumns columns) {
+    super(columns, 0, null, null);
+    init(columns.documentHasFocus, columns.documentTitle);
+  }
+
+  private void init(boolean documentHasFocus, String documentTitle) {
     root = this;
     parent = this;
-    isForeground = (Boolean) packedbody.get("documentHasFocus");
-    documentTitle = (String) packedbody.get("documentTitle");
+    isForeground = documentHasFocus;
+    this.documentTitle = documentTitle;
     blocked = false;
+    hitMask = allHitPoints;
   }
 
   public WdElement at(double x, double y) {
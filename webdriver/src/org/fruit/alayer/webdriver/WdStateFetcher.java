@@ -36,7 +36,6 @@ import org.fruit.alayer.SUT;
 import org.fruit.alayer.Tags;
 import org.fruit.alayer.Widget;
 import org.fruit.alayer.exceptions.StateBuildException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -50,24 +49,41 @@ public class WdStateFetcher implements Callable<WdState> {
 
   @SuppressWarnings("unchecked")
   public static WdRootElement buildRoot(SUT system) throws StateBuildException {
-    Object result = WdDriver.executeScript(
-        "return getStateTreeTestar(arguments[0])", Constants.ignoredTags);
-
-    // TODO As Edge limits its recursion to 20, we need to flatten the tree in JS
-    // And unflatten the list here into a nested Map (as produced by Chrome / FF)
-    // https://developer.microsoft.com/en-us/microsoft-edge/platform/issues/18531786/
-    Map<String, Object> packedBody;
-    if (result instanceof List) {
-      packedBody = unflattenTree((List<Map<String, Object>>) result);
+    WdRootElement wdRoot;
+    // The capture options and the incremental page model belong to the browser session
+    WdDriver driver = system instanceof WdDriver ? (WdDriver) system : null;
+    if (driver != null && driver.isIncrementalCapture()) {
+      wdRoot = buildIncrementalRoot(driver.getDomModel());
+      if (wdRoot == null) {
+        return null;
+      }
     }
-    else if (result instanceof Map) {
-      packedBody = (Map<String, Object>) result;
+    else if (driver != null && driver.isColumnarPayload()) {
+      Object result = WdDriver.executeScript(
+          "return getStateTreeColumnsTestar(arguments[0])", Constants.ignoredTags);
+      if (!(result instanceof Map)) {
+        return null;
+      }
+      wdRoot = new WdRootElement(new WdColumns((Map<String, Object>) result));
     }
     else {
-      return null;
+      Object result = WdDriver.executeScript(
+          "return getStateTreeTestar(arguments[0])", Constants.ignoredTags);
+
+      // TODO As Edge limits its recursion to 20, we need to flatten the tree in JS
+      // And build the elements here straight from the list, in the same order as the nested Map (Chrome / FF)
+      // https://developer.microsoft.com/en-us/microsoft-edge/platform/issues/18531786/
+      if (result instanceof List) {
+        wdRoot = new WdRootElement(new WdFlatTree((List<Map<String, Object>>) result));
+      }
+      else if (result instanceof Map) {
+        wdRoot = new WdRootElement((Map<String, Object>) result);
+      }
+      else {
+        return null;
+      }
     }
 
-    WdRootElement wdRoot = new WdRootElement(packedBody);
     wdRoot.isRunning = system.isRunning();
     wdRoot.timeStamp = System.currentTimeMillis();
     wdRoot.hasStandardKeyboard = system.get(Tags.StandardKeyboard, null) != null;
@@ -77,29 +93,30 @@ public class WdStateFetcher implements Callable<WdState> {
     return wdRoot;
   }
 
-  @SuppressWarnings("unchecked")
-  private static Map<String, Object> unflattenTree(List<Map<String, Object>> flatTree) {
-    for (int idx = flatTree.size() - 1; idx > 0; idx--) {
-      Map<String, Object> node = flatTree.remove(idx);
-
-      Long parentId = (Long) node.get("parentId");
-      Map<String, Object> parent = getParent(parentId.intValue(), flatTree);
-      List<Map<String, Object>> wrappedChildren = (List<Map<String, Object>>) parent.get("wrappedChildren");
-      wrappedChildren.add(node);
+  /*
+   * Merge the changes of the page into the elements of the previous state.
+   * When the changes do not fit the previous state, the whole page is fetched again.
+   */
+  private static WdRootElement buildIncrementalRoot(WdDomModel domModel) {
+    synchronized (domModel) {
+      String epoch = domModel.getEpoch();
+      WdFlatTree flatTree = fetchDelta(domModel, epoch);
+      if (flatTree == null && epoch != null) {
+        flatTree = fetchDelta(domModel, null);
+      }
+      return flatTree == null ? null : new WdRootElement(flatTree);
     }
-
-    return flatTree.get(0);
   }
 
-  private static Map<String, Object> getParent(int parentId,
-                                               List<Map<String, Object>> flatTree) {
-    Map<String, Object> parent = flatTree.remove(parentId);
-    Map<String, Object> newParent = new HashMap<>();
-    for (String key : parent.keySet()) {
-      newParent.put(key, parent.get(key));
+  @SuppressWarnings("unchecked")
+  private static WdFlatTree fetchDelta(WdDomModel domModel, String epoch) {
+    Object result = WdDriver.executeScript(
+        "return getStateTreeDeltaTestar(arguments[0], arguments[1])", Constants.ignoredTags, epoch);
+    if (!(result instanceof Map) || !domModel.apply((Map<String, Object>) result)) {
+      domModel.clear();
+      return null;
     }
-    flatTree.add(parentId, newParent);
-    return newParent;
+    return domModel.flatten();
   }
 
   public WdState call() {
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2020 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package org.fruit.alayer.webdriver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WdColumnsTest {
+  private static final int SIZE = 3;
+
+  private static String encode(int[] data) {
+    ByteBuffer buffer = ByteBuffer.allocate(data.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.asIntBuffer().put(data);
+    return Base64.getEncoder().encodeToString(buffer.array());
+  }
+
+  /**
+   * A body with a link and a span, the link has one attribute
+   */
+  private static Map<String, Object> payload() {
+    int[] data = new int[SIZE * WdColumns.COLUMNS + 2];
+    set(data, 1, WdColumns.PARENT, 0);
+    set(data, 2, WdColumns.PARENT, 0);
+    set(data, 0, WdColumns.TAG_NAME, 1);
+    set(data, 1, WdColumns.TAG_NAME, 2);
+    set(data, 2, WdColumns.TAG_NAME, 3);
+    set(data, 1, WdColumns.TEXT_CONTENT, 6);
+    set(data, 1, WdColumns.RECT_X, 10);
+    set(data, 1, WdColumns.RECT_WIDTH, -20);
+    set(data, 1, WdColumns.FLAGS, WdColumns.CLICKABLE | (5 << WdColumns.HIT_MASK_SHIFT));
+    set(data, 2, WdColumns.FLAGS, WdColumns.BLOCKED);
+    set(data, 1, WdColumns.FIRST_ATTRIBUTE, 0);
+    set(data, 1, WdColumns.ATTRIBUTE_COUNT, 1);
+    data[SIZE * WdColumns.COLUMNS] = 4;
+    data[SIZE * WdColumns.COLUMNS + 1] = 5;
+
+    Map<String, Object> payload = new HashMap<>();
+    payload.put("version", WdColumns.VERSION);
+    payload.put("columns", WdColumns.COLUMNS);
+    payload.put("documentTitle", "Title");
+    payload.put("documentHasFocus", true);
+    payload.put("count", SIZE);
+    payload.put("strings", Arrays.asList("", "body", "a", "span", "href", "/home", "Home"));
+    payload.put("data", encode(data));
+    return payload;
+  }
+
+  private static void set(int[] data, int index, int column, int value) {
+    data[column * SIZE + index] = value;
+  }
+
+  @Test
+  public void testDecode() {
+    WdColumns columns = new WdColumns(payload());
+
+    assertEquals(SIZE, columns.size());
+    assertEquals("Title", columns.documentTitle);
+    assertTrue(columns.documentHasFocus);
+    assertEquals("body", columns.string(0, WdColumns.TAG_NAME));
+    assertEquals("a", columns.string(1, WdColumns.TAG_NAME));
+    assertEquals("Home", columns.string(1, WdColumns.TEXT_CONTENT));
+    assertEquals(10, columns.get(1, WdColumns.RECT_X));
+    assertEquals(-20, columns.get(1, WdColumns.RECT_WIDTH));
+  }
+
+  @Test
+  public void testFlagsAndHitMask() {
+    WdColumns columns = new WdColumns(payload());
+
+    assertTrue(columns.flag(1, WdColumns.CLICKABLE));
+    assertFalse(columns.flag(1, WdColumns.BLOCKED));
+    assertEquals(5, columns.get(1, WdColumns.FLAGS) >>> WdColumns.HIT_MASK_SHIFT);
+    assertTrue(columns.flag(2, WdColumns.BLOCKED));
+    assertFalse(columns.flag(2, WdColumns.CLICKABLE));
+  }
+
+  @Test
+  public void testAttributes() {
+    WdColumns columns = new WdColumns(payload());
+
+    assertEquals(1, columns.attributes(1).size());
+    assertEquals("/home", columns.attributes(1).get("href"));
+    assertTrue(columns.attributes(0).isEmpty());
+  }
+
+  @Test
+  public void testChildren() {
+    WdColumns columns = new WdColumns(payload());
+
+    assertEquals(1, columns.firstChild(0));
+    assertEquals(2, columns.nextSibling(1));
+    assertEquals(-1, columns.nextSibling(2));
+    assertEquals(-1, columns.firstChild(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOtherVersionIsRejected() {
+    Map<String, Object> payload = payload();
+    payload.put("version", WdColumns.VERSION + 1);
+    new WdColumns(payload);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIncompleteDataIsRejected() {
+    Map<String, Object> payload = payload();
+    payload.put("data", encode(new int[SIZE * WdColumns.COLUMNS - 1]));
+    new WdColumns(payload);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidParentIsRejected() {
+    Map<String, Object> payload = payload();
+    int[] data = new int[SIZE * WdColumns.COLUMNS];
+    set(data, 1, WdColumns.PARENT, 2);
+    payload.put("data", encode(data));
+    new WdColumns(payload);
+  }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2020 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package org.fruit.alayer.webdriver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WdDomModelTest {
+
+  private static Map<String, Object> element(long id, String tagName, Long... childIds) {
+    Map<String, Object> element = new HashMap<>();
+    element.put("id", id);
+    element.put("tagName", tagName);
+    element.put("childIds", new ArrayList<Object>(Arrays.asList(childIds)));
+    return element;
+  }
+
+  private static Map<String, Object> patch(long id, String key, Object value) {
+    Map<String, Object> patch = new HashMap<>();
+    patch.put("id", id);
+    patch.put(key, value);
+    return patch;
+  }
+
+  private static Map<String, Object> delta(String epoch, boolean full, List<Map<String, Object>> elements,
+                                           List<Map<String, Object>> patches) {
+    Map<String, Object> delta = new HashMap<>();
+    delta.put("epoch", epoch);
+    delta.put("full", full);
+    delta.put("rootId", 1L);
+    delta.put("documentHasFocus", true);
+    delta.put("documentTitle", "Title");
+    delta.put("elements", elements);
+    delta.put("patches", patches);
+    return delta;
+  }
+
+  private static WdDomModel fullModel() {
+    WdDomModel model = new WdDomModel();
+    assertTrue(model.apply(delta("e1", true, Arrays.asList(
+        element(1, "body", 2L, 3L), element(2, "div", 4L), element(3, "p"), element(4, "span")),
+        new ArrayList<>())));
+    return model;
+  }
+
+  @Test
+  public void testFullDeltaIsFlattenedInDocumentOrder() {
+    WdDomModel model = fullModel();
+    assertEquals("e1", model.getEpoch());
+
+    WdFlatTree tree = model.flatten();
+    assertEquals(4, tree.size());
+    assertEquals("body", tree.element(0).get("tagName"));
+    assertEquals("Title", tree.element(0).get("documentTitle"));
+    assertEquals(true, tree.element(0).get("documentHasFocus"));
+    assertEquals("div", tree.element(1).get("tagName"));
+    assertEquals("span", tree.element(2).get("tagName"));
+    assertEquals("p", tree.element(3).get("tagName"));
+    assertEquals(1, tree.firstChild(0));
+    assertEquals(2, tree.firstChild(1));
+    assertEquals(3, tree.nextSibling(1));
+  }
+
+  @Test
+  public void testIncrementalDeltaReplacesAndPatchesElements() {
+    WdDomModel model = fullModel();
+    WdFlatTree before = model.flatten();
+
+    assertTrue(model.apply(delta("e1", false, Arrays.asList(element(3, "p", 5L), element(5, "a")),
+        Arrays.asList(patch(4, "isBlocked", true)))));
+    WdFlatTree after = model.flatten();
+
+    assertEquals(5, after.size());
+    assertEquals("span", after.element(2).get("tagName"));
+    assertEquals(true, after.element(2).get("isBlocked"));
+    assertEquals("a", after.element(4).get("tagName"));
+    assertEquals(4, after.firstChild(3));
+    // The previous state keeps its own element objects
+    assertNull(before.element(2).get("isBlocked"));
+  }
+
+  @Test
+  public void testUnreachableElementsAreForgotten() {
+    WdDomModel model = fullModel();
+    assertTrue(model.apply(delta("e1", false, Arrays.asList(element(1, "body", 3L)), new ArrayList<>())));
+    assertEquals(2, model.flatten().size());
+
+    // The forgotten element can no longer be patched
+    assertFalse(model.apply(delta("e1", false, new ArrayList<>(), Arrays.asList(patch(2, "isBlocked", true)))));
+    assertNull(model.getEpoch());
+  }
+
+  @Test
+  public void testDeltaOfAnotherEpochIsRejected() {
+    WdDomModel model = fullModel();
+    assertFalse(model.apply(delta("e2", false, Arrays.asList(element(3, "p")), new ArrayList<>())));
+    assertNull(model.getEpoch());
+  }
+
+  @Test
+  public void testDeltaWithoutChildIdsIsRejected() {
+    WdDomModel model = fullModel();
+    Map<String, Object> element = element(3, "p");
+    element.remove("childIds");
+    assertFalse(model.apply(delta("e1", false, Arrays.asList(element), new ArrayList<>())));
+    assertNull(model.getEpoch());
+
+    // A full capture starts over
+    model = fullModel();
+    assertEquals(4, model.flatten().size());
+  }
+
+  @Test
+  public void testMalformedDeltasAreRejected() {
+    WdDomModel model = new WdDomModel();
+    Map<String, Object> delta = delta("e1", true, Arrays.asList(element(1, "body")), new ArrayList<>());
+    delta.remove("patches");
+    assertFalse(model.apply(delta));
+
+    Map<String, Object> element = element(1, "body");
+    element.put("childIds", Arrays.asList("2"));
+    assertFalse(model.apply(delta("e1", true, Arrays.asList(element), new ArrayList<>())));
+
+    Map<String, Object> patch = patch(1, "childIds", null);
+    assertFalse(model.apply(delta("e1", true, Arrays.asList(element(1, "body")), Arrays.asList(patch))));
+    assertNull(model.getEpoch());
+  }
+
+  @Test
+  public void testDeltaWithoutRootIsRejected() {
+    WdDomModel model = new WdDomModel();
+    assertFalse(model.apply(delta("e1", true, Arrays.asList(element(2, "div")), new ArrayList<>())));
+    assertNull(model.getEpoch());
+  }
+
+  @Test
+  public void testUnknownChildIsNotFlattened() {
+    WdDomModel model = new WdDomModel();
+    assertTrue(model.apply(delta("e1", true, Arrays.asList(element(1, "body", 7L)), new ArrayList<>())));
+    assertNull(model.flatten());
+    assertNull(model.getEpoch());
+  }
+}
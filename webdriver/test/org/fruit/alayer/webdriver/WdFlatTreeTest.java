@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2020 Open Universiteit - www.ou.nl
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package org.fruit.alayer.webdriver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WdFlatTreeTest {
+
+  private static Map<String, Object> element(String name, Integer parentId) {
+    Map<String, Object> element = new HashMap<>();
+    element.put("name", name);
+    if (parentId != null) {
+      element.put("parentId", parentId);
+    }
+    return element;
+  }
+
+  @Test
+  public void testChildrenInDocumentOrder() {
+    List<Map<String, Object>> elements = new ArrayList<>();
+    elements.add(element("body", null));
+    elements.add(element("div", 0));
+    elements.add(element("span", 1));
+    elements.add(element("p", 0));
+    elements.add(element("a", 1));
+    WdFlatTree tree = new WdFlatTree(elements);
+
+    assertEquals(5, tree.size());
+    assertEquals("body", tree.element(0).get("name"));
+    assertEquals(1, tree.firstChild(0));
+    assertEquals(3, tree.nextSibling(1));
+    assertEquals(-1, tree.nextSibling(3));
+    assertEquals(2, tree.firstChild(1));
+    assertEquals(4, tree.nextSibling(2));
+    assertEquals(-1, tree.firstChild(2));
+    assertEquals(-1, tree.firstChild(3));
+  }
+
+  @Test
+  public void testOnlyTheBody() {
+    List<Map<String, Object>> elements = new ArrayList<>();
+    elements.add(element("body", null));
+    WdFlatTree tree = new WdFlatTree(elements, new int[] { -1 });
+
+    assertEquals(1, tree.size());
+    assertEquals(-1, tree.firstChild(0));
+    assertEquals(-1, tree.nextSibling(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParentAfterChildIsRejected() {
+    List<Map<String, Object>> elements = new ArrayList<>();
+    elements.add(element("body", null));
+    elements.add(element("div", 2));
+    elements.add(element("span", 0));
+    new WdFlatTree(elements);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingParentIsRejected() {
+    List<Map<String, Object>> elements = new ArrayList<>();
+    elements.add(element("body", null));
+    elements.add(element("div", 0));
+    new WdFlatTree(elements, new int[] { -1, -1 });
+  }
+}
@@ -39,11 +39,14 @@ import java.util.Comparator;
 import java.util.List;
 
 import org.fruit.Assert;
+import org.fruit.alayer.PackedRTree;
 import org.fruit.alayer.Rect;
 
 public final class ElementMap implements Serializable {
 	private static final long serialVersionUID = 8336577831205889395L;
 	final List<UIAElement> elements;
+	// the rects of the elements, numbered in z-order, built when the map is queried for the first time
+	private transient PackedRTree index;
 
 	private static class ElementComp implements Comparator<UIAElement>{
 		final static int WORSE = 1, BETTER = -1, EVEN = 0;
@@ -92,20 +95,49 @@ public final class ElementMap implements Serializable {
 	}
 
 	public UIAElement at(double x, double y){
-		for(UIAElement element : elements){
-			if(element.rect.contains(x, y))
-				return element;
-		}
-		return null;
+		int first = firstAt(x, y, elements.size());
+		return first < elements.size() ? elements.get(first) : null;
 	}
 
 	public boolean obstructed(UIAElement element, double x, double y){
-		for(UIAElement obstacle : elements){
-			if(obstacle.zindex <= element.zindex || obstacle == element)
-				break;
-			if(obstacle.rect.contains(x, y))
-				return true;
+		// the obstacles are the elements before the first one with a z-index that is not higher
+		int low = 0, high = elements.size();
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(elements.get(middle).zindex > element.zindex)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return firstAt(x, y, low) < low;
+	}
+
+	/*
+	 * The position in z-order of the first element that contains a point, or limit if there is none before limit
+	 */
+	private int firstAt(double x, double y, int limit){
+		int[] first = {limit};
+		index().search(x, y, item -> {
+			if(item < first[0])
+				first[0] = item;
+			return true;
+		});
+		return first[0];
+	}
+
+	private synchronized PackedRTree index(){
+		if(index == null){
+			int size = elements.size();
+			double[] minX = new double[size], minY = new double[size], maxX = new double[size], maxY = new double[size];
+			for(int i = 0; i < size; i++){
+				Rect rect = elements.get(i).rect;
+				minX[i] = rect.x();
+				minY[i] = rect.y();
+				maxX[i] = rect.x() + rect.width();
+				maxY[i] = rect.y() + rect.height();
+			}
+			index = new PackedRTree(minX, minY, maxX, maxY);
 		}
-		return false;
+		return index;
 	}
 }
@@ -33,9 +33,9 @@
  */
 package org.fruit.alayer.windows;
 
-import org.fruit.alayer.HitTester;
+import org.fruit.alayer.ShapeBoundHitTester;
 
-public final class UIAHitTester implements HitTester {
+public final class UIAHitTester implements ShapeBoundHitTester {
 	private static final long serialVersionUID = 1134479951851719957L;
 	private final UIAElement el;
 	public UIAHitTester(UIAElement el){	this.el = el; }